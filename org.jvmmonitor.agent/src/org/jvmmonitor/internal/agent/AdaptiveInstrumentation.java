@@ -0,0 +1,152 @@
+/*******************************************************************************
+ * Copyright (c) 2010 JVM Monitor project. All rights reserved.
+ *
+ * This code is distributed under the terms of the Eclipse Public License v1.0
+ * which is available at http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+package org.jvmmonitor.internal.agent;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * The background task that periodically finds the methods invoked frequently
+ * with negligible self time, e.g. getters and setters, and re-transforms
+ * their classes without the probes of those methods.
+ * <p>
+ * The probes of such methods cost much more than the methods themselves, and
+ * distort the time of their callers. The invocation rate and the self time
+ * are computed from the difference of the runtime model between checks. The
+ * invocations already in progress complete with the former code.
+ */
+public class AdaptiveInstrumentation implements Runnable {
+
+    /** The thread name of adaptive instrumentation. */
+    private static final String THREAD_NAME = "JVM Monitor Adaptive Instrumentation"; //$NON-NLS-1$
+
+    /** The state indicating if the thread has been started. */
+    private static boolean started;
+
+    /** The profiler controller re-transforming the classes. */
+    private final CpuBciProfilerMXBeanImpl profiler;
+
+    /** The invocation counts at previous check indexed by method ID. */
+    private long[] previousCounts;
+
+    /** The self times at previous check indexed by method ID. */
+    private long[] previousSelfTimes;
+
+    /** The time in nanoseconds of previous check. */
+    private long previousTime;
+
+    /** The state indicating if an error has been logged. */
+    private boolean errorLogged;
+
+    /**
+     * The constructor.
+     *
+     * @param profiler
+     *            The profiler controller
+     */
+    private AdaptiveInstrumentation(CpuBciProfilerMXBeanImpl profiler) {
+        this.profiler = profiler;
+        previousCounts = new long[0];
+        previousSelfTimes = new long[0];
+    }
+
+    /**
+     * Starts the adaptive instrumentation as daemon thread unless it has been
+     * already started.
+     *
+     * @param profiler
+     *            The profiler controller
+     */
+    protected static synchronized void start(CpuBciProfilerMXBeanImpl profiler) {
+        if (started) {
+            return;
+        }
+        started = true;
+        Thread thread = new Thread(new AdaptiveInstrumentation(profiler),
+                THREAD_NAME);
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /*
+     * @see Runnable#run()
+     */
+    @Override
+    public void run() {
+        while (true) {
+            try {
+                Thread.sleep(Config.getInstance().getAdaptiveInterval());
+            } catch (InterruptedException e) {
+                return;
+            }
+
+            Config config = Config.getInstance();
+            if (!config.isAdaptiveEnabled() || !config.isProfilerEnabled()) {
+                // the statistics while suspended don't tell the rate
+                previousCounts = new long[0];
+                continue;
+            }
+
+            try {
+                excludeTrivialMethods();
+            } catch (Throwable t) {
+                if (!errorLogged) {
+                    errorLogged = true;
+                    Agent.logError(t, Messages.CANNOT_ADAPT_INSTRUMENTATION);
+                }
+            }
+        }
+    }
+
+    /**
+     * Excludes the methods that have been invoked frequently with negligible
+     * self time since previous check, and re-transforms their classes.
+     */
+    private void excludeTrivialMethods() {
+        int methodCount = MethodRegistry.getMethodCount();
+        long[] counts = new long[methodCount];
+        long[] selfTimes = new long[methodCount];
+        long time = System.nanoTime();
+        CpuBciProfiler.getModel().accumulateMethodStatistics(counts,
+                selfTimes);
+
+        long[] lastCounts = Arrays.copyOf(previousCounts, methodCount);
+        long[] lastSelfTimes = Arrays.copyOf(previousSelfTimes, methodCount);
+        long elapsedTime = time - previousTime;
+        boolean first = previousCounts.length == 0;
+        previousCounts = counts;
+        previousSelfTimes = selfTimes;
+        previousTime = time;
+        if (first || elapsedTime <= 0) {
+            return;
+        }
+
+        Config config = Config.getInstance();
+        long minRate = config.getAdaptiveMinRate();
+        long maxSelfTime = config.getAdaptiveMaxSelfTime();
+        Set<String> classNames = new HashSet<String>();
+        for (int id = 0; id < methodCount; id++) {
+            long count = counts[id] - lastCounts[id];
+            long selfTime = selfTimes[id] - lastSelfTimes[id];
+            if (!MethodRegistry.isInstrumented(id) || count <= 0
+                    || selfTime < 0) {
+                // the profile data may have been cleared since previous check
+                continue;
+            }
+
+            long rate = (long) (count * 1000000000d / elapsedTime);
+            if (rate >= minRate && selfTime <= maxSelfTime * count
+                    && config.excludeMethod(id)) {
+                Agent.logInfo(Messages.EXCLUDED_TRIVIAL_METHOD, FrameNode
+                        .getFrameName(id), rate, selfTime / count);
+                classNames.add(MethodRegistry.getClassName(id));
+            }
+        }
+        profiler.retransformClasses(classNames);
+    }
+}
@@ -147,6 +147,8 @@ public class Agent {
                 CpuBciProfilerMXBean.PROFILER_MXBEAN_NAME);
         ObjectName dataTransferObjectName = new ObjectName(
                 DataTransferMXBean.DATA_TRANSFER_MXBEAN_NAME);
+        ObjectName stackSamplerObjectName = new ObjectName(
+                StackSamplerMXBean.STACK_SAMPLER_MXBEAN_NAME);
         ObjectName swtResourceMonitorObjectName = new ObjectName(
                 SWTResourceMonitorMXBean.SWT_RESOURCE_MONITOR_MXBEAN_NAME);
         ObjectName eclipseJobManagerObjectName = new ObjectName(
@@ -165,6 +167,12 @@ public class Agent {
             agentLoaded = true;
         }
 
+        if (!server.isRegistered(stackSamplerObjectName)) {
+            StackSamplerMXBeanImpl stackSampler = new StackSamplerMXBeanImpl();
+            server.registerMBean(stackSampler, stackSamplerObjectName);
+            agentLoaded = true;
+        }
+
         if (!server.isRegistered(swtResourceMonitorObjectName)) {
             SWTResourceMonitorMXBeanImpl swtResourceMonitor = new SWTResourceMonitorMXBeanImpl(
                     inst);
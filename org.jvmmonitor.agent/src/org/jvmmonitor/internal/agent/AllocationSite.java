@@ -0,0 +1,156 @@
+/*******************************************************************************
+ * Copyright (c) 2010 JVM Monitor project. All rights reserved.
+ *
+ * This code is distributed under the terms of the Eclipse Public License v1.0
+ * which is available at http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+package org.jvmmonitor.internal.agent;
+
+import java.lang.ref.WeakReference;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.jvmmonitor.internal.agent.asm.Type;
+
+/**
+ * The allocation site, which is the pair of the method allocating objects and
+ * the allocated type. The allocations of the same type in the same method
+ * share the site.
+ */
+public class AllocationSite {
+
+    /** The method ID of the method allocating objects. */
+    private final int methodId;
+
+    /**
+     * The allocated type, which is the internal name of class (e.g.
+     * java/lang/String) or the descriptor of array (e.g. [I).
+     */
+    private final String type;
+
+    /** The class loader of the method, or <tt>null</tt> for bootstrap. */
+    private final WeakReference<ClassLoader> loader;
+
+    /** The estimated size of instance in bytes, or -1 if not yet estimated. */
+    private volatile long instanceSize;
+
+    /** The estimated number of allocations. */
+    private final AtomicLong count;
+
+    /** The estimated allocated bytes. */
+    private final AtomicLong bytes;
+
+    /**
+     * The constructor.
+     *
+     * @param methodId
+     *            The method ID of the method allocating objects
+     * @param type
+     *            The internal name of class or the descriptor of array
+     * @param loader
+     *            The class loader of the method
+     */
+    protected AllocationSite(int methodId, String type, ClassLoader loader) {
+        this.methodId = methodId;
+        this.type = type;
+        this.loader = loader == null ? null : new WeakReference<ClassLoader>(
+                loader);
+        instanceSize = -1;
+        count = new AtomicLong();
+        bytes = new AtomicLong();
+    }
+
+    /**
+     * Records the allocations.
+     *
+     * @param allocationCount
+     *            The number of allocations
+     * @param allocatedBytes
+     *            The allocated bytes
+     */
+    protected void record(long allocationCount, long allocatedBytes) {
+        count.addAndGet(allocationCount);
+        bytes.addAndGet(allocatedBytes);
+    }
+
+    /**
+     * Clears the recorded allocations.
+     */
+    protected void clear() {
+        count.set(0);
+        bytes.set(0);
+    }
+
+    /**
+     * Gets the method ID of the method allocating objects.
+     *
+     * @return The method ID
+     */
+    protected int getMethodId() {
+        return methodId;
+    }
+
+    /**
+     * Gets the allocated type.
+     *
+     * @return The internal name of class or the descriptor of array
+     */
+    protected String getType() {
+        return type;
+    }
+
+    /**
+     * Gets the allocated type name.
+     *
+     * @return The allocated type name (e.g. java.lang.String or int[])
+     */
+    protected String getTypeName() {
+        return Type.getObjectType(type).getClassName();
+    }
+
+    /**
+     * Gets the class loader of the method allocating objects.
+     *
+     * @return The class loader, or <tt>null</tt> if bootstrap class loader or
+     *         already collected
+     */
+    protected ClassLoader getLoader() {
+        return loader == null ? null : loader.get();
+    }
+
+    /**
+     * Gets the estimated size of instance.
+     *
+     * @return The size in bytes, or -1 if not yet estimated
+     */
+    protected long getInstanceSize() {
+        return instanceSize;
+    }
+
+    /**
+     * Sets the estimated size of instance.
+     *
+     * @param size
+     *            The size in bytes
+     */
+    protected void setInstanceSize(long size) {
+        instanceSize = size;
+    }
+
+    /**
+     * Gets the estimated number of allocations.
+     *
+     * @return The number of allocations
+     */
+    protected long getCount() {
+        return count.get();
+    }
+
+    /**
+     * Gets the estimated allocated bytes.
+     *
+     * @return The allocated bytes
+     */
+    protected long getBytes() {
+        return bytes.get();
+    }
+}
@@ -0,0 +1,85 @@
+/*******************************************************************************
+ * Copyright (c) 2010 JVM Monitor project. All rights reserved. 
+ * 
+ * This code is distributed under the terms of the Eclipse Public License v1.0
+ * which is available at http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+package org.jvmmonitor.internal.agent;
+
+import java.beans.ConstructorProperties;
+
+/**
+ * The allocation site that is converted into <tt>CompositeData</tt>.
+ */
+public class AllocationSiteCompositeData {
+
+    /** The frame name of the method allocating objects. */
+    private String method;
+
+    /** The allocated type name. */
+    private String type;
+
+    /** The estimated number of allocations. */
+    private long count;
+
+    /** The estimated allocated bytes. */
+    private long bytes;
+
+    /**
+     * The constructor.
+     * 
+     * @param method
+     *            The frame name of the method allocating objects
+     * @param type
+     *            The allocated type name
+     * @param count
+     *            The estimated number of allocations
+     * @param bytes
+     *            The estimated allocated bytes
+     */
+    @ConstructorProperties({ "method", "type", "count", "bytes" })
+    public AllocationSiteCompositeData(String method, String type, long count,
+            long bytes) {
+        this.method = method;
+        this.type = type;
+        this.count = count;
+        this.bytes = bytes;
+    }
+
+    /**
+     * Gets the frame name of the method allocating objects.
+     * 
+     * @return The frame name (e.g. java.lang.String.valueOf(int))
+     */
+    public String getMethod() {
+        return method;
+    }
+
+    /**
+     * Gets the allocated type name.
+     * 
+     * @return The allocated type name (e.g. java.lang.String or int[])
+     */
+    public String getType() {
+        return type;
+    }
+
+    /**
+     * Gets the estimated number of allocations.
+     * 
+     * @return The number of allocations
+     */
+    public long getCount() {
+        return count;
+    }
+
+    /**
+     * Gets the estimated allocated bytes.
+     * 
+     * @return The allocated bytes
+     */
+    public long getBytes() {
+        return bytes;
+    }
+
+}
@@ -0,0 +1,107 @@
+/*******************************************************************************
+ * Copyright (c) 2010 JVM Monitor project. All rights reserved.
+ *
+ * This code is distributed under the terms of the Eclipse Public License v1.0
+ * which is available at http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+package org.jvmmonitor.internal.agent;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * The registry of instrumented allocation sites. Like method IDs, each site is
+ * given a constant integer ID when its class is transformed, and the ID is
+ * embedded into the instrumented byte-codes.
+ */
+public class AllocationSiteRegistry {
+
+    /** The initial capacity of site table. */
+    private static final int INITIAL_CAPACITY = 256;
+
+    /** The site IDs with key <tt>methodId:type</tt>. */
+    private static final Map<String, Integer> siteIds = new HashMap<String, Integer>();
+
+    /** The sites indexed by site ID. */
+    private static volatile AllocationSite[] sites = new AllocationSite[INITIAL_CAPACITY];
+
+    /** The number of registered sites. */
+    private static volatile int size;
+
+    /**
+     * The constructor.
+     */
+    private AllocationSiteRegistry() {
+        // do not instantiate
+    }
+
+    /**
+     * Registers the allocation site. The same ID is returned if the site has
+     * been already registered, e.g. when the class is re-transformed.
+     *
+     * @param methodId
+     *            The method ID of the method allocating objects
+     * @param type
+     *            The internal name of class or the descriptor of array
+     * @param loader
+     *            The class loader of the method
+     * @return The site ID
+     */
+    protected static synchronized int register(int methodId, String type,
+            ClassLoader loader) {
+        String key = methodId + ":" + type; //$NON-NLS-1$
+        Integer id = siteIds.get(key);
+        if (id != null) {
+            return id;
+        }
+
+        AllocationSite[] currentSites = sites;
+        if (size == currentSites.length) {
+            currentSites = Arrays.copyOf(currentSites, size * 2);
+        }
+        currentSites[size] = new AllocationSite(methodId, type, loader);
+        sites = currentSites;
+        siteIds.put(key, size);
+        return size++;
+    }
+
+    /**
+     * Gets the allocation site.
+     *
+     * @param id
+     *            The site ID
+     * @return The allocation site
+     */
+    protected static AllocationSite get(int id) {
+        return sites[id];
+    }
+
+    /**
+     * Gets the registered allocation sites.
+     *
+     * @return The allocation sites
+     */
+    protected static AllocationSite[] getSites() {
+        int n = size;
+        return Arrays.copyOf(sites, n);
+    }
+
+    /**
+     * Gets the state indicating if any allocation site has been registered.
+     *
+     * @return <tt>true</tt> if no allocation site has been registered
+     */
+    protected static boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * Clears the recorded allocations of all sites.
+     */
+    protected static void clear() {
+        for (AllocationSite site : getSites()) {
+            site.clear();
+        }
+    }
+}
@@ -0,0 +1,83 @@
+/*******************************************************************************
+ * Copyright (c) 2010 JVM Monitor project. All rights reserved.
+ *
+ * This code is distributed under the terms of the Eclipse Public License v1.0
+ * which is available at http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+package org.jvmmonitor.internal.agent;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * The store of binary dumps to be read in chunks by clients. Each dump is
+ * given an ID with which its chunks are read, so that a client never mixes up
+ * the chunks with the ones of another dump requested meanwhile, e.g. by
+ * another client. Only the latest dumps are kept, and reading a discarded dump
+ * fails.
+ */
+public class BinaryDumpStore {
+
+    /** The max number of dumps kept. */
+    private static final int MAX_DUMPS = 4;
+
+    /** The dumps keyed by ID in the order of creation. */
+    private final Map<Long, byte[]> dumps;
+
+    /** The ID of the last dump. */
+    private long lastId;
+
+    /**
+     * The constructor.
+     */
+    protected BinaryDumpStore() {
+        dumps = new LinkedHashMap<Long, byte[]>() {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Long, byte[]> eldest) {
+                return size() > MAX_DUMPS;
+            }
+        };
+    }
+
+    /**
+     * Adds the dump, discarding the oldest dumps beyond the max number.
+     *
+     * @param dump
+     *            The dump
+     * @return The dump ID
+     */
+    protected synchronized long add(byte[] dump) {
+        dumps.put(++lastId, dump);
+        return lastId;
+    }
+
+    /**
+     * Reads the chunk of the given dump.
+     *
+     * @param id
+     *            The dump ID
+     * @param pos
+     *            The offset position of data in bytes to start reading data
+     * @param maxSize
+     *            The max size in bytes to read data
+     * @return The chunk, empty array if no more data, or <tt>null</tt> if the
+     *         dump has been discarded
+     */
+    protected byte[] read(long id, int pos, int maxSize) {
+        byte[] bytes;
+        synchronized (this) {
+            bytes = dumps.get(id);
+        }
+        if (bytes == null) {
+            return null;
+        }
+        if (pos < 0 || pos >= bytes.length || maxSize <= 0) {
+            return new byte[0];
+        }
+        return Arrays.copyOfRange(bytes, pos,
+                (int) Math.min((long) pos + maxSize, bytes.length));
+    }
+}
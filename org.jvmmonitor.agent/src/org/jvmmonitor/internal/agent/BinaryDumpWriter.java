@@ -0,0 +1,194 @@
+/*******************************************************************************
+ * Copyright (c) 2010 JVM Monitor project. All rights reserved.
+ *
+ * This code is distributed under the terms of the Eclipse Public License v1.0
+ * which is available at http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+package org.jvmmonitor.internal.agent;
+
+import java.io.ByteArrayOutputStream;
+import java.io.UnsupportedEncodingException;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * The writer of profile data in compact binary format.
+ * <p>
+ * All numbers are unsigned varints (7 bits per byte, least significant group
+ * first), and strings are varint length followed by UTF-8 bytes. The data
+ * starts with the format version, the generations and the flags, followed by
+ * the records of removed threads each starting with {@link #REMOVED_THREAD}
+ * and thread records each starting with {@link #THREAD}, and ends with
+ * {@link #END}.
+ *
+ * <pre>
+ * data   := VERSION generation since flags removed* thread* END
+ * removed := REMOVED_THREAD name
+ * thread := THREAD name rootCount frame*
+ * frame  := nameIndex [name] count time [cpuTime] [allocCount allocBytes]
+ *           [latency] childCount frame*
+ * latency := bucketCount (indexDelta count)* [maxTime]
+ * </pre>
+ *
+ * Only the frames modified after the generation <tt>since</tt> are written,
+ * where 0 means that all frames are written. The count and time of frame are
+ * not differences but the current values. The generation has to be given as
+ * <tt>since</tt> next time to get the subsequent modifications. The threads
+ * merged into other threads since then are given as removed threads, which
+ * are written only if <tt>since</tt> is not 0.
+ * <p>
+ * Frame names form a string table built while writing. The name follows its
+ * index only when the index equals the number of names written so far. The
+ * time is given in nanoseconds. The CPU time of frame is written only if the
+ * flags contain {@link #CPU_TIME}, and the number of allocations and the
+ * allocated bytes only if the flags contain {@link #ALLOCATIONS}. The latency
+ * histogram is written only if the flags contain {@link #LATENCY}, as the
+ * non-empty buckets each with the index relative to the previous one, and the
+ * maximum time follows only if any bucket is non-empty.
+ */
+@SuppressWarnings("nls")
+public class BinaryDumpWriter {
+
+    /** The format version. */
+    static final int VERSION = 6;
+
+    /** The tag indicating the end of data. */
+    static final int END = 0;
+
+    /** The tag indicating the start of thread record. */
+    static final int THREAD = 1;
+
+    /** The tag indicating the record of removed thread. */
+    static final int REMOVED_THREAD = 2;
+
+    /** The flag indicating that frames contain CPU time. */
+    static final int CPU_TIME = 1;
+
+    /** The flag indicating that frames contain allocations. */
+    static final int ALLOCATIONS = 2;
+
+    /** The flag indicating that frames contain latency histograms. */
+    static final int LATENCY = 4;
+
+    /** The output stream. */
+    private ByteArrayOutputStream out;
+
+    /** The indexes in string table with key method ID. */
+    private Map<Integer, Integer> nameIndexes;
+
+    /** The flags indicating the optional values of frames to be written. */
+    private int flags;
+
+    /**
+     * The constructor.
+     *
+     * @param generation
+     *            The generation of snapshot to be written
+     * @param since
+     *            The generation after which modified frames are written, or 0
+     *            to write all frames
+     * @param flags
+     *            The flags indicating the optional values of frames to be
+     *            written, which can be {@link #CPU_TIME},
+     *            {@link #ALLOCATIONS} and {@link #LATENCY}
+     */
+    protected BinaryDumpWriter(long generation, long since, int flags) {
+        out = new ByteArrayOutputStream();
+        nameIndexes = new HashMap<Integer, Integer>();
+        this.flags = flags;
+        writeVarLong(VERSION);
+        writeVarLong(generation);
+        writeVarLong(since);
+        writeVarLong(flags);
+    }
+
+    /**
+     * Gets the state indicating if CPU time of frames is written.
+     *
+     * @return <tt>true</tt> if CPU time of frames is written
+     */
+    protected boolean hasCpuTime() {
+        return (flags & CPU_TIME) != 0;
+    }
+
+    /**
+     * Gets the state indicating if allocations of frames are written.
+     *
+     * @return <tt>true</tt> if allocations of frames are written
+     */
+    protected boolean hasAllocations() {
+        return (flags & ALLOCATIONS) != 0;
+    }
+
+    /**
+     * Gets the state indicating if latency histograms of frames are written.
+     *
+     * @return <tt>true</tt> if latency histograms of frames are written
+     */
+    protected boolean hasLatency() {
+        return (flags & LATENCY) != 0;
+    }
+
+    /**
+     * Writes the index of frame name in string table.
+     *
+     * @param methodId
+     *            The method ID
+     * @return <tt>true</tt> if the name is already in string table, or
+     *         <tt>false</tt> if the name has to be written with
+     *         {@link #writeString(String)} subsequently
+     */
+    protected boolean writeNameIndex(int methodId) {
+        Integer index = nameIndexes.get(methodId);
+        if (index != null) {
+            writeVarLong(index);
+            return true;
+        }
+
+        int newIndex = nameIndexes.size();
+        nameIndexes.put(methodId, newIndex);
+        writeVarLong(newIndex);
+        return false;
+    }
+
+    /**
+     * Writes the string.
+     *
+     * @param value
+     *            The string
+     */
+    protected void writeString(String value) {
+        byte[] bytes;
+        try {
+            bytes = value.getBytes("UTF-8");
+        } catch (UnsupportedEncodingException e) {
+            throw new IllegalStateException(e);
+        }
+        writeVarLong(bytes.length);
+        out.write(bytes, 0, bytes.length);
+    }
+
+    /**
+     * Writes the non-negative number as varint.
+     *
+     * @param value
+     *            The number
+     */
+    protected void writeVarLong(long value) {
+        while ((value & ~0x7FL) != 0) {
+            out.write((int) (value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.write((int) value);
+    }
+
+    /**
+     * Finishes writing and gets the data.
+     *
+     * @return The data
+     */
+    protected byte[] toByteArray() {
+        writeVarLong(END);
+        return out.toByteArray();
+    }
+}
@@ -0,0 +1,265 @@
+/*******************************************************************************
+ * Copyright (c) 2010 JVM Monitor project. All rights reserved.
+ *
+ * This code is distributed under the terms of the Eclipse Public License v1.0
+ * which is available at http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+package org.jvmmonitor.internal.agent;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * The call trees of thread nodes, which are built either by the probes or by
+ * the stack sampler.
+ * <p>
+ * The thread nodes of terminated threads are merged into the thread nodes
+ * aggregating the threads with the same normalized name. The generation of
+ * snapshot is incremented whenever dumping, so that the client reads only the
+ * frames modified since its previous read, and removes the threads merged
+ * since then.
+ */
+public class CallTreeModel {
+
+    /** The max number of names of merged threads kept to be reported. */
+    private static final int MAX_MERGED_THREAD_NAMES = 1024;
+
+    /** The thread nodes including the ones aggregating terminated threads. */
+    protected final Queue<ThreadNode> threadNodes;
+
+    /** The thread nodes aggregating terminated threads. */
+    private final Map<String, ThreadNode> aggregateThreadNodes;
+
+    /** The number of frame nodes in all threads. */
+    private volatile AtomicInteger frameCount;
+
+    /** The generation of snapshot, incremented whenever dumping. */
+    private long generation;
+
+    /** The last generation of snapshot before clearing the model. */
+    private long clearedGeneration;
+
+    /**
+     * The reported names of merged threads with key thread name and value the
+     * last generation of snapshot before merging, in the order of merging.
+     */
+    private final Map<String, Long> mergedThreadNames;
+
+    /**
+     * The last generation of snapshot before merging the threads whose names
+     * have been discarded from the merged thread names.
+     */
+    private long discardedGeneration;
+
+    /** The thread names reported by the last binary dump. */
+    private Map<ThreadNode, String> reportedThreadNames;
+
+    /**
+     * The last generation of snapshot before the reported name of any thread
+     * changed, after which the thread is dumped with the new name.
+     */
+    private long renamedGeneration;
+
+    /**
+     * The constructor.
+     */
+    protected CallTreeModel() {
+        threadNodes = new ConcurrentLinkedQueue<ThreadNode>();
+        aggregateThreadNodes = new HashMap<String, ThreadNode>();
+        reportedThreadNames = new HashMap<ThreadNode, String>();
+        mergedThreadNames = new LinkedHashMap<String, Long>() {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Long> eldest) {
+                if (size() > MAX_MERGED_THREAD_NAMES) {
+                    discardedGeneration = eldest.getValue();
+                    return true;
+                }
+                return false;
+            }
+        };
+        frameCount = new AtomicInteger();
+    }
+
+    /**
+     * Gets the number of frame nodes in all threads.
+     *
+     * @return The number of frame nodes
+     */
+    protected int getFrameCount() {
+        return frameCount.get();
+    }
+
+    /**
+     * Clears the thread nodes.
+     */
+    protected synchronized void clear() {
+        frameCount = new AtomicInteger();
+        threadNodes.clear();
+        aggregateThreadNodes.clear();
+        mergedThreadNames.clear();
+        clearedGeneration = generation;
+    }
+
+    /**
+     * Adds the thread node of the given thread.
+     *
+     * @param thread
+     *            The thread
+     * @return The thread node
+     */
+    protected ThreadNode addThreadNode(Thread thread) {
+        ThreadNode threadNode = new ThreadNode(thread, frameCount);
+        threadNodes.add(threadNode);
+        return threadNode;
+    }
+
+    /**
+     * Merges the thread nodes of terminated threads into the thread nodes
+     * aggregating the threads with the same normalized name.
+     */
+    protected synchronized void mergeTerminatedThreads() {
+        for (Iterator<ThreadNode> it = threadNodes.iterator(); it.hasNext();) {
+            ThreadNode threadNode = it.next();
+            if (!threadNode.isTerminated()) {
+                continue;
+            }
+
+            String name = Config.getInstance().normalizeThreadName(
+                    threadNode.getName());
+            ThreadNode aggregateThreadNode = aggregateThreadNodes.get(name);
+            if (aggregateThreadNode == null) {
+                aggregateThreadNode = new ThreadNode(name, frameCount);
+                aggregateThreadNodes.put(name, aggregateThreadNode);
+                threadNodes.add(aggregateThreadNode);
+            }
+            // the merged frames are modified at the next snapshot
+            threadNode.takeSnapshot(generation + 1);
+            aggregateThreadNode.merge(threadNode, generation + 1);
+            it.remove();
+
+            // the thread never reported is unknown to the client
+            String reportedName = reportedThreadNames.remove(threadNode);
+            if (reportedName != null) {
+                mergedThreadNames.remove(reportedName);
+                mergedThreadNames.put(reportedName, generation);
+            }
+        }
+    }
+
+    /**
+     * Merges the terminated threads, and takes the snapshot of all thread
+     * nodes with a new generation.
+     */
+    protected synchronized void takeSnapshot() {
+        mergeTerminatedThreads();
+        generation++;
+        for (ThreadNode threadNode : threadNodes) {
+            threadNode.takeSnapshot(generation);
+        }
+    }
+
+    /**
+     * Dumps the thread nodes in binary format. Only the frames modified after
+     * the given generation are dumped with the names of threads merged since
+     * then, unless the model has been cleared or any thread has been renamed
+     * since then.
+     *
+     * @param since
+     *            The generation returned by previous dump, or 0 to dump all
+     *            frames
+     * @param flags
+     *            The flags of optional frame data
+     * @return The thread nodes
+     * @see BinaryDumpWriter
+     */
+    protected synchronized byte[] doDumpBinary(long since, int flags) {
+        mergeTerminatedThreads();
+        Map<ThreadNode, String> names = getThreadNames(threadNodes);
+        if (isRenamed(reportedThreadNames, names)) {
+            renamedGeneration = generation;
+        }
+        reportedThreadNames = names;
+        if (since <= clearedGeneration || since <= discardedGeneration
+                || since <= renamedGeneration || since > generation) {
+            since = 0;
+        }
+
+        generation++;
+        BinaryDumpWriter writer = new BinaryDumpWriter(generation, since,
+                flags);
+        if (since != 0) {
+            for (Entry<String, Long> entry : mergedThreadNames.entrySet()) {
+                if (entry.getValue() >= since) {
+                    writer.writeVarLong(BinaryDumpWriter.REMOVED_THREAD);
+                    writer.writeString(entry.getKey());
+                }
+            }
+        }
+        for (ThreadNode threadNode : threadNodes) {
+            threadNode.takeSnapshot(generation);
+            threadNode.dump(writer, names.get(threadNode), since);
+        }
+        return writer.toByteArray();
+    }
+
+    /**
+     * Gets the thread names to be reported. Since thread name is not unique,
+     * the thread ID is appended to the names shared by multiple threads so
+     * that their profile data are not merged. The names of thread nodes
+     * aggregating terminated threads are kept as they are.
+     *
+     * @param threadNodes
+     *            The thread nodes
+     * @return The thread names
+     */
+    protected static Map<ThreadNode, String> getThreadNames(
+            Collection<ThreadNode> threadNodes) {
+        Map<String, Integer> counts = new HashMap<String, Integer>();
+        for (ThreadNode threadNode : threadNodes) {
+            Integer count = counts.get(threadNode.getName());
+            counts.put(threadNode.getName(), count == null ? 1 : count + 1);
+        }
+
+        Map<ThreadNode, String> names = new HashMap<ThreadNode, String>();
+        for (ThreadNode threadNode : threadNodes) {
+            String name = threadNode.getName();
+            if (counts.get(name) > 1 && !threadNode.isAggregate()) {
+                name = name + " #" + threadNode.getThreadId(); //$NON-NLS-1$
+            }
+            names.put(threadNode, name);
+        }
+        return names;
+    }
+
+    /**
+     * Gets the state indicating if any thread is reported with a name
+     * different from the previous one, e.g. when the thread ID is appended
+     * because another thread with the same name has started. Since the
+     * client identifies threads by name, such thread has to be dumped fully.
+     *
+     * @param previousNames
+     *            The previous thread names
+     * @param names
+     *            The current thread names
+     * @return <tt>true</tt> if any thread has been renamed
+     */
+    private static boolean isRenamed(Map<ThreadNode, String> previousNames,
+            Map<ThreadNode, String> names) {
+        for (Entry<ThreadNode, String> entry : names.entrySet()) {
+            String previousName = previousNames.get(entry.getKey());
+            if (previousName != null && !previousName.equals(entry.getValue())) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
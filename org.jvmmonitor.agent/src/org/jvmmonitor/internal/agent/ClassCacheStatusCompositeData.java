@@ -0,0 +1,98 @@
+/*******************************************************************************
+ * Copyright (c) 2011 JVM Monitor project. All rights reserved. 
+ * 
+ * This code is distributed under the terms of the Eclipse Public License v1.0
+ * which is available at http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+package org.jvmmonitor.internal.agent;
+
+import java.beans.ConstructorProperties;
+
+/**
+ * The status of the cache of instrumented byte-codes that is converted into
+ * <tt>CompositeData</tt>.
+ */
+public class ClassCacheStatusCompositeData {
+
+    /** The number of cache hits. */
+    private long hitCount;
+
+    /** The number of cache misses. */
+    private long missCount;
+
+    /** The number of cached classes. */
+    private int cachedClassesCount;
+
+    /** The total size of cached byte-codes. */
+    private long cachedBytes;
+
+    /**
+     * The constructor.
+     * 
+     * @param hitCount
+     *            The number of cache hits
+     * @param missCount
+     *            The number of cache misses
+     * @param cachedClassesCount
+     *            The number of cached classes
+     * @param cachedBytes
+     *            The total size of cached byte-codes
+     */
+    @ConstructorProperties({ "hitCount", "missCount", "cachedClassesCount",
+            "cachedBytes" })
+    public ClassCacheStatusCompositeData(long hitCount, long missCount,
+            int cachedClassesCount, long cachedBytes) {
+        this.hitCount = hitCount;
+        this.missCount = missCount;
+        this.cachedClassesCount = cachedClassesCount;
+        this.cachedBytes = cachedBytes;
+    }
+
+    /**
+     * Gets the number of cache hits.
+     * 
+     * @return The number of cache hits
+     */
+    public long getHitCount() {
+        return hitCount;
+    }
+
+    /**
+     * Gets the number of cache misses.
+     * 
+     * @return The number of cache misses
+     */
+    public long getMissCount() {
+        return missCount;
+    }
+
+    /**
+     * Gets the hit rate.
+     * 
+     * @return The hit rate between 0 and 1, or 0 if cache has not been
+     *         looked up
+     */
+    public double getHitRate() {
+        long count = hitCount + missCount;
+        return count == 0 ? 0 : (double) hitCount / count;
+    }
+
+    /**
+     * Gets the number of cached classes.
+     * 
+     * @return The number of cached classes
+     */
+    public int getCachedClassesCount() {
+        return cachedClassesCount;
+    }
+
+    /**
+     * Gets the total size of cached byte-codes.
+     * 
+     * @return The total size of cached byte-codes in bytes
+     */
+    public long getCachedBytes() {
+        return cachedBytes;
+    }
+
+}
@@ -9,6 +9,7 @@ package org.jvmmonitor.internal.agent;
 import java.lang.instrument.ClassFileTransformer;
 import java.lang.instrument.IllegalClassFormatException;
 import java.security.ProtectionDomain;
+import java.util.Collections;
 import java.util.Set;
 
 import org.jvmmonitor.internal.agent.asm.ClassReader;
@@ -27,6 +28,9 @@ public class ClassFileTransformerImpl implements ClassFileTransformer {
     /** The transformed classes. */
     private Set<Class<?>> transformedClasses;
 
+    /** The cache of instrumented byte-codes. */
+    private InstrumentedClassCache cache;
+
     /**
      * The constructor.
      * 
@@ -39,6 +43,8 @@ public class ClassFileTransformerImpl implements ClassFileTransformer {
             Set<Class<?>> transformedClasses) {
         this.targetClasses = targetClasses;
         this.transformedClasses = transformedClasses;
+        cache = new InstrumentedClassCache(
+                Config.getInstance().getClassCacheSize() * 1024L);
     }
 
     /*
@@ -50,87 +56,61 @@ public class ClassFileTransformerImpl implements ClassFileTransformer {
             Class<?> classBeingRedefined, ProtectionDomain protectionDomain,
             byte[] classfileBuffer) throws IllegalClassFormatException {
 
-        if (!isProfiledClassLoader(loader)
-                || !matches(className, Config.getInstance().profiledPackages)
-                || matches(className, Config.getInstance().ignoredPackages)) {
+        if (!Config.getInstance().getClassFilter().isProfiledClass(loader,
+                className)
+                || !Config.getInstance().getMethodFilter()
+                        .isIncludedClass(className)) {
             return classfileBuffer;
         }
 
         /*
          * Classes could be loaded after collecting targetClasses in
-         * CpuBciProfilerMXBeanImpl.setFilter(String, String)
+         * CpuBciProfilerMXBeanImpl.setFilter(String, String), and the class
+         * being loaded for the first time is not yet given.
          */
-        targetClasses.add(classBeingRedefined);
-        transformedClasses.add(classBeingRedefined);
+        if (classBeingRedefined != null) {
+            targetClasses.add(classBeingRedefined);
+            transformedClasses.add(classBeingRedefined);
+        }
         Agent.logInfo(Messages.INSTRUMENTED_CLASS, className);
 
-        ClassReader reader = new ClassReader(classfileBuffer);
-        ClassWriter writer = new ClassWriter(ClassWriter.COMPUTE_MAXS);
-        ClassVisitor visitor = new ClassVisitorImpl(writer, className);
-        reader.accept(visitor, ClassReader.SKIP_DEBUG);
-
-        return writer.toByteArray();
-    }
-
-    /**
-     * Checks if the given class name matches with one of the packages list.
-     * 
-     * @param className
-     *            The class name (e.g. java/lang/String)
-     * @param packages
-     *            The packages
-     * @return <tt>true</tt> if the given class belongs to one of the packages
-     */
-    private static boolean matches(String className, Set<String> packages) {
-        if (packages.isEmpty()) {
-            return false;
+        InstrumentedClassCache.Key key = new InstrumentedClassCache.Key(
+                loader, className, classfileBuffer, Config.getInstance()
+                        .getInstrumentationVersion());
+        byte[] bytes = cache.get(key);
+        if (bytes != null) {
+            return bytes;
         }
 
-        String packageName;
-        if (className.contains("/")) {
-            packageName = className.substring(0, className.lastIndexOf('/'))
-                    .replace('/', '.');
-        } else if (className.startsWith("$")) {
-            return false; // e.g. $Proxy0
-        } else {
-            packageName = Constants.DEFAULT_PACKAGE;
+        /*
+         * The constant pool and the methods not instrumented are copied from
+         * reader, and max stack is adjusted by MethodVisitorImpl without
+         * analyzing control flow.
+         */
+        ClassReader reader = new ClassReader(classfileBuffer);
+        Set<String> trivialMethods = Collections.emptySet();
+        if (Config.getInstance().isTrivialFilterEnabled()) {
+            TrivialMethodAnalyzer analyzer = new TrivialMethodAnalyzer();
+            reader.accept(analyzer, ClassReader.SKIP_DEBUG
+                    | ClassReader.SKIP_FRAMES);
+            trivialMethods = analyzer.getTrivialMethods();
         }
+        ClassWriter writer = new ClassWriter(reader, 0);
+        ClassVisitor visitor = new ClassVisitorImpl(writer, className,
+                loader, trivialMethods);
+        reader.accept(visitor, ClassReader.SKIP_DEBUG);
 
-        for (String pkg : packages) {
-            if (pkg.endsWith("*")) {
-                if (packageName.concat(".").startsWith(
-                        pkg.substring(0, pkg.length() - 1))) {
-                    return true;
-                }
-            } else {
-                if (packageName.equals(pkg)) {
-                    return true;
-                }
-            }
-        }
-        return false;
+        bytes = writer.toByteArray();
+        cache.put(key, bytes);
+        return bytes;
     }
 
     /**
-     * Gets the state indicating if the classes loaded by given class loader are
-     * profiled.
+     * Gets the cache of instrumented byte-codes.
      * 
-     * @param loader
-     *            The class loader
-     * @return <tt>true</tt> if the classes loaded by given class loader are
-     *         profiled
+     * @return The cache of instrumented byte-codes
      */
-    private static boolean isProfiledClassLoader(ClassLoader loader) {
-        if (Config.getInstance().profiledClassLoaders.isEmpty()) {
-            return true;
-        }
-
-        for (String classLoader : Config.getInstance().profiledClassLoaders) {
-            if (loader != null
-                    && loader.getClass().getName().equals(classLoader)) {
-                return true;
-            }
-        }
-        return false;
+    protected InstrumentedClassCache getCache() {
+        return cache;
     }
 }
@@ -0,0 +1,255 @@
+/*******************************************************************************
+ * Copyright (c) 2010 JVM Monitor project. All rights reserved.
+ *
+ * This code is distributed under the terms of the Eclipse Public License v1.0
+ * which is available at http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+package org.jvmmonitor.internal.agent;
+
+import java.util.Arrays;
+import java.util.Set;
+
+/**
+ * The immutable filter of profiled classes, which is compiled from the
+ * profiled packages, ignored packages and profiled class loaders.
+ * <p>
+ * The packages are compiled into prefix tries so that the class name can be
+ * matched by walking its characters once, without locking and without
+ * creating any object. A new filter is created whenever the configuration is
+ * changed.
+ */
+public class ClassFilter {
+
+    /** The compiled profiled packages. */
+    private final Node profiledPackages;
+
+    /** The compiled ignored packages. */
+    private final Node ignoredPackages;
+
+    /** The profiled class loaders, or empty array to profile all. */
+    private final String[] profiledClassLoaders;
+
+    /**
+     * The constructor.
+     *
+     * @param profiledPackages
+     *            The profiled packages (e.g. org.example.*)
+     * @param ignoredPackages
+     *            The ignored packages
+     * @param profiledClassLoaders
+     *            The profiled class loaders
+     */
+    protected ClassFilter(Set<String> profiledPackages,
+            Set<String> ignoredPackages, Set<String> profiledClassLoaders) {
+        this.profiledPackages = compile(profiledPackages);
+        this.ignoredPackages = compile(ignoredPackages);
+        this.profiledClassLoaders = profiledClassLoaders
+                .toArray(new String[profiledClassLoaders.size()]);
+    }
+
+    /**
+     * Gets the state indicating if the given class is profiled.
+     *
+     * @param loader
+     *            The class loader
+     * @param className
+     *            The class name (e.g. java/lang/String)
+     * @return <tt>true</tt> if the given class is profiled
+     */
+    protected boolean isProfiledClass(ClassLoader loader, String className) {
+        return isProfiledClassLoader(loader)
+                && matches(profiledPackages, className)
+                && !matches(ignoredPackages, className);
+    }
+
+    /**
+     * Gets the state indicating if the given class belongs to one of the
+     * profiled packages.
+     *
+     * @param className
+     *            The class name (e.g. java/lang/String or java.lang.String)
+     * @return <tt>true</tt> if the given class belongs to one of the profiled
+     *         packages
+     */
+    protected boolean isProfiledPackage(String className) {
+        return matches(profiledPackages, className);
+    }
+
+    /**
+     * Gets the state indicating if the classes loaded by given class loader are
+     * profiled.
+     *
+     * @param loader
+     *            The class loader
+     * @return <tt>true</tt> if the classes loaded by given class loader are
+     *         profiled
+     */
+    private boolean isProfiledClassLoader(ClassLoader loader) {
+        if (profiledClassLoaders.length == 0) {
+            return true;
+        }
+        if (loader == null) {
+            return false;
+        }
+
+        String loaderName = loader.getClass().getName();
+        for (String classLoader : profiledClassLoaders) {
+            if (loaderName.equals(classLoader)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Checks if the package of given class matches with the compiled
+     * packages. The package <tt>pkg</tt> matches with the pattern ending with
+     * <tt>*</tt> if <tt>pkg + "."</tt> starts with the pattern without
+     * <tt>*</tt>, and matches with the other patterns if equal.
+     *
+     * @param root
+     *            The root node of compiled packages
+     * @param className
+     *            The class name (e.g. java/lang/String or java.lang.String)
+     * @return <tt>true</tt> if the given class belongs to one of the packages
+     */
+    private static boolean matches(Node root, String className) {
+        if (root.isEmpty()) {
+            return false;
+        }
+
+        String packageName;
+        int length = Math.max(className.lastIndexOf('/'),
+                className.lastIndexOf('.'));
+        if (length >= 0) {
+            packageName = className;
+        } else if (className.startsWith("$")) { //$NON-NLS-1$
+            return false; // e.g. $Proxy0
+        } else {
+            packageName = Constants.DEFAULT_PACKAGE;
+            length = packageName.length();
+        }
+
+        // walk the package name followed by '.'
+        Node node = root;
+        for (int i = 0; i <= length; i++) {
+            if (node.prefix) {
+                return true;
+            }
+            if (i == length) {
+                if (node.exact) {
+                    return true;
+                }
+                node = node.getChild('.');
+            } else {
+                char c = packageName.charAt(i);
+                node = node.getChild(c == '/' ? '.' : c);
+            }
+            if (node == null) {
+                return false;
+            }
+        }
+        return node.prefix;
+    }
+
+    /**
+     * Compiles the packages into prefix trie.
+     *
+     * @param packages
+     *            The packages
+     * @return The root node
+     */
+    private static Node compile(Set<String> packages) {
+        Node root = new Node();
+        for (String pkg : packages) {
+            if (pkg.endsWith("*")) { //$NON-NLS-1$
+                root.add(pkg, pkg.length() - 1).prefix = true;
+            } else {
+                root.add(pkg, pkg.length()).exact = true;
+            }
+        }
+        return root;
+    }
+
+    /**
+     * The node of prefix trie.
+     */
+    private static class Node {
+
+        /** The empty child nodes. */
+        private static final Node[] NO_CHILDREN = new Node[0];
+
+        /** The characters labeling child nodes. */
+        private char[] chars;
+
+        /** The child nodes. */
+        private Node[] children;
+
+        /** The state indicating if the package equal to this node matches. */
+        boolean exact;
+
+        /** The state indicating if the packages under this node match. */
+        boolean prefix;
+
+        /**
+         * The constructor.
+         */
+        Node() {
+            chars = new char[0];
+            children = NO_CHILDREN;
+        }
+
+        /**
+         * Gets the child node.
+         *
+         * @param c
+         *            The character labeling child node
+         * @return The child node, or <tt>null</tt> if not found
+         */
+        Node getChild(char c) {
+            for (int i = 0; i < chars.length; i++) {
+                if (chars[i] == c) {
+                    return children[i];
+                }
+            }
+            return null;
+        }
+
+        /**
+         * Adds the descendant nodes for the given string.
+         *
+         * @param string
+         *            The string
+         * @param length
+         *            The length of string to be added
+         * @return The node for the last character
+         */
+        Node add(String string, int length) {
+            Node node = this;
+            for (int i = 0; i < length; i++) {
+                char c = string.charAt(i);
+                Node child = node.getChild(c);
+                if (child == null) {
+                    child = new Node();
+                    node.chars = Arrays.copyOf(node.chars,
+                            node.chars.length + 1);
+                    node.children = Arrays.copyOf(node.children,
+                            node.children.length + 1);
+                    node.chars[node.chars.length - 1] = c;
+                    node.children[node.children.length - 1] = child;
+                }
+                node = child;
+            }
+            return node;
+        }
+
+        /**
+         * Gets the state indicating if no package has been added.
+         *
+         * @return <tt>true</tt> if no package has been added
+         */
+        boolean isEmpty() {
+            return chars.length == 0 && !exact && !prefix;
+        }
+    }
+}
@@ -6,13 +6,17 @@
  *******************************************************************************/
 package org.jvmmonitor.internal.agent;
 
+import java.util.Set;
+
 import org.jvmmonitor.internal.agent.asm.ClassVisitor;
 import org.jvmmonitor.internal.agent.asm.ClassWriter;
 import org.jvmmonitor.internal.agent.asm.MethodVisitor;
 import org.jvmmonitor.internal.agent.asm.Opcodes;
 
 /**
- * The class visitor.
+ * The class visitor. The methods that are not instrumented are given the
+ * method writer as it is, so that their byte-codes are copied from the class
+ * reader without being parsed.
  */
 @SuppressWarnings("nls")
 public class ClassVisitorImpl extends ClassVisitor {
@@ -20,6 +24,15 @@ public class ClassVisitorImpl extends ClassVisitor {
     /** the class name */
     private String className;
 
+    /** the class loader */
+    private ClassLoader loader;
+
+    /** the trivial methods not to be instrumented */
+    private Set<String> trivialMethods;
+
+    /** the filter of instrumented methods */
+    private MethodFilter methodFilter;
+
     /**
      * The constructor.
      * 
@@ -27,10 +40,18 @@ public class ClassVisitorImpl extends ClassVisitor {
      *            the class visitor
      * @param className
      *            the class name
+     * @param loader
+     *            the class loader
+     * @param trivialMethods
+     *            the trivial methods not to be instrumented (e.g. getBar()I)
      */
-    protected ClassVisitorImpl(ClassWriter writer, String className) {
+    protected ClassVisitorImpl(ClassWriter writer, String className,
+            ClassLoader loader, Set<String> trivialMethods) {
         super(Opcodes.ASM9, writer);
         this.className = className;
+        this.loader = loader;
+        this.trivialMethods = trivialMethods;
+        methodFilter = Config.getInstance().getMethodFilter();
     }
 
     /*
@@ -42,10 +63,26 @@ public class ClassVisitorImpl extends ClassVisitor {
 
         MethodVisitor methodVisitor = super.visitMethod(access, name, desc,
                 signature, exceptions);
+        if ((access & (Opcodes.ACC_ABSTRACT | Opcodes.ACC_NATIVE)) != 0
+                || Constants.METHOD_CLINIT.equals(name)) {
+            return methodVisitor;
+        }
 
         // attach the parameter descriptor (e.g. (JI)V) to method name
         String qualifiedName = name + ((desc != null) ? desc : "");
+        if (Config.getInstance().isExcludedMethod(className, qualifiedName)
+                || !methodFilter.isIncludedMethod(className, qualifiedName)) {
+            return methodVisitor;
+        }
+
+        // keep the entry methods of slow calls even if trivial
+        if (trivialMethods.contains(qualifiedName)
+                && !Config.getInstance().isSlowCallEntry(className,
+                        qualifiedName)) {
+            return methodVisitor;
+        }
 
-        return new MethodVisitorImpl(methodVisitor, className, qualifiedName);
+        return new MethodVisitorImpl(methodVisitor, className, qualifiedName,
+                loader);
     }
 }
@@ -10,6 +10,8 @@ import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileNotFoundException;
 import java.io.IOException;
+import java.util.Arrays;
+import java.util.HashSet;
 import java.util.LinkedHashSet;
 import java.util.Map.Entry;
 import java.util.Properties;
@@ -24,26 +26,190 @@ public class Config {
     /** The separator. */
     private final static String SEPARATOR = ",";
 
+    /** The state of method not yet resolved as entry method. */
+    private static final byte UNRESOLVED = 0;
+
+    /** The state of method which is not entry method. */
+    private static final byte NOT_ENTRY = 1;
+
+    /** The state of entry method. */
+    private static final byte ENTRY = 2;
+
     /** The flag for enabling profiler. */
-    private boolean profilerEnabled;
+    private volatile boolean profilerEnabled;
 
     /** The flag for enabling automatic dump. */
     private boolean autoDumpEnabled;
 
+    /** The flag for enabling nano time. */
+    private boolean nanoTimeEnabled;
+
+    /** The flag for enabling thread CPU time. */
+    private boolean cpuTimeEnabled;
+
+    /** The flag for enabling event buffer. */
+    private boolean eventBufferEnabled;
+
+    /** The number of events buffered per thread. */
+    private int eventBufferSize;
+
+    /** The interval in milliseconds of draining event buffers. */
+    private int eventBufferInterval;
+
+    /** The max number of events in a trace. */
+    private volatile int traceMaxEvents;
+
+    /** The period in milliseconds of taking stack samples in agent. */
+    private volatile int samplerPeriod;
+
+    /** The flag for excluding trivial hot methods from instrumentation. */
+    private volatile boolean adaptiveEnabled;
+
+    /** The interval in milliseconds of finding trivial hot methods. */
+    private int adaptiveInterval;
+
+    /** The invocations per second above which method is hot. */
+    private int adaptiveMinRate;
+
+    /** The self time in nanoseconds below which method is trivial. */
+    private int adaptiveMaxSelfTime;
+
+    /**
+     * The methods excluded from instrumentation (e.g.
+     * org/example/Foo.getBar()I), which is replaced with new set when
+     * changed.
+     */
+    private volatile Set<String> excludedMethods;
+
+    /** The methods kept instrumented even if trivial and hot. */
+    private Set<String> keptMethods;
+
+    /** The flag for skipping trivial methods when transforming classes. */
+    private boolean trivialFilterEnabled;
+
+    /** The number of instructions below which method is trivial. */
+    private int trivialMaxSize;
+
+    /**
+     * The number of instructions below which method without invocations and
+     * loops is trivial.
+     */
+    private int trivialLeafMaxSize;
+
+    /** The number of classes re-transformed at once. */
+    private volatile int retransformBatchSize;
+
+    /** The maximum number of frame nodes in all threads. */
+    private volatile int maxFrames;
+
+    /** The maximum number of frame nodes per thread. */
+    private volatile int maxFramesPerThread;
+
+    /** The rules to normalize the names of terminated threads. */
+    private volatile String threadNameRules;
+
+    /** The parsed rules to normalize the names of terminated threads. */
+    private volatile ThreadNameRule[] parsedThreadNameRules;
+
+    /** The flag for enabling allocation profiling. */
+    private volatile boolean allocationProfilingEnabled;
+
+    /** The sampling interval of allocations. */
+    private volatile int allocationSamplingInterval;
+
+    /** The flag for enabling monitor contention profiling. */
+    private volatile boolean contentionProfilingEnabled;
+
+    /** The flag for enabling latency histograms of methods. */
+    private volatile boolean latencyEnabled;
+
+    /**
+     * The packages whose methods record latency histograms, separated with
+     * comma, or empty string for all profiled methods.
+     */
+    private volatile String latencyPackages;
+
+    /**
+     * The filter compiled from the latency packages, or <tt>null</tt> for all
+     * profiled methods.
+     */
+    private volatile ClassFilter latencyFilter;
+
+    /**
+     * The entry methods whose slow invocations are captured, separated with
+     * comma, or empty string if none.
+     */
+    private volatile String slowCallMethods;
+
+    /** The parsed entry methods (e.g. org.example.Handler.handle). */
+    private volatile Set<String> parsedSlowCallMethods;
+
+    /**
+     * The states indicating if methods are entry methods indexed by method
+     * ID, which are resolved lazily, or <tt>null</tt> if no entry method is
+     * given.
+     */
+    private volatile byte[] slowCallEntryStates;
+
+    /** The threshold in nanoseconds of slow invocations. */
+    private volatile long slowCallThreshold;
+
+    /** The number of slow invocations kept. */
+    private volatile int slowCallCapacity;
+
+    /** The maximum size of cached instrumented byte-codes in KB. */
+    private int classCacheSize;
+
+    /**
+     * The version of configuration affecting instrumented byte-codes, which
+     * is incremented when changed.
+     */
+    private volatile int instrumentationVersion;
+
     /** The output directory for dump file. */
     private String dumpDir;
 
-    /** The list of ignored java packages. */
-    protected Set<String> ignoredPackages;
+    /**
+     * The list of ignored java packages, which is replaced with new list when
+     * changed.
+     */
+    protected volatile Set<String> ignoredPackages;
 
-    /** The list of profiled java packages. */
-    protected Set<String> profiledPackages;
+    /**
+     * The list of profiled java packages, which is replaced with new list when
+     * changed.
+     */
+    protected volatile Set<String> profiledPackages;
 
     /** The list of profiled class loaders. */
-    protected Set<String> profiledClassLoaders;
+    protected volatile Set<String> profiledClassLoaders;
+
+    /** The filter compiled from the lists of packages and class loaders. */
+    private volatile ClassFilter classFilter;
+
+    /**
+     * The patterns of methods instrumented in profiled classes, separated
+     * with comma, or empty string for all methods.
+     */
+    private String methodIncludes;
+
+    /**
+     * The patterns of methods not instrumented in profiled classes, separated
+     * with comma, or empty string for none.
+     */
+    private String methodExcludes;
+
+    /** The filter compiled from the method patterns. */
+    private volatile MethodFilter methodFilter;
+
+    /**
+     * The states indicating if instrumented methods are muted indexed by
+     * method ID, which is replaced with new array when changed.
+     */
+    private volatile boolean[] mutedMethods;
 
     /** The shared instance of this class. */
-    private static Config config;
+    private static final Config config = new Config();
 
     /**
      * The constructor.
@@ -52,7 +218,12 @@ public class Config {
         ignoredPackages = new LinkedHashSet<String>();
         profiledPackages = new LinkedHashSet<String>();
         profiledClassLoaders = new LinkedHashSet<String>();
+        excludedMethods = new LinkedHashSet<String>();
+        keptMethods = new HashSet<String>();
+        mutedMethods = new boolean[0];
         load();
+        classFilter = new ClassFilter(profiledPackages, ignoredPackages,
+                profiledClassLoaders);
     }
 
     /**
@@ -60,13 +231,167 @@ public class Config {
      * 
      * @return The shared instance of this class
      */
-    synchronized protected static Config getInstance() {
-        if (config == null) {
-            config = new Config();
-        }
+    protected static Config getInstance() {
         return config;
     }
 
+    /**
+     * Gets the filter of profiled classes.
+     * 
+     * @return The filter of profiled classes
+     */
+    protected ClassFilter getClassFilter() {
+        return classFilter;
+    }
+
+    /**
+     * Sets the profiled packages, and compiles the filter of profiled classes.
+     * 
+     * @param packages
+     *            The packages separated with comma
+     */
+    protected synchronized void setProfiledPackages(String packages) {
+        Set<String> list = new LinkedHashSet<String>();
+        addElements(list, packages);
+        profiledPackages = list;
+        classFilter = new ClassFilter(list, ignoredPackages,
+                profiledClassLoaders);
+    }
+
+    /**
+     * Gets the filter of instrumented methods in profiled classes.
+     * 
+     * @return The filter of instrumented methods
+     */
+    protected MethodFilter getMethodFilter() {
+        return methodFilter;
+    }
+
+    /**
+     * Gets the patterns of methods instrumented in profiled classes.
+     * 
+     * @return The method patterns separated with comma, or empty string for
+     *         all methods
+     */
+    protected String getMethodIncludes() {
+        return methodIncludes;
+    }
+
+    /**
+     * Gets the patterns of methods not instrumented in profiled classes.
+     * 
+     * @return The method patterns separated with comma, or empty string for
+     *         none
+     */
+    protected String getMethodExcludes() {
+        return methodExcludes;
+    }
+
+    /**
+     * Sets the patterns of methods instrumented and not instrumented in
+     * profiled classes, and compiles the filter of instrumented methods. The
+     * classes have to be transformed to take effect.
+     * 
+     * @param includes
+     *            The method patterns (e.g. org.example.Foo.handle*) separated
+     *            with comma, or <tt>null</tt> or empty string for all methods
+     * @param excludes
+     *            The method patterns (e.g. *.toString) separated with comma,
+     *            or <tt>null</tt> or empty string for none
+     */
+    protected synchronized void setMethodPatterns(String includes,
+            String excludes) {
+        includes = includes == null ? "" : includes.trim();
+        excludes = excludes == null ? "" : excludes.trim();
+        if (includes.equals(methodIncludes) && excludes.equals(methodExcludes)) {
+            return;
+        }
+
+        Set<String> includeList = new LinkedHashSet<String>();
+        Set<String> excludeList = new LinkedHashSet<String>();
+        if (!includes.isEmpty()) {
+            addElements(includeList, includes);
+        }
+        if (!excludes.isEmpty()) {
+            addElements(excludeList, excludes);
+        }
+        methodFilter = new MethodFilter(includeList, excludeList);
+        methodIncludes = includes;
+        methodExcludes = excludes;
+        instrumentationVersion++;
+    }
+
+    /**
+     * Gets the state indicating if the given method is muted. The probes of
+     * muted method return immediately.
+     * 
+     * @param methodId
+     *            The method ID
+     * @return true if the method is muted
+     */
+    protected boolean isMethodMuted(int methodId) {
+        boolean[] muted = mutedMethods;
+        return methodId < muted.length && muted[methodId];
+    }
+
+    /**
+     * Mutes or unmutes the registered methods matching with the given
+     * patterns, without re-transforming classes. The methods registered
+     * afterwards are not muted.
+     * 
+     * @param patterns
+     *            The method patterns (e.g. org.example.Foo.*) separated with
+     *            comma
+     * @param muted
+     *            true to mute the methods
+     * @return The number of methods muted or unmuted
+     */
+    protected synchronized int setMethodsMuted(String patterns, boolean muted) {
+        Set<String> list = new LinkedHashSet<String>();
+        if (patterns != null && !patterns.trim().isEmpty()) {
+            addElements(list, patterns);
+        }
+        if (list.isEmpty()) {
+            return 0;
+        }
+
+        MethodFilter filter = new MethodFilter(list,
+                new LinkedHashSet<String>());
+        int methodCount = MethodRegistry.getMethodCount();
+        boolean[] states = Arrays.copyOf(mutedMethods, Math.max(methodCount,
+                mutedMethods.length));
+        int count = 0;
+        for (int id = 0; id < methodCount; id++) {
+            if (states[id] != muted
+                    && MethodRegistry.isInstrumented(id)
+                    && filter.isIncludedMethod(
+                            MethodRegistry.getClassName(id),
+                            MethodRegistry.getMethodName(id))) {
+                states[id] = muted;
+                count++;
+            }
+        }
+        mutedMethods = states;
+        return count;
+    }
+
+    /**
+     * Gets the muted methods.
+     * 
+     * @return The method IDs of muted methods
+     */
+    protected int[] getMutedMethods() {
+        boolean[] muted = mutedMethods;
+        int[] methodIds = new int[muted.length];
+        int count = 0;
+        for (int id = 0; id < muted.length; id++) {
+            if (muted[id]) {
+                methodIds[count++] = id;
+            }
+        }
+        return Arrays.copyOf(methodIds, count);
+    }
+
     /**
      * Adds the elements into list.
      * 
@@ -126,6 +451,613 @@ public class Config {
         this.autoDumpEnabled = enabled;
     }
 
+    /**
+     * Gets the state indicating if nano time is enabled.
+     * 
+     * @return true if nano time is enabled
+     */
+    protected boolean isNanoTimeEnabled() {
+        return nanoTimeEnabled;
+    }
+
+    /**
+     * Gets the state indicating if thread CPU time is measured in addition to
+     * the elapsed time.
+     * 
+     * @return true if thread CPU time is enabled
+     */
+    protected boolean isCpuTimeEnabled() {
+        return cpuTimeEnabled;
+    }
+
+    /**
+     * Gets the state indicating if the steps into and return from frames are
+     * buffered per thread and aggregated into frames in background, instead
+     * of updating frames on the profiled thread.
+     * 
+     * @return true if event buffer is enabled
+     */
+    protected boolean isEventBufferEnabled() {
+        return eventBufferEnabled;
+    }
+
+    /**
+     * Gets the number of events buffered per thread.
+     * 
+     * @return The number of events
+     */
+    protected int getEventBufferSize() {
+        return eventBufferSize;
+    }
+
+    /**
+     * Gets the interval of draining event buffers.
+     * 
+     * @return The interval in milliseconds
+     */
+    protected int getEventBufferInterval() {
+        return eventBufferInterval;
+    }
+
+    /**
+     * Gets the max number of events in a trace.
+     * 
+     * @return The max number of events
+     */
+    protected int getTraceMaxEvents() {
+        return traceMaxEvents;
+    }
+
+    /**
+     * Sets the max number of events in a trace.
+     * 
+     * @param max
+     *            The max number of events, or non-positive value to use the
+     *            default
+     */
+    protected void setTraceMaxEvents(int max) {
+        traceMaxEvents = max > 0 ? max : Constants.DEFAULT_TRACE_MAX_EVENTS;
+    }
+
+    /**
+     * Gets the period of taking stack samples in agent.
+     * 
+     * @return The period in milliseconds
+     */
+    protected int getSamplerPeriod() {
+        return samplerPeriod;
+    }
+
+    /**
+     * Sets the period of taking stack samples in agent.
+     * 
+     * @param period
+     *            The period in milliseconds, or non-positive value to use the
+     *            default
+     */
+    protected void setSamplerPeriod(int period) {
+        samplerPeriod = period > 0 ? period : Constants.DEFAULT_SAMPLER_PERIOD;
+    }
+
+    /**
+     * Gets the state indicating if the methods invoked frequently with
+     * negligible self time are excluded from instrumentation.
+     * 
+     * @return true if trivial hot methods are excluded
+     */
+    protected boolean isAdaptiveEnabled() {
+        return adaptiveEnabled;
+    }
+
+    /**
+     * Sets the state indicating if the methods invoked frequently with
+     * negligible self time are excluded from instrumentation.
+     * 
+     * @param enabled
+     *            true to exclude trivial hot methods
+     */
+    protected void setAdaptiveEnabled(boolean enabled) {
+        adaptiveEnabled = enabled;
+    }
+
+    /**
+     * Gets the interval of finding trivial hot methods.
+     * 
+     * @return The interval in milliseconds
+     */
+    protected int getAdaptiveInterval() {
+        return adaptiveInterval;
+    }
+
+    /**
+     * Gets the invocations per second above which method is regarded as hot.
+     * 
+     * @return The invocations per second
+     */
+    protected int getAdaptiveMinRate() {
+        return adaptiveMinRate;
+    }
+
+    /**
+     * Gets the average self time below which method is regarded as trivial.
+     * 
+     * @return The self time in nanoseconds
+     */
+    protected int getAdaptiveMaxSelfTime() {
+        return adaptiveMaxSelfTime;
+    }
+
+    /**
+     * Gets the state indicating if the trivial methods are skipped when
+     * transforming classes.
+     * 
+     * @return true if trivial methods are skipped
+     */
+    protected boolean isTrivialFilterEnabled() {
+        return trivialFilterEnabled;
+    }
+
+    /**
+     * Gets the number of instructions below which method is regarded as
+     * trivial.
+     * 
+     * @return The number of instructions, or 0 if disabled
+     */
+    protected int getTrivialMaxSize() {
+        return trivialMaxSize;
+    }
+
+    /**
+     * Gets the number of instructions below which method without invocations
+     * and loops is regarded as trivial.
+     * 
+     * @return The number of instructions, or 0 if disabled
+     */
+    protected int getTrivialLeafMaxSize() {
+        return trivialLeafMaxSize;
+    }
+
+    /**
+     * Gets the state indicating if the given method is excluded from
+     * instrumentation.
+     * 
+     * @param className
+     *            The class name (e.g. java/lang/String)
+     * @param methodName
+     *            The method name with parameter descriptor (e.g. charAt(I)C)
+     * @return true if the method is excluded
+     */
+    protected boolean isExcludedMethod(String className, String methodName) {
+        Set<String> methods = excludedMethods;
+        return !methods.isEmpty()
+                && methods.contains(className + '.' + methodName);
+    }
+
+    /**
+     * Excludes the given method from instrumentation, unless it has been
+     * instrumented again on request or it is an entry method of slow calls.
+     * The class has to be re-transformed to take effect.
+     * 
+     * @param methodId
+     *            The method ID
+     * @return true if the method has been newly excluded
+     */
+    protected synchronized boolean excludeMethod(int methodId) {
+        String method = MethodRegistry.getClassName(methodId) + '.'
+                + MethodRegistry.getMethodName(methodId);
+        if (keptMethods.contains(method) || excludedMethods.contains(method)
+                || isSlowCallEntry(methodId)) {
+            return false;
+        }
+
+        Set<String> methods = new LinkedHashSet<String>(excludedMethods);
+        methods.add(method);
+        excludedMethods = methods;
+        instrumentationVersion++;
+        return true;
+    }
+
+    /**
+     * Gets the methods excluded from instrumentation.
+     * 
+     * @return The methods (e.g. org/example/Foo.getBar()I)
+     */
+    protected Set<String> getExcludedMethods() {
+        return excludedMethods;
+    }
+
+    /**
+     * Includes all the excluded methods in instrumentation again, and keeps
+     * them instrumented from now on. Their classes have to be re-transformed
+     * to take effect.
+     * 
+     * @return The classes of methods included again (e.g. java/lang/String)
+     */
+    protected synchronized Set<String> includeExcludedMethods() {
+        Set<String> classNames = new HashSet<String>();
+        for (String method : excludedMethods) {
+            classNames.add(method.substring(0, method.lastIndexOf('.',
+                    method.indexOf('('))));
+        }
+        if (!excludedMethods.isEmpty()) {
+            keptMethods.addAll(excludedMethods);
+            excludedMethods = new LinkedHashSet<String>();
+            instrumentationVersion++;
+        }
+        return classNames;
+    }
+
+    /**
+     * Gets the number of classes re-transformed at once.
+     * 
+     * @return The batch size
+     */
+    protected int getRetransformBatchSize() {
+        return retransformBatchSize;
+    }
+
+    /**
+     * Sets the number of classes re-transformed at once.
+     * 
+     * @param size
+     *            The batch size, or non-positive value to use the default
+     */
+    protected void setRetransformBatchSize(int size) {
+        retransformBatchSize = size > 0 ? size
+                : Constants.DEFAULT_RETRANSFORM_BATCH_SIZE;
+    }
+
+    /**
+     * Gets the maximum number of frame nodes in all threads.
+     * 
+     * @return The maximum number of frame nodes
+     */
+    protected int getMaxFrames() {
+        return maxFrames;
+    }
+
+    /**
+     * Sets the maximum number of frame nodes in all threads.
+     * 
+     * @param max
+     *            The maximum number of frame nodes, or non-positive value to
+     *            use the default
+     */
+    protected void setMaxFrames(int max) {
+        maxFrames = max > 0 ? max : Constants.DEFAULT_MAX_FRAMES;
+    }
+
+    /**
+     * Gets the maximum number of frame nodes per thread.
+     * 
+     * @return The maximum number of frame nodes per thread
+     */
+    protected int getMaxFramesPerThread() {
+        return maxFramesPerThread;
+    }
+
+    /**
+     * Sets the maximum number of frame nodes per thread.
+     * 
+     * @param max
+     *            The maximum number of frame nodes per thread, or
+     *            non-positive value to use the default
+     */
+    protected void setMaxFramesPerThread(int max) {
+        maxFramesPerThread = max > 0 ? max
+                : Constants.DEFAULT_MAX_FRAMES_PER_THREAD;
+    }
+
+    /**
+     * Gets the rules to normalize the names of terminated threads.
+     * 
+     * @return The rules
+     * @see ThreadNameRule
+     */
+    protected String getThreadNameRules() {
+        return threadNameRules;
+    }
+
+    /**
+     * Sets the rules to normalize the names of terminated threads.
+     * 
+     * @param rules
+     *            The rules, or <tt>null</tt> to use the default
+     * @see ThreadNameRule
+     */
+    protected synchronized void setThreadNameRules(String rules) {
+        if (rules == null) {
+            rules = Constants.DEFAULT_THREAD_NAME_RULES;
+        }
+        parsedThreadNameRules = ThreadNameRule.parse(rules);
+        threadNameRules = rules;
+    }
+
+    /**
+     * Normalizes the name of terminated thread, so that the profile data of
+     * the threads sharing the normalized name are aggregated.
+     * 
+     * @param name
+     *            The thread name
+     * @return The normalized thread name
+     */
+    protected String normalizeThreadName(String name) {
+        return ThreadNameRule.normalize(parsedThreadNameRules, name);
+    }
+
+    /**
+     * Gets the state indicating if allocations are profiled.
+     * 
+     * @return true if allocation profiling is enabled
+     */
+    protected boolean isAllocationProfilingEnabled() {
+        return allocationProfilingEnabled;
+    }
+
+    /**
+     * Sets the state indicating if allocations are profiled. Since the
+     * allocations are instrumented, the classes have to be re-transformed to
+     * take effect.
+     * 
+     * @param enabled
+     *            true to enable allocation profiling
+     */
+    protected synchronized void setAllocationProfilingEnabled(boolean enabled) {
+        if (allocationProfilingEnabled != enabled) {
+            allocationProfilingEnabled = enabled;
+            instrumentationVersion++;
+        }
+    }
+
+    /**
+     * Gets the state indicating if monitor contention is profiled.
+     * 
+     * @return true if monitor contention profiling is enabled
+     */
+    protected boolean isContentionProfilingEnabled() {
+        return contentionProfilingEnabled;
+    }
+
+    /**
+     * Sets the state indicating if monitor contention is profiled. Since the
+     * <tt>monitorenter</tt> instructions are instrumented, the classes have to
+     * be re-transformed to take effect.
+     * 
+     * @param enabled
+     *            true to enable monitor contention profiling
+     */
+    protected synchronized void setContentionProfilingEnabled(boolean enabled) {
+        if (contentionProfilingEnabled != enabled) {
+            contentionProfilingEnabled = enabled;
+            instrumentationVersion++;
+        }
+    }
+
+    /**
+     * Gets the state indicating if latency histograms of methods are
+     * recorded.
+     * 
+     * @return true if latency histograms are enabled
+     */
+    protected boolean isLatencyEnabled() {
+        return latencyEnabled;
+    }
+
+    /**
+     * Sets the state indicating if latency histograms of methods are
+     * recorded. The histogram is enabled when the frame is created, so the
+     * frames already created are not affected.
+     * 
+     * @param enabled
+     *            true to enable latency histograms
+     */
+    protected void setLatencyEnabled(boolean enabled) {
+        latencyEnabled = enabled;
+    }
+
+    /**
+     * Gets the packages whose methods record latency histograms.
+     * 
+     * @return The packages separated with comma, or empty string for all
+     *         profiled methods
+     */
+    protected String getLatencyPackages() {
+        return latencyPackages;
+    }
+
+    /**
+     * Sets the packages whose methods record latency histograms.
+     * 
+     * @param packages
+     *            The packages (e.g. org.example.*) separated with comma, or
+     *            <tt>null</tt> or empty string for all profiled methods
+     */
+    protected synchronized void setLatencyPackages(String packages) {
+        Set<String> list = new LinkedHashSet<String>();
+        if (packages != null && !packages.trim().isEmpty()) {
+            addElements(list, packages);
+        }
+        Set<String> none = new LinkedHashSet<String>();
+        latencyFilter = list.isEmpty() ? null : new ClassFilter(list, none,
+                none);
+        latencyPackages = packages == null ? "" : packages.trim();
+    }
+
+    /**
+     * Gets the state indicating if the latency histogram of the given method
+     * is recorded.
+     * 
+     * @param methodId
+     *            The method ID
+     * @return true if the latency histogram is recorded
+     */
+    protected boolean isLatencyRecorded(int methodId) {
+        if (!latencyEnabled || !MethodRegistry.isInstrumented(methodId)) {
+            return false;
+        }
+        ClassFilter filter = latencyFilter;
+        return filter == null
+                || filter.isProfiledPackage(MethodRegistry
+                        .getClassName(methodId));
+    }
+
+    /**
+     * Gets the entry methods whose slow invocations are captured.
+     * 
+     * @return The entry methods separated with comma, or empty string if none
+     */
+    protected String getSlowCallMethods() {
+        return slowCallMethods;
+    }
+
+    /**
+     * Sets the entry methods whose slow invocations are captured. The
+     * overloaded methods share the name.
+     * 
+     * @param methods
+     *            The entry methods (e.g. org.example.Handler.handle)
+     *            separated with comma, or <tt>null</tt> or empty string for
+     *            none
+     */
+    protected synchronized void setSlowCallMethods(String methods) {
+        Set<String> list = new LinkedHashSet<String>();
+        if (methods != null && !methods.trim().isEmpty()) {
+            addElements(list, methods);
+        }
+        if (!list.equals(parsedSlowCallMethods)) {
+            // the entry methods are instrumented even if trivial
+            instrumentationVersion++;
+        }
+        parsedSlowCallMethods = list;
+        slowCallEntryStates = list.isEmpty() ? null : new byte[0];
+        slowCallMethods = methods == null ? "" : methods.trim();
+    }
+
+    /**
+     * Gets the state indicating if the given method is an entry method whose
+     * slow invocations are captured.
+     * 
+     * @param methodId
+     *            The method ID
+     * @return true if the given method is an entry method
+     */
+    protected boolean isSlowCallEntry(int methodId) {
+        byte[] states = slowCallEntryStates;
+        if (states == null) {
+            return false;
+        }
+        if (methodId < states.length && states[methodId] != UNRESOLVED) {
+            return states[methodId] == ENTRY;
+        }
+        return resolveSlowCallEntry(methodId);
+    }
+
+    /**
+     * Gets the state indicating if the given method is an entry method whose
+     * slow invocations are captured, without registering the method.
+     * 
+     * @param className
+     *            The class name (e.g. java/lang/String)
+     * @param methodName
+     *            The method name with parameter descriptor (e.g. charAt(I)C)
+     * @return true if the given method is an entry method
+     */
+    protected boolean isSlowCallEntry(String className, String methodName) {
+        Set<String> methods = parsedSlowCallMethods;
+        if (methods.isEmpty()) {
+            return false;
+        }
+
+        int index = methodName.indexOf('(');
+        return methods.contains(className.replace('/', '.') + '.'
+                + (index == -1 ? methodName : methodName.substring(0, index)));
+    }
+
+    /**
+     * Gets the threshold of slow invocations.
+     * 
+     * @return The threshold in nanoseconds
+     */
+    protected long getSlowCallThreshold() {
+        return slowCallThreshold;
+    }
+
+    /**
+     * Sets the threshold of slow invocations.
+     * 
+     * @param threshold
+     *            The threshold in milliseconds, or negative value to use the
+     *            default
+     */
+    protected void setSlowCallThreshold(int threshold) {
+        slowCallThreshold = (threshold >= 0 ? threshold
+                : Constants.DEFAULT_SLOW_CALL_THRESHOLD) * 1000000L;
+    }
+
+    /**
+     * Gets the number of slow invocations kept.
+     * 
+     * @return The number of slow invocations
+     */
+    protected int getSlowCallCapacity() {
+        return slowCallCapacity;
+    }
+
+    /**
+     * Sets the number of slow invocations kept. The oldest invocations are
+     * discarded when exceeded.
+     * 
+     * @param capacity
+     *            The number of slow invocations, or non-positive value to use
+     *            the default
+     */
+    protected void setSlowCallCapacity(int capacity) {
+        slowCallCapacity = capacity > 0 ? capacity
+                : Constants.DEFAULT_SLOW_CALL_CAPACITY;
+    }
+
+    /**
+     * Gets the sampling interval of allocations.
+     * 
+     * @return The sampling interval, where 1 means that all allocations are
+     *         recorded
+     */
+    protected int getAllocationSamplingInterval() {
+        return allocationSamplingInterval;
+    }
+
+    /**
+     * Sets the sampling interval of allocations. One in the given number of
+     * allocations is recorded on average.
+     * 
+     * @param interval
+     *            The sampling interval, or non-positive value to use the
+     *            default
+     */
+    protected void setAllocationSamplingInterval(int interval) {
+        allocationSamplingInterval = interval > 0 ? interval
+                : Constants.DEFAULT_ALLOCATION_SAMPLING_INTERVAL;
+    }
+
+    /**
+     * Gets the maximum size of cached instrumented byte-codes.
+     * 
+     * @return The size in KB, or 0 if cache is disabled
+     */
+    protected int getClassCacheSize() {
+        return classCacheSize;
+    }
+
+    /**
+     * Gets the version of configuration affecting instrumented byte-codes.
+     * The byte-codes instrumented with older version must not be reused.
+     * 
+     * @return The version of instrumentation configuration
+     */
+    protected int getInstrumentationVersion() {
+        return instrumentationVersion;
+    }
+
     /**
      * Gets the directory for dump file.
      * 
@@ -154,13 +1086,95 @@ public class Config {
             setProperties(fileName);
         }
 
-        profilerEnabled = System
-                .getProperty(Constants.DEFERRED_PROP_KEY,
-                        Boolean.TRUE.toString()).toLowerCase().trim()
-                .equals(Boolean.FALSE.toString());
-        autoDumpEnabled = System
-                .getProperty(Constants.DUMP_PROP_KEY, Boolean.FALSE.toString())
-                .toLowerCase().trim().equals(Boolean.TRUE.toString());
+        profilerEnabled = !getBooleanProperty(Constants.DEFERRED_PROP_KEY,
+                true);
+        autoDumpEnabled = getBooleanProperty(Constants.DUMP_PROP_KEY, false);
+        nanoTimeEnabled = getBooleanProperty(
+                Constants.NANO_TIME_PROP_KEY, false);
+        cpuTimeEnabled = getBooleanProperty(Constants.CPU_TIME_PROP_KEY, false);
+        eventBufferEnabled = getBooleanProperty(
+                Constants.EVENT_BUFFER_PROP_KEY, false);
+        eventBufferSize = getIntProperty(Constants.EVENT_BUFFER_SIZE_PROP_KEY,
+                Constants.DEFAULT_EVENT_BUFFER_SIZE);
+        if (eventBufferSize <= 0) {
+            eventBufferSize = Constants.DEFAULT_EVENT_BUFFER_SIZE;
+        }
+        eventBufferInterval = getIntProperty(
+                Constants.EVENT_BUFFER_INTERVAL_PROP_KEY,
+                Constants.DEFAULT_EVENT_BUFFER_INTERVAL);
+        if (eventBufferInterval <= 0) {
+            eventBufferInterval = Constants.DEFAULT_EVENT_BUFFER_INTERVAL;
+        }
+        setTraceMaxEvents(getIntProperty(Constants.TRACE_MAX_EVENTS_PROP_KEY,
+                Constants.DEFAULT_TRACE_MAX_EVENTS));
+        setSamplerPeriod(getIntProperty(Constants.SAMPLER_PERIOD_PROP_KEY,
+                Constants.DEFAULT_SAMPLER_PERIOD));
+        adaptiveEnabled = getBooleanProperty(
+                Constants.ADAPTIVE_PROP_KEY, false);
+        adaptiveInterval = getIntProperty(
+                Constants.ADAPTIVE_INTERVAL_PROP_KEY,
+                Constants.DEFAULT_ADAPTIVE_INTERVAL);
+        if (adaptiveInterval <= 0) {
+            adaptiveInterval = Constants.DEFAULT_ADAPTIVE_INTERVAL;
+        }
+        adaptiveMinRate = getIntProperty(Constants.ADAPTIVE_MIN_RATE_PROP_KEY,
+                Constants.DEFAULT_ADAPTIVE_MIN_RATE);
+        if (adaptiveMinRate <= 0) {
+            adaptiveMinRate = Constants.DEFAULT_ADAPTIVE_MIN_RATE;
+        }
+        adaptiveMaxSelfTime = getIntProperty(
+                Constants.ADAPTIVE_MAX_SELF_TIME_PROP_KEY,
+                Constants.DEFAULT_ADAPTIVE_MAX_SELF_TIME);
+        if (adaptiveMaxSelfTime < 0) {
+            adaptiveMaxSelfTime = Constants.DEFAULT_ADAPTIVE_MAX_SELF_TIME;
+        }
+        trivialFilterEnabled = getBooleanProperty(
+                Constants.TRIVIAL_FILTER_PROP_KEY, false);
+        trivialMaxSize = getIntProperty(Constants.TRIVIAL_MAX_SIZE_PROP_KEY,
+                Constants.DEFAULT_TRIVIAL_MAX_SIZE);
+        if (trivialMaxSize < 0) {
+            trivialMaxSize = Constants.DEFAULT_TRIVIAL_MAX_SIZE;
+        }
+        trivialLeafMaxSize = getIntProperty(
+                Constants.TRIVIAL_LEAF_MAX_SIZE_PROP_KEY,
+                Constants.DEFAULT_TRIVIAL_LEAF_MAX_SIZE);
+        if (trivialLeafMaxSize < 0) {
+            trivialLeafMaxSize = Constants.DEFAULT_TRIVIAL_LEAF_MAX_SIZE;
+        }
+        allocationProfilingEnabled = getBooleanProperty(
+                Constants.ALLOCATION_PROP_KEY, false);
+        setAllocationSamplingInterval(getIntProperty(
+                Constants.ALLOCATION_SAMPLING_INTERVAL_PROP_KEY,
+                Constants.DEFAULT_ALLOCATION_SAMPLING_INTERVAL));
+        contentionProfilingEnabled = getBooleanProperty(
+                Constants.CONTENTION_PROP_KEY, false);
+        latencyEnabled = getBooleanProperty(Constants.LATENCY_PROP_KEY, false);
+        setLatencyPackages(System
+                .getProperty(Constants.LATENCY_PACKAGES_PROP_KEY));
+        setSlowCallMethods(System
+                .getProperty(Constants.SLOW_CALL_METHODS_PROP_KEY));
+        setSlowCallThreshold(getIntProperty(
+                Constants.SLOW_CALL_THRESHOLD_PROP_KEY,
+                Constants.DEFAULT_SLOW_CALL_THRESHOLD));
+        setSlowCallCapacity(getIntProperty(
+                Constants.SLOW_CALL_CAPACITY_PROP_KEY,
+                Constants.DEFAULT_SLOW_CALL_CAPACITY));
+        setRetransformBatchSize(getIntProperty(
+                Constants.RETRANSFORM_BATCH_SIZE_PROP_KEY,
+                Constants.DEFAULT_RETRANSFORM_BATCH_SIZE));
+        setMaxFrames(getIntProperty(Constants.MAX_FRAMES_PROP_KEY,
+                Constants.DEFAULT_MAX_FRAMES));
+        setMaxFramesPerThread(getIntProperty(
+                Constants.MAX_FRAMES_PER_THREAD_PROP_KEY,
+                Constants.DEFAULT_MAX_FRAMES_PER_THREAD));
+        setThreadNameRules(System
+                .getProperty(Constants.THREAD_NAME_RULES_PROP_KEY));
+        setMethodPatterns(System
+                .getProperty(Constants.METHOD_INCLUDES_PROP_KEY), System
+                .getProperty(Constants.METHOD_EXCLUDES_PROP_KEY));
+        classCacheSize = Math.max(getIntProperty(
+                Constants.CLASS_CACHE_SIZE_PROP_KEY,
+                Constants.DEFAULT_CLASS_CACHE_SIZE), 0);
 
         String outputDirStr = System.getProperty(Constants.DUMP_DIR_PROP_KEY,
                 getDefaultDir());
@@ -190,6 +1204,82 @@ public class Config {
         }
     }
 
+    /**
+     * Resolves the state indicating if the given method is an entry method
+     * whose slow invocations are captured, and caches it.
+     * 
+     * @param methodId
+     *            The method ID
+     * @return true if the given method is an entry method
+     */
+    private synchronized boolean resolveSlowCallEntry(int methodId) {
+        byte[] states = slowCallEntryStates;
+        if (states == null) {
+            return false;
+        }
+
+        boolean entry = isSlowCallEntry(MethodRegistry.getClassName(methodId),
+                MethodRegistry.getMethodName(methodId));
+
+        if (methodId >= states.length) {
+            states = Arrays.copyOf(states, Math.max(methodId + 1,
+                    states.length * 2));
+        }
+        states[methodId] = entry ? ENTRY : NOT_ENTRY;
+        slowCallEntryStates = states;
+        return entry;
+    }
+
+    /**
+     * Gets the integer system property.
+     * 
+     * @param key
+     *            The property key
+     * @param defaultValue
+     *            The default value used if property is not set or invalid
+     * @return The property value
+     */
+    private static int getIntProperty(String key, int defaultValue) {
+        String value = System.getProperty(key);
+        if (value == null) {
+            return defaultValue;
+        }
+
+        try {
+            return Integer.parseInt(value.trim());
+        } catch (NumberFormatException e) {
+            Agent.logError(e, Messages.INVALID_PROPERTY_VALUE, key, value);
+            return defaultValue;
+        }
+    }
+
+    /**
+     * Gets the boolean system property.
+     * 
+     * @param key
+     *            The property key
+     * @param defaultValue
+     *            The default value used if property is not set or invalid
+     * @return The property value
+     */
+    private static boolean getBooleanProperty(String key,
+            boolean defaultValue) {
+        String value = System.getProperty(key);
+        if (value == null) {
+            return defaultValue;
+        }
+
+        String trimmedValue = value.toLowerCase().trim();
+        if (trimmedValue.equals(Boolean.TRUE.toString())) {
+            return true;
+        }
+        if (trimmedValue.equals(Boolean.FALSE.toString())) {
+            return false;
+        }
+        Agent.logError(null, Messages.INVALID_PROPERTY_VALUE, key, value);
+        return defaultValue;
+    }
+
     /**
      * Gets the default directory for dump file.
      * 
@@ -42,9 +42,165 @@ public class Constants {
     /** The key for profiled java packages. */
     static final String PROFILED_PACKAGES_PROP_KEY = "jvmmonitor.profiled.packages";
 
+    /** The key for patterns of methods instrumented in profiled classes. */
+    static final String METHOD_INCLUDES_PROP_KEY = "jvmmonitor.method.includes";
+
+    /** The key for patterns of methods not instrumented in profiled classes. */
+    static final String METHOD_EXCLUDES_PROP_KEY = "jvmmonitor.method.excludes";
+
     /** The key for profiled class loaders. */
     static final String PROFILED_CLASSLOADER_PROP_KEY = "jvmmonitor.profiled.classloaders";
 
+    /** The key for nano time. */
+    static final String NANO_TIME_PROP_KEY = "jvmmonitor.nanotime";
+
+    /** The key for thread CPU time. */
+    static final String CPU_TIME_PROP_KEY = "jvmmonitor.cputime";
+
+    /** The key for event buffer that defers updating frames. */
+    static final String EVENT_BUFFER_PROP_KEY = "jvmmonitor.eventbuffer";
+
+    /** The key for the number of events buffered per thread. */
+    static final String EVENT_BUFFER_SIZE_PROP_KEY = "jvmmonitor.eventbuffer.size";
+
+    /** The default number of events buffered per thread. */
+    static final int DEFAULT_EVENT_BUFFER_SIZE = 8192;
+
+    /** The key for interval in milliseconds of draining event buffers. */
+    static final String EVENT_BUFFER_INTERVAL_PROP_KEY = "jvmmonitor.eventbuffer.interval";
+
+    /** The default interval in milliseconds of draining event buffers. */
+    static final int DEFAULT_EVENT_BUFFER_INTERVAL = 10;
+
+    /** The key for the max number of events in a trace. */
+    static final String TRACE_MAX_EVENTS_PROP_KEY = "jvmmonitor.trace.max.events";
+
+    /** The default max number of events in a trace. */
+    static final int DEFAULT_TRACE_MAX_EVENTS = 200000;
+
+    /** The key for period in milliseconds of taking stack samples in agent. */
+    static final String SAMPLER_PERIOD_PROP_KEY = "jvmmonitor.sampler.period";
+
+    /** The default period in milliseconds of taking stack samples in agent. */
+    static final int DEFAULT_SAMPLER_PERIOD = 10;
+
+    /** The key for excluding trivial hot methods from instrumentation. */
+    static final String ADAPTIVE_PROP_KEY = "jvmmonitor.adaptive";
+
+    /** The key for interval in milliseconds of finding trivial hot methods. */
+    static final String ADAPTIVE_INTERVAL_PROP_KEY = "jvmmonitor.adaptive.interval";
+
+    /** The default interval in milliseconds of finding trivial hot methods. */
+    static final int DEFAULT_ADAPTIVE_INTERVAL = 5000;
+
+    /** The key for invocations per second above which method is hot. */
+    static final String ADAPTIVE_MIN_RATE_PROP_KEY = "jvmmonitor.adaptive.min.rate";
+
+    /** The default invocations per second above which method is hot. */
+    static final int DEFAULT_ADAPTIVE_MIN_RATE = 100000;
+
+    /** The key for self time in nanoseconds below which method is trivial. */
+    static final String ADAPTIVE_MAX_SELF_TIME_PROP_KEY = "jvmmonitor.adaptive.max.self.time";
+
+    /** The default self time in nanoseconds below which method is trivial. */
+    static final int DEFAULT_ADAPTIVE_MAX_SELF_TIME = 100;
+
+    /** The key for skipping trivial methods when transforming classes. */
+    static final String TRIVIAL_FILTER_PROP_KEY = "jvmmonitor.trivial.filter";
+
+    /** The key for number of instructions below which method is trivial. */
+    static final String TRIVIAL_MAX_SIZE_PROP_KEY = "jvmmonitor.trivial.max.size";
+
+    /** The default number of instructions below which method is trivial. */
+    static final int DEFAULT_TRIVIAL_MAX_SIZE = 8;
+
+    /**
+     * The key for number of instructions below which method without
+     * invocations and loops is trivial.
+     */
+    static final String TRIVIAL_LEAF_MAX_SIZE_PROP_KEY = "jvmmonitor.trivial.leaf.max.size";
+
+    /**
+     * The default number of instructions below which method without
+     * invocations and loops is trivial.
+     */
+    static final int DEFAULT_TRIVIAL_LEAF_MAX_SIZE = 64;
+
+    /** The key for the number of classes re-transformed at once. */
+    static final String RETRANSFORM_BATCH_SIZE_PROP_KEY = "jvmmonitor.retransform.batch.size";
+
+    /** The default number of classes re-transformed at once. */
+    static final int DEFAULT_RETRANSFORM_BATCH_SIZE = 100;
+
+    /** The key for the maximum size of cached instrumented byte-codes. */
+    static final String CLASS_CACHE_SIZE_PROP_KEY = "jvmmonitor.class.cache.size";
+
+    /** The default maximum size of cached instrumented byte-codes in KB. */
+    static final int DEFAULT_CLASS_CACHE_SIZE = 16384;
+
+    /** The key for the maximum number of frame nodes in all threads. */
+    static final String MAX_FRAMES_PROP_KEY = "jvmmonitor.max.frames";
+
+    /** The default maximum number of frame nodes in all threads. */
+    static final int DEFAULT_MAX_FRAMES = 500000;
+
+    /** The key for the maximum number of frame nodes per thread. */
+    static final String MAX_FRAMES_PER_THREAD_PROP_KEY = "jvmmonitor.max.frames.per.thread";
+
+    /** The default maximum number of frame nodes per thread. */
+    static final int DEFAULT_MAX_FRAMES_PER_THREAD = 100000;
+
+    /** The key for the rules to normalize the names of terminated threads. */
+    static final String THREAD_NAME_RULES_PROP_KEY = "jvmmonitor.thread.name.rules";
+
+    /**
+     * The default rule to normalize the names of terminated threads, which
+     * replaces the trailing number (e.g. pool-7-thread-12345).
+     */
+    static final String DEFAULT_THREAD_NAME_RULES = "\\d+$=*";
+
+    /** The key for allocation profiling. */
+    static final String ALLOCATION_PROP_KEY = "jvmmonitor.allocation";
+
+    /** The key for the sampling interval of allocations. */
+    static final String ALLOCATION_SAMPLING_INTERVAL_PROP_KEY = "jvmmonitor.allocation.sampling.interval";
+
+    /** The default sampling interval of allocations. */
+    static final int DEFAULT_ALLOCATION_SAMPLING_INTERVAL = 16;
+
+    /** The key for monitor contention profiling. */
+    static final String CONTENTION_PROP_KEY = "jvmmonitor.contention";
+
+    /** The key for latency histograms of methods. */
+    static final String LATENCY_PROP_KEY = "jvmmonitor.latency";
+
+    /** The key for packages whose methods record latency histograms. */
+    static final String LATENCY_PACKAGES_PROP_KEY = "jvmmonitor.latency.packages";
+
+    /** The key for entry methods whose slow invocations are captured. */
+    static final String SLOW_CALL_METHODS_PROP_KEY = "jvmmonitor.slowcall.methods";
+
+    /** The key for threshold in milliseconds of slow invocations. */
+    static final String SLOW_CALL_THRESHOLD_PROP_KEY = "jvmmonitor.slowcall.threshold";
+
+    /** The default threshold in milliseconds of slow invocations. */
+    static final int DEFAULT_SLOW_CALL_THRESHOLD = 1000;
+
+    /** The key for the number of slow invocations kept. */
+    static final String SLOW_CALL_CAPACITY_PROP_KEY = "jvmmonitor.slowcall.capacity";
+
+    /** The default number of slow invocations kept. */
+    static final int DEFAULT_SLOW_CALL_CAPACITY = 16;
+
+    /** The frame name aggregating the frames exceeding the maximum number. */
+    static final String OTHER_FRAME_NAME = "<other>";
+
+    /**
+     * The divisor of the maximum number of frame nodes giving the number
+     * reserved for the other frames.
+     */
+    static final int OTHER_FRAMES_RESERVE_DIVISOR = 16;
+
     /** The key for user home directory. */
     static final String USER_HOME_PROP_KEY = "user.home";
 
@@ -63,14 +219,32 @@ public class Constants {
     /** The method CpuProfiler#dropToFrame. */
     static final String METHOD_DROP_TO_FRAME = "dropToFrame";
 
+    /** The method CpuProfiler#allocate. */
+    static final String METHOD_ALLOCATE = "allocate";
+
+    /** The method CpuProfiler#allocateArray. */
+    static final String METHOD_ALLOCATE_ARRAY = "allocateArray";
+
+    /** The method CpuProfiler#monitorEnter. */
+    static final String METHOD_MONITOR_ENTER = "monitorEnter";
+
+    /** The method CpuProfiler#monitorEntered. */
+    static final String METHOD_MONITOR_ENTERED = "monitorEntered";
+
     /** The method name representing the class initialization method. */
     static final String METHOD_CLINIT = "<clinit>";
 
-    /** The descriptor for two strings. */
-    static final String DESC_STRING_STRING = "(Ljava/lang/String;Ljava/lang/String;)V";
+    /** The descriptor for method ID. */
+    static final String DESC_METHOD_ID = "(I)V";
+
+    /** The descriptor for allocation site ID. */
+    static final String DESC_SITE_ID = "(I)V";
+
+    /** The descriptor for allocated array and allocation site ID. */
+    static final String DESC_ARRAY_SITE_ID = "(Ljava/lang/Object;I)V";
 
-    /** The descriptor for three strings. */
-    static final String DESC_STRING_STRING_STRING = "(Ljava/lang/String;Ljava/lang/String;Ljava/lang/String;)V";
+    /** The descriptor for monitor object and site ID. */
+    static final String DESC_MONITOR_SITE_ID = "(Ljava/lang/Object;I)V";
 
     /** The -javaagent option for JVM. */
     static final String JAVA_AGENT_OPTION = "-javaagent:";
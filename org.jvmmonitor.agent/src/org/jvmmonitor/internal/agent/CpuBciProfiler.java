@@ -1,141 +1,602 @@
 /*******************************************************************************
- * Copyright (c) 2010 JVM Monitor project. All rights reserved. 
- * 
+ * Copyright (c) 2010 JVM Monitor project. All rights reserved.
+ *
  * This code is distributed under the terms of the Eclipse Public License v1.0
  * which is available at http://www.eclipse.org/legal/epl-v10.html
  *******************************************************************************/
 package org.jvmmonitor.internal.agent;
 
+import java.lang.instrument.Instrumentation;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.lang.reflect.Array;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+
 /**
- * The CPU profiler.
+ * The CPU profiler. The time is measured in nanoseconds, though its resolution
+ * is milliseconds unless nano time is enabled with
+ * <tt>jvmmonitor.nanotime</tt>.
+ * <p>
+ * If enabled with <tt>jvmmonitor.cputime</tt>, the CPU time of current thread
+ * is also measured, so that the time waiting for I/O or locks can be told
+ * from the time consuming CPU.
+ * <p>
+ * If enabled with <tt>jvmmonitor.allocation</tt>, one in every
+ * <tt>jvmmonitor.allocation.sampling.interval</tt> allocations is sampled and
+ * recorded with the weight of sampling interval into the allocation site and
+ * the current frame. The size of array is measured, while the size of instance
+ * is estimated from its fields once per site, since the object is not yet
+ * initialized when notified.
+ * <p>
+ * If enabled with <tt>jvmmonitor.eventbuffer</tt>, the steps into and return
+ * from frames and the sampled allocations are appended to the event buffer of
+ * current thread, and replayed into frames by {@link EventBufferAggregator}.
  */
+@SuppressWarnings("nls")
 public class CpuBciProfiler {
 
+    /** The nanoseconds per millisecond. */
+    private static final long NANOS_PER_MILLI = 1000000L;
+
+    /** The number of rounds to calibrate the overhead. */
+    private static final int CALIBRATION_ROUNDS = 20;
+
+    /** The number of probe invocations per calibration round. */
+    private static final int CALIBRATION_INVOCATIONS = 20000;
+
+    /** The method name used to calibrate the overhead. */
+    private static final String CALIBRATION_METHOD = "calibrate()V";
+
+    /** The alignment of object size in bytes. */
+    private static final long OBJECT_ALIGNMENT = 8;
+
     /** The runtime model. */
     private static RuntimeModel model;
 
+    /** The state indicating if nano time is used. */
+    private static boolean nanoTime;
+
+    /** The state indicating if thread CPU time is measured. */
+    private static boolean cpuTime;
+
+    /** The state indicating if events are buffered. */
+    private static boolean eventBuffer;
+
+    /** The thread MXBean to get thread CPU time. */
+    private static ThreadMXBean threadMXBean;
+
+    /**
+     * The calibrated overhead in nanoseconds of stepping into and returning
+     * from frame, which is used when nano time is enabled.
+     */
+    private static long probeOverhead;
+
+    /** The instrumentation to measure the size of objects. */
+    private static Instrumentation instrumentation;
+
+    /** The size of object header in bytes. */
+    private static long objectHeaderSize;
+
+    /** The size of reference in bytes. */
+    private static long referenceSize;
+
     /**
      * The method to be invoked when stepping into frame.
-     * 
-     * @param className
-     *            The class name
-     * @param methodName
-     *            The method name
+     *
+     * @param methodId
+     *            The method ID
      */
-    public static void stepInto(String className, String methodName) {
-        if (!Config.getInstance().isProfilerEnabled()) {
+    public static void stepInto(int methodId) {
+        Config config = Config.getInstance();
+        if (!config.isProfilerEnabled() || config.isMethodMuted(methodId)) {
             return;
         }
 
-        long time = System.currentTimeMillis();
-        String thread = Thread.currentThread().getName();
-
-        // get the current thread
-        ThreadNode threadNode = model.getThread(thread);
+        stepInto(model.getCurrentThread(), methodId);
+    }
 
-        // update the current frame
-        FrameNode frame;
-        FrameNode previousFrame = threadNode.getCurrentFrame();
-        if (previousFrame == null) {
-            frame = threadNode.getRootFrame(className, methodName);
-        } else {
-            frame = previousFrame.getChild(className, methodName);
+    /**
+     * The method to be invoked when stepping out from frame.
+     *
+     * @param methodId
+     *            The method ID
+     */
+    public static void stepReturn(int methodId) {
+        Config config = Config.getInstance();
+        if (!config.isProfilerEnabled() || config.isMethodMuted(methodId)) {
+            return;
         }
-        threadNode.setCurrentFrame(frame);
 
-        // set the time
-        frame.setStepIntoTime(time, System.currentTimeMillis() - time);
+        stepReturn(model.getCurrentThread(), methodId);
     }
 
     /**
-     * The method to be invoked when stepping out from frame.
-     * 
-     * @param className
-     *            The class name
-     * @param methodName
-     *            The method name
+     * The method to be executed when dropping to frame due to exception.
+     *
+     * @param methodId
+     *            The method ID of frame catching exception
      */
-    public static void stepReturn(String className, String methodName) {
-        if (!Config.getInstance().isProfilerEnabled()) {
+    public static void dropToFrame(int methodId) {
+        Config config = Config.getInstance();
+        if (!config.isProfilerEnabled() || config.isMethodMuted(methodId)) {
+            // the frames left are popped when their callers return
             return;
         }
 
-        long time = System.currentTimeMillis();
-        String thread = Thread.currentThread().getName();
+        long time = getTime();
+        long cpu = getCpuTime();
 
         // get the current thread
-        ThreadNode threadNode = model.getThread(thread);
-
-        // update the current frame
-        FrameNode previousFrame = threadNode.getCurrentFrame();
-        if (previousFrame == null) {
+        ThreadNode threadNode = model.getCurrentThread();
+        if (eventBuffer) {
+            appendEvent(threadNode, EventBuffer.DROP, methodId, time, cpu);
             return;
         }
-        threadNode.setCurrentFrame(previousFrame.getParent());
+        int depth = threadNode.getDepth();
+        if (depth == 0) {
+            return;
+        }
+
+        // search the depth of frame catching exception
+        int newDepth = threadNode.searchDepth(methodId);
 
-        // set the time stepping return from this frame
-        long overhead = System.currentTimeMillis() - time;
-        previousFrame.setStepReturnTime(time + overhead, overhead);
+        // set the time dropping to this frame
+        int bank = threadNode.beginUpdate();
+        long overhead = nanoTime ? probeOverhead : getTime() - time;
+        if (newDepth == depth) {
+            // stay at frame
+            threadNode.incrementOverhead(bank, overhead);
+        } else {
+            threadNode.dropToDepth(bank, newDepth, time + overhead, cpu,
+                    overhead);
+        }
+        threadNode.endUpdate();
     }
 
     /**
-     * The method to be executed when dropping to frame due to exception.
-     * 
-     * @param className
-     *            The class name
-     * @param methodName
-     *            The method name
-     * @param exception
-     *            The exception
+     * The method to be invoked when allocating instance.
+     *
+     * @param siteId
+     *            The allocation site ID
      */
-    public static void dropToFrame(String className, String methodName,
-            String exception) {
-        if (!Config.getInstance().isProfilerEnabled()) {
+    public static void allocate(int siteId) {
+        Config config = Config.getInstance();
+        if (!config.isProfilerEnabled()) {
+            return;
+        }
+
+        AllocationSite site = AllocationSiteRegistry.get(siteId);
+        if (config.isMethodMuted(site.getMethodId())) {
             return;
         }
 
-        long time = System.currentTimeMillis();
-        String thread = Thread.currentThread().getName();
+        int interval = config.getAllocationSamplingInterval();
+        if (interval > 1
+                && ThreadLocalRandom.current().nextInt(interval) != 0) {
+            return;
+        }
 
-        // get the current thread
-        ThreadNode threadNode = model.getThread(thread);
+        recordAllocation(site, interval, getInstanceSize(site));
+    }
 
-        // update the current frame
-        FrameNode previousFrame = threadNode.getCurrentFrame();
-        if (previousFrame == null) {
+    /**
+     * The method to be invoked when allocating array.
+     *
+     * @param array
+     *            The allocated array
+     * @param siteId
+     *            The allocation site ID
+     */
+    public static void allocateArray(Object array, int siteId) {
+        Config config = Config.getInstance();
+        if (!config.isProfilerEnabled()) {
             return;
         }
-        FrameNode frame = previousFrame.searchFrame(className, methodName);
-        threadNode.setCurrentFrame(frame);
 
-        // set the time dropping to this frame
-        long overhead = System.currentTimeMillis() - time;
-        if (frame.equals(previousFrame)) {
-            // stay at frame
-            previousFrame.incrementOverhead(overhead);
+        AllocationSite site = AllocationSiteRegistry.get(siteId);
+        if (config.isMethodMuted(site.getMethodId())) {
+            return;
+        }
+
+        int interval = config.getAllocationSamplingInterval();
+        if (interval > 1
+                && ThreadLocalRandom.current().nextInt(interval) != 0) {
+            return;
+        }
+
+        recordAllocation(site, interval, getArraySize(array));
+    }
+
+    /**
+     * The method to be invoked before entering monitor.
+     *
+     * @param monitor
+     *            The monitor object
+     * @param siteId
+     *            The site ID entering monitor
+     */
+    public static void monitorEnter(Object monitor, int siteId) {
+        Config config = Config.getInstance();
+        if (!config.isProfilerEnabled() || monitor == null
+                || config.isMethodMuted(MonitorSiteRegistry.get(siteId)
+                        .getMethodId())) {
             return;
         }
 
-        FrameNode iterator = previousFrame;
-        while (!frame.equals(iterator)) {
-            iterator.setStepReturnTime(time + overhead, overhead);
-            iterator = iterator.getParent();
+        // the time to acquire monitor is always measured in nanoseconds
+        model.getCurrentThread().beginMonitorEnter(
+                monitor.getClass().getName(), siteId, System.nanoTime());
+    }
+
+    /**
+     * The method to be invoked after entering monitor.
+     *
+     * @param siteId
+     *            The site ID entering monitor
+     */
+    public static void monitorEntered(int siteId) {
+        long time = System.nanoTime();
+        Config config = Config.getInstance();
+        if (!config.isProfilerEnabled()
+                || config.isMethodMuted(MonitorSiteRegistry.get(siteId)
+                        .getMethodId())) {
+            return;
         }
+
+        model.getCurrentThread().endMonitorEnter(siteId, time);
     }
 
     /**
      * Initialize the profiler.
+     *
+     * @param inst
+     *            The instrumentation
      */
-    protected static void initialize() {
+    protected static void initialize(Instrumentation inst) {
+        instrumentation = inst;
+        initializeObjectLayout();
+        nanoTime = Config.getInstance().isNanoTimeEnabled();
+        if (Config.getInstance().isCpuTimeEnabled()) {
+            initializeCpuTime();
+        }
+        eventBuffer = Config.getInstance().isEventBufferEnabled();
         model = new RuntimeModel();
+        if (nanoTime) {
+            calibrate();
+        }
+        if (eventBuffer) {
+            EventBufferAggregator.start();
+        }
     }
 
     /**
      * Gets the runtime model.
-     * 
+     *
      * @return The runtime model
      */
     protected static RuntimeModel getModel() {
         return model;
     }
+
+    /**
+     * Gets the current time in nanoseconds.
+     *
+     * @return The current time in nanoseconds
+     */
+    protected static long getTime() {
+        if (nanoTime) {
+            return System.nanoTime();
+        }
+        return System.currentTimeMillis() * NANOS_PER_MILLI;
+    }
+
+    /**
+     * Gets the calibrated overhead of stepping into and returning from frame.
+     *
+     * @return The overhead in nanoseconds, or 0 unless nano time is enabled
+     */
+    protected static long getProbeOverhead() {
+        return probeOverhead;
+    }
+
+    /**
+     * Gets the state indicating if thread CPU time is measured.
+     *
+     * @return <tt>true</tt> if thread CPU time is measured
+     */
+    protected static boolean isCpuTimeEnabled() {
+        return cpuTime;
+    }
+
+    /**
+     * Gets the CPU time of current thread in nanoseconds.
+     *
+     * @return The CPU time, or 0 if thread CPU time is not measured
+     */
+    protected static long getCpuTime() {
+        if (cpuTime) {
+            return threadMXBean.getCurrentThreadCpuTime();
+        }
+        return 0;
+    }
+
+    /**
+     * Gets the CPU time of the given thread in nanoseconds.
+     *
+     * @param threadId
+     *            The thread ID
+     * @return The CPU time, or 0 if thread CPU time is not measured or the
+     *         thread has terminated
+     */
+    protected static long getCpuTime(long threadId) {
+        if (cpuTime) {
+            return Math.max(threadMXBean.getThreadCpuTime(threadId), 0);
+        }
+        return 0;
+    }
+
+    /**
+     * Enables measuring thread CPU time if supported by JVM.
+     */
+    private static void initializeCpuTime() {
+        try {
+            ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+            if (!bean.isCurrentThreadCpuTimeSupported()
+                    || !bean.isThreadCpuTimeSupported()) {
+                Agent.logError(null, Messages.CPU_TIME_NOT_SUPPORTED);
+                return;
+            }
+            if (!bean.isThreadCpuTimeEnabled()) {
+                bean.setThreadCpuTimeEnabled(true);
+            }
+            threadMXBean = bean;
+            cpuTime = true;
+        } catch (UnsupportedOperationException e) {
+            Agent.logError(e, Messages.CPU_TIME_NOT_SUPPORTED);
+        } catch (SecurityException e) {
+            Agent.logError(e, Messages.CPU_TIME_NOT_SUPPORTED);
+        }
+    }
+
+    /**
+     * Records the sampled allocation into the allocation site and the current
+     * frame of current thread.
+     *
+     * @param site
+     *            The allocation site
+     * @param weight
+     *            The number of allocations represented by the sample
+     * @param size
+     *            The size of allocated object in bytes
+     */
+    private static void recordAllocation(AllocationSite site, int weight,
+            long size) {
+        long bytes = weight * size;
+        site.record(weight, bytes);
+
+        ThreadNode threadNode = model.getCurrentThread();
+        if (eventBuffer) {
+            appendEvent(threadNode, EventBuffer.ALLOCATE, 0, bytes, weight);
+            return;
+        }
+        int bank = threadNode.beginUpdate();
+        FrameNode frame = threadNode.getCurrentFrame();
+        if (frame != null) {
+            frame.allocate(bank, weight, bytes);
+        }
+        threadNode.endUpdate();
+    }
+
+    /**
+     * Gets the size of array including the sub-arrays of multi-dimensional
+     * array.
+     *
+     * @param array
+     *            The array
+     * @return The size in bytes
+     */
+    private static long getArraySize(Object array) {
+        long size = instrumentation.getObjectSize(array);
+        if (array.getClass().getComponentType().isArray()) {
+            int length = Array.getLength(array);
+            for (int i = 0; i < length; i++) {
+                Object element = Array.get(array, i);
+                if (element != null) {
+                    size += getArraySize(element);
+                }
+            }
+        }
+        return size;
+    }
+
+    /**
+     * Gets the estimated size of instance allocated at the given site. The
+     * size is estimated once from the instance fields of class and its super
+     * classes, and cached in the site.
+     *
+     * @param site
+     *            The allocation site
+     * @return The size in bytes
+     */
+    private static long getInstanceSize(AllocationSite site) {
+        long size = site.getInstanceSize();
+        if (size >= 0) {
+            return size;
+        }
+
+        size = objectHeaderSize;
+        try {
+            Class<?> clazz = Class.forName(site.getType().replace('/', '.'),
+                    false, site.getLoader());
+            for (; clazz != null; clazz = clazz.getSuperclass()) {
+                for (Field field : clazz.getDeclaredFields()) {
+                    if (!Modifier.isStatic(field.getModifiers())) {
+                        size += getFieldSize(field.getType());
+                    }
+                }
+            }
+        } catch (Throwable t) {
+            // the class is not visible, so only object header is counted
+        }
+        size = (size + OBJECT_ALIGNMENT - 1) / OBJECT_ALIGNMENT
+                * OBJECT_ALIGNMENT;
+        site.setInstanceSize(size);
+        return size;
+    }
+
+    /**
+     * Gets the size of field.
+     *
+     * @param type
+     *            The field type
+     * @return The size in bytes
+     */
+    private static long getFieldSize(Class<?> type) {
+        if (!type.isPrimitive()) {
+            return referenceSize;
+        } else if (type == long.class || type == double.class) {
+            return 8;
+        } else if (type == int.class || type == float.class) {
+            return 4;
+        } else if (type == short.class || type == char.class) {
+            return 2;
+        }
+        return 1;
+    }
+
+    /**
+     * Measures the size of object header and reference, which depend on JVM
+     * and whether compressed references are used.
+     */
+    private static void initializeObjectLayout() {
+        long emptyArraySize = instrumentation.getObjectSize(new Object[0]);
+        referenceSize = (instrumentation.getObjectSize(new Object[2]) - emptyArraySize)
+                / 2;
+
+        // the array header is followed by the 4 bytes array length
+        objectHeaderSize = Math.min(emptyArraySize - 4,
+                instrumentation.getObjectSize(new Object()));
+    }
+
+    /**
+     * Steps into frame on the given thread.
+     *
+     * @param threadNode
+     *            The thread node
+     * @param methodId
+     *            The method ID
+     */
+    private static void stepInto(ThreadNode threadNode, int methodId) {
+        // the elapsed time is measured inside the CPU time
+        long cpu = getCpuTime();
+        long time = getTime();
+        if (eventBuffer) {
+            appendEvent(threadNode, EventBuffer.ENTER, methodId, time, cpu);
+            return;
+        }
+        int bank = threadNode.beginUpdate();
+
+        // update the current frame
+        FrameNode frame = threadNode.getFrame(threadNode.getCurrentFrame(),
+                methodId);
+        threadNode.pushFrame(frame, methodId, time, cpu);
+
+        // set the time
+        frame.stepInto(bank, 0);
+        if (!nanoTime) {
+            threadNode.incrementOverhead(bank, getTime() - time);
+        }
+        threadNode.endUpdate();
+    }
+
+    /**
+     * Steps out from frame on the given thread.
+     *
+     * @param threadNode
+     *            The thread node
+     * @param methodId
+     *            The method ID
+     */
+    private static void stepReturn(ThreadNode threadNode, int methodId) {
+        long time = getTime();
+        if (eventBuffer) {
+            appendEvent(threadNode, EventBuffer.RETURN, methodId, time,
+                    getCpuTime());
+            return;
+        }
+        int bank = threadNode.beginUpdate();
+
+        // set the time stepping return from the current frame
+        if (nanoTime) {
+            time = getTime();
+            threadNode.popFrame(bank, methodId, time, getCpuTime(),
+                    probeOverhead);
+        } else {
+            long cpu = getCpuTime();
+            long overhead = getTime() - time;
+            threadNode.popFrame(bank, methodId, time + overhead, cpu,
+                    overhead);
+        }
+        threadNode.endUpdate();
+    }
+
+    /**
+     * Appends the event to the event buffer of the given thread. If the
+     * buffer is full, it is drained on the profiled thread.
+     *
+     * @param threadNode
+     *            The thread node
+     * @param type
+     *            The event type
+     * @param id
+     *            The method ID, or 0 if not applicable
+     * @param value
+     *            The first value
+     * @param secondValue
+     *            The second value
+     */
+    private static void appendEvent(ThreadNode threadNode, int type, int id,
+            long value, long secondValue) {
+        EventBuffer buffer = threadNode.getEventBuffer();
+        while (!buffer.append(type, id, value, secondValue)) {
+            threadNode.drainEventBuffer();
+        }
+    }
+
+    /**
+     * Calibrates the overhead of stepping into and returning from frame by
+     * profiling an empty frame on a thread node that doesn't belong to the
+     * runtime model. The minimum of several rounds is taken so that the
+     * rounds before compiled by JIT are ignored.
+     */
+    private static void calibrate() {
+        ThreadNode threadNode = new ThreadNode(Thread.currentThread(),
+                new AtomicInteger());
+        int methodId = MethodRegistry.register(Constants.CLASS_CPU_PROFILER,
+                CALIBRATION_METHOD);
+
+        // the event buffer is drained between rounds, not within a round
+        int invocations = CALIBRATION_INVOCATIONS;
+        if (eventBuffer) {
+            invocations = Math.min(invocations, Math.max(Config
+                    .getInstance().getEventBufferSize() / 2, 1));
+        }
+
+        long overhead = Long.MAX_VALUE;
+        for (int i = 0; i < CALIBRATION_ROUNDS; i++) {
+            long start = System.nanoTime();
+            for (int j = 0; j < invocations; j++) {
+                stepInto(threadNode, methodId);
+                stepReturn(threadNode, methodId);
+            }
+            long elapsed = System.nanoTime() - start;
+            overhead = Math.min(overhead, elapsed / invocations);
+            threadNode.drainEventBuffer();
+        }
+        probeOverhead = overhead;
+        Agent.logInfo(Messages.CALIBRATED_OVERHEAD, probeOverhead);
+    }
 }
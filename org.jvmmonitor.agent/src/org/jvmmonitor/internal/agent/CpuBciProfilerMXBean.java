@@ -30,6 +30,14 @@ public interface CpuBciProfilerMXBean {
      */
     TransformStatusCompositeData getTransformStatus();
 
+    /**
+     * Gets the status of the cache of instrumented byte-codes, which is
+     * looked up when re-transforming classes.
+     * 
+     * @return The status of the cache of instrumented byte-codes
+     */
+    ClassCacheStatusCompositeData getClassCacheStatus();
+
     /**
      * Interrupts transforming classes.
      */
@@ -67,6 +75,382 @@ public interface CpuBciProfilerMXBean {
      */
     String dump();
 
+    /**
+     * Dumps the captured slow calls of entry methods, each of which is given
+     * as a thread with the call tree of the invocation.
+     * 
+     * @return The slow calls in the same format as profile data
+     */
+    String dumpSlowCalls();
+
+    /**
+     * Gets the state indicating if the steps into and return from frames are
+     * buffered per thread and aggregated in background.
+     * 
+     * @return True if event buffer is enabled
+     */
+    boolean isEventBufferEnabled();
+
+    /**
+     * Starts recording the timeline of frames drained from event buffers,
+     * discarding the previous trace. The recording stops when the max number
+     * of events is reached.
+     * 
+     * @return False if event buffer is disabled
+     */
+    boolean startTrace();
+
+    /**
+     * Stops recording the timeline of frames.
+     */
+    void stopTrace();
+
+    /**
+     * Dumps the recorded timeline of frames.
+     * 
+     * @return The timeline in Chrome trace event format
+     */
+    String dumpTrace();
+
+    /**
+     * Dumps the profile data in binary format. The profile data is kept with
+     * a few latest dumps, so that it can be read in chunks with
+     * {@link #readBinaryDump(long, int, int)}.
+     * 
+     * @return The dump ID
+     */
+    long dumpBinary();
+
+    /**
+     * Dumps the profile data modified after the given generation in binary
+     * format. The profile data is kept with a few latest dumps, so that it
+     * can be read in chunks with {@link #readBinaryDump(long, int, int)}. The
+     * data contains the generation to be given next time.
+     * 
+     * @param generation
+     *            The generation contained in the previous profile data, or 0
+     *            to dump all frames
+     * @return The dump ID
+     */
+    long dumpSince(long generation);
+
+    /**
+     * Reads the profile data dumped in binary format.
+     * 
+     * @param id
+     *            The dump ID
+     * @param pos
+     *            The offset position of data in bytes to start reading data
+     * @param maxSize
+     *            The max size in bytes to read data
+     * @return The profile data, empty array if no more data, or
+     *         <tt>null</tt> if the dump has been discarded by later dumps
+     */
+    byte[] readBinaryDump(long id, int pos, int maxSize);
+
+    /**
+     * Gets the number of classes re-transformed at once.
+     * 
+     * @return The batch size
+     */
+    int getRetransformBatchSize();
+
+    /**
+     * Sets the number of classes re-transformed at once.
+     * 
+     * @param size
+     *            The batch size, or non-positive value to use the default
+     */
+    void setRetransformBatchSize(int size);
+
+    /**
+     * Gets the maximum number of frame nodes in all threads. Once reached,
+     * the subsequent frames are folded into recursive frames or aggregated
+     * into the "other" frame.
+     * 
+     * @return The maximum number of frame nodes
+     */
+    int getMaxFrames();
+
+    /**
+     * Sets the maximum number of frame nodes in all threads.
+     * 
+     * @param max
+     *            The maximum number of frame nodes, or non-positive value to
+     *            use the default
+     */
+    void setMaxFrames(int max);
+
+    /**
+     * Gets the maximum number of frame nodes per thread.
+     * 
+     * @return The maximum number of frame nodes per thread
+     */
+    int getMaxFramesPerThread();
+
+    /**
+     * Sets the maximum number of frame nodes per thread.
+     * 
+     * @param max
+     *            The maximum number of frame nodes per thread, or
+     *            non-positive value to use the default
+     */
+    void setMaxFramesPerThread(int max);
+
+    /**
+     * Gets the current number of frame nodes in all threads.
+     * 
+     * @return The number of frame nodes
+     */
+    int getFrameCount();
+
+    /**
+     * Gets the rules to normalize the names of terminated threads, whose
+     * profile data are aggregated by the normalized name.
+     * 
+     * @return The rules given as <tt>regex=replacement</tt> separated with
+     *         <tt>;</tt>
+     */
+    String getThreadNameRules();
+
+    /**
+     * Sets the rules to normalize the names of terminated threads.
+     * 
+     * @param rules
+     *            The rules given as <tt>regex=replacement</tt> separated with
+     *            <tt>;</tt>, or <tt>null</tt> to use the default
+     */
+    void setThreadNameRules(String rules);
+
+    /**
+     * Gets the state indicating if allocations are profiled.
+     * 
+     * @return <tt>true</tt> if allocations are profiled
+     */
+    boolean isAllocationProfilingEnabled();
+
+    /**
+     * Sets the state indicating if allocations are profiled. The classes have
+     * to be transformed again with {@link #transformClasses()} to take
+     * effect.
+     * 
+     * @param enabled
+     *            <tt>true</tt> to profile allocations
+     */
+    void setAllocationProfilingEnabled(boolean enabled);
+
+    /**
+     * Gets the sampling interval of allocations, where one in every interval
+     * allocations is recorded.
+     * 
+     * @return The sampling interval
+     */
+    int getAllocationSamplingInterval();
+
+    /**
+     * Sets the sampling interval of allocations.
+     * 
+     * @param interval
+     *            The sampling interval, where 1 means that all allocations
+     *            are recorded, or non-positive value to use the default
+     */
+    void setAllocationSamplingInterval(int interval);
+
+    /**
+     * Gets the allocation sites that have allocated objects, in descending
+     * order of the allocated bytes.
+     * 
+     * @return The allocation sites
+     */
+    AllocationSiteCompositeData[] getAllocationSites();
+
+    /**
+     * Gets the state indicating if the time to acquire monitors is profiled.
+     * 
+     * @return <tt>true</tt> if the time to acquire monitors is profiled
+     */
+    boolean isContentionProfilingEnabled();
+
+    /**
+     * Sets the state indicating if the time to acquire monitors is profiled.
+     * The classes have to be transformed again with
+     * {@link #transformClasses()} to take effect.
+     * 
+     * @param enabled
+     *            <tt>true</tt> to profile the time to acquire monitors
+     */
+    void setContentionProfilingEnabled(boolean enabled);
+
+    /**
+     * Gets the monitor contentions per site and monitor class, in descending
+     * order of the time to acquire monitor.
+     * 
+     * @return The monitor contentions
+     */
+    MonitorContentionCompositeData[] getMonitorContentions();
+
+    /**
+     * Gets the state indicating if latency histograms of methods are
+     * recorded.
+     * 
+     * @return <tt>true</tt> if latency histograms are recorded
+     */
+    boolean isLatencyEnabled();
+
+    /**
+     * Sets the state indicating if latency histograms of methods are
+     * recorded. The frames created before are not affected, so the profile
+     * data should be cleared to take effect on all methods.
+     * 
+     * @param enabled
+     *            <tt>true</tt> to record latency histograms
+     */
+    void setLatencyEnabled(boolean enabled);
+
+    /**
+     * Gets the packages whose methods record latency histograms.
+     * 
+     * @return The packages separated with comma, or empty string for all
+     *         profiled methods
+     */
+    String getLatencyPackages();
+
+    /**
+     * Sets the packages whose methods record latency histograms.
+     * 
+     * @param packages
+     *            The packages (e.g. org.example.*) separated with comma, or
+     *            empty string for all profiled methods
+     */
+    void setLatencyPackages(String packages);
+
+    /**
+     * Gets the entry methods whose slow invocations are captured.
+     * 
+     * @return The entry methods separated with comma, or empty string if none
+     */
+    String getSlowCallMethods();
+
+    /**
+     * Sets the entry methods whose slow invocations are captured.
+     * 
+     * @param methods
+     *            The qualified method names (e.g.
+     *            org.example.Handler.handle) separated with comma, or empty
+     *            string for none
+     */
+    void setSlowCallMethods(String methods);
+
+    /**
+     * Gets the threshold of slow invocations.
+     * 
+     * @return The threshold in milliseconds
+     */
+    int getSlowCallThreshold();
+
+    /**
+     * Sets the threshold of slow invocations.
+     * 
+     * @param threshold
+     *            The threshold in milliseconds
+     */
+    void setSlowCallThreshold(int threshold);
+
+    /**
+     * Gets the patterns of methods instrumented in profiled classes.
+     * 
+     * @return The method patterns separated with comma, or empty string for
+     *         all methods
+     */
+    String getMethodIncludes();
+
+    /**
+     * Sets the patterns of methods instrumented in profiled classes. The
+     * classes have to be transformed to take effect.
+     * 
+     * @param includes
+     *            The method patterns (e.g. org.example.Foo.handle*) separated
+     *            with comma, or empty string for all methods
+     */
+    void setMethodIncludes(String includes);
+
+    /**
+     * Gets the patterns of methods not instrumented in profiled classes.
+     * 
+     * @return The method patterns separated with comma, or empty string for
+     *         none
+     */
+    String getMethodExcludes();
+
+    /**
+     * Sets the patterns of methods not instrumented in profiled classes. The
+     * classes have to be transformed to take effect.
+     * 
+     * @param excludes
+     *            The method patterns (e.g. *.toString()Ljava/lang/String;)
+     *            separated with comma, or empty string for none
+     */
+    void setMethodExcludes(String excludes);
+
+    /**
+     * Mutes the instrumented methods matching with the given patterns. The
+     * probes of muted methods, including the ones of allocations and monitor
+     * entries, return immediately without re-transforming classes, and the
+     * methods loaded afterwards are not muted.
+     * 
+     * @param patterns
+     *            The method patterns (e.g. org.example.Foo.*) separated with
+     *            comma
+     * @return The number of methods newly muted
+     */
+    int muteMethods(String patterns);
+
+    /**
+     * Unmutes the muted methods matching with the given patterns.
+     * 
+     * @param patterns
+     *            The method patterns (e.g. *.*) separated with comma
+     * @return The number of methods unmuted
+     */
+    int unmuteMethods(String patterns);
+
+    /**
+     * Gets the muted methods.
+     * 
+     * @return The muted methods (e.g. org.example.Foo.getBar())
+     */
+    String[] getMutedMethods();
+
+    /**
+     * Gets the state indicating if the methods invoked frequently with
+     * negligible self time are automatically excluded from instrumentation.
+     * 
+     * @return True if trivial hot methods are excluded
+     */
+    boolean isAdaptiveInstrumentationEnabled();
+
+    /**
+     * Sets the state indicating if the methods invoked frequently with
+     * negligible self time are automatically excluded from instrumentation.
+     * 
+     * @param enabled
+     *            True to exclude trivial hot methods
+     */
+    void setAdaptiveInstrumentationEnabled(boolean enabled);
+
+    /**
+     * Gets the methods automatically excluded from instrumentation.
+     * 
+     * @return The methods (e.g. org.example.Foo.getBar())
+     */
+    String[] getExcludedMethods();
+
+    /**
+     * Instruments the excluded methods again. The methods are kept
+     * instrumented afterwards even if they are trivial and hot.
+     */
+    void reinstrumentMethods();
+
     /**
      * Gets the directory where dump file is created.
      * 
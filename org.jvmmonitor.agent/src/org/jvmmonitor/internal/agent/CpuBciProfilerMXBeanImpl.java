@@ -9,7 +9,12 @@ package org.jvmmonitor.internal.agent;
 import java.io.IOException;
 import java.lang.instrument.Instrumentation;
 import java.lang.instrument.UnmodifiableClassException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.HashSet;
+import java.util.List;
+import java.util.Map.Entry;
 import java.util.Set;
 
 /**
@@ -31,7 +36,28 @@ public class CpuBciProfilerMXBeanImpl implements CpuBciProfilerMXBean {
     private Set<Class<?>> transformedClasses;
 
     /** The state indicating if transformation has to be interrupted. */
-    private boolean interrupted;
+    private volatile boolean interrupted;
+
+    /**
+     * The state indicating if re-transforming the classes of particular
+     * methods has to be interrupted.
+     */
+    private volatile boolean methodsInterrupted;
+
+    /**
+     * The lock to serialize registering the class file transformer and
+     * re-transforming classes.
+     */
+    private final Object transformLock;
+
+    /** The profile data dumped in binary format. */
+    private final BinaryDumpStore binaryDumps;
+
+    /**
+     * The version of instrumentation configuration with which the classes
+     * have been transformed last time.
+     */
+    private int transformedVersion;
 
     /**
      * The constructor.
@@ -47,11 +73,18 @@ public class CpuBciProfilerMXBeanImpl implements CpuBciProfilerMXBean {
         classFileTransformer = new ClassFileTransformerImpl(transformedClasses,
                 targetClasses);
         interrupted = false;
+        methodsInterrupted = false;
+        transformLock = new Object();
+        binaryDumps = new BinaryDumpStore();
+        transformedVersion = Config.getInstance().getInstrumentationVersion();
 
-        CpuBciProfiler.initialize();
+        CpuBciProfiler.initialize(inst);
         if (Config.getInstance().isProfilerEnabled()) {
             setRunning(true);
         }
+        if (Config.getInstance().isAdaptiveEnabled()) {
+            AdaptiveInstrumentation.start(this);
+        }
     }
 
     /*
@@ -59,16 +92,19 @@ public class CpuBciProfilerMXBeanImpl implements CpuBciProfilerMXBean {
      */
     @Override
     public void transformClasses() {
+        interrupted = false;
         new Thread() {
             @Override
             public void run() {
-                try {
-                    inst.addTransformer(classFileTransformer, true);
-                    retransformClasses();
-                } catch (Throwable t) {
-                    Agent.logError(t, Messages.CANNOT_TRANSFORM_CLASSES);
-                } finally {
-                    inst.removeTransformer(classFileTransformer);
+                synchronized (transformLock) {
+                    try {
+                        inst.addTransformer(classFileTransformer, true);
+                        retransformClasses();
+                    } catch (Throwable t) {
+                        Agent.logError(t, Messages.CANNOT_TRANSFORM_CLASSES);
+                    } finally {
+                        inst.removeTransformer(classFileTransformer);
+                    }
                 }
             }
         }.start();
@@ -83,12 +119,21 @@ public class CpuBciProfilerMXBeanImpl implements CpuBciProfilerMXBean {
                 transformedClasses.size());
     }
 
+    /*
+     * @see CpuBciProfilerMXBean#getClassCacheStatus()
+     */
+    @Override
+    public ClassCacheStatusCompositeData getClassCacheStatus() {
+        return classFileTransformer.getCache().getStatus();
+    }
+
     /*
      * @see CpuBciProfilerMXBean#interruptTransform()
      */
     @Override
     public void interruptTransform() {
         interrupted = true;
+        methodsInterrupted = true;
     }
 
     /*
@@ -96,15 +141,17 @@ public class CpuBciProfilerMXBeanImpl implements CpuBciProfilerMXBean {
      */
     @Override
     public void setRunning(boolean run) {
-        if (run) {
-            inst.addTransformer(classFileTransformer, true);
-            Config.getInstance().setProfilerEnabled(true);
-        } else {
-            try {
-                inst.removeTransformer(classFileTransformer);
-                Config.getInstance().setProfilerEnabled(false);
-            } catch (Throwable t) {
-                Agent.logError(t, Messages.CANNOT_SUSPEND);
+        synchronized (transformLock) {
+            if (run) {
+                inst.addTransformer(classFileTransformer, true);
+                Config.getInstance().setProfilerEnabled(true);
+            } else {
+                try {
+                    inst.removeTransformer(classFileTransformer);
+                    Config.getInstance().setProfilerEnabled(false);
+                } catch (Throwable t) {
+                    Agent.logError(t, Messages.CANNOT_SUSPEND);
+                }
             }
         }
     }
@@ -147,6 +194,94 @@ public class CpuBciProfilerMXBeanImpl implements CpuBciProfilerMXBean {
         }
     }
 
+    /*
+     * @see CpuBciProfilerMXBean#dumpSlowCalls()
+     */
+    @Override
+    public String dumpSlowCalls() {
+        try {
+            return CpuBciProfiler.getModel().dumpSlowCalls();
+        } catch (Throwable t) {
+            Agent.logError(t, Messages.CANNOT_GET_SLOW_CALLS);
+            return "";
+        }
+    }
+
+    /*
+     * @see CpuBciProfilerMXBean#isEventBufferEnabled()
+     */
+    @Override
+    public boolean isEventBufferEnabled() {
+        return Config.getInstance().isEventBufferEnabled();
+    }
+
+    /*
+     * @see CpuBciProfilerMXBean#startTrace()
+     */
+    @Override
+    public boolean startTrace() {
+        if (!Config.getInstance().isEventBufferEnabled()) {
+            return false;
+        }
+        CpuBciProfiler.getModel().drainEventBuffers();
+        TraceRecorder.start();
+        return true;
+    }
+
+    /*
+     * @see CpuBciProfilerMXBean#stopTrace()
+     */
+    @Override
+    public void stopTrace() {
+        CpuBciProfiler.getModel().drainEventBuffers();
+        TraceRecorder.stop();
+    }
+
+    /*
+     * @see CpuBciProfilerMXBean#dumpTrace()
+     */
+    @Override
+    public String dumpTrace() {
+        try {
+            CpuBciProfiler.getModel().drainEventBuffers();
+            return TraceRecorder.dump();
+        } catch (Throwable t) {
+            Agent.logError(t, Messages.CANNOT_GET_TRACE);
+            return "";
+        }
+    }
+
+    /*
+     * @see CpuBciProfilerMXBean#dumpBinary()
+     */
+    @Override
+    public long dumpBinary() {
+        return dumpSince(0);
+    }
+
+    /*
+     * @see CpuBciProfilerMXBean#dumpSince(long)
+     */
+    @Override
+    public long dumpSince(long generation) {
+        byte[] binaryDump;
+        try {
+            binaryDump = CpuBciProfiler.getModel().doDumpBinary(generation);
+        } catch (Throwable t) {
+            Agent.logError(t, Messages.CANNOT_GET_DUMP);
+            binaryDump = new byte[0];
+        }
+        return binaryDumps.add(binaryDump);
+    }
+
+    /*
+     * @see CpuBciProfilerMXBean#readBinaryDump(long, int, int)
+     */
+    @Override
+    public byte[] readBinaryDump(long id, int pos, int maxSize) {
+        return binaryDumps.read(id, pos, maxSize);
+    }
+
     /*
      * @see ProfilerMXBean#dumpToFile()
      */
@@ -159,6 +294,355 @@ public class CpuBciProfilerMXBeanImpl implements CpuBciProfilerMXBean {
         }
     }
 
+    /*
+     * @see CpuBciProfilerMXBean#getRetransformBatchSize()
+     */
+    @Override
+    public int getRetransformBatchSize() {
+        return Config.getInstance().getRetransformBatchSize();
+    }
+
+    /*
+     * @see CpuBciProfilerMXBean#setRetransformBatchSize(int)
+     */
+    @Override
+    public void setRetransformBatchSize(int size) {
+        Config.getInstance().setRetransformBatchSize(size);
+    }
+
+    /*
+     * @see CpuBciProfilerMXBean#getMaxFrames()
+     */
+    @Override
+    public int getMaxFrames() {
+        return Config.getInstance().getMaxFrames();
+    }
+
+    /*
+     * @see CpuBciProfilerMXBean#setMaxFrames(int)
+     */
+    @Override
+    public void setMaxFrames(int max) {
+        Config.getInstance().setMaxFrames(max);
+    }
+
+    /*
+     * @see CpuBciProfilerMXBean#getMaxFramesPerThread()
+     */
+    @Override
+    public int getMaxFramesPerThread() {
+        return Config.getInstance().getMaxFramesPerThread();
+    }
+
+    /*
+     * @see CpuBciProfilerMXBean#setMaxFramesPerThread(int)
+     */
+    @Override
+    public void setMaxFramesPerThread(int max) {
+        Config.getInstance().setMaxFramesPerThread(max);
+    }
+
+    /*
+     * @see CpuBciProfilerMXBean#getFrameCount()
+     */
+    @Override
+    public int getFrameCount() {
+        return CpuBciProfiler.getModel().getFrameCount();
+    }
+
+    /*
+     * @see CpuBciProfilerMXBean#getThreadNameRules()
+     */
+    @Override
+    public String getThreadNameRules() {
+        return Config.getInstance().getThreadNameRules();
+    }
+
+    /*
+     * @see CpuBciProfilerMXBean#setThreadNameRules(String)
+     */
+    @Override
+    public void setThreadNameRules(String rules) {
+        Config.getInstance().setThreadNameRules(rules);
+    }
+
+    /*
+     * @see CpuBciProfilerMXBean#isAllocationProfilingEnabled()
+     */
+    @Override
+    public boolean isAllocationProfilingEnabled() {
+        return Config.getInstance().isAllocationProfilingEnabled();
+    }
+
+    /*
+     * @see CpuBciProfilerMXBean#setAllocationProfilingEnabled(boolean)
+     */
+    @Override
+    public void setAllocationProfilingEnabled(boolean enabled) {
+        Config.getInstance().setAllocationProfilingEnabled(enabled);
+    }
+
+    /*
+     * @see CpuBciProfilerMXBean#getAllocationSamplingInterval()
+     */
+    @Override
+    public int getAllocationSamplingInterval() {
+        return Config.getInstance().getAllocationSamplingInterval();
+    }
+
+    /*
+     * @see CpuBciProfilerMXBean#setAllocationSamplingInterval(int)
+     */
+    @Override
+    public void setAllocationSamplingInterval(int interval) {
+        Config.getInstance().setAllocationSamplingInterval(interval);
+    }
+
+    /*
+     * @see CpuBciProfilerMXBean#getAllocationSites()
+     */
+    @Override
+    public AllocationSiteCompositeData[] getAllocationSites() {
+        List<AllocationSiteCompositeData> sites = new ArrayList<AllocationSiteCompositeData>();
+        for (AllocationSite site : AllocationSiteRegistry.getSites()) {
+            if (site.getCount() > 0) {
+                sites.add(new AllocationSiteCompositeData(FrameNode
+                        .getFrameName(site.getMethodId()), site.getTypeName(),
+                        site.getCount(), site.getBytes()));
+            }
+        }
+        Collections.sort(sites, new Comparator<AllocationSiteCompositeData>() {
+            @Override
+            public int compare(AllocationSiteCompositeData site1,
+                    AllocationSiteCompositeData site2) {
+                return Long.valueOf(site2.getBytes()).compareTo(
+                        Long.valueOf(site1.getBytes()));
+            }
+        });
+        return sites.toArray(new AllocationSiteCompositeData[sites.size()]);
+    }
+
+    /*
+     * @see CpuBciProfilerMXBean#isContentionProfilingEnabled()
+     */
+    @Override
+    public boolean isContentionProfilingEnabled() {
+        return Config.getInstance().isContentionProfilingEnabled();
+    }
+
+    /*
+     * @see CpuBciProfilerMXBean#setContentionProfilingEnabled(boolean)
+     */
+    @Override
+    public void setContentionProfilingEnabled(boolean enabled) {
+        Config.getInstance().setContentionProfilingEnabled(enabled);
+    }
+
+    /*
+     * @see CpuBciProfilerMXBean#getMonitorContentions()
+     */
+    @Override
+    public MonitorContentionCompositeData[] getMonitorContentions() {
+        List<MonitorContentionCompositeData> contentions = new ArrayList<MonitorContentionCompositeData>();
+        for (MonitorSite site : MonitorSiteRegistry.getSites()) {
+            String method = null;
+            for (Entry<String, MonitorContention> entry : site
+                    .getContentions().entrySet()) {
+                if (method == null) {
+                    method = FrameNode.getFrameName(site.getMethodId());
+                }
+                MonitorContention contention = entry.getValue();
+                contentions.add(new MonitorContentionCompositeData(method,
+                        entry.getKey(), contention.getCount(), contention
+                                .getTime(), contention.getMaxTime()));
+            }
+        }
+        Collections.sort(contentions,
+                new Comparator<MonitorContentionCompositeData>() {
+                    @Override
+                    public int compare(
+                            MonitorContentionCompositeData contention1,
+                            MonitorContentionCompositeData contention2) {
+                        return Long.valueOf(contention2.getTime()).compareTo(
+                                Long.valueOf(contention1.getTime()));
+                    }
+                });
+        return contentions
+                .toArray(new MonitorContentionCompositeData[contentions.size()]);
+    }
+
+    /*
+     * @see CpuBciProfilerMXBean#isLatencyEnabled()
+     */
+    @Override
+    public boolean isLatencyEnabled() {
+        return Config.getInstance().isLatencyEnabled();
+    }
+
+    /*
+     * @see CpuBciProfilerMXBean#setLatencyEnabled(boolean)
+     */
+    @Override
+    public void setLatencyEnabled(boolean enabled) {
+        Config.getInstance().setLatencyEnabled(enabled);
+    }
+
+    /*
+     * @see CpuBciProfilerMXBean#getLatencyPackages()
+     */
+    @Override
+    public String getLatencyPackages() {
+        return Config.getInstance().getLatencyPackages();
+    }
+
+    /*
+     * @see CpuBciProfilerMXBean#setLatencyPackages(String)
+     */
+    @Override
+    public void setLatencyPackages(String packages) {
+        Config.getInstance().setLatencyPackages(packages);
+    }
+
+    /*
+     * @see CpuBciProfilerMXBean#getSlowCallMethods()
+     */
+    @Override
+    public String getSlowCallMethods() {
+        return Config.getInstance().getSlowCallMethods();
+    }
+
+    /*
+     * @see CpuBciProfilerMXBean#setSlowCallMethods(String)
+     */
+    @Override
+    public void setSlowCallMethods(String methods) {
+        Config.getInstance().setSlowCallMethods(methods);
+    }
+
+    /*
+     * @see CpuBciProfilerMXBean#getSlowCallThreshold()
+     */
+    @Override
+    public int getSlowCallThreshold() {
+        return (int) (Config.getInstance().getSlowCallThreshold() / 1000000);
+    }
+
+    /*
+     * @see CpuBciProfilerMXBean#setSlowCallThreshold(int)
+     */
+    @Override
+    public void setSlowCallThreshold(int threshold) {
+        Config.getInstance().setSlowCallThreshold(threshold);
+    }
+
+    /*
+     * @see CpuBciProfilerMXBean#getMethodIncludes()
+     */
+    @Override
+    public String getMethodIncludes() {
+        return Config.getInstance().getMethodIncludes();
+    }
+
+    /*
+     * @see CpuBciProfilerMXBean#setMethodIncludes(String)
+     */
+    @Override
+    public void setMethodIncludes(String includes) {
+        Config config = Config.getInstance();
+        config.setMethodPatterns(includes, config.getMethodExcludes());
+    }
+
+    /*
+     * @see CpuBciProfilerMXBean#getMethodExcludes()
+     */
+    @Override
+    public String getMethodExcludes() {
+        return Config.getInstance().getMethodExcludes();
+    }
+
+    /*
+     * @see CpuBciProfilerMXBean#setMethodExcludes(String)
+     */
+    @Override
+    public void setMethodExcludes(String excludes) {
+        Config config = Config.getInstance();
+        config.setMethodPatterns(config.getMethodIncludes(), excludes);
+    }
+
+    /*
+     * @see CpuBciProfilerMXBean#muteMethods(String)
+     */
+    @Override
+    public int muteMethods(String patterns) {
+        return Config.getInstance().setMethodsMuted(patterns, true);
+    }
+
+    /*
+     * @see CpuBciProfilerMXBean#unmuteMethods(String)
+     */
+    @Override
+    public int unmuteMethods(String patterns) {
+        return Config.getInstance().setMethodsMuted(patterns, false);
+    }
+
+    /*
+     * @see CpuBciProfilerMXBean#getMutedMethods()
+     */
+    @Override
+    public String[] getMutedMethods() {
+        int[] methodIds = Config.getInstance().getMutedMethods();
+        String[] methods = new String[methodIds.length];
+        for (int i = 0; i < methodIds.length; i++) {
+            methods[i] = FrameNode.getFrameName(methodIds[i]);
+        }
+        return methods;
+    }
+
+    /*
+     * @see CpuBciProfilerMXBean#isAdaptiveInstrumentationEnabled()
+     */
+    @Override
+    public boolean isAdaptiveInstrumentationEnabled() {
+        return Config.getInstance().isAdaptiveEnabled();
+    }
+
+    /*
+     * @see CpuBciProfilerMXBean#setAdaptiveInstrumentationEnabled(boolean)
+     */
+    @Override
+    public void setAdaptiveInstrumentationEnabled(boolean enabled) {
+        Config.getInstance().setAdaptiveEnabled(enabled);
+        if (enabled) {
+            AdaptiveInstrumentation.start(this);
+        }
+    }
+
+    /*
+     * @see CpuBciProfilerMXBean#getExcludedMethods()
+     */
+    @Override
+    public String[] getExcludedMethods() {
+        List<String> methods = new ArrayList<String>();
+        for (String method : Config.getInstance().getExcludedMethods()) {
+            int index = method.lastIndexOf('.', method.indexOf('('));
+            methods.add(FrameNode.getFrameName(method.substring(0, index),
+                    method.substring(index + 1)));
+        }
+        return methods.toArray(new String[methods.size()]);
+    }
+
+    /*
+     * @see CpuBciProfilerMXBean#reinstrumentMethods()
+     */
+    @Override
+    public void reinstrumentMethods() {
+        try {
+            retransformClasses(Config.getInstance().includeExcludedMethods());
+        } catch (Throwable t) {
+            Agent.logError(t, Messages.CANNOT_REINSTRUMENT_METHODS);
+        }
+    }
+
     /*
      * @see CpuBciProfilerMXBean#getDumpDir()
      */
@@ -189,20 +673,8 @@ public class CpuBciProfilerMXBeanImpl implements CpuBciProfilerMXBean {
     @Override
     public void setFilter(String key, String value) {
         if (Constants.PROFILED_PACKAGES_PROP_KEY.equals(key)) {
-            Config.getInstance().profiledPackages.clear();
-            Config.getInstance().addElements(
-                    Config.getInstance().profiledPackages, value);
-
-            // store target classes
-            targetClasses.clear();
-            for (Class<?> clazz : inst.getAllLoadedClasses()) {
-                String className = clazz.getName();
-                if (!className.startsWith("[")
-                        && matches(className,
-                                Config.getInstance().profiledPackages)) {
-                    targetClasses.add(clazz);
-                }
-            }
+            Config.getInstance().setProfiledPackages(value);
+            collectTargetClasses();
         }
     }
 
@@ -234,25 +706,135 @@ public class CpuBciProfilerMXBeanImpl implements CpuBciProfilerMXBean {
     }
 
     /**
-     * Re-transforms the loaded classes.
+     * Re-transforms the loaded classes. The classes are re-transformed in
+     * batches, since each re-transformation brings a VM operation. The caller
+     * has to hold the transform lock.
      */
     void retransformClasses() {
-        interrupted = false;
-
         Set<Class<?>> transformedTargetClasses = new HashSet<Class<?>>(
                 transformedClasses);
         transformedTargetClasses.retainAll(targetClasses);
-        Set<Class<?>> classesToTransform = getClassesToTransform(transformedTargetClasses);
+        int version = Config.getInstance().getInstrumentationVersion();
+        if (version != transformedVersion) {
+            // the classes transformed with former configuration are outdated
+            collectTargetClasses();
+            transformedTargetClasses.clear();
+            transformedVersion = version;
+        }
+        List<Class<?>> classesToTransform = new ArrayList<Class<?>>(
+                getClassesToTransform(transformedTargetClasses));
         transformedClasses.clear();
         transformedClasses.addAll(transformedTargetClasses);
 
         // transform classes
-        for (Class<?> clazz : classesToTransform) {
+        int batchSize = Config.getInstance().getRetransformBatchSize();
+        for (int i = 0; i < classesToTransform.size(); i += batchSize) {
             if (interrupted) {
                 transformedClasses.retainAll(targetClasses);
                 return;
             }
 
+            List<Class<?>> batch = classesToTransform.subList(i,
+                    Math.min(i + batchSize, classesToTransform.size()));
+            retransformClasses(batch, false);
+        }
+
+        transformedClasses.clear();
+        transformedClasses.addAll(targetClasses);
+    }
+
+    /**
+     * Re-transforms the loaded classes with the given names, e.g. to remove
+     * or restore the probes of particular methods. The class file transformer
+     * is registered during the re-transformation even if the profiler is
+     * suspended, so that the classes don't lose the probes of other methods.
+     * This is interrupted separately from transforming all classes, so that
+     * it doesn't cancel a pending interruption of the latter.
+     * 
+     * @param classNames
+     *            The class names (e.g. java/lang/String)
+     */
+    void retransformClasses(Set<String> classNames) {
+        if (classNames.isEmpty()) {
+            return;
+        }
+
+        List<Class<?>> classes = new ArrayList<Class<?>>();
+        for (Class<?> clazz : inst.getAllLoadedClasses()) {
+            if (classNames.contains(clazz.getName().replace('.', '/'))
+                    && inst.isModifiableClass(clazz)) {
+                classes.add(clazz);
+            }
+        }
+
+        synchronized (transformLock) {
+            boolean running = Config.getInstance().isProfilerEnabled();
+            if (!running) {
+                inst.addTransformer(classFileTransformer, true);
+            }
+            try {
+                methodsInterrupted = false;
+                retransformClasses(classes, true);
+            } finally {
+                if (!running) {
+                    inst.removeTransformer(classFileTransformer);
+                }
+            }
+        }
+    }
+
+    /**
+     * Collects the loaded classes in profiled packages as target classes.
+     */
+    private void collectTargetClasses() {
+        ClassFilter filter = Config.getInstance().getClassFilter();
+        targetClasses.clear();
+        for (Class<?> clazz : inst.getAllLoadedClasses()) {
+            String className = clazz.getName();
+            if (!className.startsWith("[")
+                    && filter.isProfiledPackage(className)) {
+                targetClasses.add(clazz);
+            }
+        }
+    }
+
+    /**
+     * Re-transforms the batch of classes at once. If failed, the classes are
+     * re-transformed one by one so that the failing class doesn't prevent
+     * the others from being re-transformed.
+     * 
+     * @param batch
+     *            The batch of classes
+     * @param methods
+     *            <tt>true</tt> if re-transforming the classes of particular
+     *            methods
+     */
+    private void retransformClasses(List<Class<?>> batch, boolean methods) {
+        if (batch.size() > 1) {
+            try {
+                inst.retransformClasses(batch.toArray(new Class<?>[batch
+                        .size()]));
+                for (Class<?> clazz : batch) {
+                    Agent.logInfo(Messages.RETRANSFORMED_CLASS, clazz);
+                }
+                return;
+            } catch (UnmodifiableClassException e) {
+                Agent.logInfo(Messages.RETRANSFORMING_CLASSES_ONE_BY_ONE,
+                        batch.size(), e);
+            } catch (InternalError e) {
+                Agent.logInfo(Messages.RETRANSFORMING_CLASSES_ONE_BY_ONE,
+                        batch.size(), e);
+            } catch (VerifyError e) {
+                Agent.logInfo(Messages.RETRANSFORMING_CLASSES_ONE_BY_ONE,
+                        batch.size(), e);
+            }
+        }
+
+        for (Class<?> clazz : batch) {
+            if (methods ? methodsInterrupted : interrupted) {
+                return;
+            }
+
             try {
                 inst.retransformClasses(clazz);
                 Agent.logInfo(Messages.RETRANSFORMED_CLASS, clazz);
@@ -264,9 +846,6 @@ public class CpuBciProfilerMXBeanImpl implements CpuBciProfilerMXBean {
                 // continue to transform the other classes
             }
         }
-
-        transformedClasses.clear();
-        transformedClasses.addAll(targetClasses);
     }
 
     /**
@@ -284,38 +863,4 @@ public class CpuBciProfilerMXBeanImpl implements CpuBciProfilerMXBean {
         classes.removeAll(transformedTargetClasses);
         return classes;
     }
-
-    /**
-     * Checks if the given class belongs to one of the packages list.
-     * 
-     * @param className
-     *            the class name (e.g. java.lang.String)
-     * @param packages
-     *            the list of packages
-     * @return true if the given class belongs to one of the packages list
-     */
-    private static boolean matches(String className, Set<String> packages) {
-        if (packages.isEmpty()) {
-            return false;
-        }
-
-        String packageName;
-        if (className.contains(".")) {
-            packageName = className.substring(0, className.lastIndexOf('.'));
-        } else {
-            packageName = Constants.DEFAULT_PACKAGE;
-        }
-        for (String pkg : packages) {
-            if (pkg.endsWith("*")) {
-                if (packageName.startsWith(pkg.substring(0, pkg.length() - 2))) {
-                    return true;
-                }
-            } else {
-                if (packageName.equals(pkg)) {
-                    return true;
-                }
-            }
-        }
-        return false;
-    }
 }
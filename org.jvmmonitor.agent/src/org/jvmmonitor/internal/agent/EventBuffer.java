@@ -0,0 +1,171 @@
+/*******************************************************************************
+ * Copyright (c) 2010 JVM Monitor project. All rights reserved.
+ *
+ * This code is distributed under the terms of the Eclipse Public License v1.0
+ * which is available at http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+package org.jvmmonitor.internal.agent;
+
+/**
+ * The ring buffer of events on a thread, which is preallocated so that the
+ * profiled thread only stores a few primitives per event.
+ * <p>
+ * An event consists of the type and ID packed into an integer, and two long
+ * values, which are the time and the thread CPU time, or the allocated bytes
+ * and the number of allocations for {@link #ALLOCATE}.
+ * <p>
+ * The profiled thread is the only producer, which appends events without
+ * locking. The events are consumed while holding the lock of buffer, either
+ * by the aggregator thread or by the profiled thread when the buffer is full.
+ */
+public class EventBuffer {
+
+    /** The event type of stepping into frame with method ID. */
+    static final int ENTER = 0;
+
+    /** The event type of stepping return from frame with method ID. */
+    static final int RETURN = 1;
+
+    /** The event type of dropping to frame with method ID. */
+    static final int DROP = 2;
+
+    /** The event type of allocation. */
+    static final int ALLOCATE = 3;
+
+    /** The number of bits of event type. */
+    private static final int TYPE_BITS = 2;
+
+    /** The mask of event type. */
+    private static final int TYPE_MASK = (1 << TYPE_BITS) - 1;
+
+    /** The packed types and IDs of events. */
+    private final int[] events;
+
+    /** The first values of events. */
+    private final long[] values;
+
+    /** The second values of events. */
+    private final long[] secondValues;
+
+    /** The mask of index, which is the capacity minus 1. */
+    private final int mask;
+
+    /** The number of events appended, written only by the profiled thread. */
+    private volatile long writeIndex;
+
+    /** The number of events consumed, written only while holding the lock. */
+    private volatile long readIndex;
+
+    /**
+     * The constructor.
+     * 
+     * @param size
+     *            The number of events, which is rounded up to a power of 2
+     */
+    protected EventBuffer(int size) {
+        int capacity = Integer.highestOneBit(Math.max(size, 2) - 1) << 1;
+        events = new int[capacity];
+        values = new long[capacity];
+        secondValues = new long[capacity];
+        mask = capacity - 1;
+    }
+
+    /**
+     * Appends the event. This is invoked only by the profiled thread.
+     * 
+     * @param type
+     *            The event type
+     * @param id
+     *            The method ID, or 0 if not applicable
+     * @param value
+     *            The first value
+     * @param secondValue
+     *            The second value
+     * @return <tt>false</tt> if the buffer is full
+     */
+    protected boolean append(int type, int id, long value, long secondValue) {
+        long index = writeIndex;
+        if (index - readIndex > mask) {
+            return false;
+        }
+        int i = (int) index & mask;
+        events[i] = id << TYPE_BITS | type;
+        values[i] = value;
+        secondValues[i] = secondValue;
+        writeIndex = index + 1;
+        return true;
+    }
+
+    /**
+     * Gets the number of events appended.
+     * 
+     * @return The number of events
+     */
+    protected long getWriteIndex() {
+        return writeIndex;
+    }
+
+    /**
+     * Gets the number of events consumed.
+     * 
+     * @return The number of events
+     */
+    protected long getReadIndex() {
+        return readIndex;
+    }
+
+    /**
+     * Sets the number of events consumed, which releases the events for
+     * reuse. This is invoked only while holding the lock of buffer.
+     * 
+     * @param index
+     *            The number of events
+     */
+    protected void setReadIndex(long index) {
+        readIndex = index;
+    }
+
+    /**
+     * Gets the type of the given event.
+     * 
+     * @param index
+     *            The index of event
+     * @return The event type
+     */
+    protected int getType(long index) {
+        return events[(int) index & mask] & TYPE_MASK;
+    }
+
+    /**
+     * Gets the ID of the given event.
+     * 
+     * @param index
+     *            The index of event
+     * @return The ID
+     */
+    protected int getId(long index) {
+        return events[(int) index & mask] >>> TYPE_BITS;
+    }
+
+    /**
+     * Gets the first value of the given event.
+     * 
+     * @param index
+     *            The index of event
+     * @return The value
+     */
+    protected long getValue(long index) {
+        return values[(int) index & mask];
+    }
+
+    /**
+     * Gets the second value of the given event.
+     * 
+     * @param index
+     *            The index of event
+     * @return The value
+     */
+    protected long getSecondValue(long index) {
+        return secondValues[(int) index & mask];
+    }
+}
@@ -0,0 +1,66 @@
+/*******************************************************************************
+ * Copyright (c) 2010 JVM Monitor project. All rights reserved.
+ *
+ * This code is distributed under the terms of the Eclipse Public License v1.0
+ * which is available at http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+package org.jvmmonitor.internal.agent;
+
+/**
+ * The background task that periodically drains the event buffers of all
+ * threads into the runtime model, so that the frames are updated off the
+ * profiled threads. The terminated threads are also merged here once enough
+ * threads have started, which is otherwise done only when dumping.
+ */
+public class EventBufferAggregator implements Runnable {
+
+    /** The thread name of aggregator. */
+    private static final String THREAD_NAME = "JVM Monitor Event Aggregator"; //$NON-NLS-1$
+
+    /** The state indicating if an error has been logged. */
+    private boolean errorLogged;
+
+    /**
+     * The constructor.
+     */
+    private EventBufferAggregator() {
+        // use start() instead
+    }
+
+    /**
+     * Starts the aggregator as daemon thread.
+     */
+    protected static void start() {
+        Thread thread = new Thread(new EventBufferAggregator(), THREAD_NAME);
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /*
+     * @see Runnable#run()
+     */
+    @Override
+    public void run() {
+        int interval = Config.getInstance().getEventBufferInterval();
+        while (true) {
+            try {
+                Thread.sleep(interval);
+            } catch (InterruptedException e) {
+                return;
+            }
+
+            try {
+                RuntimeModel model = CpuBciProfiler.getModel();
+                model.drainEventBuffers();
+                if (model.isMergeDue()) {
+                    model.mergeTerminatedThreads();
+                }
+            } catch (Throwable t) {
+                if (!errorLogged) {
+                    errorLogged = true;
+                    Agent.logError(t, Messages.CANNOT_DRAIN_EVENT_BUFFERS);
+                }
+            }
+        }
+    }
+}
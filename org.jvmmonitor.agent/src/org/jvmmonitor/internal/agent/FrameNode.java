@@ -7,147 +7,509 @@
 package org.jvmmonitor.internal.agent;
 
 import java.io.PrintWriter;
-import java.util.Map;
-import java.util.concurrent.ConcurrentHashMap;
+import java.util.Arrays;
 
 import org.jvmmonitor.internal.agent.asm.Type;
 
 /**
  * The frame node of runtime model.
+ * <p>
+ * Since most frames have only a few children, the children are kept in a
+ * small array searched linearly, and indexed by an open addressing table only
+ * once the frame gets wide. The frame name is resolved from the method ID
+ * only when dumping.
+ * <p>
+ * The thread CPU time is accumulated separately from the elapsed time if
+ * enabled, and the rest of elapsed time is regarded as the time waiting for
+ * e.g. I/O or locks.
+ * <p>
+ * The latency histogram is kept only for the methods selected by
+ * configuration, and records every invocation including the recursive ones.
+ * The invocation time is recorded excluding the overhead of the invocation
+ * and its descendants, which is tracked on the thread node.
  */
 @SuppressWarnings("nls")
 public class FrameNode {
 
-    /** The class name. */
-    private String className;
+    /** The empty child frame nodes. */
+    private static final FrameNode[] NO_CHILDREN = new FrameNode[0];
 
-    /** The method name. */
-    private String methodName;
+    /** The number of children at which the children are indexed by table. */
+    private static final int CHILD_TABLE_THRESHOLD = 8;
 
-    /** The child frame nodes. */
-    private Map<String, FrameNode> childFrames;
+    /** The method ID. */
+    private final int methodId;
 
-    /** The parent frame node. */
-    private FrameNode parentFrame;
+    /**
+     * The child frame nodes in the order added. The elements up to
+     * {@link #childCount} are never changed, and the array is replaced with a
+     * larger copy when full, so that they can be iterated while profiling.
+     */
+    private FrameNode[] childFrames;
 
-    /** The time stepped into this frame. */
-    private long stepIntoTime;
+    /**
+     * The number of child frame nodes, which is written after adding a child
+     * so that the child is visible to the dumping thread.
+     */
+    private volatile int childCount;
 
-    /** The total invocation time. */
-    private long totalTime;
+    /**
+     * The open addressing table of child frame nodes with linear probing, or
+     * <tt>null</tt> if the children are few. This is accessed only by the
+     * profiled thread.
+     */
+    private FrameNode[] childTable;
+
+    /**
+     * The number of invocations of this frame on the frame stack, which can
+     * be more than 1 when recursive frames are folded into this frame.
+     */
+    private int activeCount;
+
+    /** The invocation count in bank 0, written by the profiled thread. */
+    private int count0;
+
+    /** The invocation count in bank 1, written by the profiled thread. */
+    private int count1;
+
+    /** The total invocation time in bank 0, written by the profiled thread. */
+    private long totalTime0;
+
+    /** The total invocation time in bank 1, written by the profiled thread. */
+    private long totalTime1;
 
-    /** The overhead time. */
-    private long overheadTime;
+    /** The total CPU time in bank 0, written by the profiled thread. */
+    private long cpuTime0;
 
-    /** The invocation count. */
+    /** The total CPU time in bank 1, written by the profiled thread. */
+    private long cpuTime1;
+
+    /** The overhead time in bank 0, written by the profiled thread. */
+    private long overheadTime0;
+
+    /** The overhead time in bank 1, written by the profiled thread. */
+    private long overheadTime1;
+
+    /** The invocation count folded into snapshot. */
     private int count;
 
+    /** The total invocation time folded into snapshot. */
+    private long totalTime;
+
+    /** The total CPU time folded into snapshot. */
+    private long cpuTime;
+
+    /**
+     * The time of the invocation in progress when taking snapshot, or 0 if
+     * this frame is not being invoked.
+     */
+    private long inProgressTime;
+
+    /**
+     * The CPU time of the invocation in progress when taking snapshot, or 0
+     * if this frame is not being invoked.
+     */
+    private long inProgressCpuTime;
+
+    /**
+     * The overhead time of this frame and its descendants folded into
+     * snapshot.
+     */
+    private long subtreeOverheadTime;
+
+    /**
+     * The generation of snapshot in which this frame has been modified last
+     * time. Since the time of frame includes the time of its descendants,
+     * the generation of frame is never older than its descendants.
+     */
+    private long modifiedGeneration;
+
+    /**
+     * The allocations in this frame, which is created when the first
+     * allocation is recorded so that the frames not allocating objects stay
+     * small.
+     */
+    private volatile Allocations allocations;
+
+    /**
+     * The latency histogram of invocations, or <tt>null</tt> if the latency
+     * of this method is not recorded.
+     */
+    private LatencyHistogram latency;
+
     /**
      * The constructor.
      * 
-     * @param parent
-     *            The parent frame node
-     * @param clazz
-     *            The class name
-     * @param method
-     *            The method name
-     */
-    protected FrameNode(FrameNode parent, String clazz, String method) {
-        parentFrame = parent;
-        className = clazz;
-        methodName = method;
-        childFrames = new ConcurrentHashMap<String, FrameNode>();
-        stepIntoTime = 0;
-        totalTime = 0;
-        overheadTime = 0;
-        count = 0;
+     * @param methodId
+     *            The method ID
+     */
+    protected FrameNode(int methodId) {
+        this.methodId = methodId;
+        childFrames = NO_CHILDREN;
     }
 
     /**
-     * Gets the child frame for the given class name and method name.
+     * Finds the child frame for the given method ID. This is invoked only by
+     * the profiled thread.
      * 
-     * @param clazz
-     *            The class name
-     * @param method
-     *            The method name
-     * @return The child frame
-     */
-    protected FrameNode getChild(String clazz, String method) {
-        FrameNode frame = childFrames.get(clazz + '.' + method);
-        if (frame == null) {
-            frame = new FrameNode(this, clazz, method);
-            childFrames.put(clazz + '.' + method, frame);
-        }
-        return frame;
+     * @param id
+     *            The method ID
+     * @return The child frame, or <tt>null</tt> if not found
+     */
+    protected FrameNode findChild(int id) {
+        FrameNode[] table = childTable;
+        if (table == null) {
+            FrameNode[] frames = childFrames;
+            for (int i = 0; i < frames.length; i++) {
+                FrameNode frame = frames[i];
+                if (frame == null) {
+                    break;
+                }
+                if (frame.methodId == id) {
+                    return frame;
+                }
+            }
+            return null;
+        }
+
+        int mask = table.length - 1;
+        for (int i = hash(id) & mask;; i = (i + 1) & mask) {
+            FrameNode frame = table[i];
+            if (frame == null || frame.methodId == id) {
+                return frame;
+            }
+        }
     }
 
     /**
-     * Sets the step into time.
+     * Adds the child frame. This is invoked only by the profiled thread.
      * 
-     * @param time
-     *            The time stepping into this frame
+     * @param frame
+     *            The child frame
+     */
+    protected void addChild(FrameNode frame) {
+        int n = childCount;
+        if (n == childFrames.length) {
+            childFrames = Arrays.copyOf(childFrames, n < 4 ? n + 1 : n
+                    + (n >> 1));
+        }
+        childFrames[n] = frame;
+        childCount = n + 1;
+
+        if (childTable != null) {
+            if ((n + 1) * 2 > childTable.length) {
+                rebuildChildTable(childTable.length * 2);
+            } else {
+                putChild(childTable, frame);
+            }
+        } else if (n + 1 == CHILD_TABLE_THRESHOLD) {
+            rebuildChildTable(CHILD_TABLE_THRESHOLD * 4);
+        }
+    }
+
+    /**
+     * Gets the method ID.
+     * 
+     * @return The method ID
+     */
+    protected int getMethodId() {
+        return methodId;
+    }
+
+    /**
+     * Enables the latency histogram of this frame. This is invoked before
+     * the frame is added to its parent.
+     */
+    protected void enableLatency() {
+        latency = new LatencyHistogram();
+    }
+
+    /**
+     * Steps into this frame.
+     * 
+     * @param bank
+     *            The bank of counters to be updated
      * @param overhead
      *            The overhead time
      */
-    protected void setStepIntoTime(long time, long overhead) {
-        stepIntoTime = time;
-        overheadTime += overhead;
-        count++;
+    protected void stepInto(int bank, long overhead) {
+        activeCount++;
+        if (bank == 0) {
+            count0++;
+            overheadTime0 += overhead;
+        } else {
+            count1++;
+            overheadTime1 += overhead;
+        }
     }
 
     /**
-     * Sets the step return time.
+     * Steps return from this frame. The invocation time is ignored unless
+     * this is the outermost invocation on the frame stack, since it is
+     * included in the time of outer invocation.
      * 
+     * @param bank
+     *            The bank of counters to be updated
      * @param time
-     *            The time stepping return from this frame
+     *            The invocation time
+     * @param cpu
+     *            The CPU time of invocation
      * @param overhead
      *            The overhead time
      */
-    protected void setStepReturnTime(long time, long overhead) {
-        totalTime += time - stepIntoTime;
-        overheadTime += overhead;
-        stepIntoTime = 0;
+    protected void stepReturn(int bank, long time, long cpu, long overhead) {
+        if (--activeCount > 0) {
+            time = 0;
+            cpu = 0;
+        }
+        if (bank == 0) {
+            totalTime0 += time;
+            cpuTime0 += cpu;
+            overheadTime0 += overhead;
+        } else {
+            totalTime1 += time;
+            cpuTime1 += cpu;
+            overheadTime1 += overhead;
+        }
+    }
+
+    /**
+     * Records the invocation time into the latency histogram, if the latency
+     * of this method is recorded.
+     * 
+     * @param time
+     *            The invocation time excluding the overhead
+     */
+    protected void recordLatency(long time) {
+        LatencyHistogram frameLatency = latency;
+        if (frameLatency != null) {
+            frameLatency.record(Math.max(time, 0));
+        }
+    }
+
+    /**
+     * Adds the time of stack sample in which this frame is on the stack.
+     * 
+     * @param bank
+     *            The bank of counters to be updated
+     * @param time
+     *            The sampling period
+     * @param newInvocation
+     *            <tt>true</tt> if the frame is regarded as a new invocation
+     */
+    protected void addSample(int bank, long time, boolean newInvocation) {
+        int increment = newInvocation ? 1 : 0;
+        if (bank == 0) {
+            count0 += increment;
+            totalTime0 += time;
+        } else {
+            count1 += increment;
+            totalTime1 += time;
+        }
     }
 
     /**
      * Increments the overhead.
      * 
+     * @param bank
+     *            The bank of counters to be updated
      * @param overhead
      *            The overhead time
      */
-    protected void incrementOverhead(long overhead) {
-        overheadTime += overhead;
+    protected void incrementOverhead(int bank, long overhead) {
+        if (bank == 0) {
+            overheadTime0 += overhead;
+        } else {
+            overheadTime1 += overhead;
+        }
     }
 
     /**
-     * Gets the parent frame.
+     * Records the allocations.
      * 
-     * @return The parent frame, or <tt>null</tt> if this is root frame node
+     * @param bank
+     *            The bank of counters to be updated
+     * @param allocationCount
+     *            The number of allocations
+     * @param allocatedBytes
+     *            The allocated bytes
      */
-    protected FrameNode getParent() {
-        return parentFrame;
+    protected void allocate(int bank, long allocationCount, long allocatedBytes) {
+        Allocations frameAllocations = allocations;
+        if (frameAllocations == null) {
+            frameAllocations = new Allocations();
+            allocations = frameAllocations;
+        }
+        if (bank == 0) {
+            frameAllocations.count0 += allocationCount;
+            frameAllocations.bytes0 += allocatedBytes;
+        } else {
+            frameAllocations.count1 += allocationCount;
+            frameAllocations.bytes1 += allocatedBytes;
+        }
     }
 
     /**
-     * Searches the frame.
+     * Folds the given bank of counters of this frame and its descendants into
+     * snapshot, and resets the bank so that it can be reused. This must be
+     * invoked only when the profiled thread no longer updates the bank.
+     * <p>
+     * The overhead of descendants is accumulated into this frame, since it is
+     * included in the total time of this frame. This frame is regarded as
+     * modified if any of its descendants has been modified.
      * 
-     * @param clazz
-     *            The class name
-     * @param method
-     *            The method name
-     * @return The frame
+     * @param bank
+     *            The bank of counters to be folded
+     * @param generation
+     *            The generation of snapshot
+     * @return The overhead time folded into this frame and its descendants
      */
-    protected FrameNode searchFrame(String clazz, String method) {
+    protected long fold(int bank, long generation) {
+        boolean modified = inProgressTime != 0;
+        long overhead;
+        if (bank == 0) {
+            modified |= count0 != 0 || totalTime0 != 0 || overheadTime0 != 0;
+            count += count0;
+            totalTime += totalTime0;
+            cpuTime += cpuTime0;
+            overhead = overheadTime0;
+            count0 = 0;
+            totalTime0 = 0;
+            cpuTime0 = 0;
+            overheadTime0 = 0;
+        } else {
+            modified |= count1 != 0 || totalTime1 != 0 || overheadTime1 != 0;
+            count += count1;
+            totalTime += totalTime1;
+            cpuTime += cpuTime1;
+            overhead = overheadTime1;
+            count1 = 0;
+            totalTime1 = 0;
+            cpuTime1 = 0;
+            overheadTime1 = 0;
+        }
+        inProgressTime = 0;
+        inProgressCpuTime = 0;
+        Allocations frameAllocations = allocations;
+        if (frameAllocations != null) {
+            modified |= frameAllocations.fold(bank);
+        }
+
+        int n = childCount;
+        FrameNode[] frames = childFrames;
+        for (int i = 0; i < n; i++) {
+            FrameNode frameNode = frames[i];
+            overhead += frameNode.fold(bank, generation);
+            if (frameNode.modifiedGeneration == generation) {
+                modified = true;
+            }
+        }
+        subtreeOverheadTime += overhead;
+        if (modified) {
+            modifiedGeneration = generation;
+        }
+        return overhead;
+    }
 
-        if (className.equals(clazz) && methodName.equals(method)) {
-            return this;
+    /**
+     * Merges the snapshot of the given frame and its descendants into this
+     * frame. The invocation in progress is regarded as completed, since the
+     * given frame belongs to terminated thread.
+     * 
+     * @param source
+     *            The frame to merge
+     * @param generation
+     *            The generation of snapshot
+     * @return The number of frame nodes created
+     */
+    protected int merge(FrameNode source, long generation) {
+        count += source.count;
+        totalTime += source.totalTime + source.inProgressTime;
+        cpuTime += source.cpuTime + source.inProgressCpuTime;
+        subtreeOverheadTime += source.subtreeOverheadTime;
+        modifiedGeneration = generation;
+        if (source.allocations != null) {
+            if (allocations == null) {
+                allocations = new Allocations();
+            }
+            allocations.count += source.allocations.count;
+            allocations.bytes += source.allocations.bytes;
+        }
+        if (source.latency != null) {
+            if (latency == null) {
+                latency = new LatencyHistogram();
+            }
+            latency.merge(source.latency);
         }
 
-        if (parentFrame == null) {
-            return this;
+        int created = 0;
+        int n = source.childCount;
+        FrameNode[] frames = source.childFrames;
+        for (int i = 0; i < n; i++) {
+            FrameNode child = findChild(frames[i].methodId);
+            if (child == null) {
+                child = new FrameNode(frames[i].methodId);
+                addChild(child);
+                created++;
+            }
+            created += child.merge(frames[i], generation);
         }
+        return created;
+    }
+
+    /**
+     * Sets the time of the invocation in progress when taking snapshot.
+     * 
+     * @param time
+     *            The time of the invocation in progress
+     * @param cpu
+     *            The CPU time of the invocation in progress
+     * @param generation
+     *            The generation of snapshot
+     */
+    protected void setInProgressTime(long time, long cpu, long generation) {
+        inProgressTime = time;
+        inProgressCpuTime = cpu;
+        modifiedGeneration = generation;
+    }
 
-        return parentFrame.searchFrame(clazz, method);
+    /**
+     * Gets the state indicating if this frame has been modified after the
+     * given generation.
+     * 
+     * @param generation
+     *            The generation of snapshot
+     * @return <tt>true</tt> if this frame has been modified
+     */
+    protected boolean isModifiedSince(long generation) {
+        return modifiedGeneration > generation;
+    }
+
+    /**
+     * Accumulates the invocation count and the self time of this frame and
+     * its descendants into the given arrays indexed by method ID. The
+     * snapshot has to be taken in advance.
+     * 
+     * @param counts
+     *            The invocation counts
+     * @param selfTimes
+     *            The self times in nanoseconds excluding the overhead
+     * @return The total time of this frame excluding the overhead
+     */
+    protected long accumulate(long[] counts, long[] selfTimes) {
+        long actualTotalTime = Math.max(totalTime - subtreeOverheadTime
+                + inProgressTime, 0);
+        long childTime = 0;
+        int n = childCount;
+        FrameNode[] frames = childFrames;
+        for (int i = 0; i < n; i++) {
+            childTime += frames[i].accumulate(counts, selfTimes);
+        }
+        if (methodId < counts.length) {
+            counts[methodId] += count;
+            selfTimes[methodId] += Math.max(actualTotalTime - childTime, 0);
+        }
+        return actualTotalTime;
     }
 
     /**
@@ -155,27 +517,40 @@ public class FrameNode {
      * 
      * @param writer
      *            The writer
-     * @param time
-     *            The time
      * @param nest
      *            The nest
      */
-    protected void dump(PrintWriter writer, long time, int nest) {
-        String name = getFrameName();
-        long actualTotalTime = totalTime - overheadTime;
-        if (stepIntoTime != 0) {
-            actualTotalTime += time - stepIntoTime;
-        }
+    protected void dump(PrintWriter writer, int nest) {
+        String name = getEscapedFrameName();
+        long actualTotalTime = totalTime - subtreeOverheadTime
+                + inProgressTime;
 
         for (int i = 0; i < nest; i++) {
             writer.print("\t");
         }
-        writer.printf("<frame name=\"%s\" cnt=\"%d\" time=\"%d\"", name, count,
-                Math.max(actualTotalTime, 0));
-        if (childFrames.size() > 0) {
+        writer.printf("<frame name=\"%s\" cnt=\"%d\" time=\"%s\"", name, count,
+                formatTime(Math.max(actualTotalTime, 0)));
+        if (CpuBciProfiler.isCpuTimeEnabled()) {
+            writer.printf(" cpu=\"%s\"",
+                    formatTime(getActualCpuTime(actualTotalTime)));
+        }
+        Allocations frameAllocations = allocations;
+        if (frameAllocations != null && frameAllocations.count > 0) {
+            writer.printf(" alloc=\"%d\" allocSize=\"%d\"",
+                    frameAllocations.count, frameAllocations.bytes);
+        }
+        LatencyHistogram frameLatency = latency;
+        if (frameLatency != null && !frameLatency.isEmpty()) {
+            writer.printf(" lat=\"%s\" latMax=\"%s\"",
+                    frameLatency.getCounts(),
+                    formatTime(frameLatency.getMaxValue()));
+        }
+        int n = childCount;
+        FrameNode[] frames = childFrames;
+        if (n > 0) {
             writer.println(">");
-            for (FrameNode frameNode : childFrames.values()) {
-                frameNode.dump(writer, time, nest + 1);
+            for (int i = 0; i < n; i++) {
+                frames[i].dump(writer, nest + 1);
             }
             for (int i = 0; i < nest; i++) {
                 writer.print("\t");
@@ -191,28 +566,44 @@ public class FrameNode {
      * 
      * @param buffer
      *            The string buffer
-     * @param time
-     *            The time
      * @param nest
      *            The nest count
      */
-    protected void dump(StringBuffer buffer, long time, int nest) {
-        String name = getFrameName();
-        long actualTotalTime = totalTime - overheadTime;
-        if (stepIntoTime != 0) {
-            actualTotalTime += time - stepIntoTime;
-        }
+    protected void dump(StringBuffer buffer, int nest) {
+        String name = getEscapedFrameName();
+        long actualTotalTime = totalTime - subtreeOverheadTime
+                + inProgressTime;
 
         for (int i = 0; i < nest; i++) {
             buffer.append('\t');
         }
         buffer.append("<frame name=\"").append(name).append("\" cnt=\"")
                 .append(count).append("\" time=\"")
-                .append(Math.max(actualTotalTime, 0)).append("\"");
-        if (childFrames.size() > 0) {
+                .append(formatTime(Math.max(actualTotalTime, 0))).append("\"");
+        if (CpuBciProfiler.isCpuTimeEnabled()) {
+            buffer.append(" cpu=\"")
+                    .append(formatTime(getActualCpuTime(actualTotalTime)))
+                    .append("\"");
+        }
+        Allocations frameAllocations = allocations;
+        if (frameAllocations != null && frameAllocations.count > 0) {
+            buffer.append(" alloc=\"").append(frameAllocations.count)
+                    .append("\" allocSize=\"").append(frameAllocations.bytes)
+                    .append("\"");
+        }
+        LatencyHistogram frameLatency = latency;
+        if (frameLatency != null && !frameLatency.isEmpty()) {
+            buffer.append(" lat=\"").append(frameLatency.getCounts())
+                    .append("\" latMax=\"")
+                    .append(formatTime(frameLatency.getMaxValue()))
+                    .append("\"");
+        }
+        int n = childCount;
+        FrameNode[] frames = childFrames;
+        if (n > 0) {
             buffer.append(">\n");
-            for (FrameNode frameNode : childFrames.values()) {
-                frameNode.dump(buffer, time, nest + 1);
+            for (int i = 0; i < n; i++) {
+                frames[i].dump(buffer, nest + 1);
             }
             for (int i = 0; i < nest; i++) {
                 buffer.append('\t');
@@ -223,13 +614,141 @@ public class FrameNode {
         }
     }
 
+    /**
+     * Dumps the profile data in binary format. Only the descendants modified
+     * after the given generation are dumped.
+     * 
+     * @param writer
+     *            The binary dump writer
+     * @param generation
+     *            The generation of snapshot
+     */
+    protected void dump(BinaryDumpWriter writer, long generation) {
+        long actualTotalTime = totalTime - subtreeOverheadTime
+                + inProgressTime;
+
+        if (!writer.writeNameIndex(methodId)) {
+            writer.writeString(getFrameName());
+        }
+        writer.writeVarLong(count);
+        writer.writeVarLong(Math.max(actualTotalTime, 0));
+        if (writer.hasCpuTime()) {
+            writer.writeVarLong(getActualCpuTime(actualTotalTime));
+        }
+        if (writer.hasAllocations()) {
+            Allocations frameAllocations = allocations;
+            writer.writeVarLong(frameAllocations == null ? 0
+                    : frameAllocations.count);
+            writer.writeVarLong(frameAllocations == null ? 0
+                    : frameAllocations.bytes);
+        }
+        if (writer.hasLatency()) {
+            LatencyHistogram frameLatency = latency;
+            if (frameLatency == null) {
+                writer.writeVarLong(0);
+            } else {
+                frameLatency.write(writer);
+            }
+        }
+
+        int n = childCount;
+        FrameNode[] frames = childFrames;
+        int modifiedCount = 0;
+        for (int i = 0; i < n; i++) {
+            if (frames[i].isModifiedSince(generation)) {
+                modifiedCount++;
+            }
+        }
+        writer.writeVarLong(modifiedCount);
+        for (int i = 0; i < n; i++) {
+            if (frames[i].isModifiedSince(generation)) {
+                frames[i].dump(writer, generation);
+            }
+        }
+    }
+
+    /**
+     * Gets the CPU time of this frame excluding the overhead, which is
+     * regarded as consumed on CPU. The CPU time never exceeds the elapsed time
+     * though their resolutions may differ.
+     * 
+     * @param actualTotalTime
+     *            The elapsed time excluding the overhead
+     * @return The CPU time
+     */
+    private long getActualCpuTime(long actualTotalTime) {
+        long actualCpuTime = cpuTime - subtreeOverheadTime + inProgressCpuTime;
+        return Math.max(Math.min(actualCpuTime, actualTotalTime), 0);
+    }
+
+    /**
+     * Formats the time in nanoseconds into milliseconds. The fraction is
+     * omitted if the time is a whole number of milliseconds, so that the dump
+     * file stays compatible with millisecond resolution.
+     * 
+     * @param time
+     *            The time in nanoseconds
+     * @return The time in milliseconds
+     */
+    protected static String formatTime(long time) {
+        long millis = time / 1000000;
+        long nanos = time % 1000000;
+        if (nanos == 0) {
+            return String.valueOf(millis);
+        }
+
+        // e.g. 1000120 -> "000120" -> "00012"
+        String fraction = String.valueOf(nanos + 1000000).substring(1);
+        int length = fraction.length();
+        while (fraction.charAt(length - 1) == '0') {
+            length--;
+        }
+        return millis + "." + fraction.substring(0, length);
+    }
+
     /**
      * Gets the frame name.
      * 
      * @return The frame name
      */
     private String getFrameName() {
+        return getFrameName(methodId);
+    }
+
+    /**
+     * Gets the frame name of the given method.
+     * 
+     * @param methodId
+     *            The method ID
+     * @return The frame name
+     */
+    protected static String getFrameName(int methodId) {
+        if (methodId == MethodRegistry.OTHER_METHOD_ID) {
+            return Constants.OTHER_FRAME_NAME;
+        }
+
+        String className = MethodRegistry.getClassName(methodId);
+        String methodName = MethodRegistry.getMethodName(methodId);
+
+        // the sampled method is reported with empty parameter list
+        if (!MethodRegistry.isInstrumented(methodId)) {
+            return className.replace('/', '.') + '.' + methodName + "()";
+        }
+        return getFrameName(className, methodName);
+    }
 
+    /**
+     * Gets the frame name of the given instrumented method, which doesn't
+     * have to be registered.
+     * 
+     * @param className
+     *            The class name (e.g. java/lang/String)
+     * @param methodName
+     *            The method name with parameter descriptor (e.g.
+     *            substring(II))
+     * @return The frame name
+     */
+    protected static String getFrameName(String className, String methodName) {
         // replace '/' with '.'
         String clazz = className.replace('/', '.');
 
@@ -246,11 +765,117 @@ public class FrameNode {
                     .getClassName());
         }
         builder.append(')');
-        String method = builder.toString();
+        return clazz + '.' + builder.toString();
+    }
 
-        // convert into escaped characters
-        method = method.replaceAll("<", "&lt;").replaceAll(">", "&gt;");
+    /**
+     * Rebuilds the open addressing table of child frame nodes.
+     * 
+     * @param capacity
+     *            The capacity of table, which is a power of 2
+     */
+    private void rebuildChildTable(int capacity) {
+        FrameNode[] table = new FrameNode[capacity];
+        int n = childCount;
+        for (int i = 0; i < n; i++) {
+            putChild(table, childFrames[i]);
+        }
+        childTable = table;
+    }
 
-        return clazz + '.' + method;
+    /**
+     * Puts the child frame node into the open addressing table.
+     * 
+     * @param table
+     *            The table
+     * @param frame
+     *            The child frame node
+     */
+    private static void putChild(FrameNode[] table, FrameNode frame) {
+        int mask = table.length - 1;
+        int i = hash(frame.methodId) & mask;
+        while (table[i] != null) {
+            i = (i + 1) & mask;
+        }
+        table[i] = frame;
+    }
+
+    /**
+     * Gets the hash of method ID, which spreads the sequential method IDs.
+     * 
+     * @param id
+     *            The method ID
+     * @return The hash
+     */
+    private static int hash(int id) {
+        int h = id * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+
+    /**
+     * Gets the frame name escaped for XML.
+     * 
+     * @return The escaped frame name
+     */
+    private String getEscapedFrameName() {
+        return getFrameName().replaceAll("<", "&lt;").replaceAll(">", "&gt;");
+    }
+
+    /**
+     * The allocations in frame, whose banks are updated by the profiled thread
+     * and folded into snapshot like the other counters of frame.
+     */
+    private static class Allocations {
+
+        /** The number of allocations in bank 0. */
+        long count0;
+
+        /** The number of allocations in bank 1. */
+        long count1;
+
+        /** The allocated bytes in bank 0. */
+        long bytes0;
+
+        /** The allocated bytes in bank 1. */
+        long bytes1;
+
+        /** The number of allocations folded into snapshot. */
+        long count;
+
+        /** The allocated bytes folded into snapshot. */
+        long bytes;
+
+        /**
+         * The constructor.
+         */
+        Allocations() {
+            // do nothing
+        }
+
+        /**
+         * Folds the given bank into snapshot and resets the bank.
+         * 
+         * @param bank
+         *            The bank of counters to be folded
+         * @return <tt>true</tt> if any allocation has been recorded in the
+         *         bank
+         */
+        boolean fold(int bank) {
+            long foldedCount;
+            if (bank == 0) {
+                foldedCount = count0;
+                count += count0;
+                bytes += bytes0;
+                count0 = 0;
+                bytes0 = 0;
+            } else {
+                foldedCount = count1;
+                count += count1;
+                bytes += bytes1;
+                count1 = 0;
+                bytes1 = 0;
+            }
+            return foldedCount != 0;
+        }
     }
 }
@@ -0,0 +1,191 @@
+/*******************************************************************************
+ * Copyright (c) 2010 JVM Monitor project. All rights reserved.
+ *
+ * This code is distributed under the terms of the Eclipse Public License v1.0
+ * which is available at http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+package org.jvmmonitor.internal.agent;
+
+import java.lang.ref.WeakReference;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.zip.CRC32;
+
+/**
+ * The cache of instrumented byte-codes, so that re-transforming classes when
+ * enabling profiler again doesn't have to instrument them again.
+ * <p>
+ * The instrumented byte-codes are keyed by the class loader, the class name,
+ * the digest of original byte-codes and the version of instrumentation
+ * configuration. The total size of cached byte-codes is capped, and the
+ * least recently used ones are evicted first.
+ */
+public class InstrumentedClassCache {
+
+    /** The instrumented byte-codes in access order. */
+    private final LinkedHashMap<Key, byte[]> entries;
+
+    /** The maximum total size of cached byte-codes. */
+    private final long capacity;
+
+    /** The total size of cached byte-codes. */
+    private long size;
+
+    /** The number of cache hits. */
+    private long hitCount;
+
+    /** The number of cache misses. */
+    private long missCount;
+
+    /**
+     * The constructor.
+     *
+     * @param capacity
+     *            The maximum total size of cached byte-codes, or 0 to disable
+     *            cache
+     */
+    protected InstrumentedClassCache(long capacity) {
+        this.capacity = capacity;
+        entries = new LinkedHashMap<Key, byte[]>(16, 0.75f, true);
+    }
+
+    /**
+     * Gets the instrumented byte-codes.
+     *
+     * @param key
+     *            The key
+     * @return The instrumented byte-codes, or <tt>null</tt> if not cached
+     */
+    protected synchronized byte[] get(Key key) {
+        byte[] bytes = entries.get(key);
+        if (bytes == null) {
+            missCount++;
+        } else {
+            hitCount++;
+        }
+        return bytes;
+    }
+
+    /**
+     * Puts the instrumented byte-codes, evicting the least recently used ones
+     * if exceeding the capacity.
+     *
+     * @param key
+     *            The key
+     * @param bytes
+     *            The instrumented byte-codes
+     */
+    protected synchronized void put(Key key, byte[] bytes) {
+        if (bytes.length > capacity) {
+            return;
+        }
+
+        byte[] previous = entries.put(key, bytes);
+        if (previous != null) {
+            size -= previous.length;
+        }
+        size += bytes.length;
+
+        Iterator<byte[]> iterator = entries.values().iterator();
+        while (size > capacity) {
+            size -= iterator.next().length;
+            iterator.remove();
+        }
+    }
+
+    /**
+     * Gets the status of cache.
+     *
+     * @return The status of cache
+     */
+    protected synchronized ClassCacheStatusCompositeData getStatus() {
+        return new ClassCacheStatusCompositeData(hitCount, missCount,
+                entries.size(), size);
+    }
+
+    /**
+     * The key of instrumented byte-codes.
+     */
+    protected static class Key {
+
+        /** The class loader, or <tt>null</tt> for bootstrap class loader. */
+        private final WeakReference<ClassLoader> loader;
+
+        /** The identity hash code of class loader. */
+        private final int loaderHash;
+
+        /** The class name. */
+        private final String className;
+
+        /** The length of original byte-codes. */
+        private final int length;
+
+        /** The digest of original byte-codes. */
+        private final long digest;
+
+        /** The version of instrumentation configuration. */
+        private final int version;
+
+        /**
+         * The constructor.
+         *
+         * @param loader
+         *            The class loader
+         * @param className
+         *            The class name (e.g. java/lang/String)
+         * @param classfileBuffer
+         *            The original byte-codes
+         * @param version
+         *            The version of instrumentation configuration
+         */
+        protected Key(ClassLoader loader, String className,
+                byte[] classfileBuffer, int version) {
+            this.loader = loader == null ? null
+                    : new WeakReference<ClassLoader>(loader);
+            loaderHash = System.identityHashCode(loader);
+            this.className = className;
+            length = classfileBuffer.length;
+            CRC32 crc = new CRC32();
+            crc.update(classfileBuffer, 0, classfileBuffer.length);
+            digest = crc.getValue() << 32
+                    | Arrays.hashCode(classfileBuffer) & 0xFFFFFFFFL;
+            this.version = version;
+        }
+
+        /*
+         * @see Object#hashCode()
+         */
+        @Override
+        public int hashCode() {
+            return (className.hashCode() * 31 + loaderHash) * 31
+                    + (int) (digest ^ digest >>> 32);
+        }
+
+        /*
+         * @see Object#equals(Object)
+         */
+        @Override
+        public boolean equals(Object object) {
+            if (!(object instanceof Key)) {
+                return false;
+            }
+
+            Key key = (Key) object;
+            return className.equals(key.className) && length == key.length
+                    && digest == key.digest && version == key.version
+                    && getLoader() == key.getLoader()
+                    && (loader == null) == (key.loader == null);
+        }
+
+        /**
+         * Gets the class loader.
+         *
+         * @return The class loader, or <tt>null</tt> if bootstrap class loader
+         *         or already collected
+         */
+        private ClassLoader getLoader() {
+            return loader == null ? null : loader.get();
+        }
+    }
+}
@@ -0,0 +1,201 @@
+/*******************************************************************************
+ * Copyright (c) 2010 JVM Monitor project. All rights reserved.
+ *
+ * This code is distributed under the terms of the Eclipse Public License v1.0
+ * which is available at http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+package org.jvmmonitor.internal.agent;
+
+import java.util.Arrays;
+
+/**
+ * The histogram of invocation time with log-linear buckets, which has a fixed
+ * relative error like HdrHistogram.
+ * <p>
+ * The times below {@link #SUB_BUCKET_COUNT} nanoseconds have a bucket each,
+ * and every power of 2 above is divided into {@link #SUB_BUCKET_COUNT} linear
+ * buckets, so that the bucket width never exceeds 1/8 of its lower bound. The
+ * times beyond about 73 minutes fall into the last bucket. The counts are
+ * kept in a primitive array, which is extended only up to the highest bucket
+ * recorded so that the histograms of short methods stay small.
+ * <p>
+ * The histogram is recorded only by the profiled thread. The counts are read
+ * by the dumping thread without locking, since each of them only increases
+ * and the dump can be at most a few invocations behind.
+ */
+public class LatencyHistogram {
+
+    /** The number of bits of linear buckets in a power of 2. */
+    private static final int SUB_BUCKET_BITS = 3;
+
+    /** The number of linear buckets in a power of 2. */
+    private static final int SUB_BUCKET_COUNT = 1 << SUB_BUCKET_BITS;
+
+    /** The largest power of 2 of the recorded time. */
+    private static final int MAX_EXPONENT = 41;
+
+    /** The largest recorded time in nanoseconds. */
+    private static final long MAX_VALUE = (1L << (MAX_EXPONENT + 1)) - 1;
+
+    /** The number of buckets. */
+    static final int BUCKET_COUNT = (MAX_EXPONENT - SUB_BUCKET_BITS + 2)
+            * SUB_BUCKET_COUNT;
+
+    /** The initial number of buckets. */
+    private static final int INITIAL_BUCKET_COUNT = 16 * SUB_BUCKET_COUNT;
+
+    /** The counts indexed by bucket. */
+    private int[] counts;
+
+    /** The maximum recorded time in nanoseconds. */
+    private long maxValue;
+
+    /**
+     * The constructor.
+     */
+    protected LatencyHistogram() {
+        counts = new int[INITIAL_BUCKET_COUNT];
+    }
+
+    /**
+     * Records the invocation time. This is invoked only by the profiled
+     * thread.
+     *
+     * @param time
+     *            The invocation time in nanoseconds
+     */
+    protected void record(long time) {
+        int index = getBucketIndex(time);
+        int[] bucketCounts = counts;
+        if (index >= bucketCounts.length) {
+            bucketCounts = Arrays.copyOf(bucketCounts,
+                    Math.min(Math.max(index + 1, bucketCounts.length * 2),
+                            BUCKET_COUNT));
+            counts = bucketCounts;
+        }
+        bucketCounts[index]++;
+        if (time > maxValue) {
+            maxValue = time;
+        }
+    }
+
+    /**
+     * Merges the given histogram into this histogram.
+     *
+     * @param source
+     *            The histogram to merge
+     */
+    protected void merge(LatencyHistogram source) {
+        int[] sourceCounts = source.counts;
+        if (sourceCounts.length > counts.length) {
+            counts = Arrays.copyOf(counts, sourceCounts.length);
+        }
+        for (int i = 0; i < sourceCounts.length; i++) {
+            counts[i] += sourceCounts[i];
+        }
+        maxValue = Math.max(maxValue, source.maxValue);
+    }
+
+    /**
+     * Gets the maximum recorded time.
+     *
+     * @return The maximum time in nanoseconds
+     */
+    protected long getMaxValue() {
+        return maxValue;
+    }
+
+    /**
+     * Gets the state indicating if no invocation has been recorded.
+     *
+     * @return <tt>true</tt> if no invocation has been recorded
+     */
+    protected boolean isEmpty() {
+        return maxValue == 0 && getNonZeroCount(counts) == 0;
+    }
+
+    /**
+     * Gets the counts of non-empty buckets in the form of
+     * <tt>index:count,...</tt>.
+     *
+     * @return The counts
+     */
+    protected String getCounts() {
+        StringBuilder builder = new StringBuilder();
+        int[] bucketCounts = counts.clone();
+        for (int i = 0; i < bucketCounts.length; i++) {
+            int count = bucketCounts[i];
+            if (count == 0) {
+                continue;
+            }
+            if (builder.length() > 0) {
+                builder.append(',');
+            }
+            builder.append(i).append(':').append(count);
+        }
+        return builder.toString();
+    }
+
+    /**
+     * Writes the histogram in binary format, as the number of non-empty
+     * buckets, the pairs of the index relative to the previous non-empty
+     * bucket and the count, and the maximum time if any bucket is
+     * non-empty.
+     *
+     * @param writer
+     *            The binary dump writer
+     */
+    protected void write(BinaryDumpWriter writer) {
+        int[] bucketCounts = counts.clone();
+        int n = getNonZeroCount(bucketCounts);
+        writer.writeVarLong(n);
+        if (n == 0) {
+            return;
+        }
+        int previous = 0;
+        for (int i = 0; i < bucketCounts.length; i++) {
+            int count = bucketCounts[i];
+            if (count != 0) {
+                writer.writeVarLong(i - previous);
+                writer.writeVarLong(count);
+                previous = i;
+            }
+        }
+        writer.writeVarLong(maxValue);
+    }
+
+    /**
+     * Gets the index of bucket for the given time.
+     *
+     * @param time
+     *            The time in nanoseconds
+     * @return The index of bucket
+     */
+    static int getBucketIndex(long time) {
+        if (time < SUB_BUCKET_COUNT) {
+            return time < 0 ? 0 : (int) time;
+        }
+        long value = Math.min(time, MAX_VALUE);
+        int exponent = 63 - Long.numberOfLeadingZeros(value);
+        int shift = exponent - SUB_BUCKET_BITS;
+        return (shift + 1) * SUB_BUCKET_COUNT
+                + (int) ((value >>> shift) & (SUB_BUCKET_COUNT - 1));
+    }
+
+    /**
+     * Gets the number of non-empty buckets.
+     *
+     * @param bucketCounts
+     *            The counts indexed by bucket
+     * @return The number of non-empty buckets
+     */
+    private static int getNonZeroCount(int[] bucketCounts) {
+        int n = 0;
+        for (int count : bucketCounts) {
+            if (count != 0) {
+                n++;
+            }
+        }
+        return n;
+    }
+}
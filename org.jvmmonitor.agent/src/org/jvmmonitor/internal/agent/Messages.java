@@ -18,9 +18,36 @@ public class Messages {
     /** The error message that opening configuration file failed. */
     static final String CANNOT_OPEN_CONFIG_FILE = "Cannot open the specified configuration file:\n\t%s\n";
 
+    /** The error message that property value is invalid. */
+    static final String INVALID_PROPERTY_VALUE = "Invalid value of property %s: %s";
+
+    /** The error message that thread name rule is invalid. */
+    static final String INVALID_THREAD_NAME_RULE = "Invalid thread name rule: %s";
+
     /** The error message that getting dump failed. */
     static final String CANNOT_GET_DUMP = "Cannot get the CPU profiling data.";
 
+    /** The error message that getting slow calls failed. */
+    static final String CANNOT_GET_SLOW_CALLS = "Cannot get the slow calls.";
+
+    /** The error message that draining event buffers failed. */
+    static final String CANNOT_DRAIN_EVENT_BUFFERS = "Cannot drain the event buffers.";
+
+    /** The error message that getting trace failed. */
+    static final String CANNOT_GET_TRACE = "Cannot get the trace.";
+
+    /** The error message that sampling stacks failed. */
+    static final String CANNOT_SAMPLE_STACKS = "Cannot sample the stacks.";
+
+    /** The error message that getting stack samples failed. */
+    static final String CANNOT_GET_STACK_SAMPLES = "Cannot get the stack samples.";
+
+    /** The error message that excluding trivial hot methods failed. */
+    static final String CANNOT_ADAPT_INSTRUMENTATION = "Cannot exclude the trivial hot methods from instrumentation.";
+
+    /** The error message that instrumenting excluded methods again failed. */
+    static final String CANNOT_REINSTRUMENT_METHODS = "Cannot instrument the excluded methods again.";
+
     /** The error message that clearing profile data failed. */
     static final String CANNOT_CLEAR = "Cannot clear the CPU profiling data.";
 
@@ -70,6 +97,9 @@ public class Messages {
     /** The error message that logging eclipse job manager data failed. */
     static final String CANNOT_LOG_ECLIPSE_JOB_MANAGER_DATA = "Cannot log Eclipse job manager data.";
 
+    /** The error message that thread CPU time is not supported. */
+    static final String CPU_TIME_NOT_SUPPORTED = "Thread CPU time is not supported, measuring only elapsed time.";
+
     /** The info message that agent got loaded. */
     static final String AGENT_LOADED = "Agent has been loaded.";
 
@@ -79,9 +109,30 @@ public class Messages {
     /** The info message that class has been instrumented. */
     static final String INSTRUMENTED_CLASS = "Instrumented class: %s";
 
+    /** The info message that overhead has been calibrated. */
+    static final String CALIBRATED_OVERHEAD = "Calibrated profiling overhead: %d ns";
+
+    /**
+     * The info message that the number of frame nodes has reached the maximum
+     * on thread.
+     */
+    static final String MAX_FRAMES_REACHED = "The number of frames reached the maximum on thread %s, folding the subsequent frames";
+
     /** The info message that class has been re-transformed. */
     static final String RETRANSFORMED_CLASS = "Retransformed class: %s";
 
+    /**
+     * The info message that trivial hot method has been excluded from
+     * instrumentation.
+     */
+    static final String EXCLUDED_TRIVIAL_METHOD = "Excluded trivial method from instrumentation: %s (%d calls/s, %d ns/call)";
+
+    /**
+     * The info message that re-transforming batch of classes failed and the
+     * classes are re-transformed one by one.
+     */
+    static final String RETRANSFORMING_CLASSES_ONE_BY_ONE = "Cannot retransform %d classes at once, retransforming them one by one: %s";
+
     /** The message that no thread is currently using eclipse scheduling rule. */
     static final String NO_THREAD_USNIG_ECLIPSE_SCHEDULING_RULE = "No thread is currently using scheduling rule.";
 
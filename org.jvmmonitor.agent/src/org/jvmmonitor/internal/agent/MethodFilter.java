@@ -0,0 +1,164 @@
+/*******************************************************************************
+ * Copyright (c) 2010 JVM Monitor project. All rights reserved.
+ *
+ * This code is distributed under the terms of the Eclipse Public License v1.0
+ * which is available at http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+package org.jvmmonitor.internal.agent;
+
+import java.util.Set;
+import java.util.regex.Pattern;
+
+/**
+ * The immutable filter of instrumented methods in profiled classes, which is
+ * compiled from the included and excluded method patterns.
+ * <p>
+ * The pattern consists of class glob and method glob separated with the last
+ * <tt>.</tt> before parameter descriptor, e.g. <tt>org.example.Foo.handle*</tt>
+ * or <tt>*.toString()Ljava/lang/String;</tt>, where <tt>*</tt> matches any
+ * characters and <tt>?</tt> matches a character. The method glob without
+ * parameter descriptor matches all the overloaded methods. The patterns are
+ * compiled into a regular expression each for included and excluded methods,
+ * which are evaluated only when transforming classes.
+ */
+@SuppressWarnings("nls")
+public class MethodFilter {
+
+    /** The compiled included methods, or <tt>null</tt> to include all. */
+    private final Pattern includedMethods;
+
+    /**
+     * The compiled class globs of included methods, or <tt>null</tt> to
+     * include all.
+     */
+    private final Pattern includedClasses;
+
+    /** The compiled excluded methods, or <tt>null</tt> to exclude none. */
+    private final Pattern excludedMethods;
+
+    /**
+     * The constructor.
+     *
+     * @param includedMethods
+     *            The included method patterns, or empty set to include all
+     * @param excludedMethods
+     *            The excluded method patterns
+     */
+    protected MethodFilter(Set<String> includedMethods,
+            Set<String> excludedMethods) {
+        this.includedMethods = compile(includedMethods, false);
+        this.includedClasses = compile(includedMethods, true);
+        this.excludedMethods = compile(excludedMethods, false);
+    }
+
+    /**
+     * Gets the state indicating if all methods of profiled classes are
+     * instrumented.
+     *
+     * @return <tt>true</tt> if no method pattern is given
+     */
+    protected boolean isEmpty() {
+        return includedMethods == null && excludedMethods == null;
+    }
+
+    /**
+     * Gets the state indicating if the given class may have included methods.
+     * The class without included methods doesn't have to be transformed.
+     *
+     * @param className
+     *            The class name (e.g. java/lang/String)
+     * @return <tt>true</tt> if the given class may have included methods
+     */
+    protected boolean isIncludedClass(String className) {
+        return includedClasses == null
+                || includedClasses.matcher(className.replace('/', '.'))
+                        .matches();
+    }
+
+    /**
+     * Gets the state indicating if the given method is instrumented.
+     *
+     * @param className
+     *            The class name (e.g. java/lang/String)
+     * @param methodName
+     *            The method name with parameter descriptor (e.g. charAt(I)C)
+     * @return <tt>true</tt> if the given method is instrumented
+     */
+    protected boolean isIncludedMethod(String className, String methodName) {
+        if (isEmpty()) {
+            return true;
+        }
+
+        String method = className.replace('/', '.') + '.' + methodName;
+        return (includedMethods == null || includedMethods.matcher(method)
+                .matches())
+                && (excludedMethods == null || !excludedMethods.matcher(
+                        method).matches());
+    }
+
+    /**
+     * Compiles the method patterns into a regular expression.
+     *
+     * @param patterns
+     *            The method patterns
+     * @param classOnly
+     *            <tt>true</tt> to compile only the class globs
+     * @return The compiled regular expression, or <tt>null</tt> if no pattern
+     *         is given
+     */
+    private static Pattern compile(Set<String> patterns, boolean classOnly) {
+        if (patterns.isEmpty()) {
+            return null;
+        }
+
+        StringBuilder regex = new StringBuilder();
+        for (String pattern : patterns) {
+            int descIndex = pattern.indexOf('(');
+            int index = pattern.lastIndexOf('.', descIndex < 0 ? pattern
+                    .length() : descIndex);
+            if (regex.length() > 0) {
+                regex.append('|');
+            }
+            if (index < 0) {
+                // e.g. "toString" for the methods of any class
+                regex.append(".*");
+            } else {
+                appendGlob(regex, pattern.substring(0, index));
+            }
+            if (classOnly) {
+                continue;
+            }
+            regex.append("\\.");
+            appendGlob(regex, pattern.substring(index + 1));
+            if (descIndex < 0) {
+                regex.append("\\(.*");
+            }
+        }
+        return Pattern.compile(regex.toString());
+    }
+
+    /**
+     * Appends the glob converted into regular expression.
+     *
+     * @param regex
+     *            The regular expression
+     * @param glob
+     *            The glob
+     */
+    private static void appendGlob(StringBuilder regex, String glob) {
+        int start = 0;
+        for (int i = 0; i < glob.length(); i++) {
+            char c = glob.charAt(i);
+            if (c == '*' || c == '?') {
+                if (i > start) {
+                    regex.append(Pattern.quote(glob.substring(start, i)));
+                }
+                regex.append(c == '*' ? ".*" : ".");
+                start = i + 1;
+            }
+        }
+        if (start < glob.length()) {
+            regex.append(Pattern.quote(glob.substring(start)));
+        }
+    }
+}
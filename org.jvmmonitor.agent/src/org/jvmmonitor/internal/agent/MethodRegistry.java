@@ -0,0 +1,140 @@
+/*******************************************************************************
+ * Copyright (c) 2010 JVM Monitor project. All rights reserved.
+ *
+ * This code is distributed under the terms of the Eclipse Public License v1.0
+ * which is available at http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+package org.jvmmonitor.internal.agent;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * The registry of instrumented methods. Each method is given a constant
+ * integer ID when its class is transformed, and the ID is embedded into the
+ * instrumented byte-codes so that the profiler can identify the method without
+ * creating any object.
+ * <p>
+ * The methods sampled from stack traces are registered without parameter
+ * descriptor, so that they never share the ID with instrumented methods.
+ */
+public class MethodRegistry {
+
+    /** The initial capacity of method table. */
+    private static final int INITIAL_CAPACITY = 1024;
+
+    /** The method IDs with key <tt>className.methodName</tt>. */
+    private static final Map<String, Integer> methodIds = new HashMap<String, Integer>();
+
+    /** The class names indexed by method ID. */
+    private static volatile String[] classNames = new String[INITIAL_CAPACITY];
+
+    /** The method names indexed by method ID. */
+    private static volatile String[] methodNames = new String[INITIAL_CAPACITY];
+
+    /** The number of registered methods. */
+    private static int size;
+
+    /**
+     * The method ID of the frame aggregating the frames exceeding the maximum
+     * number of frame nodes.
+     */
+    protected static final int OTHER_METHOD_ID = register("", //$NON-NLS-1$
+            Constants.OTHER_FRAME_NAME);
+
+    /**
+     * The constructor.
+     */
+    private MethodRegistry() {
+        // do not instantiate
+    }
+
+    /**
+     * Registers the method. The same ID is returned if the method has been
+     * already registered, e.g. when the class is re-transformed.
+     *
+     * @param className
+     *            The class name (e.g. java/lang/String)
+     * @param methodName
+     *            The method name with parameter descriptor (e.g. charAt(I)C)
+     * @return The method ID
+     */
+    protected static synchronized int register(String className,
+            String methodName) {
+        String key = className + '.' + methodName;
+        Integer id = methodIds.get(key);
+        if (id != null) {
+            return id;
+        }
+
+        if (size == classNames.length) {
+            int capacity = size * 2;
+            methodNames = Arrays.copyOf(methodNames, capacity);
+            classNames = Arrays.copyOf(classNames, capacity);
+        }
+        methodNames[size] = methodName;
+        classNames[size] = className;
+        methodIds.put(key, size);
+        return size++;
+    }
+
+    /**
+     * Registers the method sampled from stack trace. Since stack trace doesn't
+     * tell the parameter descriptor, the overloaded methods share the ID.
+     *
+     * @param className
+     *            The class name (e.g. java/lang/String)
+     * @param methodName
+     *            The method name without parameter descriptor (e.g. charAt)
+     * @return The method ID
+     */
+    protected static int registerSampled(String className, String methodName) {
+        return register(className, methodName);
+    }
+
+    /**
+     * Gets the state indicating if the given method is instrumented, rather
+     * than sampled from stack trace or aggregating other frames.
+     *
+     * @param id
+     *            The method ID
+     * @return <tt>true</tt> if the method has parameter descriptor
+     */
+    protected static boolean isInstrumented(int id) {
+        return methodNames[id].indexOf('(') != -1;
+    }
+
+    /**
+     * Gets the number of registered methods, which is greater than any method
+     * ID registered so far.
+     *
+     * @return The number of registered methods
+     */
+    protected static synchronized int getMethodCount() {
+        return size;
+    }
+
+    /**
+     * Gets the class name.
+     *
+     * @param id
+     *            The method ID
+     * @return The class name (e.g. java/lang/String)
+     */
+    protected static String getClassName(int id) {
+        return classNames[id];
+    }
+
+    /**
+     * Gets the method name.
+     *
+     * @param id
+     *            The method ID
+     * @return The method name with parameter descriptor (e.g. charAt(I)C), or
+     *         without it if the method is sampled from stack trace
+     */
+    protected static String getMethodName(int id) {
+        return methodNames[id];
+    }
+}
@@ -6,6 +6,7 @@
  *******************************************************************************/
 package org.jvmmonitor.internal.agent;
 
+import org.jvmmonitor.internal.agent.asm.Handle;
 import org.jvmmonitor.internal.agent.asm.Label;
 import org.jvmmonitor.internal.agent.asm.MethodVisitor;
 import org.jvmmonitor.internal.agent.asm.Opcodes;
@@ -15,14 +16,26 @@ import org.jvmmonitor.internal.agent.asm.Opcodes;
  */
 public class MethodVisitorImpl extends MethodVisitor {
 
-    /** The class name */
-    private final String className;
+    /** The method ID. */
+    private final int methodId;
 
-    /** The method name */
-    private final String methodName;
+    /** The class loader, or <tt>null</tt> for bootstrap class loader. */
+    private final ClassLoader loader;
 
-    /** The state indicating if this is the class initialization method. */
-    private final boolean isClinit;
+    /** The state indicating if allocations are instrumented. */
+    private final boolean allocationProfiled;
+
+    /** The state indicating if entering monitors is instrumented. */
+    private final boolean contentionProfiled;
+
+    /** The number of <tt>monitorenter</tt> instructions visited so far. */
+    private int monitorEnterCount;
+
+    /**
+     * The state indicating if dropping to frame has to be instrumented at the
+     * exception handler after its stack map frame.
+     */
+    private boolean dropToFramePending;
 
     /**
      * The constructor.
@@ -33,13 +46,18 @@ public class MethodVisitorImpl extends MethodVisitor {
      *            The class name
      * @param methodName
      *            The method name
+     * @param loader
+     *            The class loader
      */
     public MethodVisitorImpl(MethodVisitor methodVisitor, String className,
-            String methodName) {
+            String methodName, ClassLoader loader) {
         super(Opcodes.ASM9, methodVisitor);
-        this.className = className;
-        this.methodName = methodName;
-        isClinit = methodName.startsWith(Constants.METHOD_CLINIT);
+        methodId = MethodRegistry.register(className, methodName);
+        this.loader = loader;
+        allocationProfiled = Config.getInstance()
+                .isAllocationProfilingEnabled();
+        contentionProfiled = Config.getInstance()
+                .isContentionProfilingEnabled();
     }
 
     /*
@@ -47,8 +65,7 @@ public class MethodVisitorImpl extends MethodVisitor {
      */
     @Override
     public void visitCode() {
-        instrumentMethodInvocation(Constants.METHOD_STEP_INTO, className,
-                methodName);
+        instrumentMethodInvocation(Constants.METHOD_STEP_INTO);
 
         super.visitCode();
     }
@@ -58,17 +75,37 @@ public class MethodVisitorImpl extends MethodVisitor {
      */
     @Override
     public void visitInsn(int opcode) {
+        instrumentPendingDropToFrame();
 
         // the JVM opcode to return method
         if ((Opcodes.IRETURN <= opcode && opcode <= Opcodes.RETURN)
                 || Opcodes.ATHROW == opcode) {
-            instrumentMethodInvocation(Constants.METHOD_STEP_RETURN, className,
-                    methodName);
+            instrumentMethodInvocation(Constants.METHOD_STEP_RETURN);
+        }
+
+        if (contentionProfiled && opcode == Opcodes.MONITORENTER) {
+            instrumentMonitorEnter();
+            return;
         }
 
         super.visitInsn(opcode);
     }
 
+    /*
+     * @see MethodVisitor#visitMaxs(int, int)
+     */
+    @Override
+    public void visitMaxs(int maxStack, int maxLocals) {
+        /*
+         * the method ID is the only operand pushed by instrumenting method
+         * invocation, and the duplicated object and site ID are pushed by
+         * instrumenting array allocation or entering monitor
+         */
+        super.visitMaxs(maxStack
+                + (allocationProfiled || contentionProfiled ? 2 : 1),
+                maxLocals);
+    }
+
     /*
      * @see MethodAdapter#visitTryCatchBlock(Label, Label, Label, String)
      */
@@ -89,39 +126,268 @@ public class MethodVisitorImpl extends MethodVisitor {
         super.visitLabel(label);
 
         if (label.info != null) {
-            instrumentMethodInvocation(Constants.METHOD_DROP_TO_FRAME,
-                    className, methodName, (String) label.info);
+            dropToFramePending = true;
+        }
+    }
+
+    /*
+     * @see MethodVisitor#visitFrame(int, int, Object[], int, Object[])
+     */
+    @Override
+    public void visitFrame(int type, int numLocal, Object[] local,
+            int numStack, Object[] stack) {
+        super.visitFrame(type, numLocal, local, numStack, stack);
+        instrumentPendingDropToFrame();
+    }
+
+    /*
+     * @see MethodVisitor#visitIntInsn(int, int)
+     */
+    @Override
+    public void visitIntInsn(int opcode, int operand) {
+        instrumentPendingDropToFrame();
+        super.visitIntInsn(opcode, operand);
+
+        if (allocationProfiled && opcode == Opcodes.NEWARRAY) {
+            instrumentArrayAllocation("[" + getPrimitiveDescriptor(operand)); //$NON-NLS-1$
+        }
+    }
+
+    /*
+     * @see MethodVisitor#visitVarInsn(int, int)
+     */
+    @Override
+    public void visitVarInsn(int opcode, int var) {
+        instrumentPendingDropToFrame();
+        super.visitVarInsn(opcode, var);
+    }
+
+    /*
+     * @see MethodVisitor#visitTypeInsn(int, String)
+     */
+    @Override
+    public void visitTypeInsn(int opcode, String type) {
+        instrumentPendingDropToFrame();
+        super.visitTypeInsn(opcode, type);
+
+        if (!allocationProfiled) {
+            return;
+        }
+        if (opcode == Opcodes.NEW) {
+            /*
+             * the uninitialized object cannot be passed to method, so that only
+             * the site ID is given and the instance size is estimated
+             */
+            pushInt(AllocationSiteRegistry.register(methodId, type, loader));
+            super.visitMethodInsn(Opcodes.INVOKESTATIC,
+                    Constants.CLASS_CPU_PROFILER, Constants.METHOD_ALLOCATE,
+                    Constants.DESC_SITE_ID, false);
+        } else if (opcode == Opcodes.ANEWARRAY) {
+            instrumentArrayAllocation(type.charAt(0) == '[' ? "[" + type //$NON-NLS-1$
+                    : "[L" + type + ";"); //$NON-NLS-1$ //$NON-NLS-2$
+        }
+    }
+
+    /*
+     * @see MethodVisitor#visitFieldInsn(int, String, String, String)
+     */
+    @Override
+    public void visitFieldInsn(int opcode, String owner, String name,
+            String descriptor) {
+        instrumentPendingDropToFrame();
+        super.visitFieldInsn(opcode, owner, name, descriptor);
+    }
+
+    /*
+     * @see MethodVisitor#visitMethodInsn(int, String, String, String, boolean)
+     */
+    @Override
+    public void visitMethodInsn(int opcode, String owner, String name,
+            String descriptor, boolean isInterface) {
+        instrumentPendingDropToFrame();
+        super.visitMethodInsn(opcode, owner, name, descriptor, isInterface);
+    }
+
+    /*
+     * @see MethodVisitor#visitInvokeDynamicInsn(String, String, Handle,
+     * Object[])
+     */
+    @Override
+    public void visitInvokeDynamicInsn(String name, String descriptor,
+            Handle bootstrapMethodHandle, Object... bootstrapMethodArguments) {
+        instrumentPendingDropToFrame();
+        super.visitInvokeDynamicInsn(name, descriptor, bootstrapMethodHandle,
+                bootstrapMethodArguments);
+    }
+
+    /*
+     * @see MethodVisitor#visitJumpInsn(int, Label)
+     */
+    @Override
+    public void visitJumpInsn(int opcode, Label label) {
+        instrumentPendingDropToFrame();
+        super.visitJumpInsn(opcode, label);
+    }
+
+    /*
+     * @see MethodVisitor#visitLdcInsn(Object)
+     */
+    @Override
+    public void visitLdcInsn(Object value) {
+        instrumentPendingDropToFrame();
+        super.visitLdcInsn(value);
+    }
+
+    /*
+     * @see MethodVisitor#visitIincInsn(int, int)
+     */
+    @Override
+    public void visitIincInsn(int var, int increment) {
+        instrumentPendingDropToFrame();
+        super.visitIincInsn(var, increment);
+    }
+
+    /*
+     * @see MethodVisitor#visitTableSwitchInsn(int, int, Label, Label[])
+     */
+    @Override
+    public void visitTableSwitchInsn(int min, int max, Label dflt,
+            Label... labels) {
+        instrumentPendingDropToFrame();
+        super.visitTableSwitchInsn(min, max, dflt, labels);
+    }
+
+    /*
+     * @see MethodVisitor#visitLookupSwitchInsn(Label, int[], Label[])
+     */
+    @Override
+    public void visitLookupSwitchInsn(Label dflt, int[] keys, Label[] labels) {
+        instrumentPendingDropToFrame();
+        super.visitLookupSwitchInsn(dflt, keys, labels);
+    }
+
+    /*
+     * @see MethodVisitor#visitMultiANewArrayInsn(String, int)
+     */
+    @Override
+    public void visitMultiANewArrayInsn(String descriptor, int numDimensions) {
+        instrumentPendingDropToFrame();
+        super.visitMultiANewArrayInsn(descriptor, numDimensions);
+
+        if (allocationProfiled) {
+            instrumentArrayAllocation(descriptor);
+        }
+    }
+
+    /**
+     * Instruments dropping to frame if exception handler has been just
+     * visited. This is deferred until the stack map frame of exception handler
+     * is visited, since the frame has to be located at the beginning of
+     * handler.
+     */
+    private void instrumentPendingDropToFrame() {
+        if (dropToFramePending) {
+            dropToFramePending = false;
+            instrumentMethodInvocation(Constants.METHOD_DROP_TO_FRAME);
         }
     }
 
     /**
-     * Instruments the method invocation.
+     * Instruments the invocation of profiler method with the constant method
+     * ID as argument.
      *
      * @param name
-     *            The method name
-     * @param args
-     *            The method arguments
+     *            The profiler method name
      */
-    private void instrumentMethodInvocation(String name, String... args) {
-        if (isClinit) {
-            return;
-        }
+    private void instrumentMethodInvocation(String name) {
+        pushInt(methodId);
+
+        // instrument
+        super.visitMethodInsn(Opcodes.INVOKESTATIC,
+                Constants.CLASS_CPU_PROFILER, name, Constants.DESC_METHOD_ID,
+                false);
+    }
+
+    /**
+     * Instruments the notification of array allocation with the array just
+     * created on top of operand stack and the constant site ID as arguments.
+     *
+     * @param type
+     *            The array descriptor
+     */
+    private void instrumentArrayAllocation(String type) {
+        super.visitInsn(Opcodes.DUP);
+        pushInt(AllocationSiteRegistry.register(methodId, type, loader));
+        super.visitMethodInsn(Opcodes.INVOKESTATIC,
+                Constants.CLASS_CPU_PROFILER, Constants.METHOD_ALLOCATE_ARRAY,
+                Constants.DESC_ARRAY_SITE_ID, false);
+    }
+
+    /**
+     * Instruments entering monitor with the monitor object on top of operand
+     * stack, so that the time to acquire monitor is measured between the
+     * notifications before and after <tt>monitorenter</tt>.
+     */
+    private void instrumentMonitorEnter() {
+        int siteId = MonitorSiteRegistry.register(methodId,
+                monitorEnterCount++);
+        super.visitInsn(Opcodes.DUP);
+        pushInt(siteId);
+        super.visitMethodInsn(Opcodes.INVOKESTATIC,
+                Constants.CLASS_CPU_PROFILER, Constants.METHOD_MONITOR_ENTER,
+                Constants.DESC_MONITOR_SITE_ID, false);
+        super.visitInsn(Opcodes.MONITORENTER);
+        pushInt(siteId);
+        super.visitMethodInsn(Opcodes.INVOKESTATIC,
+                Constants.CLASS_CPU_PROFILER, Constants.METHOD_MONITOR_ENTERED,
+                Constants.DESC_SITE_ID, false);
+    }
 
-        // get descriptor
-        String desc = null;
-        if (args.length == 2) {
-            desc = Constants.DESC_STRING_STRING;
-        } else if (args.length == 3) {
-            desc = Constants.DESC_STRING_STRING_STRING;
+    /**
+     * Pushes the non-negative integer constant without allocating constant
+     * pool entry if possible.
+     *
+     * @param value
+     *            The value
+     */
+    private void pushInt(int value) {
+        if (value <= 5) {
+            super.visitInsn(Opcodes.ICONST_0 + value);
+        } else if (value <= Byte.MAX_VALUE) {
+            super.visitIntInsn(Opcodes.BIPUSH, value);
+        } else if (value <= Short.MAX_VALUE) {
+            super.visitIntInsn(Opcodes.SIPUSH, value);
         } else {
-            return;
+            super.visitLdcInsn(value);
         }
+    }
 
-        // instrument
-        for (String arg : args) {
-            visitLdcInsn(arg);
+    /**
+     * Gets the descriptor of primitive type given as operand of
+     * <tt>NEWARRAY</tt>.
+     *
+     * @param operand
+     *            The operand of <tt>NEWARRAY</tt>
+     * @return The descriptor of primitive type
+     */
+    private static char getPrimitiveDescriptor(int operand) {
+        switch (operand) {
+        case Opcodes.T_BOOLEAN:
+            return 'Z';
+        case Opcodes.T_CHAR:
+            return 'C';
+        case Opcodes.T_FLOAT:
+            return 'F';
+        case Opcodes.T_DOUBLE:
+            return 'D';
+        case Opcodes.T_BYTE:
+            return 'B';
+        case Opcodes.T_SHORT:
+            return 'S';
+        case Opcodes.T_LONG:
+            return 'J';
+        default:
+            return 'I';
         }
-        super.visitMethodInsn(Opcodes.INVOKESTATIC,
-                Constants.CLASS_CPU_PROFILER, name, desc, false);
     }
 }
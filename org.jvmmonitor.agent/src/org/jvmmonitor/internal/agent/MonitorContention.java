@@ -0,0 +1,84 @@
+/*******************************************************************************
+ * Copyright (c) 2010 JVM Monitor project. All rights reserved.
+ *
+ * This code is distributed under the terms of the Eclipse Public License v1.0
+ * which is available at http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+package org.jvmmonitor.internal.agent;
+
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongBinaryOperator;
+
+/**
+ * The contention of monitors of the same class entered at the same site. The
+ * counters are striped per thread by <tt>LongAdder</tt>, so that the threads
+ * contending for the monitor don't contend for the counters as well.
+ */
+public class MonitorContention {
+
+    /** The operator to take the maximum. */
+    private static final LongBinaryOperator MAX = new LongBinaryOperator() {
+        @Override
+        public long applyAsLong(long left, long right) {
+            return Math.max(left, right);
+        }
+    };
+
+    /** The number of monitor entries. */
+    private final LongAdder count;
+
+    /** The total time in nanoseconds to acquire monitor. */
+    private final LongAdder time;
+
+    /** The maximum time in nanoseconds to acquire monitor. */
+    private final LongAccumulator maxTime;
+
+    /**
+     * The constructor.
+     */
+    protected MonitorContention() {
+        count = new LongAdder();
+        time = new LongAdder();
+        maxTime = new LongAccumulator(MAX, 0);
+    }
+
+    /**
+     * Records the monitor entry.
+     *
+     * @param elapsed
+     *            The time in nanoseconds to acquire monitor
+     */
+    protected void record(long elapsed) {
+        count.increment();
+        time.add(elapsed);
+        maxTime.accumulate(elapsed);
+    }
+
+    /**
+     * Gets the number of monitor entries.
+     *
+     * @return The number of monitor entries
+     */
+    protected long getCount() {
+        return count.sum();
+    }
+
+    /**
+     * Gets the total time to acquire monitor.
+     *
+     * @return The time in nanoseconds
+     */
+    protected long getTime() {
+        return time.sum();
+    }
+
+    /**
+     * Gets the maximum time to acquire monitor.
+     *
+     * @return The time in nanoseconds
+     */
+    protected long getMaxTime() {
+        return maxTime.get();
+    }
+}
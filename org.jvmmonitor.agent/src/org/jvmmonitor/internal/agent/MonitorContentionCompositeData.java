@@ -0,0 +1,101 @@
+/*******************************************************************************
+ * Copyright (c) 2010 JVM Monitor project. All rights reserved. 
+ * 
+ * This code is distributed under the terms of the Eclipse Public License v1.0
+ * which is available at http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+package org.jvmmonitor.internal.agent;
+
+import java.beans.ConstructorProperties;
+
+/**
+ * The monitor contention that is converted into <tt>CompositeData</tt>.
+ */
+public class MonitorContentionCompositeData {
+
+    /** The frame name of the method entering monitor. */
+    private String method;
+
+    /** The class name of monitor object. */
+    private String monitorClass;
+
+    /** The number of monitor entries. */
+    private long count;
+
+    /** The total time in nanoseconds to acquire monitor. */
+    private long time;
+
+    /** The maximum time in nanoseconds to acquire monitor. */
+    private long maxTime;
+
+    /**
+     * The constructor.
+     * 
+     * @param method
+     *            The frame name of the method entering monitor
+     * @param monitorClass
+     *            The class name of monitor object
+     * @param count
+     *            The number of monitor entries
+     * @param time
+     *            The total time in nanoseconds to acquire monitor
+     * @param maxTime
+     *            The maximum time in nanoseconds to acquire monitor
+     */
+    @ConstructorProperties({ "method", "monitorClass", "count", "time",
+            "maxTime" })
+    public MonitorContentionCompositeData(String method, String monitorClass,
+            long count, long time, long maxTime) {
+        this.method = method;
+        this.monitorClass = monitorClass;
+        this.count = count;
+        this.time = time;
+        this.maxTime = maxTime;
+    }
+
+    /**
+     * Gets the frame name of the method entering monitor.
+     * 
+     * @return The frame name (e.g. java.util.Vector.add(Object))
+     */
+    public String getMethod() {
+        return method;
+    }
+
+    /**
+     * Gets the class name of monitor object.
+     * 
+     * @return The class name (e.g. java.lang.Object)
+     */
+    public String getMonitorClass() {
+        return monitorClass;
+    }
+
+    /**
+     * Gets the number of monitor entries.
+     * 
+     * @return The number of monitor entries
+     */
+    public long getCount() {
+        return count;
+    }
+
+    /**
+     * Gets the total time to acquire monitor.
+     * 
+     * @return The time in nanoseconds
+     */
+    public long getTime() {
+        return time;
+    }
+
+    /**
+     * Gets the maximum time to acquire monitor.
+     * 
+     * @return The time in nanoseconds
+     */
+    public long getMaxTime() {
+        return maxTime;
+    }
+
+}
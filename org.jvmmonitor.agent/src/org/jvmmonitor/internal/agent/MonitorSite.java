@@ -0,0 +1,82 @@
+/*******************************************************************************
+ * Copyright (c) 2010 JVM Monitor project. All rights reserved.
+ *
+ * This code is distributed under the terms of the Eclipse Public License v1.0
+ * which is available at http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+package org.jvmmonitor.internal.agent;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The site entering monitor, which is a <tt>monitorenter</tt> instruction in
+ * a profiled method. The contention is recorded per class of monitor object,
+ * since the same site can enter the monitors of different classes.
+ */
+public class MonitorSite {
+
+    /** The method ID of the method entering monitor. */
+    private final int methodId;
+
+    /** The contentions with key monitor class name. */
+    private volatile ConcurrentHashMap<String, MonitorContention> contentions;
+
+    /**
+     * The constructor.
+     *
+     * @param methodId
+     *            The method ID of the method entering monitor
+     */
+    protected MonitorSite(int methodId) {
+        this.methodId = methodId;
+        contentions = new ConcurrentHashMap<String, MonitorContention>();
+    }
+
+    /**
+     * Records the monitor entry.
+     *
+     * @param monitorClass
+     *            The class name of monitor object
+     * @param elapsed
+     *            The time in nanoseconds to acquire monitor
+     */
+    protected void record(String monitorClass, long elapsed) {
+        ConcurrentHashMap<String, MonitorContention> map = contentions;
+        MonitorContention contention = map.get(monitorClass);
+        if (contention == null) {
+            contention = new MonitorContention();
+            MonitorContention existing = map.putIfAbsent(monitorClass,
+                    contention);
+            if (existing != null) {
+                contention = existing;
+            }
+        }
+        contention.record(elapsed);
+    }
+
+    /**
+     * Clears the recorded contentions.
+     */
+    protected void clear() {
+        contentions = new ConcurrentHashMap<String, MonitorContention>();
+    }
+
+    /**
+     * Gets the method ID of the method entering monitor.
+     *
+     * @return The method ID
+     */
+    protected int getMethodId() {
+        return methodId;
+    }
+
+    /**
+     * Gets the recorded contentions.
+     *
+     * @return The contentions with key monitor class name
+     */
+    protected Map<String, MonitorContention> getContentions() {
+        return contentions;
+    }
+}
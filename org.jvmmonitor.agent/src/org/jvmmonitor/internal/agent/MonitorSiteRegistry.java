@@ -0,0 +1,149 @@
+/*******************************************************************************
+ * Copyright (c) 2010 JVM Monitor project. All rights reserved.
+ *
+ * This code is distributed under the terms of the Eclipse Public License v1.0
+ * which is available at http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+package org.jvmmonitor.internal.agent;
+
+import java.io.PrintWriter;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Map.Entry;
+
+/**
+ * The registry of instrumented sites entering monitor. Like allocation sites,
+ * each site is given a constant integer ID when its class is transformed, and
+ * the ID is embedded into the instrumented byte-codes.
+ */
+@SuppressWarnings("nls")
+public class MonitorSiteRegistry {
+
+    /** The initial capacity of site table. */
+    private static final int INITIAL_CAPACITY = 64;
+
+    /**
+     * The site IDs with key <tt>methodId:index</tt>, where index is the order
+     * of <tt>monitorenter</tt> instruction in method.
+     */
+    private static final Map<String, Integer> siteIds = new HashMap<String, Integer>();
+
+    /** The sites indexed by site ID. */
+    private static volatile MonitorSite[] sites = new MonitorSite[INITIAL_CAPACITY];
+
+    /** The number of registered sites. */
+    private static volatile int size;
+
+    /**
+     * The constructor.
+     */
+    private MonitorSiteRegistry() {
+        // do not instantiate
+    }
+
+    /**
+     * Registers the site entering monitor. The same ID is returned if the site
+     * has been already registered, e.g. when the class is re-transformed.
+     *
+     * @param methodId
+     *            The method ID of the method entering monitor
+     * @param index
+     *            The order of <tt>monitorenter</tt> instruction in method
+     * @return The site ID
+     */
+    protected static synchronized int register(int methodId, int index) {
+        String key = methodId + ":" + index;
+        Integer id = siteIds.get(key);
+        if (id != null) {
+            return id;
+        }
+
+        MonitorSite[] currentSites = sites;
+        if (size == currentSites.length) {
+            currentSites = Arrays.copyOf(currentSites, size * 2);
+        }
+        currentSites[size] = new MonitorSite(methodId);
+        sites = currentSites;
+        siteIds.put(key, size);
+        return size++;
+    }
+
+    /**
+     * Gets the site entering monitor.
+     *
+     * @param id
+     *            The site ID
+     * @return The site
+     */
+    protected static MonitorSite get(int id) {
+        return sites[id];
+    }
+
+    /**
+     * Gets the registered sites.
+     *
+     * @return The sites
+     */
+    protected static MonitorSite[] getSites() {
+        int n = size;
+        return Arrays.copyOf(sites, n);
+    }
+
+    /**
+     * Clears the recorded contentions of all sites.
+     */
+    protected static void clear() {
+        for (MonitorSite site : getSites()) {
+            site.clear();
+        }
+    }
+
+    /**
+     * Dumps the contentions.
+     *
+     * @param buffer
+     *            The string buffer
+     */
+    protected static void dump(StringBuffer buffer) {
+        for (MonitorSite site : getSites()) {
+            for (Entry<String, MonitorContention> entry : site
+                    .getContentions().entrySet()) {
+                MonitorContention contention = entry.getValue();
+                buffer.append("\t<lock class=\"").append(entry.getKey())
+                        .append("\" site=\"").append(getEscapedSiteName(site))
+                        .append("\" cnt=\"").append(contention.getCount())
+                        .append("\" time=\"")
+                        .append(FrameNode.formatTime(contention.getTime()))
+                        .append("\" max=\"")
+                        .append(FrameNode.formatTime(contention.getMaxTime()))
+                        .append("\"/>\n");
+            }
+        }
+    }
+
+    /**
+     * Dumps the contentions into a file.
+     *
+     * @param writer
+     *            The writer
+     */
+    protected static void dump(PrintWriter writer) {
+        StringBuffer buffer = new StringBuffer();
+        dump(buffer);
+        writer.print(buffer);
+    }
+
+    /**
+     * Gets the site name escaped for XML, which is the frame name of the
+     * method entering monitor.
+     *
+     * @param site
+     *            The site
+     * @return The escaped site name
+     */
+    private static String getEscapedSiteName(MonitorSite site) {
+        return FrameNode.getFrameName(site.getMethodId())
+                .replaceAll("<", "&lt;").replaceAll(">", "&gt;");
+    }
+}
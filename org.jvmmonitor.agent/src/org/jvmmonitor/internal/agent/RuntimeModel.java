@@ -20,22 +20,36 @@ import java.util.Date;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.Callable;
-import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * The runtime model.
+ * <p>
+ * The thread nodes of terminated threads are merged when dumping, and also
+ * by the event buffer aggregator whenever a number of threads have been
+ * started if events are buffered.
  */
 @SuppressWarnings("nls")
-public class RuntimeModel implements Runnable {
+public class RuntimeModel extends CallTreeModel implements Runnable {
 
-    /** The thread nodes */
-    private Map<String, ThreadNode> threadNodes;
+    /**
+     * The number of started threads after which the background aggregator
+     * merges terminated threads.
+     */
+    private static final int MERGE_INTERVAL = 64;
+
+    /** The number of started threads since merging terminated threads. */
+    private AtomicInteger startedThreadCount;
+
+    /** The thread node bound to each thread. */
+    private volatile ThreadLocal<ThreadNode> currentThreadNode;
 
     /**
      * The constructor.
      */
     protected RuntimeModel() {
-        threadNodes = new ConcurrentHashMap<String, ThreadNode>();
+        startedThreadCount = new AtomicInteger();
+        currentThreadNode = createThreadLocal();
 
         // to dump the model into file when shutting down application
         Runtime.getRuntime().addShutdownHook(new Thread(this));
@@ -53,26 +67,54 @@ public class RuntimeModel implements Runnable {
     }
 
     /**
-     * Gets the thread node with the given thread name.
+     * Gets the thread node bound to the current thread. The thread node is
+     * created when the current thread steps into the first profiled frame.
      * 
-     * @param thread
-     *            The thread name
      * @return The thread node
      */
-    protected ThreadNode getThread(String thread) {
-        ThreadNode threadNode = threadNodes.get(thread);
-        if (threadNode == null) {
-            threadNode = new ThreadNode(thread);
-            threadNodes.put(thread, threadNode);
+    protected ThreadNode getCurrentThread() {
+        return currentThreadNode.get();
+    }
+
+    /*
+     * @see CallTreeModel#clear()
+     */
+    @Override
+    protected synchronized void clear() {
+        super.clear();
+        currentThreadNode = createThreadLocal();
+        AllocationSiteRegistry.clear();
+        MonitorSiteRegistry.clear();
+        SlowCallRing.clear();
+    }
+
+    /**
+     * Drains the event buffers of all threads into frames.
+     */
+    protected void drainEventBuffers() {
+        for (ThreadNode threadNode : threadNodes) {
+            threadNode.drainEventBuffer();
         }
-        return threadNode;
     }
 
     /**
-     * Clears the model.
+     * Gets the state indicating if enough threads have started since merging
+     * terminated threads.
+     * 
+     * @return <tt>true</tt> if terminated threads should be merged
      */
-    protected void clear() {
-        threadNodes.clear();
+    protected boolean isMergeDue() {
+        return startedThreadCount.get() >= MERGE_INTERVAL;
+    }
+
+    /*
+     * @see CallTreeModel#mergeTerminatedThreads()
+     */
+    @Override
+    protected synchronized void mergeTerminatedThreads() {
+        startedThreadCount.set(0);
+        drainEventBuffers();
+        super.mergeTerminatedThreads();
     }
 
     /**
@@ -110,39 +152,84 @@ public class RuntimeModel implements Runnable {
      * 
      * @return The profile data
      */
-    protected String doDump() {
-
-        // get date and time
-        Date currentDate = new Date();
-        String date = new SimpleDateFormat(Constants.DATE_FORMAT)
-                .format(currentDate);
-        String time = new SimpleDateFormat(Constants.TIME_FORMAT)
-                .format(currentDate);
+    protected synchronized String doDump() {
+        takeSnapshot();
 
         StringBuffer buffer = new StringBuffer();
-        buffer.append("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n");
-        buffer.append("<?JvmMonitor version=\"");
-        buffer.append(Constants.VERSION);
-        buffer.append("\"?>\n");
-
-        buffer.append("<cpu-profile date=\"").append(date).append(' ')
-                .append(time).append("\" ");
-        buffer.append("runtime=\"").append(getRuntime()).append("\" ");
-        buffer.append("mainClass=\"").append(getMainClass()).append("\" ");
-        buffer.append("arguments=\"").append(getJvmArguments()).append("\">\n");
+        appendHeader(buffer);
 
-        long currentTime = System.currentTimeMillis();
-        for (ThreadNode threadNode : threadNodes.values()) {
-            threadNode.dump(buffer, currentTime);
+        Map<ThreadNode, String> names = getThreadNames(threadNodes);
+        for (ThreadNode threadNode : threadNodes) {
+            threadNode.dump(buffer, names.get(threadNode));
         }
+        MonitorSiteRegistry.dump(buffer);
         buffer.append("</cpu-profile>");
         return buffer.toString();
     }
 
+    /**
+     * Dumps the captured slow calls in the same format as profile data.
+     * 
+     * @return The slow calls
+     */
+    protected String dumpSlowCalls() {
+        drainEventBuffers();
+        StringBuffer buffer = new StringBuffer();
+        appendHeader(buffer);
+        SlowCallRing.dump(buffer);
+        buffer.append("</cpu-profile>");
+        return buffer.toString();
+    }
+
+    /**
+     * Dumps the profile data in binary format. Only the frames modified after
+     * the given generation are dumped, unless the model has been cleared,
+     * terminated threads have been merged or any thread has been renamed
+     * since then.
+     * 
+     * @param since
+     *            The generation returned by previous dump, or 0 to dump all
+     *            frames
+     * @return The profile data
+     * @see BinaryDumpWriter
+     */
+    protected byte[] doDumpBinary(long since) {
+        int flags = 0;
+        if (CpuBciProfiler.isCpuTimeEnabled()) {
+            flags |= BinaryDumpWriter.CPU_TIME;
+        }
+        if (!AllocationSiteRegistry.isEmpty()) {
+            flags |= BinaryDumpWriter.ALLOCATIONS;
+        }
+        if (Config.getInstance().isLatencyEnabled()) {
+            flags |= BinaryDumpWriter.LATENCY;
+        }
+        return doDumpBinary(since, flags);
+    }
+
+    /**
+     * Accumulates the invocation count and the self time of all frames into
+     * the given arrays indexed by method ID. The counts and times include
+     * the ones of terminated threads, and are reset only by clearing.
+     * 
+     * @param counts
+     *            The invocation counts
+     * @param selfTimes
+     *            The self times in nanoseconds excluding the overhead
+     */
+    protected synchronized void accumulateMethodStatistics(long[] counts,
+            long[] selfTimes) {
+        takeSnapshot();
+        for (ThreadNode threadNode : threadNodes) {
+            threadNode.accumulate(counts, selfTimes);
+        }
+    }
+
     /**
      * Dumps into a dump file.
      */
-    protected void doDumpToFile() {
+    protected synchronized void doDumpToFile() {
+        takeSnapshot();
 
         // get date and time
         Date currentDate = new Date();
@@ -167,10 +254,11 @@ public class RuntimeModel implements Runnable {
             writer.printf("mainClass=\"%s\" ", getMainClass());
             writer.printf("arguments=\"%s\">\n", getJvmArguments());
             writer.println("");
-            long currentTime = System.currentTimeMillis();
-            for (ThreadNode threadNode : threadNodes.values()) {
-                threadNode.dump(writer, currentTime);
+            Map<ThreadNode, String> names = getThreadNames(threadNodes);
+            for (ThreadNode threadNode : threadNodes) {
+                threadNode.dump(writer, names.get(threadNode));
             }
+            MonitorSiteRegistry.dump(writer);
             writer.println("</cpu-profile>");
             writer.flush();
         } catch (IOException e) {
@@ -183,6 +271,48 @@ public class RuntimeModel implements Runnable {
         }
     }
 
+    /**
+     * Creates the thread local that binds a new thread node to each thread.
+     * 
+     * @return The thread local
+     */
+    private ThreadLocal<ThreadNode> createThreadLocal() {
+        return new ThreadLocal<ThreadNode>() {
+            @Override
+            protected ThreadNode initialValue() {
+                // merged by dump or aggregator, not to block on the model lock
+                startedThreadCount.incrementAndGet();
+                return addThreadNode(Thread.currentThread());
+            }
+        };
+    }
+
+    /**
+     * Appends the XML declaration and the start tag of profile data.
+     * 
+     * @param buffer
+     *            The string buffer
+     */
+    private static void appendHeader(StringBuffer buffer) {
+        // get date and time
+        Date currentDate = new Date();
+        String date = new SimpleDateFormat(Constants.DATE_FORMAT)
+                .format(currentDate);
+        String time = new SimpleDateFormat(Constants.TIME_FORMAT)
+                .format(currentDate);
+
+        buffer.append("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n");
+        buffer.append("<?JvmMonitor version=\"");
+        buffer.append(Constants.VERSION);
+        buffer.append("\"?>\n");
+
+        buffer.append("<cpu-profile date=\"").append(date).append(' ')
+                .append(time).append("\" ");
+        buffer.append("runtime=\"").append(getRuntime()).append("\" ");
+        buffer.append("mainClass=\"").append(getMainClass()).append("\" ");
+        buffer.append("arguments=\"").append(getJvmArguments()).append("\">\n");
+    }
+
     /**
      * Gets the runtime name (e.g. PID@HOSTNAME depending on JVM).
      * 
@@ -0,0 +1,98 @@
+/*******************************************************************************
+ * Copyright (c) 2010 JVM Monitor project. All rights reserved.
+ *
+ * This code is distributed under the terms of the Eclipse Public License v1.0
+ * which is available at http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+package org.jvmmonitor.internal.agent;
+
+import java.text.SimpleDateFormat;
+import java.util.Date;
+
+/**
+ * The captured invocation of entry method that exceeded the threshold, with
+ * the call tree of its callees.
+ */
+@SuppressWarnings("nls")
+public class SlowCall {
+
+    /** The thread name. */
+    private String threadName;
+
+    /** The time in milliseconds when the invocation completed. */
+    private long date;
+
+    /** The elapsed time in nanoseconds. */
+    private long elapsedTime;
+
+    /** The root frame of the entry method. */
+    private FrameNode root;
+
+    /** The state indicating if frames have been dropped. */
+    private boolean truncated;
+
+    /** The sequence number given by ring of slow calls. */
+    private long sequenceNumber;
+
+    /**
+     * The constructor.
+     * 
+     * @param threadName
+     *            The thread name
+     * @param elapsedTime
+     *            The elapsed time in nanoseconds
+     * @param root
+     *            The root frame of the entry method
+     * @param truncated
+     *            <tt>true</tt> if frames have been dropped
+     */
+    protected SlowCall(String threadName, long elapsedTime, FrameNode root,
+            boolean truncated) {
+        this.threadName = threadName;
+        this.elapsedTime = elapsedTime;
+        this.root = root;
+        this.truncated = truncated;
+        date = System.currentTimeMillis();
+    }
+
+    /**
+     * Sets the sequence number.
+     * 
+     * @param sequenceNumber
+     *            The sequence number
+     */
+    protected void setSequenceNumber(long sequenceNumber) {
+        this.sequenceNumber = sequenceNumber;
+    }
+
+    /**
+     * Gets the elapsed time.
+     * 
+     * @return The elapsed time in nanoseconds
+     */
+    protected long getElapsedTime() {
+        return elapsedTime;
+    }
+
+    /**
+     * Dumps the slow call as a thread, whose name is unique with the sequence
+     * number, date and elapsed time.
+     * 
+     * @param buffer
+     *            The string buffer
+     */
+    protected void dump(StringBuffer buffer) {
+        String time = new SimpleDateFormat(Constants.DATE_FORMAT + " "
+                + Constants.TIME_FORMAT).format(new Date(date));
+        buffer.append("\t<thread name=\"").append(threadName).append(" #")
+                .append(sequenceNumber).append(" (").append(time)
+                .append(", ").append(FrameNode.formatTime(elapsedTime))
+                .append(" ms");
+        if (truncated) {
+            buffer.append(", truncated");
+        }
+        buffer.append(")\">\n");
+        root.dump(buffer, 2);
+        buffer.append("\t</thread>\n");
+    }
+}
@@ -0,0 +1,234 @@
+/*******************************************************************************
+ * Copyright (c) 2010 JVM Monitor project. All rights reserved.
+ *
+ * This code is distributed under the terms of the Eclipse Public License v1.0
+ * which is available at http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+package org.jvmmonitor.internal.agent;
+
+import java.util.Arrays;
+
+/**
+ * The recorder of the invocations of an entry method and its callees on a
+ * thread, whose call tree is captured when the invocation turned out to be
+ * slow.
+ * <p>
+ * While the entry method is being invoked, the steps into and return from
+ * frames are appended to primitive arrays, so that no frame node is created
+ * for fast invocations. The number of events is limited, and the frames
+ * beyond the limit are dropped from the captured call tree, which is then
+ * marked as truncated. The room for the return events of recorded frames is
+ * always reserved so that the call tree is balanced.
+ * <p>
+ * The recorder is used only by the profiled thread.
+ */
+public class SlowCallRecorder {
+
+    /** The event of stepping return from frame. */
+    private static final int RETURN = -1;
+
+    /** The initial capacity of events. */
+    private static final int INITIAL_CAPACITY = 256;
+
+    /** The max number of events per invocation of entry method. */
+    private static final int MAX_EVENTS = 65536;
+
+    /** The method IDs stepped into, or {@link #RETURN}, indexed by event. */
+    private int[] events;
+
+    /** The times of events. */
+    private long[] times;
+
+    /** The thread CPU times of events. */
+    private long[] cpuTimes;
+
+    /** The number of events. */
+    private int size;
+
+    /** The number of recorded frames being invoked. */
+    private int openCount;
+
+    /** The number of dropped frames being invoked. */
+    private int droppedCount;
+
+    /** The state indicating if any frame has been dropped. */
+    private boolean truncated;
+
+    /**
+     * The depth of frame stack below the entry method, or -1 if not
+     * recording.
+     */
+    private int entryDepth;
+
+    /**
+     * The constructor.
+     */
+    protected SlowCallRecorder() {
+        events = new int[INITIAL_CAPACITY];
+        times = new long[INITIAL_CAPACITY];
+        cpuTimes = new long[INITIAL_CAPACITY];
+        entryDepth = -1;
+    }
+
+    /**
+     * Gets the state indicating if the invocation of entry method is being
+     * recorded.
+     * 
+     * @return <tt>true</tt> if recording
+     */
+    protected boolean isRecording() {
+        return entryDepth != -1;
+    }
+
+    /**
+     * Starts recording the invocation of entry method.
+     * 
+     * @param depth
+     *            The depth of frame stack below the entry method
+     * @param methodId
+     *            The method ID of entry method
+     * @param time
+     *            The time stepping into the entry method
+     * @param cpuTime
+     *            The thread CPU time stepping into the entry method
+     */
+    protected void start(int depth, int methodId, long time, long cpuTime) {
+        entryDepth = depth;
+        size = 0;
+        openCount = 0;
+        droppedCount = 0;
+        truncated = false;
+        enter(methodId, time, cpuTime);
+    }
+
+    /**
+     * Stops recording.
+     */
+    protected void stop() {
+        entryDepth = -1;
+    }
+
+    /**
+     * Records the step into frame.
+     * 
+     * @param methodId
+     *            The method ID
+     * @param time
+     *            The time stepping into the frame
+     * @param cpuTime
+     *            The thread CPU time stepping into the frame
+     */
+    protected void enter(int methodId, long time, long cpuTime) {
+        if (droppedCount > 0 || size + openCount + 2 > MAX_EVENTS) {
+            droppedCount++;
+            truncated = true;
+            return;
+        }
+        add(methodId, time, cpuTime);
+        openCount++;
+    }
+
+    /**
+     * Records the step return from frame.
+     * 
+     * @param depth
+     *            The depth of frame stack below the frame
+     * @param time
+     *            The time stepping return from the frame
+     * @param cpuTime
+     *            The thread CPU time stepping return from the frame
+     * @return <tt>true</tt> if returned from the entry method
+     */
+    protected boolean exit(int depth, long time, long cpuTime) {
+        if (droppedCount > 0) {
+            droppedCount--;
+        } else {
+            add(RETURN, time, cpuTime);
+            openCount--;
+        }
+        return depth == entryDepth;
+    }
+
+    /**
+     * Gets the elapsed time of the entry method, which is valid once returned
+     * from the entry method.
+     * 
+     * @return The elapsed time
+     */
+    protected long getElapsedTime() {
+        return times[size - 1] - times[0];
+    }
+
+    /**
+     * Captures the recorded invocation of entry method as call tree. This is
+     * invoked once returned from the entry method.
+     * 
+     * @param threadName
+     *            The thread name
+     * @return The slow call
+     */
+    protected SlowCall capture(String threadName) {
+        FrameNode root = new FrameNode(events[0]);
+        FrameNode[] frames = new FrameNode[INITIAL_CAPACITY];
+        int[] entryIndexes = new int[INITIAL_CAPACITY];
+        int depth = 0;
+        for (int i = 0; i < size; i++) {
+            int methodId = events[i];
+            if (methodId == RETURN) {
+                if (depth == 0) {
+                    break;
+                }
+                depth--;
+                int entry = entryIndexes[depth];
+                frames[depth].stepReturn(0, times[i] - times[entry],
+                        Math.max(cpuTimes[i] - cpuTimes[entry], 0), 0);
+                continue;
+            }
+
+            FrameNode frame;
+            if (depth == 0) {
+                frame = root;
+            } else {
+                frame = frames[depth - 1].findChild(methodId);
+                if (frame == null) {
+                    frame = new FrameNode(methodId);
+                    frames[depth - 1].addChild(frame);
+                }
+            }
+            if (depth == frames.length) {
+                frames = Arrays.copyOf(frames, depth * 2);
+                entryIndexes = Arrays.copyOf(entryIndexes, depth * 2);
+            }
+            frame.stepInto(0, 0);
+            frames[depth] = frame;
+            entryIndexes[depth] = i;
+            depth++;
+        }
+        root.fold(0, 1);
+
+        return new SlowCall(threadName, getElapsedTime(), root, truncated);
+    }
+
+    /**
+     * Adds the event.
+     * 
+     * @param methodId
+     *            The method ID, or {@link #RETURN}
+     * @param time
+     *            The time
+     * @param cpuTime
+     *            The thread CPU time
+     */
+    private void add(int methodId, long time, long cpuTime) {
+        if (size == events.length) {
+            int capacity = Math.min(size * 2, MAX_EVENTS);
+            events = Arrays.copyOf(events, capacity);
+            times = Arrays.copyOf(times, capacity);
+            cpuTimes = Arrays.copyOf(cpuTimes, capacity);
+        }
+        events[size] = methodId;
+        times[size] = time;
+        cpuTimes[size] = cpuTime;
+        size++;
+    }
+}
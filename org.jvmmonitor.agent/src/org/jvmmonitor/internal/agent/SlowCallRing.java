@@ -0,0 +1,75 @@
+/*******************************************************************************
+ * Copyright (c) 2010 JVM Monitor project. All rights reserved.
+ *
+ * This code is distributed under the terms of the Eclipse Public License v1.0
+ * which is available at http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+package org.jvmmonitor.internal.agent;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+
+/**
+ * The bounded ring of captured slow calls. The oldest slow call is discarded
+ * when the number of slow calls exceeds the capacity given by
+ * {@link Config#getSlowCallCapacity()}.
+ */
+public class SlowCallRing {
+
+    /** The slow calls in the order of completion. */
+    private static final Deque<SlowCall> slowCalls = new ArrayDeque<SlowCall>();
+
+    /** The sequence number of the last slow call. */
+    private static long sequenceNumber;
+
+    /**
+     * The constructor.
+     */
+    private SlowCallRing() {
+        // do not instantiate
+    }
+
+    /**
+     * Adds the slow call, discarding the oldest slow calls beyond the
+     * capacity.
+     * 
+     * @param slowCall
+     *            The slow call
+     */
+    protected static synchronized void add(SlowCall slowCall) {
+        slowCall.setSequenceNumber(++sequenceNumber);
+        slowCalls.addLast(slowCall);
+        int capacity = Config.getInstance().getSlowCallCapacity();
+        while (slowCalls.size() > capacity) {
+            slowCalls.removeFirst();
+        }
+    }
+
+    /**
+     * Gets the slow calls.
+     * 
+     * @return The slow calls in the order of completion
+     */
+    protected static synchronized SlowCall[] getSlowCalls() {
+        return slowCalls.toArray(new SlowCall[slowCalls.size()]);
+    }
+
+    /**
+     * Clears the slow calls.
+     */
+    protected static synchronized void clear() {
+        slowCalls.clear();
+    }
+
+    /**
+     * Dumps the slow calls.
+     * 
+     * @param buffer
+     *            The string buffer
+     */
+    protected static void dump(StringBuffer buffer) {
+        for (SlowCall slowCall : getSlowCalls()) {
+            slowCall.dump(buffer);
+        }
+    }
+}
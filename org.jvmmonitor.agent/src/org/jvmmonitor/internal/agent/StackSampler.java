@@ -0,0 +1,262 @@
+/*******************************************************************************
+ * Copyright (c) 2010 JVM Monitor project. All rights reserved.
+ *
+ * This code is distributed under the terms of the Eclipse Public License v1.0
+ * which is available at http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+package org.jvmmonitor.internal.agent;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Set;
+
+/**
+ * The stack sampler that periodically takes the stack traces of all threads
+ * in the target JVM, and aggregates them into the call trees of thread nodes
+ * keyed by method IDs.
+ * <p>
+ * Since the samples are aggregated locally, the client reads only the frames
+ * modified since its previous read, and the amount of transferred data
+ * depends on the size of call trees rather than the sampling rate. The
+ * sampled frames are reported with empty parameter list, since the stack
+ * trace doesn't tell the method descriptor.
+ */
+@SuppressWarnings("nls")
+public class StackSampler extends CallTreeModel implements Runnable {
+
+    /** The thread name of sampler. */
+    private static final String THREAD_NAME = "JVM Monitor Stack Sampler";
+
+    /** The method ID of stack trace element that isn't profiled. */
+    private static final int NOT_PROFILED = -1;
+
+    /** The sampling thread, or <tt>null</tt> if not running. */
+    private volatile Thread thread;
+
+    /** The filter of profiled classes. */
+    private volatile ClassFilter filter;
+
+    /** The profiled packages. */
+    private volatile Set<String> profiledPackages;
+
+    /** The method IDs of stack trace elements, or NOT_PROFILED. */
+    private Map<StackTraceElement, Integer> methodIds;
+
+    /** The buffer of method IDs of a stack trace from root. */
+    private int[] stack;
+
+    /** The thread nodes of live threads keyed by thread ID. */
+    private Map<Long, ThreadNode> liveThreadNodes;
+
+    /**
+     * The constructor.
+     */
+    protected StackSampler() {
+        profiledPackages = Config.getInstance().profiledPackages;
+        filter = Config.getInstance().getClassFilter();
+        methodIds = new HashMap<StackTraceElement, Integer>();
+        stack = new int[64];
+        liveThreadNodes = new HashMap<Long, ThreadNode>();
+    }
+
+    /**
+     * Gets the state indicating if the sampler is running.
+     *
+     * @return <tt>true</tt> if running
+     */
+    protected boolean isRunning() {
+        return thread != null;
+    }
+
+    /**
+     * Starts or stops the sampler.
+     *
+     * @param running
+     *            <tt>true</tt> to start the sampler
+     */
+    protected synchronized void setRunning(boolean running) {
+        if (running == (thread != null)) {
+            return;
+        }
+
+        if (running) {
+            thread = new Thread(this, THREAD_NAME);
+            thread.setDaemon(true);
+            thread.start();
+        } else {
+            thread = null;
+        }
+    }
+
+    /**
+     * Gets the profiled packages.
+     *
+     * @return The profiled packages
+     */
+    protected Set<String> getProfiledPackages() {
+        return profiledPackages;
+    }
+
+    /**
+     * Sets the profiled packages. The frames of classes that don't belong to
+     * the profiled packages are not sampled.
+     *
+     * @param packages
+     *            The packages (e.g. org.example.*)
+     */
+    protected synchronized void setProfiledPackages(String[] packages) {
+        Set<String> list = new LinkedHashSet<String>();
+        for (String item : packages) {
+            if (!item.trim().isEmpty()) {
+                list.add(item.trim());
+            }
+        }
+        Set<String> none = Collections.emptySet();
+        profiledPackages = list;
+        filter = new ClassFilter(list, none, none);
+        methodIds.clear();
+    }
+
+    /*
+     * @see CallTreeModel#clear()
+     */
+    @Override
+    protected synchronized void clear() {
+        super.clear();
+        liveThreadNodes.clear();
+    }
+
+    /*
+     * @see Runnable#run()
+     */
+    @Override
+    public void run() {
+        Thread current = Thread.currentThread();
+        long previousTime = System.nanoTime();
+        boolean errorLogged = false;
+        while (thread == current) {
+            try {
+                Thread.sleep(Config.getInstance().getSamplerPeriod());
+            } catch (InterruptedException e) {
+                return;
+            }
+
+            long time = System.nanoTime();
+            try {
+                Map<Thread, StackTraceElement[]> stackTraces = Thread
+                        .getAllStackTraces();
+                addSamples(stackTraces, time - previousTime);
+            } catch (Throwable t) {
+                if (!errorLogged) {
+                    errorLogged = true;
+                    Agent.logError(t, Messages.CANNOT_SAMPLE_STACKS);
+                }
+            }
+            previousTime = time;
+        }
+    }
+
+    /**
+     * Dumps the frames modified after the given generation in binary format.
+     *
+     * @param since
+     *            The generation returned by previous dump, or 0 to dump all
+     *            frames
+     * @return The sampled frames
+     * @see BinaryDumpWriter
+     */
+    protected byte[] dumpBinary(long since) {
+        return doDumpBinary(since, 0);
+    }
+
+    /**
+     * Adds the stack samples of all threads except for the sampler itself
+     * and the threads serving JMX clients.
+     *
+     * @param stackTraces
+     *            The stack traces of threads
+     * @param period
+     *            The time in nanoseconds since the previous samples
+     */
+    private synchronized void addSamples(
+            Map<Thread, StackTraceElement[]> stackTraces, long period) {
+        if (thread == null) {
+            return;
+        }
+
+        for (Entry<Thread, StackTraceElement[]> entry : stackTraces
+                .entrySet()) {
+            Thread sampledThread = entry.getKey();
+            String threadName = sampledThread.getName();
+            if (sampledThread == thread || threadName.startsWith("JMX ")
+                    || threadName.startsWith("RMI ")) {
+                continue;
+            }
+
+            StackTraceElement[] stackTrace = entry.getValue();
+            int length = 0;
+            for (int i = stackTrace.length - 1; i >= 0; i--) {
+                int methodId = getMethodId(stackTrace[i]);
+                if (methodId == NOT_PROFILED) {
+                    continue;
+                }
+                if (length == stack.length) {
+                    stack = Arrays.copyOf(stack, length * 2);
+                }
+                stack[length++] = methodId;
+            }
+            if (length == 0) {
+                continue;
+            }
+
+            ThreadNode threadNode = liveThreadNodes.get(sampledThread
+                    .getId());
+            if (threadNode == null) {
+                threadNode = addThreadNode(sampledThread);
+                liveThreadNodes.put(sampledThread.getId(), threadNode);
+            }
+            threadNode.addSample(stack, length, period);
+        }
+    }
+
+    /**
+     * Gets the method ID of the given stack trace element.
+     *
+     * @param element
+     *            The stack trace element
+     * @return The method ID, or NOT_PROFILED if the class isn't profiled
+     */
+    private int getMethodId(StackTraceElement element) {
+        Integer methodId = methodIds.get(element);
+        if (methodId == null) {
+            String className = element.getClassName();
+            if (filter.isProfiledPackage(className)) {
+                methodId = MethodRegistry.registerSampled(className.replace(
+                        '.', '/'), element.getMethodName());
+            } else {
+                methodId = NOT_PROFILED;
+            }
+            methodIds.put(element, methodId);
+        }
+        return methodId;
+    }
+
+    /*
+     * @see CallTreeModel#mergeTerminatedThreads()
+     */
+    @Override
+    protected synchronized void mergeTerminatedThreads() {
+        super.mergeTerminatedThreads();
+        for (Iterator<ThreadNode> it = liveThreadNodes.values().iterator(); it
+                .hasNext();) {
+            if (it.next().isTerminated()) {
+                it.remove();
+            }
+        }
+    }
+}
@@ -0,0 +1,99 @@
+/*******************************************************************************
+ * Copyright (c) 2010 JVM Monitor project. All rights reserved.
+ *
+ * This code is distributed under the terms of the Eclipse Public License v1.0
+ * which is available at http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+package org.jvmmonitor.internal.agent;
+
+import javax.management.MXBean;
+
+/**
+ * The MXBean to control the stack sampler, which samples the stacks in target
+ * JVM and aggregates them into call trees instead of sending every sample to
+ * the client.
+ */
+@SuppressWarnings("nls")
+@MXBean
+public interface StackSamplerMXBean {
+
+    /** The MXBean name. */
+    final static String STACK_SAMPLER_MXBEAN_NAME = "org.jvmmonitor:type=Stack Sampler";
+
+    /**
+     * Sets the state indicating if sampler is running.
+     * 
+     * @param run
+     *            True to run sampler
+     */
+    void setRunning(boolean run);
+
+    /**
+     * Gets the state indicating if sampler is running.
+     * 
+     * @return <tt>true</tt> if sampler is running
+     */
+    boolean isRunning();
+
+    /**
+     * Sets the sampling period.
+     * 
+     * @param period
+     *            The sampling period in milliseconds
+     */
+    void setSamplingPeriod(int period);
+
+    /**
+     * Gets the sampling period.
+     * 
+     * @return The sampling period in milliseconds
+     */
+    int getSamplingPeriod();
+
+    /**
+     * Sets the profiled packages.
+     * 
+     * @param packages
+     *            The profiled packages (e.g. org.example.*)
+     */
+    void setProfiledPackages(String[] packages);
+
+    /**
+     * Gets the profiled packages.
+     * 
+     * @return The profiled packages
+     */
+    String[] getProfiledPackages();
+
+    /**
+     * Clears the sampled frames.
+     */
+    void clear();
+
+    /**
+     * Dumps the sampled frames modified after the given generation in binary
+     * format. The data is kept with a few latest dumps, so that it can be
+     * read in chunks with {@link #readBinaryDump(long, int, int)}. The data
+     * contains the generation to be given next time.
+     * 
+     * @param generation
+     *            The generation contained in the previous data, or 0 to dump
+     *            all frames
+     * @return The dump ID
+     */
+    long dumpSince(long generation);
+
+    /**
+     * Reads the sampled frames dumped in binary format.
+     * 
+     * @param id
+     *            The dump ID
+     * @param pos
+     *            The offset position of data in bytes to start reading data
+     * @param maxSize
+     *            The max size in bytes to read data
+     * @return The data, empty array if no more data, or <tt>null</tt> if the
+     *         dump has been discarded by later dumps
+     */
+    byte[] readBinaryDump(long id, int pos, int maxSize);
+}
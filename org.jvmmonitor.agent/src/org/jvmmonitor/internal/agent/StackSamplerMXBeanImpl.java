@@ -0,0 +1,109 @@
+/*******************************************************************************
+ * Copyright (c) 2010 JVM Monitor project. All rights reserved.
+ *
+ * This code is distributed under the terms of the Eclipse Public License v1.0
+ * which is available at http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+package org.jvmmonitor.internal.agent;
+
+import java.util.Set;
+
+/**
+ * The stack sampler controller.
+ */
+public class StackSamplerMXBeanImpl implements StackSamplerMXBean {
+
+    /** The stack sampler. */
+    private StackSampler sampler;
+
+    /** The sampled frames dumped in binary format. */
+    private final BinaryDumpStore binaryDumps;
+
+    /**
+     * The constructor.
+     */
+    public StackSamplerMXBeanImpl() {
+        sampler = new StackSampler();
+        binaryDumps = new BinaryDumpStore();
+    }
+
+    /*
+     * @see StackSamplerMXBean#setRunning(boolean)
+     */
+    @Override
+    public void setRunning(boolean run) {
+        sampler.setRunning(run);
+    }
+
+    /*
+     * @see StackSamplerMXBean#isRunning()
+     */
+    @Override
+    public boolean isRunning() {
+        return sampler.isRunning();
+    }
+
+    /*
+     * @see StackSamplerMXBean#setSamplingPeriod(int)
+     */
+    @Override
+    public void setSamplingPeriod(int period) {
+        Config.getInstance().setSamplerPeriod(period);
+    }
+
+    /*
+     * @see StackSamplerMXBean#getSamplingPeriod()
+     */
+    @Override
+    public int getSamplingPeriod() {
+        return Config.getInstance().getSamplerPeriod();
+    }
+
+    /*
+     * @see StackSamplerMXBean#setProfiledPackages(String[])
+     */
+    @Override
+    public void setProfiledPackages(String[] packages) {
+        sampler.setProfiledPackages(packages);
+    }
+
+    /*
+     * @see StackSamplerMXBean#getProfiledPackages()
+     */
+    @Override
+    public String[] getProfiledPackages() {
+        Set<String> list = sampler.getProfiledPackages();
+        return list.toArray(new String[list.size()]);
+    }
+
+    /*
+     * @see StackSamplerMXBean#clear()
+     */
+    @Override
+    public void clear() {
+        sampler.clear();
+    }
+
+    /*
+     * @see StackSamplerMXBean#dumpSince(long)
+     */
+    @Override
+    public long dumpSince(long generation) {
+        byte[] binaryDump;
+        try {
+            binaryDump = sampler.dumpBinary(generation);
+        } catch (Throwable t) {
+            Agent.logError(t, Messages.CANNOT_GET_STACK_SAMPLES);
+            binaryDump = new byte[0];
+        }
+        return binaryDumps.add(binaryDump);
+    }
+
+    /*
+     * @see StackSamplerMXBean#readBinaryDump(long, int, int)
+     */
+    @Override
+    public byte[] readBinaryDump(long id, int pos, int maxSize) {
+        return binaryDumps.read(id, pos, maxSize);
+    }
+}
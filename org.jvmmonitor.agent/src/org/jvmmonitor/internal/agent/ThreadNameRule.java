@@ -0,0 +1,104 @@
+/*******************************************************************************
+ * Copyright (c) 2010 JVM Monitor project. All rights reserved.
+ *
+ * This code is distributed under the terms of the Eclipse Public License v1.0
+ * which is available at http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+package org.jvmmonitor.internal.agent;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+
+/**
+ * The rule to normalize the name of terminated thread, so that the profile
+ * data of the threads sharing the normalized name (e.g. the threads in the
+ * same thread pool) are aggregated.
+ * <p>
+ * The rules are given as <tt>regex=replacement</tt> separated with
+ * <tt>;</tt>, where the last <tt>=</tt> separates the replacement. The first
+ * rule whose regex is found in thread name replaces all matches with the
+ * replacement literally, e.g. <tt>\d+$=*</tt> normalizes
+ * <tt>pool-7-thread-12345</tt> into <tt>pool-7-thread-*</tt>.
+ */
+@SuppressWarnings("nls")
+public class ThreadNameRule {
+
+    /** The separator of rules. */
+    private static final String SEPARATOR = ";";
+
+    /** The separator of regex and replacement. */
+    private static final char REPLACEMENT_SEPARATOR = '=';
+
+    /** The pattern. */
+    private final Pattern pattern;
+
+    /** The replacement. */
+    private final String replacement;
+
+    /**
+     * The constructor.
+     *
+     * @param pattern
+     *            The pattern
+     * @param replacement
+     *            The replacement
+     */
+    private ThreadNameRule(Pattern pattern, String replacement) {
+        this.pattern = pattern;
+        this.replacement = replacement;
+    }
+
+    /**
+     * Normalizes the thread name with the given rules.
+     *
+     * @param rules
+     *            The rules
+     * @param name
+     *            The thread name
+     * @return The normalized thread name, or the given thread name if no rule
+     *         matches
+     */
+    protected static String normalize(ThreadNameRule[] rules, String name) {
+        for (ThreadNameRule rule : rules) {
+            Matcher matcher = rule.pattern.matcher(name);
+            if (matcher.find()) {
+                return matcher.replaceAll(rule.replacement);
+            }
+        }
+        return name;
+    }
+
+    /**
+     * Parses the rules. The invalid rules are logged and ignored.
+     *
+     * @param rules
+     *            The rules separated with <tt>;</tt>
+     * @return The rules
+     */
+    protected static ThreadNameRule[] parse(String rules) {
+        List<ThreadNameRule> list = new ArrayList<ThreadNameRule>();
+        for (String rule : rules.split(SEPARATOR)) {
+            rule = rule.trim();
+            int index = rule.lastIndexOf(REPLACEMENT_SEPARATOR);
+            if (index <= 0) {
+                if (rule.length() > 0) {
+                    Agent.logError(null, Messages.INVALID_THREAD_NAME_RULE,
+                            rule);
+                }
+                continue;
+            }
+
+            try {
+                list.add(new ThreadNameRule(Pattern.compile(rule.substring(0,
+                        index)), Matcher.quoteReplacement(rule
+                        .substring(index + 1))));
+            } catch (PatternSyntaxException e) {
+                Agent.logError(e, Messages.INVALID_THREAD_NAME_RULE, rule);
+            }
+        }
+        return list.toArray(new ThreadNameRule[list.size()]);
+    }
+}
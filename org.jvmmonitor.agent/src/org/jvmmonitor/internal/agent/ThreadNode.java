@@ -7,12 +7,31 @@
 package org.jvmmonitor.internal.agent;
 
 import java.io.PrintWriter;
-import java.util.Collection;
-import java.util.Map;
-import java.util.concurrent.ConcurrentHashMap;
+import java.lang.ref.WeakReference;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * The thread node of runtime model.
+ * <p>
+ * The counters of frames are double-banked so that a consistent snapshot can
+ * be taken without stopping the profiled thread. The profiled thread updates
+ * only the active bank within an update sequence, and the dumping thread
+ * switches the active bank and then folds the inactive one into snapshot once
+ * the profiled thread is no longer in the update sequence that may have seen
+ * the previous bank.
+ * <p>
+ * The number of frame nodes is limited per thread and in all threads. Once
+ * the limit is reached, a new frame is folded into the frame being invoked for
+ * the same method if any, or otherwise aggregated into the "other" frame of
+ * its parent.
+ * <p>
+ * The thread node that aggregates terminated threads has no thread, and its
+ * frames are modified only by merging the frames of terminated threads.
+ * <p>
+ * If event buffer is enabled, the profiled thread only appends events to the
+ * event buffer, and the frames are updated by whichever thread drains the
+ * buffer while holding its lock.
  */
 @SuppressWarnings("nls")
 public class ThreadNode {
@@ -20,101 +39,938 @@ public class ThreadNode {
     /** The thread name */
     private String thread;
 
-    /** The current frame */
-    private FrameNode currentFrame;
+    /** The thread ID */
+    private long threadId;
+
+    /** The thread, or <tt>null</tt> if aggregating terminated threads. */
+    private WeakReference<Thread> threadReference;
+
+    /** The initial capacity of frame stack. */
+    private static final int INITIAL_STACK_CAPACITY = 64;
+
+    /** The max number of attempts to wait for the profiled thread. */
+    private static final int MAX_ATTEMPTS = 1000;
+
+    /** The value of pending bank indicating that no bank is pending. */
+    private static final int NO_PENDING_BANK = -1;
+
+    /** The max number of events drained in an update sequence. */
+    private static final int DRAIN_CHUNK_SIZE = 1024;
+
+    /** The stack of frames being invoked, indexed by depth. */
+    private FrameNode[] frameStack;
+
+    /**
+     * The method IDs of frames being invoked, indexed by depth, which can
+     * differ from the method IDs of folded or aggregated frames.
+     */
+    private int[] methodIdStack;
+
+    /** The times stepped into frames being invoked, indexed by depth. */
+    private long[] entryTimeStack;
+
+    /**
+     * The thread CPU times stepped into frames being invoked, indexed by
+     * depth, which are 0 unless thread CPU time is measured.
+     */
+    private long[] entryCpuTimeStack;
+
+    /**
+     * The overhead times of this thread stepped into frames being invoked,
+     * indexed by depth, from which the overhead of each invocation is given.
+     */
+    private long[] entryOverheadTimeStack;
+
+    /** The overhead time accumulated on this thread. */
+    private long overheadTime;
+
+    /** The depth of frame stack, which is 0 if no frame is being invoked. */
+    private int depth;
+
+    /**
+     * The update sequence number incremented by the profiled thread when
+     * beginning and ending update, which is odd while updating.
+     */
+    private volatile int sequence;
+
+    /** The active bank of counters, switched by the dumping thread. */
+    private volatile int bank;
+
+    /** The bank that has been switched from but not yet folded. */
+    private int pendingBank;
+
+    /** The update sequence number when switching from the pending bank. */
+    private int pendingSequence;
 
     /** The root frame nodes */
-    private Map<String, FrameNode> rootFrames;
+    private volatile FrameNode[] rootFrames;
+
+    /** The number of frame nodes in this thread. */
+    private volatile int frameCount;
+
+    /** The number of frame nodes in all threads. */
+    private AtomicInteger totalFrameCount;
+
+    /** The state indicating if the number of frame nodes reached maximum. */
+    private boolean maxFramesReached;
+
+    /** The class name of monitor being entered, or <tt>null</tt> if none. */
+    private String monitorClass;
+
+    /** The site ID entering monitor. */
+    private int monitorSiteId;
+
+    /** The time in nanoseconds when starting to enter monitor. */
+    private long monitorEnterTime;
+
+    /**
+     * The recorder of slow calls, or <tt>null</tt> if no entry method has
+     * been invoked on this thread.
+     */
+    private SlowCallRecorder slowCallRecorder;
+
+    /** The state indicating if the entry method has returned. */
+    private boolean slowCallReturned;
+
+    /**
+     * The buffer of events, which is created when the profiled thread appends
+     * the first event, or <tt>null</tt> if no event has been appended.
+     */
+    private volatile EventBuffer eventBuffer;
+
+    /**
+     * The method IDs of the previous stack sample from root, or <tt>null</tt>
+     * if no stack sample has been added.
+     */
+    private int[] sampledStack;
+
+    /** The depth of the previous stack sample. */
+    private int sampledDepth;
+
+    /** The capture number of trace recording the frames of this thread. */
+    private int traceCapture;
 
     /**
      * The constructor.
      * 
      * @param thread
-     *            The thread name
+     *            The thread
+     * @param totalFrameCount
+     *            The number of frame nodes in all threads
      */
-    protected ThreadNode(String thread) {
-        this.thread = thread;
-        rootFrames = new ConcurrentHashMap<String, FrameNode>();
+    protected ThreadNode(Thread thread, AtomicInteger totalFrameCount) {
+        this.thread = thread.getName();
+        this.totalFrameCount = totalFrameCount;
+        threadId = thread.getId();
+        threadReference = new WeakReference<Thread>(thread);
+        rootFrames = new FrameNode[0];
+        frameStack = new FrameNode[INITIAL_STACK_CAPACITY];
+        methodIdStack = new int[INITIAL_STACK_CAPACITY];
+        entryTimeStack = new long[INITIAL_STACK_CAPACITY];
+        entryCpuTimeStack = new long[INITIAL_STACK_CAPACITY];
+        entryOverheadTimeStack = new long[INITIAL_STACK_CAPACITY];
+        depth = 0;
+        pendingBank = NO_PENDING_BANK;
     }
 
     /**
-     * Gets the root frame.
+     * The constructor for the thread node aggregating terminated threads.
      * 
-     * @param className
-     *            The class name
-     * @param methodName
-     *            The method name
-     * @return The root frame
+     * @param name
+     *            The normalized thread name
+     * @param totalFrameCount
+     *            The number of frame nodes in all threads
+     */
+    protected ThreadNode(String name, AtomicInteger totalFrameCount) {
+        thread = name;
+        this.totalFrameCount = totalFrameCount;
+        threadId = -1;
+        rootFrames = new FrameNode[0];
+        pendingBank = NO_PENDING_BANK;
+    }
+
+    /**
+     * Gets the state indicating if this thread node aggregates terminated
+     * threads.
+     * 
+     * @return <tt>true</tt> if this thread node aggregates terminated threads
      */
-    protected FrameNode getRootFrame(String className, String methodName) {
-        FrameNode frame = rootFrames.get(className + '.' + methodName);
-        if (frame == null) {
-            frame = new FrameNode(null, className, methodName);
-            rootFrames.put(className + '.' + methodName, frame);
+    protected boolean isAggregate() {
+        return threadReference == null;
+    }
+
+    /**
+     * Gets the state indicating if the thread has terminated.
+     * 
+     * @return <tt>true</tt> if the thread has terminated
+     */
+    protected boolean isTerminated() {
+        if (threadReference == null) {
+            return false;
+        }
+        Thread t = threadReference.get();
+        return t == null || !t.isAlive();
+    }
+
+    /**
+     * Merges the frames of the given terminated thread into this thread node.
+     * The snapshot of the given thread has to be taken in advance.
+     * 
+     * @param threadNode
+     *            The thread node of terminated thread
+     * @param generation
+     *            The generation of snapshot
+     */
+    protected void merge(ThreadNode threadNode, long generation) {
+        int created = 0;
+        for (FrameNode source : threadNode.rootFrames) {
+            FrameNode frame = findFrame(null, source.getMethodId());
+            if (frame == null) {
+                frame = new FrameNode(source.getMethodId());
+                FrameNode[] frames = Arrays.copyOf(rootFrames,
+                        rootFrames.length + 1);
+                frames[frames.length - 1] = frame;
+                rootFrames = frames;
+                created++;
+            }
+            created += frame.merge(source, generation);
+        }
+
+        frameCount += created;
+        totalFrameCount.addAndGet(created - threadNode.frameCount);
+    }
+
+    /**
+     * Gets the thread name.
+     * 
+     * @return The thread name
+     */
+    protected String getName() {
+        return thread;
+    }
+
+    /**
+     * Gets the thread ID.
+     * 
+     * @return The thread ID
+     */
+    protected long getThreadId() {
+        return threadId;
+    }
+
+    /**
+     * Gets the frame to step into. The frame is created unless the number of
+     * frame nodes has reached the maximum, in which case the other frame is
+     * created within the room reserved for it. Once the room is also used up,
+     * the single other frame at root of this thread is used.
+     * 
+     * @param parent
+     *            The parent frame, or <tt>null</tt> for root frame
+     * @param methodId
+     *            The method ID
+     * @return The frame
+     */
+    protected FrameNode getFrame(FrameNode parent, int methodId) {
+        FrameNode frame = findFrame(parent, methodId);
+        if (frame != null) {
+            return frame;
+        }
+
+        if (!reserveFrame(false)) {
+            // fold recursive frame
+            for (int i = depth - 1; i >= 0; i--) {
+                if (methodIdStack[i] == methodId) {
+                    return frameStack[i];
+                }
+            }
+
+            // aggregate into the other frame
+            if (parent != null
+                    && parent.getMethodId() == MethodRegistry.OTHER_METHOD_ID) {
+                return parent;
+            }
+            methodId = MethodRegistry.OTHER_METHOD_ID;
+            frame = findFrame(parent, methodId);
+            if (frame != null) {
+                return frame;
+            }
+            if (!reserveFrame(true)) {
+                parent = null;
+                frame = findFrame(parent, methodId);
+                if (frame != null) {
+                    return frame;
+                }
+                frameCount++;
+                totalFrameCount.incrementAndGet();
+            }
+        }
+
+        frame = new FrameNode(methodId);
+        if (Config.getInstance().isLatencyRecorded(methodId)) {
+            frame.enableLatency();
+        }
+        if (parent == null) {
+            FrameNode[] frames = Arrays.copyOf(rootFrames,
+                    rootFrames.length + 1);
+            frames[frames.length - 1] = frame;
+            rootFrames = frames;
+        } else {
+            parent.addChild(frame);
         }
         return frame;
     }
 
+    /**
+     * Gets the number of frame nodes in this thread.
+     * 
+     * @return The number of frame nodes
+     */
+    protected int getFrameCount() {
+        return frameCount;
+    }
+
     /**
      * Gets the current frame.
      * 
-     * @return The current frame, or <tt>null</tt> if not yet set
+     * @return The current frame, or <tt>null</tt> if no frame is being invoked
      */
     protected FrameNode getCurrentFrame() {
-        return currentFrame;
+        if (depth == 0) {
+            return null;
+        }
+        return frameStack[depth - 1];
+    }
+
+    /**
+     * Begins updating the frames. This is invoked only by the profiled thread.
+     * 
+     * @return The active bank of counters to be updated
+     */
+    protected int beginUpdate() {
+        sequence++;
+        return bank;
+    }
+
+    /**
+     * Ends updating the frames. This is invoked only by the profiled thread.
+     */
+    protected void endUpdate() {
+        sequence++;
+        if (slowCallReturned) {
+            slowCallReturned = false;
+            captureSlowCall();
+        }
     }
 
     /**
-     * Sets the current frame.
+     * Pushes the frame onto the frame stack.
      * 
      * @param frame
-     *            The current frame
+     *            The frame
+     * @param methodId
+     *            The method ID being invoked
+     * @param time
+     *            The time stepping into the frame
+     * @param cpuTime
+     *            The thread CPU time stepping into the frame
      */
-    protected void setCurrentFrame(FrameNode frame) {
-        currentFrame = frame;
+    protected void pushFrame(FrameNode frame, int methodId, long time,
+            long cpuTime) {
+        if (depth == frameStack.length) {
+            int capacity = depth * 2;
+            frameStack = Arrays.copyOf(frameStack, capacity);
+            methodIdStack = Arrays.copyOf(methodIdStack, capacity);
+            entryTimeStack = Arrays.copyOf(entryTimeStack, capacity);
+            entryCpuTimeStack = Arrays.copyOf(entryCpuTimeStack, capacity);
+            entryOverheadTimeStack = Arrays.copyOf(entryOverheadTimeStack,
+                    capacity);
+        }
+        frameStack[depth] = frame;
+        methodIdStack[depth] = methodId;
+        entryTimeStack[depth] = time;
+        entryCpuTimeStack[depth] = cpuTime;
+        entryOverheadTimeStack[depth] = overheadTime;
+
+        SlowCallRecorder recorder = slowCallRecorder;
+        if (recorder != null && recorder.isRecording()) {
+            recorder.enter(methodId, time, cpuTime);
+        } else if (Config.getInstance().isSlowCallEntry(methodId)) {
+            if (recorder == null) {
+                recorder = new SlowCallRecorder();
+                slowCallRecorder = recorder;
+            }
+            recorder.start(depth, methodId, time, cpuTime);
+        }
+        depth++;
     }
 
     /**
-     * Dumps into a dump file.
+     * Pops the frame of the given method from the frame stack, stepping
+     * return from it. The frame is popped only if the method is being
+     * invoked, since its invocation may not have been pushed, e.g. while
+     * muted. The frames above it are also popped, which have been left by
+     * exceptions caught outside the profiled methods or by muted methods.
+     * 
+     * @param activeBank
+     *            The bank of counters to be updated
+     * @param methodId
+     *            The method ID stepping return
+     * @param time
+     *            The time stepping return from the frame
+     * @param cpuTime
+     *            The thread CPU time stepping return from the frame
+     * @param overhead
+     *            The overhead time
+     * @return The number of frames popped
+     */
+    protected int popFrame(int activeBank, int methodId, long time,
+            long cpuTime, long overhead) {
+        int frameDepth = depth - 1;
+        int[] methodIds = methodIdStack;
+        while (frameDepth >= 0 && methodIds[frameDepth] != methodId) {
+            frameDepth--;
+        }
+        if (frameDepth < 0) {
+            return 0;
+        }
+
+        int count = depth - frameDepth;
+        dropToDepth(activeBank, frameDepth, time, cpuTime, overhead);
+        return count;
+    }
+
+    /**
+     * Gets the event buffer, creating it if not yet created. This is invoked
+     * only by the profiled thread.
+     * 
+     * @return The event buffer
+     */
+    protected EventBuffer getEventBuffer() {
+        EventBuffer buffer = eventBuffer;
+        if (buffer == null) {
+            buffer = new EventBuffer(Config.getInstance()
+                    .getEventBufferSize());
+            eventBuffer = buffer;
+        }
+        return buffer;
+    }
+
+    /**
+     * Adds the stack sample taken by the stack sampler. The invocation count
+     * of frame is incremented only when the frame or any of its callers
+     * differs from the previous sample, since the same stack is regarded as
+     * the same invocation. This is invoked only by the stack sampler.
+     * 
+     * @param methodIds
+     *            The method IDs from root
+     * @param length
+     *            The number of method IDs
+     * @param period
+     *            The time in nanoseconds since the previous sample
+     */
+    protected void addSample(int[] methodIds, int length, long period) {
+        int[] previous = sampledStack;
+        boolean newInvocation = previous == null;
+        int activeBank = beginUpdate();
+        FrameNode frame = null;
+        for (int i = 0; i < length; i++) {
+            int methodId = methodIds[i];
+            if (!newInvocation
+                    && (i >= sampledDepth || previous[i] != methodId)) {
+                newInvocation = true;
+            }
+            FrameNode child = getFrame(frame, methodId);
+            if (child == frame) {
+                continue; // folded into the other frame
+            }
+            frame = child;
+            frame.addSample(activeBank, period, newInvocation);
+        }
+        endUpdate();
+
+        if (previous == null || previous.length < length) {
+            previous = new int[Math.max(length, INITIAL_STACK_CAPACITY)];
+            sampledStack = previous;
+        }
+        System.arraycopy(methodIds, 0, previous, 0, length);
+        sampledDepth = length;
+    }
+
+    /**
+     * Drains the event buffer, replaying the events into frames. The events
+     * are replayed in chunks so that the dumping thread doesn't wait for a
+     * long update sequence.
+     */
+    protected void drainEventBuffer() {
+        EventBuffer buffer = eventBuffer;
+        if (buffer == null) {
+            return;
+        }
+
+        synchronized (buffer) {
+            long index = buffer.getReadIndex();
+            long end = buffer.getWriteIndex();
+            long overhead = CpuBciProfiler.getProbeOverhead();
+            while (index < end) {
+                long chunkEnd = Math.min(end, index + DRAIN_CHUNK_SIZE);
+                int activeBank = beginUpdate();
+                // the slow call is captured before replaying further events
+                while (index < chunkEnd && !slowCallReturned) {
+                    replayEvent(activeBank, buffer, index++, overhead);
+                }
+                endUpdate();
+                buffer.setReadIndex(index);
+            }
+        }
+    }
+
+    /**
+     * Gets the depth of frame stack.
+     * 
+     * @return The depth
+     */
+    protected int getDepth() {
+        return depth;
+    }
+
+    /**
+     * Searches the depth of the nearest frame being invoked for the given
+     * method ID, from the top of frame stack downward.
+     * 
+     * @param methodId
+     *            The method ID
+     * @return The depth at which the frame is on top, or 1 if not found so
+     *         that the stack is unwound to the root frame
+     */
+    protected int searchDepth(int methodId) {
+        int[] methodIds = methodIdStack;
+        for (int i = depth - 1; i > 0; i--) {
+            if (methodIds[i] == methodId) {
+                return i + 1;
+            }
+        }
+        return 1;
+    }
+
+    /**
+     * Increments the overhead of the current frame. This is invoked only by
+     * the profiled thread.
+     * 
+     * @param activeBank
+     *            The bank of counters to be updated
+     * @param overhead
+     *            The overhead time
+     */
+    protected void incrementOverhead(int activeBank, long overhead) {
+        getCurrentFrame().incrementOverhead(activeBank, overhead);
+        overheadTime += overhead;
+    }
+
+    /**
+     * Drops the frame stack to the given depth, stepping return from the
+     * frames above it. The latency is recorded excluding the overhead of
+     * the invocation and its descendants, like the time of frame.
+     * 
+     * @param activeBank
+     *            The bank of counters to be updated
+     * @param newDepth
+     *            The depth to drop to
+     * @param time
+     *            The time stepping return from the frames
+     * @param cpuTime
+     *            The thread CPU time stepping return from the frames
+     * @param overhead
+     *            The overhead time to be added to each frame
+     */
+    protected void dropToDepth(int activeBank, int newDepth, long time,
+            long cpuTime, long overhead) {
+        FrameNode[] frames = frameStack;
+        long[] entryTimes = entryTimeStack;
+        long[] entryCpuTimes = entryCpuTimeStack;
+        long[] entryOverheadTimes = entryOverheadTimeStack;
+        for (int i = depth - 1; i >= newDepth; i--) {
+            overheadTime += overhead;
+            frames[i].stepReturn(activeBank, time - entryTimes[i], cpuTime
+                    - entryCpuTimes[i], overhead);
+            frames[i].recordLatency(time - entryTimes[i]
+                    - (overheadTime - entryOverheadTimes[i]));
+            if (slowCallRecorder != null) {
+                recordSlowCallReturn(i, time, cpuTime);
+            }
+        }
+        depth = newDepth;
+    }
+
+    /**
+     * Replays the buffered event into frames.
+     * 
+     * @param activeBank
+     *            The bank of counters to be updated
+     * @param buffer
+     *            The event buffer
+     * @param index
+     *            The index of event
+     * @param overhead
+     *            The overhead time of stepping return from frame
+     */
+    private void replayEvent(int activeBank, EventBuffer buffer, long index,
+            long overhead) {
+        boolean tracing = TraceRecorder.isRecording();
+        if (tracing && traceCapture != TraceRecorder.getCapture()) {
+            // begin the frames invoked before starting trace
+            traceCapture = TraceRecorder.getCapture();
+            for (int i = 0; i < depth; i++) {
+                TraceRecorder.begin(threadId, thread, methodIdStack[i],
+                        entryTimeStack[i]);
+            }
+        }
+
+        long time = buffer.getValue(index);
+        long cpuTime = buffer.getSecondValue(index);
+        switch (buffer.getType(index)) {
+        case EventBuffer.ENTER:
+            int methodId = buffer.getId(index);
+            FrameNode frame = getFrame(getCurrentFrame(), methodId);
+            pushFrame(frame, methodId, time, cpuTime);
+            frame.stepInto(activeBank, 0);
+            if (tracing) {
+                TraceRecorder.begin(threadId, thread, methodId, time);
+            }
+            break;
+        case EventBuffer.RETURN:
+            int count = popFrame(activeBank, buffer.getId(index), time,
+                    cpuTime, overhead);
+            for (int i = 0; tracing && i < count; i++) {
+                TraceRecorder.end(threadId, thread, time);
+            }
+            break;
+        case EventBuffer.DROP:
+            if (depth == 0) {
+                break;
+            }
+            int newDepth = searchDepth(buffer.getId(index));
+            if (newDepth == depth) {
+                incrementOverhead(activeBank, overhead);
+                break;
+            }
+            for (int i = depth; tracing && i > newDepth; i--) {
+                TraceRecorder.end(threadId, thread, time);
+            }
+            dropToDepth(activeBank, newDepth, time, cpuTime, overhead);
+            break;
+        case EventBuffer.ALLOCATE:
+            FrameNode currentFrame = getCurrentFrame();
+            if (currentFrame != null) {
+                currentFrame.allocate(activeBank,
+                        buffer.getSecondValue(index), buffer.getValue(index));
+            }
+            break;
+        default:
+            break;
+        }
+    }
+
+    /**
+     * Records the step return from frame while recording slow call.
+     * 
+     * @param frameDepth
+     *            The depth of frame stack below the frame
+     * @param time
+     *            The time stepping return from the frame
+     * @param cpuTime
+     *            The thread CPU time stepping return from the frame
+     */
+    private void recordSlowCallReturn(int frameDepth, long time, long cpuTime) {
+        SlowCallRecorder recorder = slowCallRecorder;
+        if (recorder.isRecording() && !slowCallReturned
+                && recorder.exit(frameDepth, time, cpuTime)) {
+            slowCallReturned = true;
+        }
+    }
+
+    /**
+     * Captures the call tree of the entry method that has returned if it
+     * exceeded the threshold. This is invoked outside the update sequence,
+     * so that the dumping thread doesn't wait for building the call tree.
+     */
+    private void captureSlowCall() {
+        SlowCallRecorder recorder = slowCallRecorder;
+        if (recorder.getElapsedTime() >= Config.getInstance()
+                .getSlowCallThreshold()) {
+            SlowCallRing.add(recorder.capture(thread));
+        }
+        recorder.stop();
+    }
+
+    /**
+     * Marks the start of entering monitor. This is invoked only by the
+     * profiled thread.
+     * 
+     * @param className
+     *            The class name of monitor object
+     * @param siteId
+     *            The site ID entering monitor
+     * @param time
+     *            The time in nanoseconds
+     */
+    protected void beginMonitorEnter(String className, int siteId, long time) {
+        monitorClass = className;
+        monitorSiteId = siteId;
+        monitorEnterTime = time;
+    }
+
+    /**
+     * Marks the end of entering monitor. This is invoked only by the profiled
+     * thread.
+     * 
+     * @param siteId
+     *            The site ID entering monitor
+     * @param time
+     *            The time in nanoseconds
+     */
+    protected void endMonitorEnter(int siteId, long time) {
+        String className = monitorClass;
+        if (className == null || monitorSiteId != siteId) {
+            return;
+        }
+        monitorClass = null;
+        MonitorSiteRegistry.get(siteId).record(className,
+                time - monitorEnterTime);
+    }
+
+    /**
+     * Takes the snapshot of frames. This is invoked only by the dumping
+     * thread, and never blocks the profiled thread.
+     * <p>
+     * The frame stack is copied and the active bank is switched while the
+     * profiled thread is not in update sequence, so that the invocations in
+     * progress are consistent with the counters folded into snapshot. If the
+     * profiled thread stays in an update sequence for too long (e.g. suspended
+     * by debugger), the previous snapshot is kept and the pending bank is
+     * folded next time.
+     * 
+     * @param generation
+     *            The generation of snapshot
+     */
+    protected void takeSnapshot(long generation) {
+        if (isAggregate()) {
+            return;
+        }
+        foldFrames(generation);
+    }
+
+    /**
+     * Folds the counters of frames into snapshot, and sets the time of
+     * invocations in progress.
+     * 
+     * @param generation
+     *            The generation of snapshot
+     */
+    private void foldFrames(long generation) {
+        long time = 0;
+        long cpuTime = 0;
+        FrameNode[] frames = null;
+        long[] entryTimes = null;
+        long[] entryCpuTimes = null;
+        boolean consistent = false;
+        for (int i = 0; i < MAX_ATTEMPTS; i++) {
+            if (pendingBank != NO_PENDING_BANK) {
+                // wait for the update sequence that may see the pending bank
+                if ((pendingSequence & 1) != 0 && sequence == pendingSequence) {
+                    Thread.yield();
+                    continue;
+                }
+                for (FrameNode frame : rootFrames) {
+                    frame.fold(pendingBank, generation);
+                }
+                pendingBank = NO_PENDING_BANK;
+                if (consistent) {
+                    break;
+                }
+            }
+
+            int seq = sequence;
+            if ((seq & 1) != 0) {
+                Thread.yield();
+                continue;
+            }
+
+            // copy the frame stack, and switch the active bank
+            int stackDepth = depth;
+            FrameNode[] currentFrames = frameStack;
+            long[] currentEntryTimes = entryTimeStack;
+            long[] currentEntryCpuTimes = entryCpuTimeStack;
+            stackDepth = Math.min(stackDepth, Math.min(currentFrames.length,
+                    Math.min(currentEntryTimes.length,
+                            currentEntryCpuTimes.length)));
+            frames = Arrays.copyOf(currentFrames, stackDepth);
+            entryTimes = Arrays.copyOf(currentEntryTimes, stackDepth);
+            entryCpuTimes = Arrays.copyOf(currentEntryCpuTimes, stackDepth);
+            pendingBank = bank;
+            bank = 1 - pendingBank;
+            pendingSequence = sequence;
+            time = CpuBciProfiler.getTime();
+            cpuTime = CpuBciProfiler.getCpuTime(threadId);
+            consistent = pendingSequence == seq;
+        }
+
+        if (pendingBank != NO_PENDING_BANK || frames == null) {
+            return;
+        }
+
+        // the outermost invocation of folded frame is set last
+        for (int i = frames.length - 1; i >= 0; i--) {
+            if (frames[i] != null && entryTimes[i] <= time) {
+                frames[i].setInProgressTime(time - entryTimes[i],
+                        Math.max(cpuTime - entryCpuTimes[i], 0), generation);
+            }
+        }
+    }
+
+    /**
+     * Accumulates the invocation count and the self time of frames into the
+     * given arrays indexed by method ID. The snapshot has to be taken in
+     * advance.
+     * 
+     * @param counts
+     *            The invocation counts
+     * @param selfTimes
+     *            The self times in nanoseconds excluding the overhead
+     */
+    protected void accumulate(long[] counts, long[] selfTimes) {
+        for (FrameNode frame : rootFrames) {
+            frame.accumulate(counts, selfTimes);
+        }
+    }
+
+    /**
+     * Finds the frame.
+     * 
+     * @param parent
+     *            The parent frame, or <tt>null</tt> for root frame
+     * @param methodId
+     *            The method ID
+     * @return The frame, or <tt>null</tt> if not found
+     */
+    private FrameNode findFrame(FrameNode parent, int methodId) {
+        if (parent != null) {
+            return parent.findChild(methodId);
+        }
+
+        for (FrameNode frame : rootFrames) {
+            if (frame.getMethodId() == methodId) {
+                return frame;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Reserves a new frame node unless the number of frame nodes has reached
+     * the maximum. A part of the maximum is reserved for the other frames.
+     * 
+     * @param other
+     *            <tt>true</tt> to reserve the other frame
+     * @return <tt>true</tt> if a new frame node can be created
+     */
+    private boolean reserveFrame(boolean other) {
+        Config config = Config.getInstance();
+        int maxFramesPerThread = config.getMaxFramesPerThread();
+        int maxFrames = config.getMaxFrames();
+        if (!other) {
+            maxFramesPerThread -= maxFramesPerThread
+                    / Constants.OTHER_FRAMES_RESERVE_DIVISOR;
+            maxFrames -= maxFrames / Constants.OTHER_FRAMES_RESERVE_DIVISOR;
+        }
+        if (frameCount >= maxFramesPerThread
+                || totalFrameCount.get() >= maxFrames) {
+            if (!other && !maxFramesReached) {
+                maxFramesReached = true;
+                Agent.logInfo(Messages.MAX_FRAMES_REACHED, thread);
+            }
+            return false;
+        }
+
+        frameCount++;
+        totalFrameCount.incrementAndGet();
+        return true;
+    }
+
+    /**
+     * Dumps into a dump file. The snapshot has to be taken in advance.
      * 
      * @param writer
      *            The writer
-     * @param time
-     *            The time
+     * @param name
+     *            The thread name to be reported
      */
-    protected void dump(PrintWriter writer, long time) {
-        Collection<FrameNode> frameNodes = rootFrames.values();
-        if (frameNodes.size() == 0) {
+    protected void dump(PrintWriter writer, String name) {
+        FrameNode[] frameNodes = rootFrames;
+        if (frameNodes.length == 0) {
             return;
         }
         
-        writer.printf("\t<thread name=\"%s\">", thread);
+        writer.printf("\t<thread name=\"%s\">", name);
         writer.println("");
         for (FrameNode frameNode : frameNodes) {
-            frameNode.dump(writer, time, 2);
+            frameNode.dump(writer, 2);
         }
         writer.println("\t</thread>");
     }
 
     /**
-     * Dumps the profile data.
+     * Dumps the profile data. The snapshot has to be taken in advance.
      * 
      * @param buffer
      *            The string buffer
-     * @param time
-     *            The time
+     * @param name
+     *            The thread name to be reported
      */
-    protected void dump(StringBuffer buffer, long time) {
-        Collection<FrameNode> frameNodes = rootFrames.values();
-        if (frameNodes.size() == 0) {
+    protected void dump(StringBuffer buffer, String name) {
+        FrameNode[] frameNodes = rootFrames;
+        if (frameNodes.length == 0) {
             return;
         }
 
-        buffer.append("\t<thread name=\"").append(thread)
+        buffer.append("\t<thread name=\"").append(name)
                 .append("\">\n");
         for (FrameNode frameNode : frameNodes) {
-            frameNode.dump(buffer, time, 2);
+            frameNode.dump(buffer, 2);
         }
         buffer.append("\t</thread>\n");
     }
+
+    /**
+     * Dumps the profile data in binary format. Only the frames modified after
+     * the given generation are dumped. The snapshot has to be taken in
+     * advance.
+     * 
+     * @param writer
+     *            The binary dump writer
+     * @param name
+     *            The thread name to be reported
+     * @param generation
+     *            The generation of snapshot
+     */
+    protected void dump(BinaryDumpWriter writer, String name, long generation) {
+        FrameNode[] frameNodes = rootFrames;
+        int modifiedCount = 0;
+        for (FrameNode frameNode : frameNodes) {
+            if (frameNode.isModifiedSince(generation)) {
+                modifiedCount++;
+            }
+        }
+        if (modifiedCount == 0) {
+            return;
+        }
+
+        writer.writeVarLong(BinaryDumpWriter.THREAD);
+        writer.writeString(name);
+        writer.writeVarLong(modifiedCount);
+        for (FrameNode frameNode : frameNodes) {
+            if (frameNode.isModifiedSince(generation)) {
+                frameNode.dump(writer, generation);
+            }
+        }
+    }
 }
@@ -0,0 +1,230 @@
+/*******************************************************************************
+ * Copyright (c) 2010 JVM Monitor project. All rights reserved.
+ *
+ * This code is distributed under the terms of the Eclipse Public License v1.0
+ * which is available at http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+package org.jvmmonitor.internal.agent;
+
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Map.Entry;
+
+/**
+ * The recorder of the raw timeline of frames drained from event buffers,
+ * which is dumped in Chrome trace event format to be viewed with e.g.
+ * <tt>chrome://tracing</tt> or Perfetto.
+ * <p>
+ * The events are kept in preallocated arrays of
+ * {@link Config#getTraceMaxEvents()}, and recording stops when they are
+ * exhausted, so that the trace is meant for short captures.
+ */
+@SuppressWarnings("nls")
+public class TraceRecorder {
+
+    /** The nanoseconds per microsecond. */
+    private static final double NANOS_PER_MICRO = 1000d;
+
+    /** The method IDs of events, or -1 for the end of frame. */
+    private static int[] methodIds = new int[0];
+
+    /** The times of events in nanoseconds. */
+    private static long[] times = new long[0];
+
+    /** The thread IDs of events. */
+    private static long[] threadIds = new long[0];
+
+    /** The thread names with key thread ID. */
+    private static Map<Long, String> threadNames = new LinkedHashMap<Long, String>();
+
+    /** The number of events. */
+    private static int size;
+
+    /** The time in nanoseconds when starting recording. */
+    private static long startTime;
+
+    /** The capture number incremented whenever starting recording. */
+    private static volatile int capture;
+
+    /** The state indicating if recording. */
+    private static volatile boolean recording;
+
+    /**
+     * The constructor.
+     */
+    private TraceRecorder() {
+        // do not instantiate
+    }
+
+    /**
+     * Starts recording, discarding the previous trace.
+     */
+    protected static synchronized void start() {
+        int max = Config.getInstance().getTraceMaxEvents();
+        methodIds = new int[max];
+        times = new long[max];
+        threadIds = new long[max];
+        threadNames.clear();
+        size = 0;
+        startTime = CpuBciProfiler.getTime();
+        capture++;
+        recording = true;
+    }
+
+    /**
+     * Stops recording.
+     */
+    protected static synchronized void stop() {
+        recording = false;
+    }
+
+    /**
+     * Gets the state indicating if recording.
+     * 
+     * @return <tt>true</tt> if recording
+     */
+    protected static boolean isRecording() {
+        return recording;
+    }
+
+    /**
+     * Gets the capture number, which tells if the frames being invoked have
+     * been recorded in the current trace.
+     * 
+     * @return The capture number
+     */
+    protected static int getCapture() {
+        return capture;
+    }
+
+    /**
+     * Records the beginning of frame.
+     * 
+     * @param threadId
+     *            The thread ID
+     * @param threadName
+     *            The thread name
+     * @param methodId
+     *            The method ID
+     * @param time
+     *            The time in nanoseconds
+     */
+    protected static synchronized void begin(long threadId, String threadName,
+            int methodId, long time) {
+        record(threadId, threadName, methodId, time);
+    }
+
+    /**
+     * Records the end of frame.
+     * 
+     * @param threadId
+     *            The thread ID
+     * @param threadName
+     *            The thread name
+     * @param time
+     *            The time in nanoseconds
+     */
+    protected static synchronized void end(long threadId, String threadName,
+            long time) {
+        record(threadId, threadName, -1, time);
+    }
+
+    /**
+     * Dumps the trace in Chrome trace event format.
+     * 
+     * @return The trace in JSON
+     */
+    protected static synchronized String dump() {
+        StringBuilder builder = new StringBuilder();
+        builder.append("{\"displayTimeUnit\":\"ns\",\"traceEvents\":[");
+        boolean first = true;
+        for (Entry<Long, String> entry : threadNames.entrySet()) {
+            if (!first) {
+                builder.append(',');
+            }
+            builder.append("\n{\"name\":\"thread_name\",\"ph\":\"M\",\"pid\":1,\"tid\":")
+                    .append(entry.getKey()).append(",\"args\":{\"name\":\"");
+            appendEscaped(builder, entry.getValue());
+            builder.append("\"}}");
+            first = false;
+        }
+        Map<Integer, String> frameNames = new HashMap<Integer, String>();
+        for (int i = 0; i < size; i++) {
+            if (!first) {
+                builder.append(',');
+            }
+            builder.append("\n{");
+            if (methodIds[i] != -1) {
+                String frameName = frameNames.get(methodIds[i]);
+                if (frameName == null) {
+                    frameName = FrameNode.getFrameName(methodIds[i]);
+                    frameNames.put(methodIds[i], frameName);
+                }
+                builder.append("\"name\":\"");
+                appendEscaped(builder, frameName);
+                builder.append("\",\"ph\":\"B\"");
+            } else {
+                builder.append("\"ph\":\"E\"");
+            }
+            builder.append(",\"ts\":")
+                    .append(Math.max(times[i] - startTime, 0)
+                            / NANOS_PER_MICRO).append(",\"pid\":1,\"tid\":")
+                    .append(threadIds[i]).append('}');
+            first = false;
+        }
+        builder.append("\n]}\n");
+        return builder.toString();
+    }
+
+    /**
+     * Records the event, and stops recording when the events are exhausted.
+     * 
+     * @param threadId
+     *            The thread ID
+     * @param threadName
+     *            The thread name
+     * @param methodId
+     *            The method ID, or -1 for the end of frame
+     * @param time
+     *            The time in nanoseconds
+     */
+    private static void record(long threadId, String threadName,
+            int methodId, long time) {
+        if (!recording) {
+            return;
+        }
+        if (size == methodIds.length) {
+            recording = false;
+            return;
+        }
+        if (!threadNames.containsKey(threadId)) {
+            threadNames.put(threadId, threadName);
+        }
+        methodIds[size] = methodId;
+        times[size] = time;
+        threadIds[size] = threadId;
+        size++;
+    }
+
+    /**
+     * Appends the string escaped for JSON.
+     * 
+     * @param builder
+     *            The string builder
+     * @param value
+     *            The string
+     */
+    private static void appendEscaped(StringBuilder builder, String value) {
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '"' || c == '\\') {
+                builder.append('\\').append(c);
+            } else if (c < 0x20) {
+                builder.append(String.format("\\u%04x", (int) c));
+            } else {
+                builder.append(c);
+            }
+        }
+    }
+}
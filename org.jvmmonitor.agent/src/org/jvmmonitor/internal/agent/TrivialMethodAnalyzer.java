@@ -0,0 +1,337 @@
+/*******************************************************************************
+ * Copyright (c) 2010 JVM Monitor project. All rights reserved.
+ *
+ * This code is distributed under the terms of the Eclipse Public License v1.0
+ * which is available at http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+package org.jvmmonitor.internal.agent;
+
+import java.util.HashSet;
+import java.util.Set;
+
+import org.jvmmonitor.internal.agent.asm.ClassVisitor;
+import org.jvmmonitor.internal.agent.asm.Handle;
+import org.jvmmonitor.internal.agent.asm.Label;
+import org.jvmmonitor.internal.agent.asm.MethodVisitor;
+import org.jvmmonitor.internal.agent.asm.Opcodes;
+
+/**
+ * The class visitor that finds the methods not worth instrumenting before
+ * the class is transformed. The following methods are regarded as trivial:
+ * <ul>
+ * <li>bridge methods and synthetic methods except for lambda bodies</li>
+ * <li>plain field accessors</li>
+ * <li>methods with fewer instructions than the maximum size</li>
+ * <li>methods without invocations and loops with fewer instructions than the
+ * maximum leaf size</li>
+ * </ul>
+ * Synchronized methods, methods entering monitors and methods allocating
+ * objects while allocation profiling is enabled are never regarded as
+ * trivial, since their probes record more than the time.
+ */
+@SuppressWarnings("nls")
+public class TrivialMethodAnalyzer extends ClassVisitor {
+
+    /** The prefix of synthetic methods implementing lambda expressions. */
+    private static final String LAMBDA_PREFIX = "lambda$";
+
+    /** The trivial methods (e.g. getBar()I). */
+    private final Set<String> trivialMethods;
+
+    /** The maximum number of instructions of trivial method. */
+    private final int maxSize;
+
+    /** The maximum number of instructions of trivial leaf method. */
+    private final int leafMaxSize;
+
+    /** The state indicating if allocations are instrumented. */
+    private final boolean allocationProfiled;
+
+    /**
+     * The constructor.
+     */
+    protected TrivialMethodAnalyzer() {
+        super(Opcodes.ASM9);
+        trivialMethods = new HashSet<String>();
+        Config config = Config.getInstance();
+        maxSize = config.getTrivialMaxSize();
+        leafMaxSize = config.getTrivialLeafMaxSize();
+        allocationProfiled = config.isAllocationProfilingEnabled();
+    }
+
+    /**
+     * Gets the trivial methods found in the visited class.
+     *
+     * @return The method names with parameter descriptor (e.g. getBar()I)
+     */
+    protected Set<String> getTrivialMethods() {
+        return trivialMethods;
+    }
+
+    /*
+     * @see ClassVisitor#visitMethod(int, String, String, String, String[])
+     */
+    @Override
+    public MethodVisitor visitMethod(int access, String name, String desc,
+            String signature, String[] exceptions) {
+        if ((access & (Opcodes.ACC_ABSTRACT | Opcodes.ACC_NATIVE
+                | Opcodes.ACC_SYNCHRONIZED)) != 0) {
+            return null;
+        }
+
+        String qualifiedName = name + ((desc != null) ? desc : "");
+        if ((access & Opcodes.ACC_BRIDGE) != 0
+                || ((access & Opcodes.ACC_SYNTHETIC) != 0 && !name
+                        .startsWith(LAMBDA_PREFIX))) {
+            trivialMethods.add(qualifiedName);
+            return null;
+        }
+        return new MethodAnalyzer(qualifiedName);
+    }
+
+    /**
+     * The method visitor that counts the instructions and finds invocations,
+     * loops and field accesses.
+     */
+    private class MethodAnalyzer extends MethodVisitor {
+
+        /** The maximum number of instructions of field accessor. */
+        private static final int ACCESSOR_SIZE = 4;
+
+        /** The method name with parameter descriptor. */
+        private final String qualifiedName;
+
+        /** The labels visited so far, which are targets of backward jumps. */
+        private final Set<Label> visitedLabels;
+
+        /** The opcodes of the first instructions. */
+        private final int[] opcodes;
+
+        /** The number of instructions. */
+        private int size;
+
+        /** The state indicating if the method invokes other methods. */
+        private boolean invoking;
+
+        /** The state indicating if the method has backward jumps. */
+        private boolean looping;
+
+        /** The state indicating if the method has to be instrumented. */
+        private boolean nonTrivial;
+
+        /**
+         * The constructor.
+         *
+         * @param qualifiedName
+         *            The method name with parameter descriptor
+         */
+        MethodAnalyzer(String qualifiedName) {
+            super(Opcodes.ASM9);
+            this.qualifiedName = qualifiedName;
+            visitedLabels = new HashSet<Label>();
+            opcodes = new int[ACCESSOR_SIZE];
+        }
+
+        /*
+         * @see MethodVisitor#visitInsn(int)
+         */
+        @Override
+        public void visitInsn(int opcode) {
+            if (opcode == Opcodes.MONITORENTER) {
+                nonTrivial = true;
+            }
+            addInstruction(opcode);
+        }
+
+        /*
+         * @see MethodVisitor#visitIntInsn(int, int)
+         */
+        @Override
+        public void visitIntInsn(int opcode, int operand) {
+            if (opcode == Opcodes.NEWARRAY) {
+                nonTrivial |= allocationProfiled;
+            }
+            addInstruction(opcode);
+        }
+
+        /*
+         * @see MethodVisitor#visitVarInsn(int, int)
+         */
+        @Override
+        public void visitVarInsn(int opcode, int var) {
+            addInstruction(opcode);
+        }
+
+        /*
+         * @see MethodVisitor#visitTypeInsn(int, String)
+         */
+        @Override
+        public void visitTypeInsn(int opcode, String type) {
+            if (opcode == Opcodes.NEW || opcode == Opcodes.ANEWARRAY) {
+                nonTrivial |= allocationProfiled;
+            }
+            addInstruction(opcode);
+        }
+
+        /*
+         * @see MethodVisitor#visitFieldInsn(int, String, String, String)
+         */
+        @Override
+        public void visitFieldInsn(int opcode, String owner, String name,
+                String desc) {
+            addInstruction(opcode);
+        }
+
+        /*
+         * @see MethodVisitor#visitMethodInsn(int, String, String, String,
+         * boolean)
+         */
+        @Override
+        public void visitMethodInsn(int opcode, String owner, String name,
+                String desc, boolean isInterface) {
+            invoking = true;
+            addInstruction(opcode);
+        }
+
+        /*
+         * @see MethodVisitor#visitInvokeDynamicInsn(String, String, Handle,
+         * Object[])
+         */
+        @Override
+        public void visitInvokeDynamicInsn(String name, String desc,
+                Handle bsm, Object... bsmArgs) {
+            invoking = true;
+            addInstruction(Opcodes.INVOKEDYNAMIC);
+        }
+
+        /*
+         * @see MethodVisitor#visitJumpInsn(int, Label)
+         */
+        @Override
+        public void visitJumpInsn(int opcode, Label label) {
+            looping |= visitedLabels.contains(label);
+            addInstruction(opcode);
+        }
+
+        /*
+         * @see MethodVisitor#visitLabel(Label)
+         */
+        @Override
+        public void visitLabel(Label label) {
+            visitedLabels.add(label);
+        }
+
+        /*
+         * @see MethodVisitor#visitLdcInsn(Object)
+         */
+        @Override
+        public void visitLdcInsn(Object value) {
+            addInstruction(Opcodes.LDC);
+        }
+
+        /*
+         * @see MethodVisitor#visitIincInsn(int, int)
+         */
+        @Override
+        public void visitIincInsn(int var, int increment) {
+            addInstruction(Opcodes.IINC);
+        }
+
+        /*
+         * @see MethodVisitor#visitTableSwitchInsn(int, int, Label, Label[])
+         */
+        @Override
+        public void visitTableSwitchInsn(int min, int max, Label dflt,
+                Label... labels) {
+            visitSwitch(dflt, labels);
+            addInstruction(Opcodes.TABLESWITCH);
+        }
+
+        /*
+         * @see MethodVisitor#visitLookupSwitchInsn(Label, int[], Label[])
+         */
+        @Override
+        public void visitLookupSwitchInsn(Label dflt, int[] keys,
+                Label[] labels) {
+            visitSwitch(dflt, labels);
+            addInstruction(Opcodes.LOOKUPSWITCH);
+        }
+
+        /*
+         * @see MethodVisitor#visitMultiANewArrayInsn(String, int)
+         */
+        @Override
+        public void visitMultiANewArrayInsn(String desc, int dims) {
+            nonTrivial |= allocationProfiled;
+            addInstruction(Opcodes.MULTIANEWARRAY);
+        }
+
+        /*
+         * @see MethodVisitor#visitEnd()
+         */
+        @Override
+        public void visitEnd() {
+            if (nonTrivial) {
+                return;
+            }
+            if (isAccessor() || size < maxSize
+                    || (!invoking && !looping && size < leafMaxSize)) {
+                trivialMethods.add(qualifiedName);
+            }
+        }
+
+        /**
+         * Adds the instruction.
+         *
+         * @param opcode
+         *            The opcode
+         */
+        private void addInstruction(int opcode) {
+            if (size < opcodes.length) {
+                opcodes[size] = opcode;
+            }
+            size++;
+        }
+
+        /**
+         * Visits the targets of switch instruction.
+         *
+         * @param dflt
+         *            The default target
+         * @param labels
+         *            The targets
+         */
+        private void visitSwitch(Label dflt, Label[] labels) {
+            looping |= visitedLabels.contains(dflt);
+            for (Label label : labels) {
+                looping |= visitedLabels.contains(label);
+            }
+        }
+
+        /**
+         * Gets the state indicating if the method only gets or sets a field,
+         * e.g. <tt>aload_0, getfield, areturn</tt>.
+         *
+         * @return <tt>true</tt> if the method is a plain field accessor
+         */
+        private boolean isAccessor() {
+            if (size == 0 || size > ACCESSOR_SIZE) {
+                return false;
+            }
+            int last = opcodes[size - 1];
+            if (last < Opcodes.IRETURN || last > Opcodes.RETURN) {
+                return false;
+            }
+            int fieldAccesses = 0;
+            for (int i = 0; i < size - 1; i++) {
+                int opcode = opcodes[i];
+                if (opcode >= Opcodes.GETSTATIC && opcode <= Opcodes.PUTFIELD) {
+                    fieldAccesses++;
+                } else if (opcode < Opcodes.ILOAD || opcode > Opcodes.ALOAD) {
+                    return false;
+                }
+            }
+            return fieldAccesses == 1;
+        }
+    }
+}
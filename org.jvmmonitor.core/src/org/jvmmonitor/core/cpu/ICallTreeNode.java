@@ -24,4 +24,19 @@ public interface ICallTreeNode extends IMethodNode {
      * @return the total invocation time
      */
     long getTotalTime();
+
+    /**
+     * Gets the CPU time consumed in total invocation time.
+     * 
+     * @return the CPU time, or -1 if CPU time is not measured
+     */
+    long getCpuTime();
+
+    /**
+     * Gets the time waiting e.g. for I/O or locks in total invocation time,
+     * which is the total invocation time minus the CPU time.
+     * 
+     * @return the wait time, or -1 if CPU time is not measured
+     */
+    long getWaitTime();
 }
@@ -21,6 +21,14 @@ public interface ICpuModel {
      */
     ITreeNode[] getHotSpotRoots();
 
+    /**
+     * Gets the lock hot spots, which are the sites entering monitor with the
+     * time to acquire monitor.
+     * 
+     * @return The lock hot spots
+     */
+    ILockNode[] getLockHotSpots();
+
     /**
      * Gets the callers.
      * 
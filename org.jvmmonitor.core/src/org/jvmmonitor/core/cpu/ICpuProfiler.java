@@ -72,6 +72,16 @@ public interface ICpuProfiler {
      */
     IFileStore dump() throws JvmCoreException;
 
+    /**
+     * Dumps the slow calls of entry methods captured by BCI profiler, each of
+     * which is given as a thread with the call tree of the invocation.
+     * 
+     * @return The file store, or <tt>null</tt> if the profiler type is not BCI
+     *         or not connected
+     * @throws JvmCoreException
+     */
+    IFileStore dumpSlowCalls() throws JvmCoreException;
+
     /**
      * Gets the CPU model.
      * 
@@ -0,0 +1,43 @@
+/*******************************************************************************
+ * Copyright (c) 2010 JVM Monitor project. All rights reserved. 
+ * 
+ * This code is distributed under the terms of the Eclipse Public License v1.0
+ * which is available at http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+package org.jvmmonitor.core.cpu;
+
+/**
+ * The lock node used in lock hot spots, which is the pair of the method
+ * entering monitor and the class of monitor. The node name is the qualified
+ * name of the method entering monitor.
+ */
+public interface ILockNode extends ITreeNode {
+
+    /**
+     * Gets the class name of monitor object.
+     * 
+     * @return The class name of monitor object
+     */
+    String getMonitorClass();
+
+    /**
+     * Gets the number of monitor entries.
+     * 
+     * @return The number of monitor entries
+     */
+    long getCount();
+
+    /**
+     * Gets the total time to acquire monitor.
+     * 
+     * @return The time in milliseconds
+     */
+    double getWaitTime();
+
+    /**
+     * Gets the maximum time to acquire monitor.
+     * 
+     * @return The time in milliseconds
+     */
+    double getMaxWaitTime();
+}
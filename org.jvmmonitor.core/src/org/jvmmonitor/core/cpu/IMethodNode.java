@@ -40,6 +40,38 @@ public interface IMethodNode extends ITreeNode {
      */
     int getInvocationCount();
 
+    /**
+     * Gets the estimated number of allocations in the method itself.
+     * 
+     * @return The number of allocations, or 0 if allocations are not
+     *         profiled
+     */
+    long getAllocationCount();
+
+    /**
+     * Gets the estimated bytes allocated in the method itself.
+     * 
+     * @return The allocated bytes, or 0 if allocations are not profiled
+     */
+    long getAllocatedBytes();
+
+    /**
+     * Gets the latency of invocations at the given percentile in
+     * milliseconds.
+     * 
+     * @param percentile
+     *            The percentile (e.g. 99)
+     * @return The latency, or -1 if latency is not recorded
+     */
+    double getLatency(double percentile);
+
+    /**
+     * Gets the maximum latency of invocations in milliseconds.
+     * 
+     * @return The maximum latency, or -1 if latency is not recorded
+     */
+    double getMaxLatency();
+
     /**
      * Gets the non-qualified method name.
      * 
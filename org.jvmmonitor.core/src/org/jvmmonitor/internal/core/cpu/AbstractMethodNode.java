@@ -32,6 +32,15 @@ abstract public class AbstractMethodNode implements IMethodNode {
     /** The sum of method invocation count. */
     protected int invocationCount;
 
+    /** The estimated number of allocations. */
+    protected long allocationCount;
+
+    /** The estimated allocated bytes. */
+    protected long allocatedBytes;
+
+    /** The latency histogram, or <tt>null</tt> if not recorded. */
+    protected LatencyHistogram latency;
+
     /**
      * The constructor.
      * 
@@ -113,6 +122,53 @@ abstract public class AbstractMethodNode implements IMethodNode {
         return invocationCount;
     }
 
+    /*
+     * @see IMethodNode#getAllocationCount()
+     */
+    @Override
+    public long getAllocationCount() {
+        return allocationCount;
+    }
+
+    /*
+     * @see IMethodNode#getAllocatedBytes()
+     */
+    @Override
+    public long getAllocatedBytes() {
+        return allocatedBytes;
+    }
+
+    /*
+     * @see IMethodNode#getLatency(double)
+     */
+    @Override
+    public double getLatency(double percentile) {
+        if (latency == null) {
+            return -1;
+        }
+        return latency.getValueAtPercentile(percentile);
+    }
+
+    /*
+     * @see IMethodNode#getMaxLatency()
+     */
+    @Override
+    public double getMaxLatency() {
+        if (latency == null) {
+            return -1;
+        }
+        return latency.getMax();
+    }
+
+    /**
+     * Gets the latency histogram.
+     * 
+     * @return The latency histogram, or <tt>null</tt> if not recorded
+     */
+    public LatencyHistogram getLatencyHistogram() {
+        return latency;
+    }
+
     /*
      * @see Object#hashCode()
      */
@@ -24,6 +24,9 @@ public class CallTreeNode extends AbstractMethodNode implements ICallTreeNode {
     /** The total invocation time. */
     private long totalTime;
 
+    /** The CPU time, or -1 if not measured. */
+    private long cpuTime;
+
     /** The parent frame node. */
     private CallTreeNode parentFrameNode;
 
@@ -68,6 +71,7 @@ public class CallTreeNode extends AbstractMethodNode implements ICallTreeNode {
         super(cpuModel, name, thread);
 
         totalTime = time;
+        cpuTime = -1;
         invocationCount = count;
 
         frames = new ArrayList<CallTreeNode>();
@@ -118,7 +122,11 @@ public class CallTreeNode extends AbstractMethodNode implements ICallTreeNode {
         for (CallTreeNode frameNode : frames) {
             selfTime = 0;
             totalTime = 0;
+            cpuTime = -1;
             invocationCount = 0;
+            allocationCount = 0;
+            allocatedBytes = 0;
+            latency = null;
             frameNode.clear();
         }
     }
@@ -143,6 +151,25 @@ public class CallTreeNode extends AbstractMethodNode implements ICallTreeNode {
         return totalTime;
     }
 
+    /*
+     * @see ICallTreeNode#getCpuTime()
+     */
+    @Override
+    public long getCpuTime() {
+        return cpuTime;
+    }
+
+    /*
+     * @see ICallTreeNode#getWaitTime()
+     */
+    @Override
+    public long getWaitTime() {
+        if (cpuTime < 0) {
+            return -1;
+        }
+        return Math.max(totalTime - cpuTime, 0);
+    }
+
     /*
      * @see AbstractMethodNode#hashCode()
      */
@@ -208,6 +235,16 @@ public class CallTreeNode extends AbstractMethodNode implements ICallTreeNode {
         totalTime = time;
     }
 
+    /**
+     * Sets the CPU time.
+     * 
+     * @param time
+     *            the CPU time, or -1 if not measured
+     */
+    public void setCpuTime(long time) {
+        cpuTime = time;
+    }
+
     /**
      * Sets the self invocation time.
      * 
@@ -228,6 +265,29 @@ public class CallTreeNode extends AbstractMethodNode implements ICallTreeNode {
         invocationCount = count;
     }
 
+    /**
+     * Sets the allocations.
+     * 
+     * @param count
+     *            The number of allocations
+     * @param bytes
+     *            The allocated bytes
+     */
+    public void setAllocations(long count, long bytes) {
+        allocationCount = count;
+        allocatedBytes = bytes;
+    }
+
+    /**
+     * Sets the latency histogram.
+     * 
+     * @param histogram
+     *            The latency histogram, or <tt>null</tt> if not recorded
+     */
+    public void setLatency(LatencyHistogram histogram) {
+        latency = histogram;
+    }
+
     /**
      * Dumps the profile data.
      * 
@@ -246,6 +306,17 @@ public class CallTreeNode extends AbstractMethodNode implements ICallTreeNode {
         buffer.append("<frame name=\"").append(method).append("\" cnt=\"") //$NON-NLS-1$ //$NON-NLS-2$
                 .append(invocationCount).append("\" time=\"").append(totalTime) //$NON-NLS-1$
                 .append("\""); //$NON-NLS-1$
+        if (cpuTime >= 0) {
+            buffer.append(" cpu=\"").append(cpuTime).append("\""); //$NON-NLS-1$ //$NON-NLS-2$
+        }
+        if (allocationCount > 0) {
+            buffer.append(" alloc=\"").append(allocationCount) //$NON-NLS-1$
+                    .append("\" allocSize=\"").append(allocatedBytes) //$NON-NLS-1$
+                    .append("\""); //$NON-NLS-1$
+        }
+        if (latency != null) {
+            latency.dump(buffer);
+        }
         if (frames.size() > 0) {
             buffer.append(">\n"); //$NON-NLS-1$
             for (CallTreeNode frameNode : frames) {
@@ -0,0 +1,410 @@
+/*******************************************************************************
+ * Copyright (c) 2010 JVM Monitor project. All rights reserved.
+ *
+ * This code is distributed under the terms of the Eclipse Public License v1.0
+ * which is available at http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+package org.jvmmonitor.internal.core.cpu;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.OperationCanceledException;
+import org.jvmmonitor.core.cpu.CpuModelEvent;
+import org.jvmmonitor.core.cpu.CpuModelEvent.CpuModelState;
+
+/**
+ * The decoder of CPU dump in binary format, which is created by BCI profiler
+ * in target JVM. The data is decoded directly into CPU model.
+ * <p>
+ * The numbers are unsigned varints, and the strings are varint length
+ * followed by UTF-8 bytes. The frame names form a string table, where the
+ * name follows its index only when it appears first. The time is given in
+ * nanoseconds. The frames contain CPU time, allocations and latency
+ * histograms only if the flags in header say so.
+ * <p>
+ * The data can contain only the frames modified after the generation that
+ * the previous data contained. In that case, the decoded frames are merged
+ * into CPU model, keeping the other frames as they are, and the threads that
+ * have been merged into other threads in target JVM are removed.
+ */
+public class CpuDumpBinaryDecoder {
+
+    /** The supported format version. */
+    private static final int VERSION = 6;
+
+    /** The tag indicating the end of data. */
+    private static final int END = 0;
+
+    /** The tag indicating the start of thread record. */
+    private static final int THREAD = 1;
+
+    /** The tag indicating the record of removed thread. */
+    private static final int REMOVED_THREAD = 2;
+
+    /** The flag indicating that frames contain CPU time. */
+    private static final int CPU_TIME = 1;
+
+    /** The flag indicating that frames contain allocations. */
+    private static final int ALLOCATIONS = 2;
+
+    /** The flag indicating that frames contain latency histograms. */
+    private static final int LATENCY = 4;
+
+    /** The nanoseconds per millisecond. */
+    private static final long NANOS_PER_MILLI = 1000000;
+
+    /** The data to decode. */
+    private byte[] data;
+
+    /** The current position in data. */
+    private int pos;
+
+    /** The generation of profile data. */
+    private long generation;
+
+    /** The state indicating if data contains all frames. */
+    private boolean full;
+
+    /** The state indicating if frames contain CPU time. */
+    private boolean cpuTime;
+
+    /** The state indicating if frames contain allocations. */
+    private boolean allocations;
+
+    /** The state indicating if frames contain latency histograms. */
+    private boolean latency;
+
+    /** The string table of frame names. */
+    private List<String> names;
+
+    /** The CPU model. */
+    private CpuModel cpuModel;
+
+    /** The progress monitor. */
+    private IProgressMonitor monitor;
+
+    /** The currently decoded call tree thread node. */
+    private ThreadNode<CallTreeNode> currentCallTreeThreadNode;
+
+    /** The currently decoded hot spot thread node. */
+    private ThreadNode<MethodNode> currentHotSpotThreadNode;
+
+    /**
+     * The constructor.
+     *
+     * @param data
+     *            The data to decode
+     * @param cpuModel
+     *            The CPU model
+     * @param monitor
+     *            The progress monitor
+     */
+    public CpuDumpBinaryDecoder(byte[] data, CpuModel cpuModel,
+            IProgressMonitor monitor) {
+        this.data = data;
+        this.cpuModel = cpuModel;
+        this.monitor = monitor;
+        names = new ArrayList<String>();
+    }
+
+    /**
+     * Decodes the data into CPU model.
+     *
+     * @throws IOException
+     *             if data is malformed
+     */
+    public void decode() throws IOException {
+        pos = 0;
+        names.clear();
+
+        int version = (int) readVarLong();
+        if (version != VERSION) {
+            throw new IOException("Unsupported CPU dump version: " + version); //$NON-NLS-1$
+        }
+        generation = readVarLong();
+        full = readVarLong() == 0;
+        long flags = readVarLong();
+        cpuTime = (flags & CPU_TIME) != 0;
+        allocations = (flags & ALLOCATIONS) != 0;
+        latency = (flags & LATENCY) != 0;
+
+        if (full) {
+            cpuModel.clear();
+        }
+        while (true) {
+            int tag = (int) readVarLong();
+            if (tag == END) {
+                break;
+            }
+            if (tag == REMOVED_THREAD) {
+                cpuModel.removeThread(readString());
+            } else if (tag == THREAD) {
+                decodeThread();
+            } else {
+                throw new IOException("Unknown CPU dump tag: " + tag); //$NON-NLS-1$
+            }
+        }
+
+        cpuModel.notifyModelChanged(new CpuModelEvent(
+                CpuModelState.CpuModelChanged));
+    }
+
+    /**
+     * Gets the generation of decoded profile data, which is given to get the
+     * subsequent modifications next time.
+     * 
+     * @return The generation
+     */
+    public long getGeneration() {
+        return generation;
+    }
+
+    /**
+     * Decodes the thread record.
+     *
+     * @throws IOException
+     */
+    private void decodeThread() throws IOException {
+        String threadName = readString();
+        currentCallTreeThreadNode = cpuModel.getCallTreeThread(threadName);
+        if (currentCallTreeThreadNode == null) {
+            currentCallTreeThreadNode = new ThreadNode<CallTreeNode>(
+                    threadName);
+            cpuModel.addCallTreeThread(currentCallTreeThreadNode);
+        }
+        currentHotSpotThreadNode = cpuModel.getHotSpotThread(threadName);
+        if (currentHotSpotThreadNode == null) {
+            currentHotSpotThreadNode = new ThreadNode<MethodNode>(threadName);
+            cpuModel.addHotSpotThread(currentHotSpotThreadNode);
+        }
+
+        long threadTotalTime = 0;
+        int rootCount = (int) readVarLong();
+        for (int i = 0; i < rootCount; i++) {
+            CallTreeNode rootFrameNode = decodeFrame(null);
+            if (full) {
+                threadTotalTime += rootFrameNode.getTotalTime();
+            }
+        }
+        if (!full) {
+            // the root frames not contained in data keep the previous time
+            for (CallTreeNode rootFrameNode : currentCallTreeThreadNode
+                    .getChildren()) {
+                threadTotalTime += rootFrameNode.getTotalTime();
+            }
+        }
+
+        currentCallTreeThreadNode.setTotalTime(threadTotalTime);
+        currentHotSpotThreadNode.setTotalTime(threadTotalTime);
+        currentCallTreeThreadNode = null;
+        currentHotSpotThreadNode = null;
+    }
+
+    /**
+     * Decodes the frame record and its descendants.
+     *
+     * @param parent
+     *            The parent frame node, or <tt>null</tt> for root frame
+     * @return The decoded frame node
+     * @throws IOException
+     */
+    private CallTreeNode decodeFrame(CallTreeNode parent) throws IOException {
+        if (monitor.isCanceled()) {
+            throw new OperationCanceledException();
+        }
+
+        String methodName = readName();
+        int count = (int) readVarLong();
+        long time = toMillis(readVarLong());
+        long cpu = cpuTime ? toMillis(readVarLong()) : -1;
+        long allocationCount = allocations ? readVarLong() : 0;
+        long allocatedBytes = allocations ? readVarLong() : 0;
+        LatencyHistogram histogram = latency ? readLatency() : null;
+
+        CallTreeNode frameNode;
+        if (parent == null) {
+            frameNode = (CallTreeNode) currentCallTreeThreadNode
+                    .getChild(methodName);
+            if (frameNode == null) {
+                frameNode = new CallTreeNode(cpuModel, methodName, 0, 0,
+                        currentCallTreeThreadNode);
+                currentCallTreeThreadNode.addChild(frameNode);
+            }
+        } else {
+            frameNode = parent.getChild(methodName);
+            if (frameNode == null) {
+                frameNode = new CallTreeNode(cpuModel, methodName, 0, 0,
+                        parent, currentCallTreeThreadNode);
+                parent.addChild(frameNode);
+            }
+        }
+
+        // the previous values are regarded as 0 if decoding all frames
+        long previousSelfTime = full ? 0 : frameNode.getSelfTime();
+        int previousCount = full ? 0 : frameNode.getInvocationCount();
+        long previousAllocationCount = full ? 0 : frameNode
+                .getAllocationCount();
+        long previousAllocatedBytes = full ? 0 : frameNode.getAllocatedBytes();
+        LatencyHistogram previousHistogram = full ? null : frameNode
+                .getLatencyHistogram();
+        frameNode.setTotalTime(time);
+        frameNode.setCpuTime(cpu);
+        frameNode.setInvocationCount(count);
+        frameNode.setAllocations(allocationCount, allocatedBytes);
+        frameNode.setLatency(histogram);
+
+        long selfTime = time;
+        int childCount = (int) readVarLong();
+        for (int i = 0; i < childCount; i++) {
+            CallTreeNode childFrameNode = decodeFrame(frameNode);
+            if (full) {
+                selfTime -= childFrameNode.getTotalTime();
+            }
+        }
+        if (!full) {
+            // the children not contained in data keep the previous time
+            for (CallTreeNode childFrameNode : frameNode.getChildren()) {
+                selfTime -= childFrameNode.getTotalTime();
+            }
+        }
+        frameNode.setSelfTime(selfTime);
+
+        storeMethod(frameNode, selfTime - previousSelfTime, count
+                - previousCount, allocationCount - previousAllocationCount,
+                allocatedBytes - previousAllocatedBytes,
+                histogram == null ? null : histogram
+                        .subtract(previousHistogram));
+        return frameNode;
+    }
+
+    /**
+     * Stores the method into hot spots of current thread.
+     *
+     * @param frameNode
+     *            The frame node
+     * @param selfTime
+     *            The self time to be added
+     * @param count
+     *            The invocation count to be added
+     * @param allocationCount
+     *            The number of allocations to be added
+     * @param allocatedBytes
+     *            The allocated bytes to be added
+     * @param histogram
+     *            The latency histogram to be added, or <tt>null</tt>
+     */
+    private void storeMethod(CallTreeNode frameNode, long selfTime, int count,
+            long allocationCount, long allocatedBytes,
+            LatencyHistogram histogram) {
+        String methodName = frameNode.getName();
+        MethodNode method = (MethodNode) currentHotSpotThreadNode
+                .getChild(methodName);
+        if (method == null) {
+            method = new MethodNode(cpuModel, methodName,
+                    currentHotSpotThreadNode);
+            currentHotSpotThreadNode.addChild(method);
+        }
+        method.incrementTime(selfTime);
+        method.incrementCount(count);
+        method.incrementAllocations(allocationCount, allocatedBytes);
+        method.incrementLatency(histogram);
+    }
+
+    /**
+     * Reads the latency histogram.
+     *
+     * @return The latency histogram, or <tt>null</tt> if not recorded
+     * @throws IOException
+     */
+    private LatencyHistogram readLatency() throws IOException {
+        int bucketCount = (int) readVarLong();
+        if (bucketCount == 0) {
+            return null;
+        }
+
+        LatencyHistogram histogram = new LatencyHistogram();
+        int index = 0;
+        for (int i = 0; i < bucketCount; i++) {
+            index += (int) readVarLong();
+            try {
+                histogram.add(index, readVarLong());
+            } catch (IllegalArgumentException e) {
+                throw new IOException(e.getMessage());
+            }
+        }
+        histogram.setMaxValue(readVarLong());
+        return histogram;
+    }
+
+    /**
+     * Converts the time in nanoseconds into milliseconds.
+     *
+     * @param nanos
+     *            The time in nanoseconds
+     * @return The time rounded to milliseconds
+     */
+    private static long toMillis(long nanos) {
+        return (nanos + NANOS_PER_MILLI / 2) / NANOS_PER_MILLI;
+    }
+
+    /**
+     * Reads the frame name with string table.
+     *
+     * @return The frame name
+     * @throws IOException
+     */
+    private String readName() throws IOException {
+        int index = (int) readVarLong();
+        if (index < names.size()) {
+            return names.get(index);
+        }
+        if (index != names.size()) {
+            throw new IOException("Illegal name index: " + index); //$NON-NLS-1$
+        }
+
+        String name = readString();
+        names.add(name);
+        return name;
+    }
+
+    /**
+     * Reads the string.
+     *
+     * @return The string
+     * @throws IOException
+     */
+    private String readString() throws IOException {
+        int length = (int) readVarLong();
+        if (length < 0 || pos + length > data.length) {
+            throw new EOFException();
+        }
+        String value = new String(data, pos, length, "UTF-8"); //$NON-NLS-1$
+        pos += length;
+        return value;
+    }
+
+    /**
+     * Reads the unsigned varint.
+     *
+     * @return The number
+     * @throws IOException
+     */
+    private long readVarLong() throws IOException {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            if (pos >= data.length) {
+                throw new EOFException();
+            }
+            byte b = data[pos++];
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IOException("Malformed varint"); //$NON-NLS-1$
+    }
+}
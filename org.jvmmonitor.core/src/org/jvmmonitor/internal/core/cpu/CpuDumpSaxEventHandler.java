@@ -130,6 +130,12 @@ public class CpuDumpSaxEventHandler extends DefaultHandler {
         // frame
         if ("frame".equals(name)) { //$NON-NLS-1$
             parseFrame(attributes);
+            return;
+        }
+
+        // lock
+        if ("lock".equals(name)) { //$NON-NLS-1$
+            parseLock(attributes);
         }
     }
 
@@ -192,7 +198,18 @@ public class CpuDumpSaxEventHandler extends DefaultHandler {
     private void parseFrame(Attributes attributes) {
         String methodName = attributes.getValue("name"); //$NON-NLS-1$
         int count = Integer.parseInt(attributes.getValue("cnt")); //$NON-NLS-1$
-        long time = Long.parseLong(attributes.getValue("time")); //$NON-NLS-1$
+        long time = parseTime(attributes.getValue("time")); //$NON-NLS-1$
+        String cpu = attributes.getValue("cpu"); //$NON-NLS-1$
+        long cpuTime = (cpu == null) ? -1 : parseTime(cpu);
+        String alloc = attributes.getValue("alloc"); //$NON-NLS-1$
+        long allocationCount = (alloc == null) ? 0 : Long.parseLong(alloc);
+        String allocSize = attributes.getValue("allocSize"); //$NON-NLS-1$
+        long allocatedBytes = (allocSize == null) ? 0 : Long
+                .parseLong(allocSize);
+        String lat = attributes.getValue("lat"); //$NON-NLS-1$
+        String latMax = attributes.getValue("latMax"); //$NON-NLS-1$
+        LatencyHistogram latency = (lat == null || latMax == null) ? null
+                : LatencyHistogram.parse(lat, latMax);
 
         if (currentRootFrameNode == null) {
             currentRootFrameNode = (CallTreeNode) currentCallTreeThreadNode
@@ -220,6 +237,40 @@ public class CpuDumpSaxEventHandler extends DefaultHandler {
             currentFrameNode = childFrameNode;
         }
         currentFrameNode.setSelfTime(time);
+        currentFrameNode.setCpuTime(cpuTime);
+        currentFrameNode.setAllocations(allocationCount, allocatedBytes);
+        currentFrameNode.setLatency(latency);
+    }
+
+    /**
+     * Parses the lock attribute.
+     * 
+     * @param attributes
+     *            The lock attribute
+     */
+    private void parseLock(Attributes attributes) {
+        String monitorClass = attributes.getValue("class"); //$NON-NLS-1$
+        String site = attributes.getValue("site"); //$NON-NLS-1$
+        long count = Long.parseLong(attributes.getValue("cnt")); //$NON-NLS-1$
+        double time = Double.parseDouble(attributes.getValue("time")); //$NON-NLS-1$
+        double max = Double.parseDouble(attributes.getValue("max")); //$NON-NLS-1$
+        cpuModel.addLockHotSpot(new LockNode(site, monitorClass, count, time,
+                max));
+    }
+
+    /**
+     * Parses the time in milliseconds, which can have fraction when the
+     * profiled JVM measures the time with nano time.
+     * 
+     * @param value
+     *            The time in milliseconds
+     * @return The time rounded to milliseconds
+     */
+    private static long parseTime(String value) {
+        if (value.indexOf('.') == -1) {
+            return Long.parseLong(value);
+        }
+        return Math.round(Double.parseDouble(value));
     }
 
     /**
@@ -251,5 +302,8 @@ public class CpuDumpSaxEventHandler extends DefaultHandler {
         }
         method.incrementTime(time);
         method.incrementCount(count);
+        method.incrementAllocations(frame.getAllocationCount(),
+                frame.getAllocatedBytes());
+        method.incrementLatency(frame.getLatencyHistogram());
     }
 }
@@ -18,6 +18,7 @@ import org.jvmmonitor.core.cpu.CpuModelEvent;
 import org.jvmmonitor.core.cpu.ICallTreeNode;
 import org.jvmmonitor.core.cpu.ICpuModel;
 import org.jvmmonitor.core.cpu.ICpuModelChangeListener;
+import org.jvmmonitor.core.cpu.ILockNode;
 import org.jvmmonitor.core.cpu.IMethodNode;
 import org.jvmmonitor.core.cpu.ITreeNode;
 import org.jvmmonitor.core.cpu.CpuModelEvent.CpuModelState;
@@ -38,6 +39,9 @@ public class CpuModel implements ICpuModel {
     /** The hot spot threads. */
     private List<ThreadNode<MethodNode>> hotSpotThreads;
 
+    /** The lock hot spots. */
+    private List<LockNode> lockHotSpots;
+
     /** The callers. */
     private List<MethodNode> callers;
 
@@ -71,6 +75,7 @@ public class CpuModel implements ICpuModel {
     public CpuModel() {
         callTreeThreads = new CopyOnWriteArrayList<ThreadNode<CallTreeNode>>();
         hotSpotThreads = new CopyOnWriteArrayList<ThreadNode<MethodNode>>();
+        lockHotSpots = new CopyOnWriteArrayList<LockNode>();
         callers = new ArrayList<MethodNode>();
         callees = new ArrayList<MethodNode>();
         focusedHotSpotRoots = new HashMap<String, MethodNode>();
@@ -99,6 +104,14 @@ public class CpuModel implements ICpuModel {
         return focusedHotSpotRoots.values().toArray(new IMethodNode[0]);
     }
 
+    /*
+     * @see ICpuModel#getLockHotSpots()
+     */
+    @Override
+    public ILockNode[] getLockHotSpots() {
+        return lockHotSpots.toArray(new ILockNode[0]);
+    }
+
     /*
      * @see ICpuModel#getCallers()
      */
@@ -310,12 +323,51 @@ public class CpuModel implements ICpuModel {
         }
     }
 
+    /**
+     * Removes the call tree thread node and the hot spot thread node
+     * corresponding to the given thread name.
+     * 
+     * @param threadName
+     *            The thread name
+     */
+    public void removeThread(String threadName) {
+        ThreadNode<CallTreeNode> callTreeThread = getCallTreeThread(threadName);
+        if (callTreeThread != null) {
+            callTreeThreads.remove(callTreeThread);
+        }
+        ThreadNode<MethodNode> hotSpotThread = getHotSpotThread(threadName);
+        if (hotSpotThread != null) {
+            hotSpotThreads.remove(hotSpotThread);
+        }
+    }
+
+    /**
+     * Adds the lock hot spot.
+     * 
+     * @param lock
+     *            The lock node
+     */
+    public void addLockHotSpot(LockNode lock) {
+        lockHotSpots.add(lock);
+    }
+
+    /**
+     * Sets the lock hot spots replacing the existing ones.
+     * 
+     * @param locks
+     *            The lock nodes
+     */
+    public void setLockHotSpots(List<LockNode> locks) {
+        lockHotSpots = new CopyOnWriteArrayList<LockNode>(locks);
+    }
+
     /**
      * Removes all nodes in this model.
      */
     public void removeAll() {
         callTreeThreads.clear();
         hotSpotThreads.clear();
+        lockHotSpots.clear();
         callers.clear();
         callees.clear();
         focusedHotSpotRoots.clear();
@@ -331,6 +383,7 @@ public class CpuModel implements ICpuModel {
         for (ThreadNode<MethodNode> treeNode : hotSpotThreads) {
             treeNode.clear();
         }
+        lockHotSpots.clear();
     }
 
     /**
@@ -383,6 +436,9 @@ public class CpuModel implements ICpuModel {
             }
             buffer.append("\t</thread>\n"); //$NON-NLS-1$
         }
+        for (LockNode lock : lockHotSpots) {
+            lock.dump(buffer);
+        }
         buffer.append("</cpu-profile>"); //$NON-NLS-1$
 
         return buffer.toString();
@@ -428,6 +484,9 @@ public class CpuModel implements ICpuModel {
         MethodNode node = new MethodNode(this, methodName, null);
         node.incrementCount(frame.getInvocationCount());
         node.incrementTime(frame.getSelfTime());
+        node.incrementAllocations(frame.getAllocationCount(),
+                frame.getAllocatedBytes());
+        node.incrementLatency(((CallTreeNode) frame).getLatencyHistogram());
         focusedHotSpotRoots.put(methodName, node);
 
         for (CallTreeNode child : ((CallTreeNode) frame).getChildren()) {
@@ -436,10 +495,16 @@ public class CpuModel implements ICpuModel {
                 node = focusedHotSpotRoots.get(methodName);
                 node.incrementCount(child.getInvocationCount());
                 node.incrementTime(child.getSelfTime());
+                node.incrementAllocations(child.getAllocationCount(),
+                        child.getAllocatedBytes());
+                node.incrementLatency(child.getLatencyHistogram());
             } else {
                 node = new MethodNode(this, methodName, null);
                 node.incrementCount(child.getInvocationCount());
                 node.incrementTime(child.getSelfTime());
+                node.incrementAllocations(child.getAllocationCount(),
+                        child.getAllocatedBytes());
+                node.incrementLatency(child.getLatencyHistogram());
                 focusedHotSpotRoots.put(methodName, node);
             }
             addFocusedHotSpotNodes(child);
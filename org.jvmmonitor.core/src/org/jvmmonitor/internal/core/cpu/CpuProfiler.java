@@ -6,18 +6,19 @@
  *******************************************************************************/
 package org.jvmmonitor.internal.core.cpu;
 
-import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.OutputStream;
+import java.util.ArrayList;
 import java.util.Date;
 import java.util.HashSet;
 import java.util.LinkedHashSet;
+import java.util.List;
 import java.util.Set;
 
 import javax.management.Attribute;
 import javax.management.ObjectName;
 import javax.management.openmbean.CompositeData;
-import javax.xml.parsers.ParserConfigurationException;
 
 import org.eclipse.core.filesystem.EFS;
 import org.eclipse.core.filesystem.IFileStore;
@@ -34,7 +35,6 @@ import org.jvmmonitor.core.JvmModelEvent.State;
 import org.jvmmonitor.core.cpu.CpuModelEvent;
 import org.jvmmonitor.core.cpu.CpuModelEvent.CpuModelState;
 import org.jvmmonitor.core.cpu.ICpuProfiler;
-import org.jvmmonitor.core.dump.CpuDumpParser;
 import org.jvmmonitor.internal.core.AbstractJvm;
 import org.jvmmonitor.internal.core.ActiveJvm;
 import org.jvmmonitor.internal.core.Host;
@@ -42,7 +42,6 @@ import org.jvmmonitor.internal.core.MBeanServer;
 import org.jvmmonitor.internal.core.Messages;
 import org.jvmmonitor.internal.core.Snapshot;
 import org.jvmmonitor.internal.core.Util;
-import org.xml.sax.SAXException;
 
 /**
  * The CPU profiler.
@@ -52,6 +51,9 @@ public class CpuProfiler implements ICpuProfiler {
     /** The profiler MXBean name. */
     private static final String PROFILER_MXBEAN_NAME = "org.jvmmonitor:type=CPU BCI Profiler"; //$NON-NLS-1$
 
+    /** The stack sampler MXBean name. */
+    private static final String STACK_SAMPLER_MXBEAN_NAME = "org.jvmmonitor:type=Stack Sampler"; //$NON-NLS-1$
+
     /** The transformClasses method in CpuProfilerMXBean. */
     private static final String TRANSFORM_CLASSES = "transformClasses"; //$NON-NLS-1$
 
@@ -61,8 +63,17 @@ public class CpuProfiler implements ICpuProfiler {
     /** The clear method in CpuProfilerMXBean. */
     private static final String CLEAR = "clear"; //$NON-NLS-1$
 
-    /** The dump method in CpuProfilerMXBean. */
-    private static final String DUMP = "dump"; //$NON-NLS-1$
+    /** The dumpSince method in CpuProfilerMXBean. */
+    private static final String DUMP_SINCE = "dumpSince"; //$NON-NLS-1$
+
+    /** The dumpSlowCalls method in CpuProfilerMXBean. */
+    private static final String DUMP_SLOW_CALLS = "dumpSlowCalls"; //$NON-NLS-1$
+
+    /** The readBinaryDump method in CpuProfilerMXBean. */
+    private static final String READ_BINARY_DUMP = "readBinaryDump"; //$NON-NLS-1$
+
+    /** The size in bytes of chunk to read binary dump. */
+    private static final int BINARY_DUMP_CHUNK_SIZE = 65536;
 
     /** The setFilter method in CpuProfilerMXBean. */
     private static final String SET_FILTER = "setFilter"; //$NON-NLS-1$
@@ -82,6 +93,15 @@ public class CpuProfiler implements ICpuProfiler {
     /** The Running attribute in CpuProfilerMXBean. */
     private static final String RUNNING = "Running"; //$NON-NLS-1$
 
+    /** The SamplingPeriod attribute in StackSamplerMXBean. */
+    private static final String SAMPLING_PERIOD = "SamplingPeriod"; //$NON-NLS-1$
+
+    /** The MonitorContentions attribute in CpuProfilerMXBean. */
+    private static final String MONITOR_CONTENTIONS = "MonitorContentions"; //$NON-NLS-1$
+
+    /** The number of nanoseconds per millisecond. */
+    private static final double NANOS_PER_MILLI = 1000000d;
+
     /** the ProfiledPackages attribute in CpuProfilerMXBean. */
     private static final String PROFILED_PACKAGES = "ProfiledPackages"; //$NON-NLS-1$
 
@@ -103,6 +123,18 @@ public class CpuProfiler implements ICpuProfiler {
     /** The profiled packages. */
     private Set<String> profiledPackages;
 
+    /**
+     * The generation of BCI profile data merged into CPU model, or 0 if CPU
+     * model has to be refreshed with all frames.
+     */
+    private long bciGeneration;
+
+    /**
+     * The generation of stack samples merged into CPU model, or 0 if CPU
+     * model has to be refreshed with all frames.
+     */
+    private long samplerGeneration;
+
     /**
      * The constructor.
      * 
@@ -122,6 +154,10 @@ public class CpuProfiler implements ICpuProfiler {
      */
     @Override
     public void setProfilerType(ProfilerType type) {
+        if (this.type != type) {
+            bciGeneration = 0;
+            samplerGeneration = 0;
+        }
         this.type = type;
     }
 
@@ -185,7 +221,16 @@ public class CpuProfiler implements ICpuProfiler {
                         new Attribute(RUNNING, true));
             }
         } else {
-            jvm.getMBeanServer().resumeSampling();
+            ObjectName objectName = getStackSamplerObjectName();
+            if (objectName != null) {
+                setStackSamplerPackages(objectName);
+                jvm.getMBeanServer().setAttribute(objectName,
+                        new Attribute(SAMPLING_PERIOD, getSamplingPeriod()));
+                jvm.getMBeanServer().setAttribute(objectName,
+                        new Attribute(RUNNING, true));
+            } else {
+                jvm.getMBeanServer().resumeSampling();
+            }
         }
     }
 
@@ -203,6 +248,11 @@ public class CpuProfiler implements ICpuProfiler {
                         new Attribute(RUNNING, false));
             }
         } else {
+            ObjectName objectName = getStackSamplerObjectName();
+            if (objectName != null) {
+                jvm.getMBeanServer().setAttribute(objectName,
+                        new Attribute(RUNNING, false));
+            }
             jvm.getMBeanServer().suspendSampling();
         }
     }
@@ -215,8 +265,15 @@ public class CpuProfiler implements ICpuProfiler {
         if (type == ProfilerType.BCI) {
             validateAgent();
             invokeCpuProfilerMXBeanMethod(CLEAR, null, null);
+        } else {
+            ObjectName objectName = getStackSamplerObjectName();
+            if (objectName != null) {
+                jvm.getMBeanServer().invoke(objectName, CLEAR, null, null);
+            }
         }
         cpuModel.removeAll();
+        bciGeneration = 0;
+        samplerGeneration = 0;
 
         cpuModel.notifyModelChanged(new CpuModelEvent(
                 CpuModelState.CpuModelChanged));
@@ -230,55 +287,25 @@ public class CpuProfiler implements ICpuProfiler {
         String dump = cpuModel.getCpuDumpString(jvm.getPid() + "@" //$NON-NLS-1$
                 + jvm.getHost().getName(), jvm.getMainClass(), jvm
                 .getMBeanServer().getJvmArguments());
+        return saveDump(dump);
+    }
 
-        StringBuffer fileName = new StringBuffer();
-        fileName.append(new Date().getTime()).append('.')
-                .append(SnapshotType.Cpu.getExtension());
-        IFileStore fileStore = Util.getFileStore(fileName.toString(),
-                jvm.getBaseDirectory());
-
-        // restore the terminated JVM if already removed
-        AbstractJvm abstractJvm = jvm;
-        if (!((Host) jvm.getHost()).getJvms().contains(jvm)) {
-            jvm.saveJvmProperties();
-            abstractJvm = (AbstractJvm) ((Host) jvm.getHost())
-                    .addTerminatedJvm(jvm.getPid(), jvm.getPort(),
-                            jvm.getMainClass());
+    /*
+     * @see ICpuProfiler#dumpSlowCalls()
+     */
+    @Override
+    public IFileStore dumpSlowCalls() throws JvmCoreException {
+        if (type != ProfilerType.BCI) {
+            return null;
         }
 
-        OutputStream os = null;
-        try {
-            os = fileStore.openOutputStream(EFS.NONE, null);
-            os.write(dump.getBytes());
-
-            Snapshot snapshot = new Snapshot(fileStore, abstractJvm);
-            abstractJvm.addSnapshot(snapshot);
-
-            JvmModel.getInstance().fireJvmModelChangeEvent(
-                    new JvmModelEvent(State.ShapshotTaken, jvm, snapshot));
-        } catch (CoreException e) {
-            throw new JvmCoreException(IStatus.ERROR, NLS.bind(
-                    Messages.openOutputStreamFailedMsg, fileStore.toURI()
-                            .getPath()), e);
-        } catch (IOException e) {
-            try {
-                fileStore.delete(EFS.NONE, null);
-            } catch (CoreException e1) {
-                // do nothing
-            }
-            throw new JvmCoreException(IStatus.ERROR, NLS.bind(
-                    Messages.dumpCpuProfileDataFailedMsg, fileStore.toURI()
-                            .getPath()), e);
-        } finally {
-            if (os != null) {
-                try {
-                    os.close();
-                } catch (IOException e) {
-                    // do nothing
-                }
-            }
+        validateAgent();
+        Object dump = invokeCpuProfilerMXBeanMethod(DUMP_SLOW_CALLS, null,
+                null);
+        if (!(dump instanceof String) || ((String) dump).isEmpty()) {
+            return null;
         }
-        return fileStore;
+        return saveDump((String) dump);
     }
 
     /*
@@ -296,6 +323,7 @@ public class CpuProfiler implements ICpuProfiler {
     public void refreshBciProfileCache(IProgressMonitor monitor)
             throws JvmCoreException {
         if (type != ProfilerType.BCI) {
+            refreshStackSamples(monitor);
             return;
         }
 
@@ -305,35 +333,24 @@ public class CpuProfiler implements ICpuProfiler {
             return;
         }
 
-        String dumpString = (String) invokeCpuProfilerMXBeanMethod(DUMP, null,
-                null);
-        if (dumpString == null) {
+        byte[] dump = readBinaryDump(PROFILER_MXBEAN_NAME, bciGeneration,
+                monitor);
+        if (dump == null) {
             return;
         }
 
-        ByteArrayInputStream input = null;
         try {
-            input = new ByteArrayInputStream(dumpString.getBytes());
-            CpuDumpParser parser = new CpuDumpParser(input, cpuModel, monitor);
-            parser.parse();
-        } catch (ParserConfigurationException e) {
-            throw new JvmCoreException(IStatus.ERROR,
-                    Messages.parseCpuDumpFailedMsg, e);
-        } catch (SAXException e) {
-            throw new JvmCoreException(IStatus.ERROR,
-                    Messages.parseCpuDumpFailedMsg, e);
+            CpuDumpBinaryDecoder decoder = new CpuDumpBinaryDecoder(dump,
+                    cpuModel, monitor);
+            decoder.decode();
+            bciGeneration = decoder.getGeneration();
         } catch (IOException e) {
+            bciGeneration = 0;
             throw new JvmCoreException(IStatus.ERROR,
                     Messages.parseCpuDumpFailedMsg, e);
-        } finally {
-            if (input != null) {
-                try {
-                    input.close();
-                } catch (IOException e) {
-                    // do nothing
-                }
-            }
         }
+
+        refreshLockHotSpots();
     }
 
     /*
@@ -367,6 +384,10 @@ public class CpuProfiler implements ICpuProfiler {
                             String.class.getName() });
         } else {
             this.profiledPackages = packages;
+            ObjectName objectName = getStackSamplerObjectName();
+            if (objectName != null) {
+                setStackSamplerPackages(objectName);
+            }
         }
 
         JvmModel.getInstance().fireJvmModelChangeEvent(
@@ -420,6 +441,13 @@ public class CpuProfiler implements ICpuProfiler {
             if (server == null) {
                 return ProfilerState.UNKNOWN;
             }
+            try {
+                if (isStackSamplerRunning()) {
+                    return ProfilerState.RUNNING;
+                }
+            } catch (JvmCoreException e) {
+                return ProfilerState.UNKNOWN;
+            }
             return server.getProfilerState();
         }
 
@@ -457,7 +485,22 @@ public class CpuProfiler implements ICpuProfiler {
      */
     @Override
     public void setSamplingPeriod(Integer samplingPeriod) {
+        boolean changed = !samplingPeriod.equals(getSamplingPeriod());
         jvm.getMBeanServer().setSamplingPeriod(samplingPeriod);
+        if (!changed || type != ProfilerType.SAMPLING) {
+            return;
+        }
+
+        try {
+            ObjectName objectName = getStackSamplerObjectName();
+            if (objectName != null) {
+                jvm.getMBeanServer().setAttribute(objectName,
+                        new Attribute(SAMPLING_PERIOD, samplingPeriod));
+            }
+        } catch (JvmCoreException e) {
+            Activator.log(IStatus.ERROR, NLS.bind(
+                    Messages.setAttributeFailedMsg, SAMPLING_PERIOD), e);
+        }
     }
 
     /**
@@ -526,6 +569,65 @@ public class CpuProfiler implements ICpuProfiler {
         return false;
     }
 
+    /**
+     * Saves the profile data into a snapshot file.
+     * 
+     * @param dump
+     *            The profile data
+     * @return The file store
+     * @throws JvmCoreException
+     */
+    private IFileStore saveDump(String dump) throws JvmCoreException {
+        StringBuffer fileName = new StringBuffer();
+        fileName.append(new Date().getTime()).append('.')
+                .append(SnapshotType.Cpu.getExtension());
+        IFileStore fileStore = Util.getFileStore(fileName.toString(),
+                jvm.getBaseDirectory());
+
+        // restore the terminated JVM if already removed
+        AbstractJvm abstractJvm = jvm;
+        if (!((Host) jvm.getHost()).getJvms().contains(jvm)) {
+            jvm.saveJvmProperties();
+            abstractJvm = (AbstractJvm) ((Host) jvm.getHost())
+                    .addTerminatedJvm(jvm.getPid(), jvm.getPort(),
+                            jvm.getMainClass());
+        }
+
+        OutputStream os = null;
+        try {
+            os = fileStore.openOutputStream(EFS.NONE, null);
+            os.write(dump.getBytes());
+
+            Snapshot snapshot = new Snapshot(fileStore, abstractJvm);
+            abstractJvm.addSnapshot(snapshot);
+
+            JvmModel.getInstance().fireJvmModelChangeEvent(
+                    new JvmModelEvent(State.ShapshotTaken, jvm, snapshot));
+        } catch (CoreException e) {
+            throw new JvmCoreException(IStatus.ERROR, NLS.bind(
+                    Messages.openOutputStreamFailedMsg, fileStore.toURI()
+                            .getPath()), e);
+        } catch (IOException e) {
+            try {
+                fileStore.delete(EFS.NONE, null);
+            } catch (CoreException e1) {
+                // do nothing
+            }
+            throw new JvmCoreException(IStatus.ERROR, NLS.bind(
+                    Messages.dumpCpuProfileDataFailedMsg, fileStore.toURI()
+                            .getPath()), e);
+        } finally {
+            if (os != null) {
+                try {
+                    os.close();
+                } catch (IOException e) {
+                    // do nothing
+                }
+            }
+        }
+        return fileStore;
+    }
+
     /**
      * Validates the agent.
      * 
@@ -541,6 +643,168 @@ public class CpuProfiler implements ICpuProfiler {
         }
     }
 
+    /**
+     * Refreshes the lock hot spots with the monitor contentions recorded by
+     * BCI profiler.
+     * 
+     * @throws JvmCoreException
+     */
+    private void refreshLockHotSpots() throws JvmCoreException {
+        ObjectName objectName = jvm.getMBeanServer().getObjectName(
+                PROFILER_MXBEAN_NAME);
+        if (objectName == null) {
+            return;
+        }
+
+        Object attribute = jvm.getMBeanServer().getAttribute(objectName,
+                MONITOR_CONTENTIONS);
+        if (!(attribute instanceof CompositeData[])) {
+            return;
+        }
+
+        List<LockNode> locks = new ArrayList<LockNode>();
+        for (CompositeData data : (CompositeData[]) attribute) {
+            locks.add(new LockNode((String) data.get("method"), //$NON-NLS-1$
+                    (String) data.get("monitorClass"), //$NON-NLS-1$
+                    (Long) data.get("count"), //$NON-NLS-1$
+                    (Long) data.get("time") / NANOS_PER_MILLI, //$NON-NLS-1$
+                    (Long) data.get("maxTime") / NANOS_PER_MILLI)); //$NON-NLS-1$
+        }
+        cpuModel.setLockHotSpots(locks);
+    }
+
+    /**
+     * Refreshes the CPU model with the stack samples aggregated by the stack
+     * sampler in target JVM. Only the frames modified after the generation
+     * merged into CPU model are read, so that the amount of data doesn't
+     * depend on the sampling period. Nothing is done if the samples are
+     * taken by the timer of MBean server instead.
+     * 
+     * @param monitor
+     *            The progress monitor
+     * @throws JvmCoreException
+     */
+    private void refreshStackSamples(IProgressMonitor monitor)
+            throws JvmCoreException {
+        if (!isStackSamplerRunning()) {
+            return;
+        }
+
+        byte[] dump = readBinaryDump(STACK_SAMPLER_MXBEAN_NAME,
+                samplerGeneration, monitor);
+        if (dump == null) {
+            return;
+        }
+
+        try {
+            CpuDumpBinaryDecoder decoder = new CpuDumpBinaryDecoder(dump,
+                    cpuModel, monitor);
+            decoder.decode();
+            samplerGeneration = decoder.getGeneration();
+        } catch (IOException e) {
+            samplerGeneration = 0;
+            throw new JvmCoreException(IStatus.ERROR,
+                    Messages.parseCpuDumpFailedMsg, e);
+        }
+    }
+
+    /**
+     * Gets the object name of stack sampler MXBean.
+     * 
+     * @return The object name, or <tt>null</tt> if agent providing stack
+     *         sampler is not loaded
+     * @throws JvmCoreException
+     */
+    private ObjectName getStackSamplerObjectName() throws JvmCoreException {
+        if (!jvm.isRemote()
+                && !JvmModel.getInstance().getAgentLoadHandler()
+                        .isAgentLoaded()) {
+            return null;
+        }
+
+        ObjectName objectName = jvm.getMBeanServer().getObjectName(
+                STACK_SAMPLER_MXBEAN_NAME);
+        if (jvm.getMBeanServer().queryNames(objectName).isEmpty()) {
+            return null;
+        }
+        return objectName;
+    }
+
+    /**
+     * Gets the state indicating if the stack sampler is running.
+     * 
+     * @return <tt>true</tt> if the stack sampler is running
+     * @throws JvmCoreException
+     */
+    private boolean isStackSamplerRunning() throws JvmCoreException {
+        ObjectName objectName = getStackSamplerObjectName();
+        if (objectName == null) {
+            return false;
+        }
+        Object attribute = jvm.getMBeanServer().getAttribute(objectName,
+                RUNNING);
+        return attribute instanceof Boolean && (Boolean) attribute;
+    }
+
+    /**
+     * Sets the profiled packages to the stack sampler.
+     * 
+     * @param objectName
+     *            The object name of stack sampler MXBean
+     * @throws JvmCoreException
+     */
+    private void setStackSamplerPackages(ObjectName objectName)
+            throws JvmCoreException {
+        jvm.getMBeanServer().setAttribute(
+                objectName,
+                new Attribute(PROFILED_PACKAGES, profiledPackages
+                        .toArray(new String[profiledPackages.size()])));
+    }
+
+    /**
+     * Reads the profile data modified after the generation merged into CPU
+     * model. The profile data is dumped in binary format, and read in chunks
+     * by the dump ID, so that the chunks are never mixed up with the ones of
+     * another dump requested meanwhile.
+     * 
+     * @param mxBeanName
+     *            The name of MXBean dumping the profile data
+     * @param generation
+     *            The generation merged into CPU model
+     * @param monitor
+     *            The progress monitor
+     * @return The profile data, or <tt>null</tt> if not connected, canceled or
+     *         the dump has been discarded by later dumps
+     * @throws JvmCoreException
+     */
+    private byte[] readBinaryDump(String mxBeanName, long generation,
+            IProgressMonitor monitor) throws JvmCoreException {
+        ObjectName objectName = jvm.getMBeanServer().getObjectName(mxBeanName);
+        Object id = jvm.getMBeanServer().invoke(objectName, DUMP_SINCE,
+                new Object[] { generation }, new String[] { "long" }); //$NON-NLS-1$
+        if (!(id instanceof Long)) {
+            return null;
+        }
+
+        final String[] SIGNATURES = new String[] { "long", "int", "int" }; //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        while (true) {
+            if (monitor.isCanceled()) {
+                return null;
+            }
+            byte[] bytes = (byte[]) jvm.getMBeanServer().invoke(objectName,
+                    READ_BINARY_DUMP, new Object[] { id, output.size(),
+                            BINARY_DUMP_CHUNK_SIZE }, SIGNATURES);
+            if (bytes == null) {
+                return null;
+            }
+            output.write(bytes, 0, bytes.length);
+            if (bytes.length < BINARY_DUMP_CHUNK_SIZE) {
+                return output.toByteArray();
+            }
+        }
+    }
+
     /**
      * Invokes the method of ProfilerMXBean.
      * 
@@ -554,7 +818,7 @@ public class CpuProfiler implements ICpuProfiler {
      * @throws JvmCoreException
      */
     private Object invokeCpuProfilerMXBeanMethod(String method,
-            String[] params, String[] signatures) throws JvmCoreException {
+            Object[] params, String[] signatures) throws JvmCoreException {
         ObjectName objectName = jvm.getMBeanServer().getObjectName(
                 PROFILER_MXBEAN_NAME);
         return jvm.getMBeanServer().invoke(objectName, method, params,
@@ -0,0 +1,223 @@
+/*******************************************************************************
+ * Copyright (c) 2010 JVM Monitor project. All rights reserved.
+ *
+ * This code is distributed under the terms of the Eclipse Public License v1.0
+ * which is available at http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+package org.jvmmonitor.internal.core.cpu;
+
+import java.util.Arrays;
+
+/**
+ * The latency histogram of method invocations recorded by BCI profiler in
+ * target JVM.
+ * <p>
+ * The times below 8 nanoseconds have a bucket each, and every power of 2
+ * above is divided into 8 linear buckets, which is the same layout as the
+ * histogram of agent. The histograms of the frames of the same method can be
+ * merged into the histogram of hot spot.
+ */
+public class LatencyHistogram {
+
+    /** The number of bits of linear buckets in a power of 2. */
+    private static final int SUB_BUCKET_BITS = 3;
+
+    /** The number of linear buckets in a power of 2. */
+    private static final int SUB_BUCKET_COUNT = 1 << SUB_BUCKET_BITS;
+
+    /** The number of buckets. */
+    private static final int BUCKET_COUNT = 40 * SUB_BUCKET_COUNT;
+
+    /** The nanoseconds per millisecond. */
+    private static final double NANOS_PER_MILLI = 1000000;
+
+    /** The counts indexed by bucket. */
+    private long[] counts;
+
+    /** The total count. */
+    private long totalCount;
+
+    /** The maximum time in nanoseconds. */
+    private long maxValue;
+
+    /**
+     * The constructor.
+     */
+    public LatencyHistogram() {
+        counts = new long[0];
+    }
+
+    /**
+     * Parses the histogram given in dump file.
+     *
+     * @param value
+     *            The counts of non-empty buckets in the form of
+     *            <tt>index:count,...</tt>
+     * @param max
+     *            The maximum time in milliseconds
+     * @return The histogram
+     * @throws NumberFormatException
+     *             if the value is malformed
+     */
+    public static LatencyHistogram parse(String value, String max) {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (String bucket : value.split(",")) { //$NON-NLS-1$
+            int index = bucket.indexOf(':');
+            if (index == -1) {
+                throw new NumberFormatException(bucket);
+            }
+            histogram.add(Integer.parseInt(bucket.substring(0, index)),
+                    Long.parseLong(bucket.substring(index + 1)));
+        }
+        histogram.setMaxValue(Math.round(Double.parseDouble(max)
+                * NANOS_PER_MILLI));
+        return histogram;
+    }
+
+    /**
+     * Adds the count to the given bucket.
+     *
+     * @param index
+     *            The index of bucket
+     * @param count
+     *            The count
+     */
+    public void add(int index, long count) {
+        if (index < 0 || index >= BUCKET_COUNT) {
+            throw new IllegalArgumentException("Illegal bucket: " + index); //$NON-NLS-1$
+        }
+        if (index >= counts.length) {
+            counts = Arrays.copyOf(counts, index + 1);
+        }
+        counts[index] += count;
+        totalCount += count;
+    }
+
+    /**
+     * Sets the maximum time.
+     *
+     * @param max
+     *            The maximum time in nanoseconds
+     */
+    public void setMaxValue(long max) {
+        maxValue = max;
+    }
+
+    /**
+     * Merges the given histogram into this histogram.
+     *
+     * @param histogram
+     *            The histogram to merge
+     */
+    public void merge(LatencyHistogram histogram) {
+        for (int i = 0; i < histogram.counts.length; i++) {
+            if (histogram.counts[i] != 0) {
+                add(i, histogram.counts[i]);
+            }
+        }
+        maxValue = Math.max(maxValue, histogram.maxValue);
+    }
+
+    /**
+     * Gets the difference from the given previous histogram, which has the
+     * maximum time of this histogram.
+     *
+     * @param previous
+     *            The previous histogram, or <tt>null</tt>
+     * @return The difference
+     */
+    public LatencyHistogram subtract(LatencyHistogram previous) {
+        LatencyHistogram difference = new LatencyHistogram();
+        difference.merge(this);
+        if (previous != null) {
+            for (int i = 0; i < previous.counts.length; i++) {
+                if (previous.counts[i] != 0) {
+                    difference.add(i, -previous.counts[i]);
+                }
+            }
+        }
+        return difference;
+    }
+
+    /**
+     * Gets the total count.
+     *
+     * @return The total count
+     */
+    public long getTotalCount() {
+        return totalCount;
+    }
+
+    /**
+     * Gets the maximum time in milliseconds.
+     *
+     * @return The maximum time
+     */
+    public double getMax() {
+        return maxValue / NANOS_PER_MILLI;
+    }
+
+    /**
+     * Gets the time at the given percentile in milliseconds. The highest time
+     * of the bucket containing the percentile is returned, so that the time
+     * is never underestimated.
+     *
+     * @param percentile
+     *            The percentile (e.g. 99)
+     * @return The time
+     */
+    public double getValueAtPercentile(double percentile) {
+        if (totalCount <= 0) {
+            return 0;
+        }
+        long rank = Math.max((long) Math.ceil(totalCount * percentile / 100),
+                1);
+        long count = 0;
+        for (int i = 0; i < counts.length; i++) {
+            count += counts[i];
+            if (count >= rank) {
+                return Math.min(getHighestValue(i), maxValue)
+                        / NANOS_PER_MILLI;
+            }
+        }
+        return getMax();
+    }
+
+    /**
+     * Dumps the histogram as attributes of frame.
+     *
+     * @param buffer
+     *            The string buffer
+     */
+    public void dump(StringBuffer buffer) {
+        buffer.append(" lat=\""); //$NON-NLS-1$
+        boolean first = true;
+        for (int i = 0; i < counts.length; i++) {
+            if (counts[i] == 0) {
+                continue;
+            }
+            if (!first) {
+                buffer.append(',');
+            }
+            buffer.append(i).append(':').append(counts[i]);
+            first = false;
+        }
+        buffer.append("\" latMax=\"").append(getMax()).append("\""); //$NON-NLS-1$ //$NON-NLS-2$
+    }
+
+    /**
+     * Gets the highest time in the given bucket.
+     *
+     * @param index
+     *            The index of bucket
+     * @return The highest time in nanoseconds
+     */
+    private static long getHighestValue(int index) {
+        if (index < SUB_BUCKET_COUNT) {
+            return index;
+        }
+        int shift = index / SUB_BUCKET_COUNT - 1;
+        long lowest = (long) (SUB_BUCKET_COUNT + index % SUB_BUCKET_COUNT) << shift;
+        return lowest + (1L << shift) - 1;
+    }
+}
@@ -0,0 +1,159 @@
+/*******************************************************************************
+ * Copyright (c) 2010 JVM Monitor project. All rights reserved. 
+ * 
+ * This code is distributed under the terms of the Eclipse Public License v1.0
+ * which is available at http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+package org.jvmmonitor.internal.core.cpu;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.jvmmonitor.core.cpu.ILockNode;
+import org.jvmmonitor.core.cpu.ITreeNode;
+
+/**
+ * The lock node.
+ */
+public class LockNode implements ILockNode {
+
+    /** The qualified name of the method entering monitor. */
+    private String site;
+
+    /** The class name of monitor object. */
+    private String monitorClass;
+
+    /** The number of monitor entries. */
+    private long count;
+
+    /** The total time in milliseconds to acquire monitor. */
+    private double waitTime;
+
+    /** The maximum time in milliseconds to acquire monitor. */
+    private double maxWaitTime;
+
+    /**
+     * The constructor.
+     * 
+     * @param site
+     *            The qualified name of the method entering monitor
+     * @param monitorClass
+     *            The class name of monitor object
+     * @param count
+     *            The number of monitor entries
+     * @param waitTime
+     *            The total time in milliseconds to acquire monitor
+     * @param maxWaitTime
+     *            The maximum time in milliseconds to acquire monitor
+     */
+    public LockNode(String site, String monitorClass, long count,
+            double waitTime, double maxWaitTime) {
+        this.site = site;
+        this.monitorClass = monitorClass;
+        this.count = count;
+        this.waitTime = waitTime;
+        this.maxWaitTime = maxWaitTime;
+    }
+
+    /*
+     * @see ITreeNode#getChildren()
+     */
+    @Override
+    public List<ITreeNode> getChildren() {
+        return new ArrayList<ITreeNode>();
+    }
+
+    /*
+     * @see ITreeNode#getChild(String)
+     */
+    @Override
+    public ITreeNode getChild(String name) {
+        return null;
+    }
+
+    /*
+     * @see ITreeNode#hasChildren()
+     */
+    @Override
+    public boolean hasChildren() {
+        return false;
+    }
+
+    /*
+     * @see ITreeNode#getParent()
+     */
+    @Override
+    public ITreeNode getParent() {
+        return null;
+    }
+
+    /*
+     * @see ITreeNode#getName()
+     */
+    @Override
+    public String getName() {
+        return site;
+    }
+
+    /*
+     * @see ILockNode#getMonitorClass()
+     */
+    @Override
+    public String getMonitorClass() {
+        return monitorClass;
+    }
+
+    /*
+     * @see ILockNode#getCount()
+     */
+    @Override
+    public long getCount() {
+        return count;
+    }
+
+    /*
+     * @see ILockNode#getWaitTime()
+     */
+    @Override
+    public double getWaitTime() {
+        return waitTime;
+    }
+
+    /*
+     * @see ILockNode#getMaxWaitTime()
+     */
+    @Override
+    public double getMaxWaitTime() {
+        return maxWaitTime;
+    }
+
+    /*
+     * @see Object#toString()
+     */
+    @Override
+    public String toString() {
+        StringBuffer buffer = new StringBuffer();
+        buffer.append(site).append('\t');
+        buffer.append(monitorClass).append('\t');
+        buffer.append(waitTime).append('\t');
+        buffer.append(maxWaitTime).append('\t');
+        buffer.append(count);
+        return buffer.toString();
+    }
+
+    /**
+     * Dumps the data to the given string buffer.
+     * 
+     * @param buffer
+     *            The string buffer
+     */
+    protected void dump(StringBuffer buffer) {
+        buffer.append("\t<lock class=\"").append(monitorClass); //$NON-NLS-1$
+        buffer.append("\" site=\"").append( //$NON-NLS-1$
+                site.replaceAll("<", "&lt;").replaceAll(">", "&gt;")); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$ //$NON-NLS-4$
+        buffer.append("\" cnt=\"").append(count); //$NON-NLS-1$
+        buffer.append("\" time=\"").append(waitTime); //$NON-NLS-1$
+        buffer.append("\" max=\"").append(maxWaitTime); //$NON-NLS-1$
+        buffer.append("\"/>\n"); //$NON-NLS-1$
+    }
+}
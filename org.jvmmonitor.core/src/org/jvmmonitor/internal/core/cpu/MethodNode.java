@@ -73,6 +73,9 @@ public class MethodNode extends AbstractMethodNode {
     public void clear() {
         selfTime = 0;
         invocationCount = 0;
+        allocationCount = 0;
+        allocatedBytes = 0;
+        latency = null;
     }
 
     /*
@@ -126,4 +129,34 @@ public class MethodNode extends AbstractMethodNode {
     public void incrementCount(int count) {
         invocationCount += count;
     }
+
+    /**
+     * Increments the sum of allocations.
+     * 
+     * @param count
+     *            The number of allocations
+     * @param bytes
+     *            The allocated bytes
+     */
+    public void incrementAllocations(long count, long bytes) {
+        allocationCount += count;
+        allocatedBytes += bytes;
+    }
+
+    /**
+     * Increments the latency histogram.
+     * 
+     * @param histogram
+     *            The latency histogram to be merged, or <tt>null</tt> if not
+     *            recorded
+     */
+    public void incrementLatency(LatencyHistogram histogram) {
+        if (histogram == null) {
+            return;
+        }
+        if (latency == null) {
+            latency = new LatencyHistogram();
+        }
+        latency.merge(histogram);
+    }
 }
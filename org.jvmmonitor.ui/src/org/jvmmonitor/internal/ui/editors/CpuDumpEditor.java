@@ -68,6 +68,8 @@ import org.jvmmonitor.internal.ui.properties.cpu.CallTreeFilteredTree;
 import org.jvmmonitor.internal.ui.properties.cpu.CallTreeLabelProvider;
 import org.jvmmonitor.internal.ui.properties.cpu.HotSpotsFilteredTree;
 import org.jvmmonitor.internal.ui.properties.cpu.HotSpotsLabelProvider;
+import org.jvmmonitor.internal.ui.properties.cpu.LockHotSpotsFilteredTree;
+import org.jvmmonitor.internal.ui.properties.cpu.LockHotSpotsLabelProvider;
 import org.jvmmonitor.internal.ui.properties.cpu.actions.FindAction;
 import org.jvmmonitor.internal.ui.properties.cpu.actions.FindAction.IFindTarget;
 import org.jvmmonitor.ui.Activator;
@@ -98,6 +100,9 @@ public class CpuDumpEditor extends AbstractDumpEditor implements
     /** The caller callee image. */
     private Image callerCalleeImage;
 
+    /** The lock hot spots image. */
+    private Image lockHotSpotsImage;
+
     /**
      * The constructor.
      */
@@ -115,6 +120,7 @@ public class CpuDumpEditor extends AbstractDumpEditor implements
         createCallTreePage();
         createHotSpotsPage();
         createCallerCalleePage();
+        createLockHotSpotsPage();
 
         refresh();
 
@@ -200,6 +206,8 @@ public class CpuDumpEditor extends AbstractDumpEditor implements
             nodes = cpuModel.getCallers();
         } else if (viewerType == ViewerType.Callee) {
             nodes = cpuModel.getCallees();
+        } else if (viewerType == ViewerType.LockHotSpots) {
+            nodes = cpuModel.getLockHotSpots();
         }
 
         return nodes;
@@ -220,6 +228,9 @@ public class CpuDumpEditor extends AbstractDumpEditor implements
         if (callerCalleeImage != null) {
             callerCalleeImage.dispose();
         }
+        if (lockHotSpotsImage != null) {
+            lockHotSpotsImage.dispose();
+        }
     }
 
     /**
@@ -330,6 +341,37 @@ public class CpuDumpEditor extends AbstractDumpEditor implements
         callersCalleesPageBook.showPage(sashForm);
     }
 
+    /**
+     * Creates the lock hot spots page.
+     */
+    private void createLockHotSpotsPage() {
+        Composite panel = new Composite(getContainer(), SWT.NONE);
+        panel.setLayout(new FillLayout());
+
+        LockHotSpotsFilteredTree lockHotSpotsFilteredTree = new LockHotSpotsFilteredTree(
+                panel, getEditorSite().getActionBars());
+        TreeViewer lockHotSpotsViewer = lockHotSpotsFilteredTree.getViewer();
+        lockHotSpotsViewer.setContentProvider(new AbstractContentProvider() {
+            @Override
+            public Object[] getElements(Object inputElement) {
+                if (inputElement instanceof ICpuModel) {
+                    return ((ICpuModel) inputElement).getLockHotSpots();
+                }
+                return new Object[0];
+            }
+        });
+        lockHotSpotsViewer.setLabelProvider(new LockHotSpotsLabelProvider(
+                lockHotSpotsFilteredTree));
+        lockHotSpotsViewer.setInput(cpuModel);
+        lockHotSpotsFilteredTree.sortColumn(lockHotSpotsViewer.getTree()
+                .getColumn(2));
+
+        int page = addPage(panel);
+        trees.put(lockHotSpotsFilteredTree, page);
+        setPageText(page, Messages.lockHotSpotsPageLabel);
+        setPageImage(page, getLockHotSpotsImage());
+    }
+
     /**
      * Creates the caller viewer.
      * 
@@ -661,4 +703,17 @@ public class CpuDumpEditor extends AbstractDumpEditor implements
         }
         return callerCalleeImage;
     }
+
+    /**
+     * Gets the lock hot spots image.
+     * 
+     * @return The lock hot spots image
+     */
+    private Image getLockHotSpotsImage() {
+        if (lockHotSpotsImage == null || lockHotSpotsImage.isDisposed()) {
+            lockHotSpotsImage = Activator.getImageDescriptor(
+                    ISharedImages.THREAD_BLOCKED_IMG_PATH).createImage();
+        }
+        return lockHotSpotsImage;
+    }
 }
@@ -85,6 +85,9 @@ public final class Messages extends NLS {
     /** */
     public static String callerCalleePageLabel;
 
+    /** */
+    public static String lockHotSpotsPageLabel;
+
     /** */
     public static String parseCpuDumpFileJobLabel;
 
@@ -326,6 +326,9 @@ abstract public class AbstractFilteredTree extends FilteredTree implements
         Caller,
 
         /** The callee. */
-        Callee;
+        Callee,
+
+        /** The lock hot spots. */
+        LockHotSpots;
     }
 }
@@ -14,6 +14,7 @@ import org.eclipse.swt.graphics.Font;
 import org.eclipse.swt.graphics.FontData;
 import org.eclipse.swt.graphics.Image;
 import org.eclipse.swt.widgets.Display;
+import org.jvmmonitor.core.cpu.IMethodNode;
 import org.jvmmonitor.ui.Activator;
 import org.jvmmonitor.ui.ISharedImages;
 
@@ -175,6 +176,52 @@ abstract public class AbstractLabelProvider implements ITableLabelProvider,
                 milliseconds).toString();
     }
 
+    /**
+     * Gets the text of allocation count or bytes.
+     * 
+     * @param value
+     *            The allocation count or bytes
+     * @return the text, or empty string if the value is 0
+     */
+    private static String getAllocationText(long value) {
+        if (value == 0) {
+            return ""; //$NON-NLS-1$
+        }
+        return String.format("%,15d", value); //$NON-NLS-1$
+    }
+
+    /**
+     * Gets the allocation count column text.
+     * 
+     * @param element
+     *            the element
+     * @return the allocation count column text, or empty string if no
+     *         allocation has been recorded
+     */
+    protected String getAllocationCountColumnText(Object element) {
+        if (element instanceof IMethodNode) {
+            return getAllocationText(((IMethodNode) element)
+                    .getAllocationCount());
+        }
+        return ""; //$NON-NLS-1$
+    }
+
+    /**
+     * Gets the allocated bytes column text.
+     * 
+     * @param element
+     *            the element
+     * @return the allocated bytes column text, or empty string if no
+     *         allocation has been recorded
+     */
+    protected String getAllocatedBytesColumnText(Object element) {
+        if (element instanceof IMethodNode) {
+            return getAllocationText(((IMethodNode) element)
+                    .getAllocatedBytes());
+        }
+        return ""; //$NON-NLS-1$
+    }
+
     /**
      * Gets the monospaced font.
      * 
@@ -24,6 +24,14 @@ public enum CallTreeColumn {
     TIME_PERCENTAGE(Messages.timeInPercentageLabel, 100, SWT.LEFT,
             Messages.timeInPercentageToolTip),
 
+    /** The CPU time of method invocation in milliseconds. */
+    CPU_TIME_MS(Messages.cpuTimeInMsLabel, 100, SWT.LEFT,
+            Messages.cpuTimeInMsToolTip),
+
+    /** The wait time of method invocation in milliseconds. */
+    WAIT_TIME_MS(Messages.waitTimeInMsLabel, 100, SWT.LEFT,
+            Messages.waitTimeInMsToolTip),
+
     /** The method invocation time in milliseconds. */
     SELFTIME_MS(Messages.selfTimeInMsLabel, 100, SWT.LEFT,
             Messages.selfTimeInMsToolTip),
@@ -33,7 +41,15 @@ public enum CallTreeColumn {
             Messages.selfTimeInPercentageToolTip),
 
     /** The method invocation count. */
-    COUNT(Messages.countLabel, 70, SWT.LEFT, Messages.countToolTip);
+    COUNT(Messages.countLabel, 70, SWT.LEFT, Messages.countToolTip),
+
+    /** The number of allocations. */
+    ALLOCATION_COUNT(Messages.allocationCountLabel, 100, SWT.LEFT,
+            Messages.allocationCountToolTip),
+
+    /** The allocated bytes. */
+    ALLOCATED_BYTES(Messages.allocatedBytesLabel, 120, SWT.LEFT,
+            Messages.allocatedBytesToolTip);
 
     /** The label for series type. */
     public final String label;
@@ -76,12 +76,20 @@ public class CallTreeLabelProvider extends AbstractLabelProvider {
             text = getTimeInMsColumnText(element);
         } else if (columnIndex == getColumnIndex(CallTreeColumn.TIME_PERCENTAGE)) {
             text = getTimeInPercentageColumnText(element);
+        } else if (columnIndex == getColumnIndex(CallTreeColumn.CPU_TIME_MS)) {
+            text = getCpuTimeInMsColumnText(element);
+        } else if (columnIndex == getColumnIndex(CallTreeColumn.WAIT_TIME_MS)) {
+            text = getWaitTimeInMsColumnText(element);
         } else if (columnIndex == getColumnIndex(CallTreeColumn.SELFTIME_MS)) {
             text = getSelfTimeInMsColumnText(element);
         } else if (columnIndex == getColumnIndex(CallTreeColumn.SELFTIME_PERCENTAGE)) {
             text = getSelfTimeInPercentageColumnText(element);
         } else if (columnIndex == getColumnIndex(CallTreeColumn.COUNT)) {
             text = getCountColumnText(element);
+        } else if (columnIndex == getColumnIndex(CallTreeColumn.ALLOCATION_COUNT)) {
+            text = getAllocationCountColumnText(element);
+        } else if (columnIndex == getColumnIndex(CallTreeColumn.ALLOCATED_BYTES)) {
+            text = getAllocatedBytesColumnText(element);
         }
 
         return text;
@@ -162,6 +170,55 @@ public class CallTreeLabelProvider extends AbstractLabelProvider {
         return ""; //$NON-NLS-1$
     }
 
+    /**
+     * Gets the CPU time in milliseconds column text.
+     * 
+     * @param element
+     *            the element
+     * @return the CPU time column text, or empty string if CPU time is not
+     *         measured
+     */
+    private String getCpuTimeInMsColumnText(Object element) {
+        if (element instanceof ICallTreeNode) {
+            return getBreakdownTimeText(((ICallTreeNode) element).getCpuTime());
+        }
+        return ""; //$NON-NLS-1$
+    }
+
+    /**
+     * Gets the wait time in milliseconds column text.
+     * 
+     * @param element
+     *            the element
+     * @return the wait time column text, or empty string if CPU time is not
+     *         measured
+     */
+    private String getWaitTimeInMsColumnText(Object element) {
+        if (element instanceof ICallTreeNode) {
+            return getBreakdownTimeText(((ICallTreeNode) element).getWaitTime());
+        }
+        return ""; //$NON-NLS-1$
+    }
+
+    /**
+     * Gets the text of time broken down from the invocation time, aligned
+     * with the time column.
+     * 
+     * @param time
+     *            the time, or negative value if not measured
+     * @return the time text
+     */
+    private String getBreakdownTimeText(long time) {
+        ICpuModel cpuModel = (ICpuModel) treeViewer.getInput();
+        if (cpuModel == null || time < 0) {
+            return ""; //$NON-NLS-1$
+        }
+
+        int length = String.valueOf(cpuModel.getMaxTotalTime() * 1000).length();
+        length = (length > 10) ? 10 : length;
+        return getMillisecondsText(time, length);
+    }
+
     /**
      * Gets the self time in milliseconds column text.
      * 
@@ -13,6 +13,7 @@ import java.util.Set;
 
 import org.eclipse.core.runtime.IProgressMonitor;
 import org.eclipse.core.runtime.jobs.Job;
+import org.eclipse.jface.action.IMenuManager;
 import org.eclipse.jface.action.IToolBarManager;
 import org.eclipse.jface.action.Separator;
 import org.eclipse.jface.viewers.ISelection;
@@ -48,6 +49,7 @@ import org.jvmmonitor.internal.ui.properties.AbstractJvmPropertySection;
 import org.jvmmonitor.internal.ui.properties.cpu.AbstractFilteredTree.ViewerType;
 import org.jvmmonitor.internal.ui.properties.cpu.actions.ClearCpuProfilingDataAction;
 import org.jvmmonitor.internal.ui.properties.cpu.actions.DumpCpuProfilingDataAction;
+import org.jvmmonitor.internal.ui.properties.cpu.actions.DumpSlowCallsAction;
 import org.jvmmonitor.internal.ui.properties.cpu.actions.FindAction;
 import org.jvmmonitor.internal.ui.properties.cpu.actions.FindAction.IFindTarget;
 import org.jvmmonitor.internal.ui.properties.cpu.actions.ResumeCpuProfilingAction;
@@ -75,6 +77,9 @@ public class CpuSection extends AbstractJvmPropertySection implements
     /** The caller and callee. */
     CallerCalleeTabPage callerCallee;
 
+    /** The lock hot spots. */
+    LockHotSpotsTabPage lockHotSpots;
+
     /** The action to resume CPU profiler. */
     ResumeCpuProfilingAction resumeCpuProfilingAction;
 
@@ -87,6 +92,9 @@ public class CpuSection extends AbstractJvmPropertySection implements
     /** The action to dump CPU profiling data. */
     DumpCpuProfilingDataAction dumpCpuProfilingDataAction;
 
+    /** The action to dump slow calls. */
+    DumpSlowCallsAction dumpSlowCallsAction;
+
     /** The CPU model change listener. */
     private ICpuModelChangeListener cpuModelChangeListener;
 
@@ -101,6 +109,7 @@ public class CpuSection extends AbstractJvmPropertySection implements
         resumeCpuProfilingAction = new ResumeCpuProfilingAction(this);
         clearCpuProfilingDataAction = new ClearCpuProfilingDataAction(this);
         dumpCpuProfilingDataAction = new DumpCpuProfilingDataAction(this);
+        dumpSlowCallsAction = new DumpSlowCallsAction(this);
 
         resumeCpuProfilingAction
                 .setSuspendCpuProfilingAction(suspendCpuProfilingAction);
@@ -142,6 +151,7 @@ public class CpuSection extends AbstractJvmPropertySection implements
         callTree = new CallTreeTabPage(this, tabFolder);
         hotSpots = new HotSpotsTabPage(this, tabFolder);
         callerCallee = new CallerCalleeTabPage(this, tabFolder);
+        lockHotSpots = new LockHotSpotsTabPage(this, tabFolder);
 
         PlatformUI.getWorkbench().getHelpSystem()
                 .setHelp(parent, IHelpContextIds.CPU_PAGE);
@@ -202,6 +212,7 @@ public class CpuSection extends AbstractJvmPropertySection implements
         callTree.setInput(newJvm);
         hotSpots.setInput(newJvm);
         callerCallee.setInput(newJvm);
+        lockHotSpots.setInput(newJvm);
     }
 
     /*
@@ -241,6 +252,24 @@ public class CpuSection extends AbstractJvmPropertySection implements
         manager.remove(SEPARATOR_ID);
     }
 
+    /*
+     * @see AbstractJvmPropertySection#addLocalMenus(IMenuManager)
+     */
+    @Override
+    protected void addLocalMenus(IMenuManager manager) {
+        if (manager.find(dumpSlowCallsAction.getId()) == null) {
+            manager.add(dumpSlowCallsAction);
+        }
+    }
+
+    /*
+     * @see AbstractJvmPropertySection#removeLocalMenus(IMenuManager)
+     */
+    @Override
+    protected void removeLocalMenus(IMenuManager manager) {
+        manager.remove(dumpSlowCallsAction.getId());
+    }
+
     /*
      * @see AbstractJvmPropertySection#deactivateSection()
      */
@@ -277,6 +306,8 @@ public class CpuSection extends AbstractJvmPropertySection implements
             nodes = cpuModel.getCallers();
         } else if (viewerType == ViewerType.Callee) {
             nodes = cpuModel.getCallees();
+        } else if (viewerType == ViewerType.LockHotSpots) {
+            nodes = cpuModel.getLockHotSpots();
         }
 
         return nodes;
@@ -322,10 +353,12 @@ public class CpuSection extends AbstractJvmPropertySection implements
             private boolean isCpuProfilerReady;
             private boolean isPackageSpecified;
             private boolean isCpuProfilerRunning;
+            private boolean isBciProfiler;
 
             @Override
             protected void refreshModel(IProgressMonitor monitor) {
                 isCpuProfilerReady = isCpuProfilerReady();
+                isBciProfiler = isBciProfiler();
                 isPackageSpecified = isPackageSpecified();
                 isCpuProfilerRunning = isCpuProfilerRunning();
 
@@ -362,11 +395,14 @@ public class CpuSection extends AbstractJvmPropertySection implements
                 clearCpuProfilingDataAction.setEnabled(isCpuProfilerReady
                         && isPackageSpecified && isConnected);
                 dumpCpuProfilingDataAction.setEnabled(!hasErrorMessage());
+                dumpSlowCallsAction.setEnabled(isCpuProfilerReady
+                        && isBciProfiler && isConnected);
 
                 if (!isDisposed()) {
                     refreshBackground(callTree.getChildren(), isConnected);
                     refreshBackground(hotSpots.getChildren(), isConnected);
                     refreshBackground(callerCallee.getChildren(), isConnected);
+                    refreshBackground(lockHotSpots.getChildren(), isConnected);
                     refreshViewers();
                 }
             }
@@ -381,10 +417,11 @@ public class CpuSection extends AbstractJvmPropertySection implements
      */
     void updatePage(boolean isPackageSpecified) {
         if (!isDisposed() && !callTree.isDisposed() && !hotSpots.isDisposed()
-                && !callerCallee.isDisposed()) {
+                && !callerCallee.isDisposed() && !lockHotSpots.isDisposed()) {
             callTree.updatePage(isPackageSpecified);
             hotSpots.updatePage(isPackageSpecified);
             callerCallee.updatePage(isPackageSpecified);
+            lockHotSpots.updatePage(isPackageSpecified);
         }
     }
 
@@ -396,6 +433,7 @@ public class CpuSection extends AbstractJvmPropertySection implements
             callTree.refresh();
             hotSpots.refresh();
             callerCallee.refresh();
+            lockHotSpots.refresh();
         }
     }
 
@@ -406,8 +444,9 @@ public class CpuSection extends AbstractJvmPropertySection implements
      */
     boolean isDisposed() {
         return callTree == null || hotSpots == null || callerCallee == null
-                || callTree.isDisposed() || hotSpots.isDisposed()
-                || callerCallee.isDisposed();
+                || lockHotSpots == null || callTree.isDisposed()
+                || hotSpots.isDisposed() || callerCallee.isDisposed()
+                || lockHotSpots.isDisposed();
     }
 
     /**
@@ -517,6 +556,17 @@ public class CpuSection extends AbstractJvmPropertySection implements
                         .getCpuProfiler().getState() == ProfilerState.RUNNING);
     }
 
+    /**
+     * Gets the state indicating if the profiler type is BCI.
+     * 
+     * @return True if the profiler type is BCI
+     */
+    boolean isBciProfiler() {
+        IActiveJvm jvm = getJvm();
+        return jvm != null
+                && jvm.getCpuProfiler().getProfilerType() == ProfilerType.BCI;
+    }
+
     /**
      * Gets the state indicating if CPU profiler is running.
      * 
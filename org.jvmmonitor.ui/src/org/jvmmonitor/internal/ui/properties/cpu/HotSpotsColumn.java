@@ -26,7 +26,31 @@ public enum HotSpotsColumn {
             Messages.selfTimeInPercentageToolTip),
 
     /** The method invocation count. */
-    COUNT(Messages.countLabel, 70, SWT.LEFT, Messages.countToolTip);
+    COUNT(Messages.countLabel, 70, SWT.LEFT, Messages.countToolTip),
+
+    /** The number of allocations. */
+    ALLOCATION_COUNT(Messages.allocationCountLabel, 100, SWT.LEFT,
+            Messages.allocationCountToolTip),
+
+    /** The allocated bytes. */
+    ALLOCATED_BYTES(Messages.allocatedBytesLabel, 120, SWT.LEFT,
+            Messages.allocatedBytesToolTip),
+
+    /** The median latency. */
+    LATENCY_P50(Messages.latencyP50Label, 100, SWT.LEFT,
+            Messages.latencyP50ToolTip),
+
+    /** The 90th percentile latency. */
+    LATENCY_P90(Messages.latencyP90Label, 100, SWT.LEFT,
+            Messages.latencyP90ToolTip),
+
+    /** The 99th percentile latency. */
+    LATENCY_P99(Messages.latencyP99Label, 100, SWT.LEFT,
+            Messages.latencyP99ToolTip),
+
+    /** The maximum latency. */
+    LATENCY_MAX(Messages.maxLatencyLabel, 100, SWT.LEFT,
+            Messages.maxLatencyToolTip);
 
     /** The displayed label. */
     public final String label;
@@ -29,7 +29,25 @@ public class HotSpotsComparator extends ViewerComparator {
         TimePercentage,
 
         /** The invocation count. */
-        Count;
+        Count,
+
+        /** The allocation count. */
+        AllocationCount,
+
+        /** The allocated bytes. */
+        AllocatedBytes,
+
+        /** The median latency. */
+        LatencyP50,
+
+        /** The 90th percentile latency. */
+        LatencyP90,
+
+        /** The 99th percentile latency. */
+        LatencyP99,
+
+        /** The maximum latency. */
+        MaxLatency;
     }
 
     /** the sort direction */
@@ -79,6 +97,18 @@ public class HotSpotsComparator extends ViewerComparator {
             result = Double.compare(percentage1, percentage2);
         } else if (columnType == ColumnType.Count) {
             result = Integer.compare(method1.getInvocationCount(), method2.getInvocationCount());
+        } else if (columnType == ColumnType.AllocationCount) {
+            result = Long.compare(method1.getAllocationCount(), method2.getAllocationCount());
+        } else if (columnType == ColumnType.AllocatedBytes) {
+            result = Long.compare(method1.getAllocatedBytes(), method2.getAllocatedBytes());
+        } else if (columnType == ColumnType.LatencyP50) {
+            result = Double.compare(method1.getLatency(50), method2.getLatency(50));
+        } else if (columnType == ColumnType.LatencyP90) {
+            result = Double.compare(method1.getLatency(90), method2.getLatency(90));
+        } else if (columnType == ColumnType.LatencyP99) {
+            result = Double.compare(method1.getLatency(99), method2.getLatency(99));
+        } else if (columnType == ColumnType.MaxLatency) {
+            result = Double.compare(method1.getMaxLatency(), method2.getMaxLatency());
         }
 
         if (sortDirection == SWT.DOWN) {
@@ -124,6 +124,18 @@ public class HotSpotsFilteredTree extends AbstractFilteredTree {
             columnType = ColumnType.TimePercentage;
         } else if (columnText.equals(HotSpotsColumn.COUNT.label)) {
             columnType = ColumnType.Count;
+        } else if (columnText.equals(HotSpotsColumn.ALLOCATION_COUNT.label)) {
+            columnType = ColumnType.AllocationCount;
+        } else if (columnText.equals(HotSpotsColumn.ALLOCATED_BYTES.label)) {
+            columnType = ColumnType.AllocatedBytes;
+        } else if (columnText.equals(HotSpotsColumn.LATENCY_P50.label)) {
+            columnType = ColumnType.LatencyP50;
+        } else if (columnText.equals(HotSpotsColumn.LATENCY_P90.label)) {
+            columnType = ColumnType.LatencyP90;
+        } else if (columnText.equals(HotSpotsColumn.LATENCY_P99.label)) {
+            columnType = ColumnType.LatencyP99;
+        } else if (columnText.equals(HotSpotsColumn.LATENCY_MAX.label)) {
+            columnType = ColumnType.MaxLatency;
         } else {
             throw new IllegalArgumentException("Unknown column"); //$NON-NLS-1$
         }
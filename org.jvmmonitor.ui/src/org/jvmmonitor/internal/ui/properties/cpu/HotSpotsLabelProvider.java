@@ -74,6 +74,18 @@ public class HotSpotsLabelProvider extends AbstractLabelProvider {
             text = getSelfTimeInPercentageColumnText(element);
         } else if (columnIndex == getColumnIndex(HotSpotsColumn.COUNT)) {
             text = getCountColumnText(element);
+        } else if (columnIndex == getColumnIndex(HotSpotsColumn.ALLOCATION_COUNT)) {
+            text = getAllocationCountColumnText(element);
+        } else if (columnIndex == getColumnIndex(HotSpotsColumn.ALLOCATED_BYTES)) {
+            text = getAllocatedBytesColumnText(element);
+        } else if (columnIndex == getColumnIndex(HotSpotsColumn.LATENCY_P50)) {
+            text = getLatencyColumnText(element, 50);
+        } else if (columnIndex == getColumnIndex(HotSpotsColumn.LATENCY_P90)) {
+            text = getLatencyColumnText(element, 90);
+        } else if (columnIndex == getColumnIndex(HotSpotsColumn.LATENCY_P99)) {
+            text = getLatencyColumnText(element, 99);
+        } else if (columnIndex == getColumnIndex(HotSpotsColumn.LATENCY_MAX)) {
+            text = getMaxLatencyColumnText(element);
         }
 
         return text;
@@ -91,6 +103,57 @@ public class HotSpotsLabelProvider extends AbstractLabelProvider {
         return getmonospacedFont(filteredTree.getFont());
     }
 
+    /**
+     * Gets the latency column text.
+     * 
+     * @param element
+     *            the element
+     * @param percentile
+     *            the percentile
+     * @return the latency column text, or empty string if latency is not
+     *         recorded
+     */
+    private static String getLatencyColumnText(Object element,
+            double percentile) {
+        if (element instanceof IMethodNode) {
+            return getLatencyText(((IMethodNode) element)
+                    .getLatency(percentile));
+        }
+        return ""; //$NON-NLS-1$
+    }
+
+    /**
+     * Gets the maximum latency column text.
+     * 
+     * @param element
+     *            the element
+     * @return the maximum latency column text, or empty string if latency is
+     *         not recorded
+     */
+    private static String getMaxLatencyColumnText(Object element) {
+        if (element instanceof IMethodNode) {
+            return getLatencyText(((IMethodNode) element).getMaxLatency());
+        }
+        return ""; //$NON-NLS-1$
+    }
+
+    /**
+     * Gets the text of latency, which keeps the fraction since most
+     * invocations are often shorter than a millisecond.
+     * 
+     * @param milliseconds
+     *            The latency in milliseconds, or negative value if not
+     *            recorded
+     * @return The latency text
+     */
+    private static String getLatencyText(double milliseconds) {
+        if (milliseconds < 0) {
+            return ""; //$NON-NLS-1$
+        }
+        return String.format("%12.3f", milliseconds) //$NON-NLS-1$
+                + Messages.millisecondsLabel;
+    }
+
     /**
      * Gets the image for call tree column.
      * 
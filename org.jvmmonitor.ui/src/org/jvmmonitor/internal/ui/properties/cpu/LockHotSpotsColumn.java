@@ -0,0 +1,66 @@
+/*******************************************************************************
+ * Copyright (c) 2010 JVM Monitor project. All rights reserved. 
+ * 
+ * This code is distributed under the terms of the Eclipse Public License v1.0
+ * which is available at http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+package org.jvmmonitor.internal.ui.properties.cpu;
+
+import org.eclipse.swt.SWT;
+
+/**
+ * The lock hot spot column.
+ */
+public enum LockHotSpotsColumn {
+
+    /** The method entering monitor. */
+    LOCK_SITE(Messages.lockSiteColumnLabel, 460, SWT.LEFT,
+            Messages.lockSiteColumnToolTip),
+
+    /** The class of monitor. */
+    MONITOR_CLASS(Messages.monitorClassLabel, 200, SWT.LEFT,
+            Messages.monitorClassToolTip),
+
+    /** The time to acquire monitor. */
+    WAIT_TIME_MS(Messages.waitTimeInMsLabel, 110, SWT.LEFT,
+            Messages.lockWaitTimeInMsToolTip),
+
+    /** The maximum time to acquire monitor. */
+    MAX_WAIT_TIME_MS(Messages.maxWaitTimeInMsLabel, 130, SWT.LEFT,
+            Messages.maxWaitTimeInMsToolTip),
+
+    /** The monitor entry count. */
+    COUNT(Messages.countLabel, 100, SWT.LEFT, Messages.lockCountToolTip);
+
+    /** The displayed label. */
+    public final String label;
+
+    /** The default column width. */
+    public final int defalutWidth;
+
+    /** The alignment. */
+    public final int alignment;
+
+    /** The tool tip. */
+    public final String toolTip;
+
+    /**
+     * The constructor.
+     * 
+     * @param label
+     *            the column label
+     * @param defalutWidth
+     *            the default column width
+     * @param alignment
+     *            the alignment
+     * @param toolTip
+     *            the tooltip text
+     */
+    private LockHotSpotsColumn(String label, int defalutWidth, int alignment,
+            String toolTip) {
+        this.label = label;
+        this.defalutWidth = defalutWidth;
+        this.alignment = alignment;
+        this.toolTip = toolTip;
+    }
+}
@@ -0,0 +1,107 @@
+/*******************************************************************************
+ * Copyright (c) 2010 JVM Monitor project. All rights reserved. 
+ * 
+ * This code is distributed under the terms of the Eclipse Public License v1.0
+ * which is available at http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+package org.jvmmonitor.internal.ui.properties.cpu;
+
+import org.eclipse.jface.viewers.Viewer;
+import org.eclipse.jface.viewers.ViewerComparator;
+import org.eclipse.swt.SWT;
+import org.jvmmonitor.core.cpu.ILockNode;
+
+/**
+ * The lock hot spots comparator.
+ */
+public class LockHotSpotsComparator extends ViewerComparator {
+
+    /** The column type. */
+    public enum ColumnType {
+
+        /** The lock sites. */
+        LockSites,
+
+        /** The monitor classes. */
+        MonitorClasses,
+
+        /** The wait time in milliseconds. */
+        WaitTimeMs,
+
+        /** The maximum wait time in milliseconds. */
+        MaxWaitTimeMs,
+
+        /** The monitor entry count. */
+        Count;
+    }
+
+    /** the sort direction */
+    private int sortDirection;
+
+    /** the column index */
+    private final ColumnType columnType;
+
+    /**
+     * The constructor.
+     * 
+     * @param columnType
+     *            the column type
+     */
+    public LockHotSpotsComparator(ColumnType columnType) {
+        this.columnType = columnType;
+        if (columnType == ColumnType.LockSites
+                || columnType == ColumnType.MonitorClasses) {
+            sortDirection = SWT.UP;
+        } else {
+            sortDirection = SWT.DOWN;
+        }
+    }
+
+    /*
+     * @see ViewerComparator#compare(Viewer, Object, Object)
+     */
+    @Override
+    public int compare(Viewer viewer, Object e1, Object e2) {
+        int result = 0;
+
+        if (!(e1 instanceof ILockNode) || !(e2 instanceof ILockNode)) {
+            return result;
+        }
+
+        ILockNode lock1 = (ILockNode) e1;
+        ILockNode lock2 = (ILockNode) e2;
+
+        if (columnType == ColumnType.LockSites) {
+            result = lock1.getName().compareTo(lock2.getName());
+        } else if (columnType == ColumnType.MonitorClasses) {
+            result = lock1.getMonitorClass().compareTo(lock2.getMonitorClass());
+        } else if (columnType == ColumnType.WaitTimeMs) {
+            result = Double.compare(lock1.getWaitTime(), lock2.getWaitTime());
+        } else if (columnType == ColumnType.MaxWaitTimeMs) {
+            result = Double.compare(lock1.getMaxWaitTime(), lock2.getMaxWaitTime());
+        } else if (columnType == ColumnType.Count) {
+            result = Long.compare(lock1.getCount(), lock2.getCount());
+        }
+
+        if (sortDirection == SWT.DOWN) {
+            result *= -1;
+        }
+        return result;
+    }
+
+    /**
+     * Reverses the sort direction.
+     */
+    protected void reverseSortDirection() {
+        sortDirection = (sortDirection == SWT.UP) ? SWT.DOWN : SWT.UP;
+    }
+
+    /**
+     * Gets the sort direction.
+     * 
+     * @return the sort direction
+     */
+    protected int getSortDirection() {
+        return sortDirection;
+    }
+}
@@ -0,0 +1,155 @@
+/*******************************************************************************
+ * Copyright (c) 2010 JVM Monitor project. All rights reserved. 
+ * 
+ * This code is distributed under the terms of the Eclipse Public License v1.0
+ * which is available at http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+package org.jvmmonitor.internal.ui.properties.cpu;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map.Entry;
+
+import org.eclipse.swt.SWT;
+import org.eclipse.swt.events.SelectionAdapter;
+import org.eclipse.swt.events.SelectionEvent;
+import org.eclipse.swt.widgets.Composite;
+import org.eclipse.swt.widgets.TreeColumn;
+import org.eclipse.ui.IActionBars;
+import org.jvmmonitor.internal.ui.properties.cpu.LockHotSpotsComparator.ColumnType;
+
+/**
+ * The lock hot spots filtered tree.
+ */
+public class LockHotSpotsFilteredTree extends AbstractFilteredTree {
+
+    /**
+     * The constructor.
+     * 
+     * @param parent
+     *            The parent composite
+     * @param actionBars
+     *            The action bars
+     */
+    public LockHotSpotsFilteredTree(Composite parent, IActionBars actionBars) {
+        super(parent, actionBars);
+    }
+
+    /*
+     * @see IConfigurableColumn#getColumns()
+     */
+    @Override
+    public List<String> getColumns() {
+        ArrayList<String> columnLabels = new ArrayList<String>();
+        for (LockHotSpotsColumn value : LockHotSpotsColumn.values()) {
+            columnLabels.add(value.label);
+        }
+        return columnLabels;
+    }
+
+    /*
+     * @see IConfigurableColumn#getDefaultVisibility(String)
+     */
+    @Override
+    public boolean getDefaultVisibility(String column) {
+        return true;
+    }
+
+    /*
+     * @see AbstractFilteredTree#getViewerType()
+     */
+    @Override
+    public ViewerType getViewerType() {
+        return ViewerType.LockHotSpots;
+    }
+
+    /*
+     * @see AbstractFilteredTree#configureTree()
+     */
+    @Override
+    protected void configureTree() {
+        for (TreeColumn column : getViewer().getTree().getColumns()) {
+            column.dispose();
+        }
+
+        getViewer().getTree().setLinesVisible(true);
+        getViewer().getTree().setHeaderVisible(true);
+
+        for (Entry<String, Boolean> entry : columns.entrySet()) {
+            LockHotSpotsColumn column = getColumn(entry.getKey());
+            if (column == null || !entry.getValue()) {
+                continue;
+            }
+
+            TreeColumn treeColumn = new TreeColumn(getViewer().getTree(),
+                    SWT.NONE);
+            treeColumn.setText(column.label);
+            treeColumn.setWidth(column.defalutWidth);
+            treeColumn.setAlignment(column.alignment);
+            treeColumn.setToolTipText(column.toolTip);
+            treeColumn.addSelectionListener(new SelectionAdapter() {
+                @Override
+                public void widgetSelected(SelectionEvent e) {
+                    if (e.widget instanceof TreeColumn) {
+                        sortColumn((TreeColumn) e.widget);
+                    }
+                }
+            });
+        }
+    }
+
+    /**
+     * Sorts the table with given column.
+     * 
+     * @param treeColumn
+     *            the tree column
+     */
+    public void sortColumn(TreeColumn treeColumn) {
+        ColumnType columnType;
+        String columnText = treeColumn.getText();
+        if (columnText.equals(LockHotSpotsColumn.LOCK_SITE.label)) {
+            columnType = ColumnType.LockSites;
+        } else if (columnText.equals(LockHotSpotsColumn.MONITOR_CLASS.label)) {
+            columnType = ColumnType.MonitorClasses;
+        } else if (columnText.equals(LockHotSpotsColumn.WAIT_TIME_MS.label)) {
+            columnType = ColumnType.WaitTimeMs;
+        } else if (columnText.equals(LockHotSpotsColumn.MAX_WAIT_TIME_MS.label)) {
+            columnType = ColumnType.MaxWaitTimeMs;
+        } else if (columnText.equals(LockHotSpotsColumn.COUNT.label)) {
+            columnType = ColumnType.Count;
+        } else {
+            throw new IllegalArgumentException("Unknown column"); //$NON-NLS-1$
+        }
+
+        // sort the tree items
+        LockHotSpotsComparator comparator = new LockHotSpotsComparator(
+                columnType);
+        if (treeColumn.equals(getViewer().getTree().getSortColumn())
+                && getViewer().getTree().getSortDirection() == comparator
+                        .getSortDirection()) {
+            comparator.reverseSortDirection();
+        }
+        getViewer().setComparator(comparator);
+
+        // update sort indicator on tree
+        getViewer().getTree().setSortColumn(treeColumn);
+        getViewer().getTree().setSortDirection(comparator.getSortDirection());
+        getViewer().refresh();
+    }
+
+    /**
+     * Gets the column corresponding to the givel label.
+     * 
+     * @param label
+     *            The label
+     * @return The column, or <tt>null</tt> if not found
+     */
+    private static LockHotSpotsColumn getColumn(String label) {
+        for (LockHotSpotsColumn column : LockHotSpotsColumn.values()) {
+            if (label.equals(column.label)) {
+                return column;
+            }
+        }
+        return null;
+    }
+}
@@ -0,0 +1,131 @@
+/*******************************************************************************
+ * Copyright (c) 2010 JVM Monitor project. All rights reserved. 
+ * 
+ * This code is distributed under the terms of the Eclipse Public License v1.0
+ * which is available at http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+package org.jvmmonitor.internal.ui.properties.cpu;
+
+import org.eclipse.swt.graphics.Font;
+import org.eclipse.swt.graphics.Image;
+import org.eclipse.swt.widgets.Tree;
+import org.jvmmonitor.core.cpu.ILockNode;
+
+/**
+ * The lock hot spot label provider.
+ */
+public class LockHotSpotsLabelProvider extends AbstractLabelProvider {
+
+    /** The filtered tree. */
+    private LockHotSpotsFilteredTree filteredTree;
+
+    /**
+     * The constructor.
+     * 
+     * @param filteredTree
+     *            The filteredTree
+     */
+    public LockHotSpotsLabelProvider(LockHotSpotsFilteredTree filteredTree) {
+        this.filteredTree = filteredTree;
+    }
+
+    /*
+     * @see ILabelProvider#getImage(Object)
+     */
+    @Override
+    public Image getImage(Object obj) {
+        return null;
+    }
+
+    /*
+     * @see ILabelProvider#getText(Object)
+     */
+    @Override
+    public String getText(Object element) {
+        if (element instanceof ILockNode) {
+            return ((ILockNode) element).getName();
+        }
+        return ""; //$NON-NLS-1$
+    }
+
+    /*
+     * @see ITableLabelProvider#getColumnImage(Object, int)
+     */
+    @Override
+    public Image getColumnImage(Object element, int columnIndex) {
+        if (columnIndex == getColumnIndex(LockHotSpotsColumn.LOCK_SITE)
+                && element instanceof ILockNode) {
+            return getMethodImage();
+        }
+        return null;
+    }
+
+    /*
+     * @see ITableLabelProvider#getColumnText(Object, int)
+     */
+    @Override
+    public String getColumnText(Object element, int columnIndex) {
+        if (!(element instanceof ILockNode)) {
+            return ""; //$NON-NLS-1$
+        }
+
+        ILockNode lock = (ILockNode) element;
+        String text = ""; //$NON-NLS-1$
+        if (columnIndex == getColumnIndex(LockHotSpotsColumn.LOCK_SITE)) {
+            text = lock.getName();
+        } else if (columnIndex == getColumnIndex(LockHotSpotsColumn.MONITOR_CLASS)) {
+            text = lock.getMonitorClass();
+        } else if (columnIndex == getColumnIndex(LockHotSpotsColumn.WAIT_TIME_MS)) {
+            text = getWaitTimeText(lock.getWaitTime());
+        } else if (columnIndex == getColumnIndex(LockHotSpotsColumn.MAX_WAIT_TIME_MS)) {
+            text = getWaitTimeText(lock.getMaxWaitTime());
+        } else if (columnIndex == getColumnIndex(LockHotSpotsColumn.COUNT)) {
+            text = String.format("%,15d", lock.getCount()); //$NON-NLS-1$
+        }
+
+        return text;
+    }
+
+    /*
+     * @see ITableFontProvider#getFont(java.lang.Object, int)
+     */
+    @Override
+    public Font getFont(Object element, int columnIndex) {
+        if (columnIndex == getColumnIndex(LockHotSpotsColumn.LOCK_SITE)
+                || columnIndex == getColumnIndex(LockHotSpotsColumn.MONITOR_CLASS)) {
+            return null;
+        }
+
+        return getmonospacedFont(filteredTree.getFont());
+    }
+
+    /**
+     * Gets the text of wait time, which keeps the fraction since the time to
+     * acquire monitor is often shorter than a millisecond.
+     * 
+     * @param milliseconds
+     *            The wait time in milliseconds
+     * @return The wait time text
+     */
+    private static String getWaitTimeText(double milliseconds) {
+        return String.format("%12.3f", milliseconds) //$NON-NLS-1$
+                + Messages.millisecondsLabel;
+    }
+
+    /**
+     * Gets the column index corresponding to the given column.
+     * 
+     * @param column
+     *            The lock hot spots column
+     * @return The column index
+     */
+    private int getColumnIndex(LockHotSpotsColumn column) {
+        Tree tree = filteredTree.getViewer().getTree();
+        for (int i = 0; i < tree.getColumnCount(); i++) {
+            if (tree.getColumn(i).getText().equals(column.label)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+}
@@ -0,0 +1,171 @@
+/*******************************************************************************
+ * Copyright (c) 2010 JVM Monitor project. All rights reserved. 
+ * 
+ * This code is distributed under the terms of the Eclipse Public License v1.0
+ * which is available at http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+package org.jvmmonitor.internal.ui.properties.cpu;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.eclipse.jface.action.IMenuManager;
+import org.eclipse.jface.action.Separator;
+import org.eclipse.jface.viewers.TreeViewer;
+import org.eclipse.swt.SWT;
+import org.eclipse.swt.custom.CTabFolder;
+import org.eclipse.swt.custom.CTabItem;
+import org.eclipse.swt.graphics.Image;
+import org.eclipse.swt.layout.GridLayout;
+import org.eclipse.swt.widgets.Composite;
+import org.eclipse.swt.widgets.Display;
+import org.eclipse.ui.views.properties.PropertySheet;
+import org.jvmmonitor.core.IActiveJvm;
+import org.jvmmonitor.core.cpu.CpuModelEvent;
+import org.jvmmonitor.core.cpu.CpuModelEvent.CpuModelState;
+import org.jvmmonitor.core.cpu.ICpuModel;
+import org.jvmmonitor.core.cpu.ICpuModelChangeListener;
+import org.jvmmonitor.internal.ui.properties.cpu.actions.ConfigureCpuProfilerAction;
+import org.jvmmonitor.ui.Activator;
+import org.jvmmonitor.ui.ISharedImages;
+
+/**
+ * The lock hot spots tab page.
+ */
+public class LockHotSpotsTabPage extends AbstractTabPage {
+
+    /** The lock hot spots filtered tree. */
+    LockHotSpotsFilteredTree filteredTree;
+
+    /** The lock hot spots image. */
+    private Image lockHotSpotsImage;
+
+    /**
+     * The constructor.
+     * 
+     * @param cpuSection
+     *            The CPU section
+     * @param tabFolder
+     *            The tab folder
+     */
+    public LockHotSpotsTabPage(CpuSection cpuSection, CTabFolder tabFolder) {
+        super(cpuSection, tabFolder);
+
+        Composite composite = new Composite(viewForm, SWT.NONE);
+        GridLayout layout = new GridLayout();
+        layout.marginHeight = 0;
+        layout.marginWidth = 0;
+        composite.setLayout(layout);
+        composite.setBackground(Display.getDefault().getSystemColor(
+                SWT.COLOR_BLACK));
+
+        createLockHotSpotsViewer(composite, cpuSection.getPropertySheet());
+
+        viewForm.setContent(composite);
+
+        CTabItem tabItem = cpuSection.getWidgetFactory().createTabItem(
+                tabFolder, SWT.NONE);
+        tabItem.setText(Messages.lockHotSpotsTabLabel);
+        tabItem.setImage(getLockHotSpotsImage());
+        tabItem.setControl(this);
+
+        cpuModelChangeListener = new ICpuModelChangeListener() {
+            @Override
+            public void modelChanged(CpuModelEvent event) {
+                if (event.state == CpuModelState.CpuModelChanged) {
+                    refresh();
+                }
+            }
+        };
+    }
+
+    /*
+     * @see AbstractTabPage#setInput(IActiveJvm)
+     */
+    @Override
+    protected void setInput(IActiveJvm jvm) {
+        super.setInput(jvm);
+        filteredTree.getViewer().setInput(jvm.getCpuProfiler().getCpuModel());
+    }
+
+    /*
+     * @see AbstractTabPage#refresh()
+     */
+    @Override
+    protected void refresh() {
+        if (!isVisible()) {
+            return;
+        }
+
+        if (!filteredTree.getViewer().getControl().isDisposed()) {
+            filteredTree.getViewer().refresh();
+        }
+    }
+
+    /*
+     * @see AbstractTabPage#dispose()
+     */
+    @Override
+    public void dispose() {
+        super.dispose();
+        if (lockHotSpotsImage != null) {
+            lockHotSpotsImage.dispose();
+        }
+    }
+
+    /*
+     * @see AbstractTabPage#getFilteredTrees()
+     */
+    @Override
+    protected List<AbstractFilteredTree> getFilteredTrees() {
+        List<AbstractFilteredTree> trees = new ArrayList<AbstractFilteredTree>();
+        trees.add(filteredTree);
+        return trees;
+    }
+
+    /**
+     * Creates the lock hot spots viewer.
+     * 
+     * @param composite
+     *            The parent composite
+     * @param propertySheet
+     *            The property sheet
+     */
+    private void createLockHotSpotsViewer(Composite composite,
+            PropertySheet propertySheet) {
+        filteredTree = new LockHotSpotsFilteredTree(composite, propertySheet
+                .getViewSite().getActionBars()) {
+            @Override
+            protected void addMenus(IMenuManager manager) {
+                manager.add(new Separator());
+                manager.add(new ConfigureCpuProfilerAction(cpuSection));
+            }
+        };
+        TreeViewer lockHotSpotsViewer = filteredTree.getViewer();
+        lockHotSpotsViewer.setContentProvider(new AbstractContentProvider() {
+            @Override
+            public Object[] getElements(Object inputElement) {
+                if (inputElement instanceof ICpuModel) {
+                    return ((ICpuModel) inputElement).getLockHotSpots();
+                }
+                return new Object[0];
+            }
+        });
+        lockHotSpotsViewer.setLabelProvider(new LockHotSpotsLabelProvider(
+                filteredTree));
+        filteredTree.sortColumn(lockHotSpotsViewer.getTree().getColumn(2));
+    }
+
+    /**
+     * Gets the lock hot spots image.
+     * 
+     * @return The lock hot spots image
+     */
+    private Image getLockHotSpotsImage() {
+        if (lockHotSpotsImage == null || lockHotSpotsImage.isDisposed()) {
+            lockHotSpotsImage = Activator.getImageDescriptor(
+                    ISharedImages.THREAD_BLOCKED_IMG_PATH).createImage();
+        }
+        return lockHotSpotsImage;
+    }
+}
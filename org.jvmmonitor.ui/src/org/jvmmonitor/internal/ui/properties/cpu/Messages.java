@@ -47,6 +47,12 @@ public final class Messages extends NLS {
     /** */
     public static String timeInPercentageLabel;
 
+    /** */
+    public static String cpuTimeInMsLabel;
+
+    /** */
+    public static String waitTimeInMsLabel;
+
     /** */
     public static String selfTimeInMsLabel;
 
@@ -56,6 +62,33 @@ public final class Messages extends NLS {
     /** */
     public static String countLabel;
 
+    /** */
+    public static String allocationCountLabel;
+
+    /** */
+    public static String allocatedBytesLabel;
+
+    /** */
+    public static String latencyP50Label;
+
+    /** */
+    public static String latencyP90Label;
+
+    /** */
+    public static String latencyP99Label;
+
+    /** */
+    public static String maxLatencyLabel;
+
+    /** */
+    public static String lockSiteColumnLabel;
+
+    /** */
+    public static String monitorClassLabel;
+
+    /** */
+    public static String maxWaitTimeInMsLabel;
+
     /** */
     public static String callTreeColumnToolTip;
 
@@ -74,6 +107,12 @@ public final class Messages extends NLS {
     /** */
     public static String timeInPercentageToolTip;
 
+    /** */
+    public static String cpuTimeInMsToolTip;
+
+    /** */
+    public static String waitTimeInMsToolTip;
+
     /** */
     public static String selfTimeInMsToolTip;
 
@@ -83,6 +122,39 @@ public final class Messages extends NLS {
     /** */
     public static String countToolTip;
 
+    /** */
+    public static String allocationCountToolTip;
+
+    /** */
+    public static String allocatedBytesToolTip;
+
+    /** */
+    public static String latencyP50ToolTip;
+
+    /** */
+    public static String latencyP90ToolTip;
+
+    /** */
+    public static String latencyP99ToolTip;
+
+    /** */
+    public static String maxLatencyToolTip;
+
+    /** */
+    public static String lockSiteColumnToolTip;
+
+    /** */
+    public static String monitorClassToolTip;
+
+    /** */
+    public static String lockWaitTimeInMsToolTip;
+
+    /** */
+    public static String maxWaitTimeInMsToolTip;
+
+    /** */
+    public static String lockCountToolTip;
+
     /** */
     public static String percentageLabel;
 
@@ -125,6 +197,9 @@ public final class Messages extends NLS {
     /** */
     public static String hotSpotsTabLabel;
 
+    /** */
+    public static String lockHotSpotsTabLabel;
+
     // job names
 
     /** */
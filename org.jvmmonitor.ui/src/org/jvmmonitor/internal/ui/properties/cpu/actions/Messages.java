@@ -113,6 +113,9 @@ public final class Messages extends NLS {
     /** */
     public static String dumpCpuLabel;
 
+    /** */
+    public static String dumpSlowCallsLabel;
+
     /** */
     public static String resumeCpuProfilingLabel;
 
@@ -133,6 +136,9 @@ public final class Messages extends NLS {
     /** */
     public static String dumpCpuProfileDataJobLabel;
 
+    /** */
+    public static String dumpSlowCallsJobLabel;
+
     /** */
     public static String resumeCpuProfilingJob;
 
@@ -147,6 +153,9 @@ public final class Messages extends NLS {
     /** */
     public static String dumpCpuProfileDataFailedMsg;
 
+    /** */
+    public static String dumpSlowCallsFailedMsg;
+
     /** */
     public static String getJavaModelFailedMsg;
 